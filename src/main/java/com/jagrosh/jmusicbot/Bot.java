@@ -20,12 +20,19 @@ import com.jagrosh.jmusicbot.audio.AloneInVoiceHandler;
 import com.jagrosh.jmusicbot.audio.AudioHandler;
 import com.jagrosh.jmusicbot.audio.NowplayingHandler;
 import com.jagrosh.jmusicbot.audio.PlayerManager;
+import com.jagrosh.jmusicbot.audio.QueueCheckpointer;
+import com.jagrosh.jmusicbot.audio.VoiceStateIndex;
 import com.jagrosh.jmusicbot.gui.GUI;
+import com.jagrosh.jmusicbot.playlist.PlaylistIndex;
 import com.jagrosh.jmusicbot.playlist.PlaylistLoader;
+import com.jagrosh.jmusicbot.playlist.PlaylistResolver;
 import com.jagrosh.jmusicbot.settings.SettingsManager;
+import com.jagrosh.jmusicbot.utils.MonitoredExecutor;
+import com.jagrosh.jmusicbot.utils.UpdateCoalescer;
 import dev.cosgy.jmusicbot.playlist.CacheLoader;
 import dev.cosgy.jmusicbot.playlist.MylistLoader;
 import dev.cosgy.jmusicbot.playlist.PubliclistLoader;
+import dev.cosgy.jmusicbot.slashcommands.CommandRunner;
 import net.dv8tion.jda.api.JDA;
 import net.dv8tion.jda.api.Permission;
 import net.dv8tion.jda.api.entities.Activity;
@@ -33,8 +40,9 @@ import net.dv8tion.jda.api.entities.Guild;
 import net.dv8tion.jda.api.entities.Member;
 import org.slf4j.LoggerFactory;
 
+import java.util.Arrays;
+import java.util.List;
 import java.util.Objects;
-import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 
 /**
@@ -43,16 +51,29 @@ import java.util.concurrent.ScheduledExecutorService;
 public class Bot {
     public static Bot INSTANCE;
     private final EventWaiter waiter;
-    private final ScheduledExecutorService threadpool;
+    // 短時間で終わるタイマーの処理
+    private final MonitoredExecutor threadpool;
+    // ファイルや HTTP など、待ち時間のある処理
+    private final MonitoredExecutor ioExecutor;
+    // ボイスチャンネルへの接続と切断
+    private final MonitoredExecutor voiceExecutor;
+    // 音楽コマンドの実行
+    private final MonitoredExecutor commandExecutor;
+    private final CommandRunner commands;
     private final BotConfig config;
     private final SettingsManager settings;
     private final PlayerManager players;
+    private final PlaylistResolver resolver;
+    private final PlaylistIndex playlistIndex;
     private final PlaylistLoader playlists;
     private final MylistLoader mylists;
     private final PubliclistLoader publist;
     private final CacheLoader cache;
     private final NowplayingHandler nowplaying;
     private final AloneInVoiceHandler aloneInVoiceHandler;
+    private final QueueCheckpointer checkpointer;
+    private final UpdateCoalescer updates;
+    private final VoiceStateIndex voiceStates;
 
     private boolean shuttingDown = false;
     private JDA jda;
@@ -62,17 +83,27 @@ public class Bot {
         this.waiter = waiter;
         this.config = config;
         this.settings = settings;
-        this.playlists = new PlaylistLoader(config);
-        this.mylists = new MylistLoader(config);
-        this.publist = new PubliclistLoader(config);
+        this.resolver = new PlaylistResolver(config);
+        this.playlistIndex = new PlaylistIndex();
+        this.playlists = new PlaylistLoader(config, resolver, playlistIndex);
+        this.mylists = new MylistLoader(config, resolver, playlistIndex);
+        this.publist = new PubliclistLoader(config, resolver, playlistIndex);
         this.cache = new CacheLoader(config);
-        this.threadpool = Executors.newSingleThreadScheduledExecutor();
+        this.threadpool = new MonitoredExecutor("Timer", 1);
+        this.ioExecutor = new MonitoredExecutor("BlockingIO", 2);
+        this.voiceExecutor = new MonitoredExecutor("Voice", 1);
+        this.commandExecutor = new MonitoredExecutor("Command", 4);
+        this.commands = new CommandRunner(this);
+        this.updates = new UpdateCoalescer(threadpool);
+        this.voiceStates = new VoiceStateIndex();
         this.players = new PlayerManager(this);
         this.players.init();
         this.nowplaying = new NowplayingHandler(this);
         this.nowplaying.init();
         this.aloneInVoiceHandler = new AloneInVoiceHandler(this);
         this.aloneInVoiceHandler.init();
+        this.checkpointer = new QueueCheckpointer(this);
+        this.checkpointer.init();
     }
 
     public static void updatePlayStatus(Guild guild, Member selfMember, PlayStatus status) {
@@ -96,7 +127,8 @@ public class Bot {
             default:
         }
 
-        guild.modifyNickname(selfMember, name).queue();
+        INSTANCE.getUpdateCoalescer().submit(UpdateCoalescer.Kind.NICKNAME, guild.getIdLong(), selfMember.getEffectiveName(), name,
+                n -> guild.modifyNickname(selfMember, n));
     }
 
     public BotConfig getConfig() {
@@ -111,14 +143,50 @@ public class Bot {
         return waiter;
     }
 
+    /**
+     * @return 短時間で終わるタイマーの処理を実行するスレッドプール。待ち時間のある処理は {@link #getIOExecutor()} で実行してください
+     */
     public ScheduledExecutorService getThreadpool() {
         return threadpool;
     }
 
+    /**
+     * @return ファイルの読み書きや HTTP の要求など、待ち時間のある処理を実行するスレッドプール
+     */
+    public ScheduledExecutorService getIOExecutor() {
+        return ioExecutor;
+    }
+
+    /**
+     * @return ボイスチャンネルへの接続と切断を実行するスレッドプール
+     */
+    public ScheduledExecutorService getVoiceExecutor() {
+        return voiceExecutor;
+    }
+
+    /**
+     * @return 音楽コマンドを実行するスレッドプール。コマンドは {@link #getCommandRunner()} から実行してください
+     */
+    public ScheduledExecutorService getCommandExecutor() {
+        return commandExecutor;
+    }
+
+    public List<MonitoredExecutor> getExecutors() {
+        return Arrays.asList(threadpool, ioExecutor, voiceExecutor, commandExecutor);
+    }
+
+    public CommandRunner getCommandRunner() {
+        return commands;
+    }
+
     public PlayerManager getPlayerManager() {
         return players;
     }
 
+    public PlaylistResolver getPlaylistResolver() {
+        return resolver;
+    }
+
     public PlaylistLoader getPlaylistLoader() {
         return playlists;
     }
@@ -143,6 +211,18 @@ public class Bot {
         return aloneInVoiceHandler;
     }
 
+    public VoiceStateIndex getVoiceStateIndex() {
+        return voiceStates;
+    }
+
+    public UpdateCoalescer getUpdateCoalescer() {
+        return updates;
+    }
+
+    public QueueCheckpointer getQueueCheckpointer() {
+        return checkpointer;
+    }
+
     public JDA getJDA() {
         return jda;
     }
@@ -154,7 +234,7 @@ public class Bot {
     public void closeAudioConnection(long guildId) {
         Guild guild = jda.getGuildById(guildId);
         if (guild != null)
-            threadpool.submit(() -> guild.getAudioManager().closeAudioConnection());
+            voiceExecutor.submit(() -> guild.getAudioManager().closeAudioConnection());
     }
 
     public void resetGame() {
@@ -167,7 +247,12 @@ public class Bot {
         if (shuttingDown)
             return;
         shuttingDown = true;
+        // 定期的な処理を止めてから、最後の再生待ちを保存する
         threadpool.shutdownNow();
+        ioExecutor.shutdown();
+        commandExecutor.shutdownGracefully(2000);
+        checkpointer.flush();
+        voiceExecutor.shutdownGracefully(2000);
         if (jda.getStatus() != JDA.Status.SHUTTING_DOWN) {
             jda.getGuilds().forEach(g ->
             {
@@ -176,11 +261,18 @@ public class Bot {
                 if (ah != null) {
                     ah.stopAndClear();
                     ah.getPlayer().destroy();
-                    nowplaying.updateTopic(g.getIdLong(), ah, true);
+                    nowplaying.updateTopic(g.getIdLong(), ah);
                 }
             });
+            // 再生を終了したことをトピックなどに反映してから終了する
+            updates.flush(5000);
             jda.shutdown();
         }
+        // yt-dlp などの外部プロセスを残さないように止める
+        players.shutdown();
+        ioExecutor.shutdownGracefully(5000);
+        settings.shutdown();
+        playlistIndex.close();
         if (gui != null)
             gui.dispose();
         System.exit(0);
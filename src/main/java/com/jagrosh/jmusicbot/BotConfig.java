@@ -59,9 +59,11 @@ public class BotConfig {
     private String ytPass;
     private String spClientId;
     private String spClientSecret;
+    private String settingsFormat;
     // [JMusicBot-JP] added useNicoNico, changeNickName, pauseNoUsers, resumeJoined, stopNoUsers, cosgyDevHost, helpToDm, officialInvite
-    private boolean useNicoNico, changeNickName, stayInChannel, pauseNoUsers, resumeJoined, stopNoUsers, songInGame, npImages, updatealerts, useEval, dbots, cosgyDevHost, helpToDm, autoStopQueueSave, auditCommands, officialInvite, useinvitecommand;
-    private long owner, maxSeconds, aloneTimeUntilStop;
+    private boolean useNicoNico, nicoStreaming, changeNickName, stayInChannel, pauseNoUsers, resumeJoined, stopNoUsers, songInGame, npImages, updatealerts, useEval, dbots, cosgyDevHost, helpToDm, autoStopQueueSave, auditCommands, officialInvite, useinvitecommand;
+    private long owner, maxSeconds, aloneTimeUntilStop, settingsSaveDelay, checkpointInterval, nicoCacheSize;
+    private int playlistConcurrency, playlistGuildConcurrency, lazyLoadThreshold, checkpointBatch, nicoMaxProcesses, nicoPrefetch;
     private OnlineStatus status;
     private Activity game;
     private Config aliases, transforms;
@@ -121,12 +123,23 @@ public class BotConfig {
             nicoEmail = config.getString("nicomail");
             nicoPass = config.getString("nicopass");
             nicoTwoFactor = config.getString("nicotwofactor");
+            nicoStreaming = config.getBoolean("nicostreaming");
+            nicoCacheSize = config.getLong("nicocachesize");
+            nicoMaxProcesses = config.getInt("nicomaxprocesses");
+            nicoPrefetch = config.getInt("nicoprefetch");
             pauseNoUsers = config.getBoolean("pausenousers");
             resumeJoined = config.getBoolean("resumejoined");
             stopNoUsers = config.getBoolean("stopnousers");
             changeNickName = config.getBoolean("changenickname");
             helpToDm = config.getBoolean("helptodm");
             autoStopQueueSave = config.getBoolean("autostopqueuesave");
+            settingsSaveDelay = config.getLong("settingssavedelay");
+            settingsFormat = config.getString("settingsformat");
+            playlistConcurrency = config.getInt("playlistconcurrency");
+            playlistGuildConcurrency = config.getInt("playlistguildconcurrency");
+            lazyLoadThreshold = config.getInt("lazyloadthreshold");
+            checkpointInterval = config.getLong("checkpointinterval");
+            checkpointBatch = config.getInt("checkpointbatch");
             auditCommands = config.getBoolean("auditcommands");
             officialInvite = config.getBoolean("officialinvite");
             useinvitecommand = config.getBoolean("useinvitecommand");
@@ -346,6 +359,28 @@ public class BotConfig {
 
     public static String getNicoNicoTwoFactor(){ return nicoTwoFactor; }
 
+    public boolean isNicoNicoStreaming() {
+        return nicoStreaming;
+    }
+
+    /**
+     * @return ニコニコ動画のキャッシュの上限(MB)。0 の場合はキャッシュを使用しない
+     */
+    public long getNicoNicoCacheSize() {
+        return Math.max(0, nicoCacheSize);
+    }
+
+    public int getNicoNicoMaxProcesses() {
+        return Math.max(1, nicoMaxProcesses);
+    }
+
+    /**
+     * @return 先読みするニコニコ動画の楽曲の数
+     */
+    public int getNicoNicoPrefetch() {
+        return Math.max(0, nicoPrefetch);
+    }
+
     public String getYouTubeEmailAddress() {
         return ytEmail;
     }
@@ -372,6 +407,38 @@ public class BotConfig {
         return autoStopQueueSave;
     }
 
+    public long getSettingsSaveDelay() {
+        return settingsSaveDelay;
+    }
+
+    public boolean useBinarySettings() {
+        return "binary".equalsIgnoreCase(settingsFormat);
+    }
+
+    public int getPlaylistConcurrency() {
+        return playlistConcurrency;
+    }
+
+    public int getPlaylistGuildConcurrency() {
+        return playlistGuildConcurrency;
+    }
+
+    /**
+     * @param size 再生リストの曲数
+     * @return 再生リストの曲を、再生する直前に読み込むか
+     */
+    public boolean isLazyLoad(int size) {
+        return lazyLoadThreshold > 0 && size > lazyLoadThreshold;
+    }
+
+    public long getCheckpointInterval() {
+        return checkpointInterval;
+    }
+
+    public int getCheckpointBatch() {
+        return checkpointBatch;
+    }
+
     public boolean getAuditCommands() {
         return auditCommands;
     }
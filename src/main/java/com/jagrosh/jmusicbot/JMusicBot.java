@@ -48,6 +48,7 @@ import java.io.InputStreamReader;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 
 import static org.slf4j.LoggerFactory.getLogger;
 
@@ -141,7 +142,9 @@ public class JMusicBot {
 
         // set up the listener
         EventWaiter waiter = new EventWaiter();
-        SettingsManager settings = new SettingsManager();
+        SettingsManager settings = new SettingsManager(TimeUnit.SECONDS.toMillis(config.getSettingsSaveDelay()), config.useBinarySettings());
+        // Ctrl+Cなどで終了した場合も、書き込み待ちの設定を保存する
+        Runtime.getRuntime().addShutdownHook(new Thread(settings::shutdown, "SettingsShutdown"));
         Bot bot = new Bot(waiter, config, settings);
         Bot.INSTANCE = bot;
 
@@ -223,6 +226,8 @@ public class JMusicBot {
             add(new ServerListCmd(bot));
             // Owner
             add(new DebugCmd(bot));
+            add(new AudioStatsCmd(bot));
+            add(new ThreadStatsCmd(bot));
             add(new SetavatarCmd(bot));
             add(new SetgameCmd(bot));
             add(new SetnameCmd(bot));
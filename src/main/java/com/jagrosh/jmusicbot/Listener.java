@@ -17,13 +17,15 @@ package com.jagrosh.jmusicbot;
 
 import com.jagrosh.jmusicbot.audio.AudioHandler;
 import com.jagrosh.jmusicbot.utils.OtherUtil;
-import net.dv8tion.jda.api.entities.Member;
 import net.dv8tion.jda.api.entities.User;
 import net.dv8tion.jda.api.entities.channel.concrete.VoiceChannel;
+import net.dv8tion.jda.api.events.guild.GuildLeaveEvent;
+import net.dv8tion.jda.api.events.guild.voice.GuildVoiceDeafenEvent;
 import net.dv8tion.jda.api.events.guild.voice.GuildVoiceUpdateEvent;
 import net.dv8tion.jda.api.events.interaction.component.ButtonInteractionEvent;
 import net.dv8tion.jda.api.events.message.MessageDeleteEvent;
 import net.dv8tion.jda.api.events.session.ReadyEvent;
+import net.dv8tion.jda.api.events.session.SessionRecreateEvent;
 import net.dv8tion.jda.api.events.session.ShutdownEvent;
 import net.dv8tion.jda.api.hooks.ListenerAdapter;
 import org.jetbrains.annotations.NotNull;
@@ -31,6 +33,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.Objects;
+import java.util.Set;
 import java.util.concurrent.TimeUnit;
 
 /**
@@ -50,8 +53,13 @@ public class Listener extends ListenerAdapter {
             log.warn("このボットはグループに入っていません！ボットをあなたのグループに追加するには、以下のリンクを使用してください。");
             log.warn(event.getJDA().getInviteUrl(JMusicBot.RECOMMENDED_PERMS));
         }
+        bot.getVoiceStateIndex().init(event.getJDA());
+        // 前回終了した時に再生していたサーバーは、既定の再生リストより前回の再生待ちを優先する
+        Set<Long> resuming = bot.getQueueCheckpointer().resume(event.getJDA());
         event.getJDA().getGuilds().forEach((guild) ->
         {
+            if (resuming.contains(guild.getIdLong()))
+                return;
             try {
                 String defpl = Objects.requireNonNull(bot.getSettingsManager().getSettings(guild)).getDefaultPlaylist();
                 VoiceChannel vc = Objects.requireNonNull(bot.getSettingsManager().getSettings(guild)).getVoiceChannel(guild);
@@ -62,7 +70,7 @@ public class Listener extends ListenerAdapter {
             }
         });
         if (bot.getConfig().useUpdateAlerts()) {
-            bot.getThreadpool().scheduleWithFixedDelay(() ->
+            bot.getIOExecutor().scheduleWithFixedDelay(() ->
             {
                 User owner = bot.getJDA().getUserById(bot.getConfig().getOwnerId());
                 if (owner != null) {
@@ -77,6 +85,12 @@ public class Listener extends ListenerAdapter {
         }
     }
 
+    @Override
+    public void onSessionRecreate(@NotNull SessionRecreateEvent event) {
+        // 再接続中に届かなかったボイスチャンネルの変更を反映するため、キャッシュから作り直す
+        bot.getVoiceStateIndex().init(event.getJDA());
+    }
+
     @Override
     public void onMessageDelete(@NotNull MessageDeleteEvent event) {
         bot.getNowplayingHandler().onMessageDelete(event.getGuild(), event.getMessageIdLong());
@@ -85,7 +99,9 @@ public class Listener extends ListenerAdapter {
     @Override
     public void onGuildVoiceUpdate(@NotNull GuildVoiceUpdateEvent event) {
         Logger log = LoggerFactory.getLogger("onGuildVoiceUpdate");
-        bot.getAloneInVoiceHandler().onVoiceUpdate(event);
+        // 他の処理がボイスチャンネルの人数を参照する前に更新する
+        bot.getVoiceStateIndex().onVoiceUpdate(event);
+        bot.getAloneInVoiceHandler().onVoiceUpdate(event.getGuild());
 
         // 退出時のイベント
         log.debug("onGuildVoiceLeave Start");
@@ -101,6 +117,17 @@ public class Listener extends ListenerAdapter {
     }
 
 
+    @Override
+    public void onGuildVoiceDeafen(@NotNull GuildVoiceDeafenEvent event) {
+        bot.getVoiceStateIndex().onDeafen(event);
+        bot.getAloneInVoiceHandler().onVoiceUpdate(event.getGuild());
+    }
+
+    @Override
+    public void onGuildLeave(@NotNull GuildLeaveEvent event) {
+        bot.getVoiceStateIndex().remove(event.getGuild().getIdLong());
+    }
+
     public void onGuildVoiceLeave(@NotNull GuildVoiceUpdateEvent event) {
         if (event.getChannelLeft() == null) return;
 
@@ -109,9 +136,10 @@ public class Listener extends ListenerAdapter {
         //NUP = true -> GO
         if (!bot.getConfig().getNoUserPause())
             if (!bot.getConfig().getNoUserStop()) return;
-        Member botMember = event.getGuild().getSelfMember();
-        //ボイチャにいる人数が1人、botがボイチャにいるか
-        if (event.getChannelLeft().getMembers().size() == 1 && event.getChannelLeft().getMembers().contains(botMember)) {
+        long guildId = event.getGuild().getIdLong();
+        //botがボイチャにいて、bot以外のユーザーがいなくなったか
+        if (bot.getVoiceStateIndex().isConnected(guildId) && bot.getVoiceStateIndex().getMemberCount(guildId) == 0
+                && event.getChannelLeft().equals(event.getGuild().getAudioManager().getConnectedChannel())) {
             AudioHandler handler = (AudioHandler) event.getGuild().getAudioManager().getSendingHandler();
 
             // config.txtの nouserpause が true の場合
@@ -128,7 +156,7 @@ public class Listener extends ListenerAdapter {
             if (bot.getConfig().getNoUserStop()) {
                 //⏹
                 if (bot.getConfig().getAutoStopQueueSave()) {
-                    bot.getCacheLoader().Save(event.getGuild().toString(), handler.getQueue());
+                    bot.getCacheLoader().Save(event.getGuild().getId(), handler);
                 }
                 Objects.requireNonNull(handler).stopAndClear();
                 event.getGuild().getAudioManager().closeAudioConnection();
@@ -143,12 +171,14 @@ public class Listener extends ListenerAdapter {
         Logger log = LoggerFactory.getLogger("onGuildVoiceJoin");
         if (!bot.getConfig().getResumeJoined()) return;
         //▶
-        Member botMember = event.getGuild().getSelfMember();
         AudioHandler handler = (AudioHandler) event.getGuild().getAudioManager().getSendingHandler();
+        //botがボイチャにいて、bot以外のユーザーが1人以上いるか
+        boolean joined = event.getChannelJoined().equals(event.getGuild().getAudioManager().getConnectedChannel())
+                && bot.getVoiceStateIndex().getMemberCount(event.getGuild().getIdLong()) > 0;
 
-        log.debug("再生再開判定 {}", ((event.getChannelJoined().getMembers().size() > 1 && event.getChannelJoined().getMembers().contains(botMember)) && Objects.requireNonNull(handler).getPlayer().isPaused()));
-        //ボイチャにいる人数が1人以上、botがボイチャにいるか、再生が一時停止されているか
-        if ((event.getChannelJoined().getMembers().size() > 1 && event.getChannelJoined().getMembers().contains(botMember)) && Objects.requireNonNull(handler).getPlayer().isPaused()) {
+        log.debug("再生再開判定 {}", joined && handler != null && handler.getPlayer().isPaused());
+        //再生が一時停止されているか
+        if (joined && Objects.requireNonNull(handler).getPlayer().isPaused()) {
             handler.getPlayer().setPaused(false);
             log.debug("再生を再開しました。");
 
@@ -20,23 +20,28 @@ import dev.cosgy.jmusicbot.playlist.CacheLoader;
 import dev.cosgy.jmusicbot.util.LastSendTextChannel;
 import net.dv8tion.jda.api.entities.Guild;
 import net.dv8tion.jda.api.entities.channel.ChannelType;
-import net.dv8tion.jda.api.events.guild.voice.GuildVoiceUpdateEvent;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.time.Instant;
-import java.util.HashMap;
-import java.util.HashSet;
 import java.util.Map;
-import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
+ * ボイスチャンネルで一人になったギルドを、設定した時間が経った時に退出させます。
+ * <p>
+ * 一人になった時にギルドごとの期限をスケジュールし、誰かが戻ってきた時に取り消します。
+ * 期限はそれぞれ一度だけ実行され、定期的に全ギルドを確認することはありません。
+ *
  * @author Michaili K (mysteriouscursor+git@protonmail.com)
  */
 public class AloneInVoiceHandler {
     private final Bot bot;
-    private final HashMap<Long, Instant> aloneSince = new HashMap<>();
+    // 一人になったギルドと、退出する期限
+    private final Map<Long, ScheduledFuture<?>> deadlines = new ConcurrentHashMap<>();
     Logger log = LoggerFactory.getLogger("AloneInVoiceHandler");
     private long aloneTimeUntilStop = 0;
 
@@ -46,67 +51,72 @@ public class AloneInVoiceHandler {
 
     public void init() {
         aloneTimeUntilStop = bot.getConfig().getAloneTimeUntilStop();
-        if (aloneTimeUntilStop > 0)
-            bot.getThreadpool().scheduleWithFixedDelay(this::check, 0, 5, TimeUnit.SECONDS);
     }
 
-    private void check() {
-        Set<Long> toRemove = new HashSet<>();
-        for (Map.Entry<Long, Instant> entrySet : aloneSince.entrySet()) {
-            if (entrySet.getValue().getEpochSecond() > Instant.now().getEpochSecond() - aloneTimeUntilStop) continue;
-
-            Guild guild = bot.getJDA().getGuildById(entrySet.getKey());
-
-            if (guild == null) {
-                toRemove.add(entrySet.getKey());
-                continue;
-            }
-            AudioHandler handler = (AudioHandler) guild.getAudioManager().getSendingHandler();
-
-            if (bot.getConfig().getAutoStopQueueSave()) {
-                // キャッシュの保存処理
-                CacheLoader cache = bot.getCacheLoader();
-                cache.Save(guild.getId(), handler.getQueue());
-                log.info("再生待ちを保存してボイスチャンネルから退出します。");
-                LastSendTextChannel.SendMessage(guild, ":notes: 再生待ちを保存してボイスチャンネルから退出しました。");
-            } else {
-                // キャッシュを保存せずに退出する時の処理
-                log.info("再生待ちを削除してボイスチャンネルから退出します。");
-                LastSendTextChannel.SendMessage(guild, ":notes: 再生待ちを削除してボイスチャンネルから退出しました。");
-            }
-
-            handler.stopAndClear();
-            guild.getAudioManager().closeAudioConnection();
-
-            toRemove.add(entrySet.getKey());
+    private void leave(long guildId) {
+        Guild guild = bot.getJDA().getGuildById(guildId);
+        if (guild == null)
+            return;
+        // 期限の直前に誰かが戻ってきた場合
+        if (!isAlone(guild))
+            return;
+        AudioHandler handler = (AudioHandler) guild.getAudioManager().getSendingHandler();
+        if (handler == null)
+            return;
+
+        if (bot.getConfig().getAutoStopQueueSave()) {
+            // キャッシュの保存処理
+            CacheLoader cache = bot.getCacheLoader();
+            cache.Save(guild.getId(), handler);
+            log.info("再生待ちを保存してボイスチャンネルから退出します。");
+            LastSendTextChannel.SendMessage(guild, ":notes: 再生待ちを保存してボイスチャンネルから退出しました。");
+        } else {
+            // キャッシュを保存せずに退出する時の処理
+            log.info("再生待ちを削除してボイスチャンネルから退出します。");
+            LastSendTextChannel.SendMessage(guild, ":notes: 再生待ちを削除してボイスチャンネルから退出しました。");
         }
-        toRemove.forEach(aloneSince::remove);
+
+        handler.stopAndClear();
+        guild.getAudioManager().closeAudioConnection();
     }
 
-    public void onVoiceUpdate(GuildVoiceUpdateEvent event) {
+    public void onVoiceUpdate(Guild guild) {
         if (aloneTimeUntilStop <= 0) return;
 
-        Guild guild = event.getEntity().getGuild();
         if (!bot.getPlayerManager().hasHandler(guild)) return;
         // ステージチャンネルにいる場合は退出しない。
         if (guild.getAudioManager().getConnectedChannel() != null) {
             if (guild.getAudioManager().getConnectedChannel().getType() == ChannelType.STAGE) return;
         }
 
-        boolean alone = isAlone(guild);
-        boolean inList = aloneSince.containsKey(guild.getIdLong());
+        long guildId = guild.getIdLong();
+        if (!isAlone(guild)) {
+            ScheduledFuture<?> deadline = deadlines.remove(guildId);
+            if (deadline != null)
+                deadline.cancel(false);
+            return;
+        }
+        deadlines.computeIfAbsent(guildId, id -> schedule(guildId));
+    }
 
-        if (!alone && inList)
-            aloneSince.remove(guild.getIdLong());
-        else if (alone && !inList)
-            aloneSince.put(guild.getIdLong(), Instant.now());
+    // deadlines の computeIfAbsent の中で呼び出すため、期限が来た時の remove は登録が終わるまで待つ
+    private ScheduledFuture<?> schedule(long guildId) {
+        AtomicReference<ScheduledFuture<?>> self = new AtomicReference<>();
+        try {
+            self.set(bot.getVoiceExecutor().schedule(() -> {
+                // 取り消された後に実行が始まった場合や、新しい期限に置き換わった場合は退出しない
+                if (deadlines.remove(guildId, self.get()))
+                    leave(guildId);
+            }, aloneTimeUntilStop, TimeUnit.SECONDS));
+            return self.get();
+        } catch (RejectedExecutionException e) {
+            // 終了処理中
+            return null;
+        }
     }
 
     private boolean isAlone(Guild guild) {
-        if (guild.getAudioManager().getConnectedChannel() == null) return false;
-        return guild.getAudioManager().getConnectedChannel().getMembers().stream()
-                .noneMatch(x ->
-                        !x.getVoiceState().isDeafened()
-                                && !x.getUser().isBot());
+        VoiceStateIndex voiceStates = bot.getVoiceStateIndex();
+        return voiceStates.isConnected(guild.getIdLong()) && voiceStates.getListenerCount(guild.getIdLong()) == 0;
     }
 }
\ No newline at end of file
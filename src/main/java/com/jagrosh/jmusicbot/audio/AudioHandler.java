@@ -21,13 +21,16 @@ import com.jagrosh.jmusicbot.PlayStatus;
 import com.jagrosh.jmusicbot.playlist.PlaylistLoader.Playlist;
 import com.jagrosh.jmusicbot.queue.FairQueue;
 import com.jagrosh.jmusicbot.settings.Settings;
+import com.jagrosh.jmusicbot.settings.SettingsManager;
 import com.jagrosh.jmusicbot.utils.FormatUtil;
 import com.sedmelluq.discord.lavaplayer.player.AudioPlayer;
 import com.sedmelluq.discord.lavaplayer.player.event.AudioEventAdapter;
+import com.sedmelluq.discord.lavaplayer.source.nico.NicoAudioSourceManager;
 import com.sedmelluq.discord.lavaplayer.source.youtube.YoutubeAudioTrack;
 import com.sedmelluq.discord.lavaplayer.track.AudioTrack;
+import com.sedmelluq.discord.lavaplayer.format.StandardAudioDataFormats;
 import com.sedmelluq.discord.lavaplayer.track.AudioTrackEndReason;
-import com.sedmelluq.discord.lavaplayer.track.playback.AudioFrame;
+import com.sedmelluq.discord.lavaplayer.track.playback.MutableAudioFrame;
 import dev.cosgy.jmusicbot.settings.RepeatMode;
 import net.dv8tion.jda.api.EmbedBuilder;
 import net.dv8tion.jda.api.JDA;
@@ -38,55 +41,126 @@ import net.dv8tion.jda.api.utils.messages.MessageCreateBuilder;
 import net.dv8tion.jda.api.utils.messages.MessageCreateData;
 
 import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashSet;
-import java.util.LinkedList;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * @author John Grosh <john.a.grosh@gmail.com>
  */
 public class AudioHandler extends AudioEventAdapter implements AudioSendHandler {
+    // 未読み込みの楽曲を、キューの先頭からこの数だけ前もって読み込んでおく
+    private static final int RESOLVE_AHEAD = 3;
     private final FairQueue<QueuedTrack> queue = new FairQueue<>();
-    private final List<AudioTrack> defaultQueue = new LinkedList<>();
     private final Set<String> votes = new HashSet<>();
     private final PlayerManager manager;
     private final AudioPlayer audioPlayer;
     private final long guildId;
     private final String stringGuildId;
-    private AudioFrame lastFrame;
+    // 送信用のフレームとバッファはハンドラごとに使い回し、20ms毎の送信でオブジェクトを生成しないようにする
+    private final ByteBuffer frameBuffer;
+    private final MutableAudioFrame frame;
+    private final FrameStatistics frameStatistics = new FrameStatistics();
+    private final NicoPrefetcher prefetcher;
+    // 曲の終了時などに毎回設定を検索しないよう、取得した設定を世代と一緒に保持する
+    private volatile CachedSettings cachedSettings;
+    // 読み込みを待ってから再生する楽曲
+    private volatile QueuedTrack starting;
+    // 既定の再生リストから読み込んだ楽曲
+    private volatile DefaultRotation rotation;
+    // 再生中の楽曲を再生し始めた時刻(エポック秒)。再生中の表示に使用する
+    private volatile long playbackStart;
 
     protected AudioHandler(PlayerManager manager, Guild guild, AudioPlayer player) {
         this.manager = manager;
         this.audioPlayer = player;
         this.guildId = guild.getIdLong();
         this.stringGuildId = guild.getId();
+        this.frameBuffer = ByteBuffer.allocateDirect(StandardAudioDataFormats.DISCORD_OPUS.maximumChunkSize());
+        this.frame = new MutableAudioFrame();
+        this.frame.setBuffer(frameBuffer);
+        this.prefetcher = new NicoPrefetcher(queue, manager.source(NicoAudioSourceManager.class),
+                manager.getBot().getIOExecutor(), manager.getBot().getConfig().getNicoNicoPrefetch());
+        queue.setChangeListener(prefetcher::schedule);
+    }
+
+    /**
+     * このギルドの設定を返します。
+     * 新しいギルドの設定が登録されるまでは、前回取得した設定をそのまま使います。
+     */
+    private Settings settings() {
+        SettingsManager settingsManager = manager.getBot().getSettingsManager();
+        long generation = settingsManager.getGeneration();
+        CachedSettings cached = cachedSettings;
+        if (cached == null || cached.generation != generation) {
+            cached = new CachedSettings(settingsManager.getSettings(guildId), generation);
+            cachedSettings = cached;
+        }
+        return cached.settings;
     }
 
     public int addTrackToFront(QueuedTrack qtrack) {
-        if (audioPlayer.getPlayingTrack() == null) {
-            audioPlayer.playTrack(qtrack.getTrack());
+        if (isIdle()) {
+            play(qtrack);
             return -1;
         } else {
             queue.addAt(0, qtrack);
+            resolveAhead();
             return 0;
         }
     }
 
     public int addTrack(QueuedTrack qtrack) {
-        if (audioPlayer.getPlayingTrack() == null) {
-            audioPlayer.playTrack(qtrack.getTrack());
+        if (isIdle()) {
+            play(qtrack);
             return -1;
         } else {
-            boolean toEnt = manager.getBot().getSettingsManager().getSettings(guildId).isForceToEndQue();
-            return queue.add(qtrack, toEnt);
+            boolean toEnt = settings().isForceToEndQue();
+            int index = queue.add(qtrack, toEnt);
+            resolveAhead();
+            return index;
+        }
+    }
+
+    /**
+     * 複数の楽曲をまとめて追加します。
+     * 再生中の楽曲が無い場合は最初の楽曲を再生し、残りをキューに追加します。
+     *
+     * @param qtracks 追加する楽曲
+     * @return 最初の楽曲を追加した位置。最初の楽曲を再生した場合や楽曲が無い場合は -1
+     */
+    public int addTracks(Collection<QueuedTrack> qtracks) {
+        if (qtracks.isEmpty())
+            return -1;
+        Iterator<QueuedTrack> it = qtracks.iterator();
+        if (isIdle()) {
+            QueuedTrack first = it.next();
+            if (it.hasNext()) {
+                List<QueuedTrack> rest = new ArrayList<>(qtracks.size() - 1);
+                it.forEachRemaining(rest::add);
+                boolean toEnt = settings().isForceToEndQue();
+                queue.addAll(rest, toEnt);
+            }
+            play(first);
+            resolveAhead();
+            return -1;
         }
+        boolean toEnt = settings().isForceToEndQue();
+        int index = queue.addAll(qtracks, toEnt);
+        resolveAhead();
+        return index;
     }
 
     public void addTrackIfRepeat(AudioTrack track) {
         // リピートモードの場合は、キューの最後にトラックを追加します
-        RepeatMode mode = manager.getBot().getSettingsManager().getSettings(guildId).getRepeatMode();
-        boolean toEnt = manager.getBot().getSettingsManager().getSettings(guildId).isForceToEndQue();
+        Settings settings = settings();
+        RepeatMode mode = settings.getRepeatMode();
+        boolean toEnt = settings.isForceToEndQue();
         if (mode != RepeatMode.OFF) {
             queue.add(new QueuedTrack(track.makeClone(), track.getUserData(RequestMetadata.class)), toEnt);
         }
@@ -97,8 +171,9 @@ public class AudioHandler extends AudioEventAdapter implements AudioSendHandler
     }
 
     public void stopAndClear() {
+        starting = null;
         queue.clear();
-        defaultQueue.clear();
+        prefetcher.cancelAll();
         audioPlayer.stopTrack();
         //current = null;
 
@@ -118,6 +193,14 @@ public class AudioHandler extends AudioEventAdapter implements AudioSendHandler
         return audioPlayer;
     }
 
+    public PlayerManager getManager() {
+        return manager;
+    }
+
+    public FrameStatistics getFrameStatistics() {
+        return frameStatistics;
+    }
+
     public RequestMetadata getRequestMetadata() {
         if (audioPlayer.getPlayingTrack() == null)
             return RequestMetadata.EMPTY;
@@ -125,26 +208,59 @@ public class AudioHandler extends AudioEventAdapter implements AudioSendHandler
         return rm == null ? RequestMetadata.EMPTY : rm;
     }
 
+    /**
+     * 既定の再生リストの次の楽曲を再生します。
+     * <p>
+     * 既定の再生リストは一度だけ読み込み、最後まで再生したら同じ楽曲の複製を最初から再生します。
+     * 再生リストがシャッフルの指定をしている場合は、最初に戻る時に並べ替えます。
+     * 再生リストのファイルが変更された場合や、既定の再生リストの設定が変更された場合は読み込み直します。
+     *
+     * @return 既定の再生リストを再生するか
+     */
     public boolean playFromDefault() {
-        if (!defaultQueue.isEmpty()) {
-            audioPlayer.playTrack(defaultQueue.remove(0));
-            return true;
-        }
-        Settings settings = manager.getBot().getSettingsManager().getSettings(guildId);
-        if (settings == null || settings.getDefaultPlaylist() == null)
+        Settings settings = settings();
+        String name = settings.getDefaultPlaylist();
+        if (name == null) {
+            rotation = null;
             return false;
+        }
 
-        Playlist pl = manager.getBot().getPlaylistLoader().getPlaylist(stringGuildId, settings.getDefaultPlaylist());
-        if (pl == null || pl.getItems().isEmpty())
+        Playlist pl = manager.getBot().getPlaylistLoader().getPlaylist(stringGuildId, name);
+        if (pl == null || pl.getItems().isEmpty()) {
+            rotation = null;
             return false;
-        pl.loadTracks(manager, (at) -> {
-            if (audioPlayer.getPlayingTrack() == null)
-                audioPlayer.playTrack(at);
-            else
-                defaultQueue.add(at);
+        }
+        DefaultRotation current = rotation;
+        if (current != null && current.isFor(name, pl.getSourceItems())) {
+            AudioTrack next = current.next();
+            if (next != null)
+                audioPlayer.playTrack(next);
+            // 読み込み中の場合は、次の楽曲が読み込まれた時に再生する
+            return true;
+        }
+
+        DefaultRotation created = new DefaultRotation(name, pl.getSourceItems(), pl.isShuffle());
+        rotation = created;
+        pl.loadTracks(manager, guildId, (at) -> {
+            created.add(at);
+            if (rotation == created && isIdle()) {
+                AudioTrack next = created.next();
+                if (next != null)
+                    audioPlayer.playTrack(next);
+            }
         }, () -> {
-            if (pl.getTracks().isEmpty() && !manager.getBot().getConfig().getStay())
-                manager.getBot().closeAudioConnection(guildId);
+            created.finish();
+            if (created.isEmpty()) {
+                if (rotation == created)
+                    rotation = null;
+                if (!manager.getBot().getConfig().getStay())
+                    manager.getBot().closeAudioConnection(guildId);
+            } else if (rotation == created && isIdle()) {
+                // 読み込み中に最後の楽曲まで再生し終えていた
+                AudioTrack next = created.next();
+                if (next != null)
+                    audioPlayer.playTrack(next);
+            }
         });
         return true;
     }
@@ -152,7 +268,9 @@ public class AudioHandler extends AudioEventAdapter implements AudioSendHandler
     // Audio Events
     @Override
     public void onTrackEnd(AudioPlayer player, AudioTrack track, AudioTrackEndReason endReason) {
-        RepeatMode repeatMode = manager.getBot().getSettingsManager().getSettings(guildId).getRepeatMode();
+        // 再生中の楽曲もチェックポイントに含めるため、楽曲が変わった時も変更として記録する
+        queue.markDirty();
+        RepeatMode repeatMode = settings().getRepeatMode();
 
         // もしも楽曲再生が通常通り終了し、リピートモードが有効(!OFF)ならばキューに再追加する
         if (endReason == AudioTrackEndReason.FINISHED && repeatMode != RepeatMode.OFF) {
@@ -166,24 +284,107 @@ public class AudioHandler extends AudioEventAdapter implements AudioSendHandler
             }
         }
 
-        if (queue.isEmpty()) {
-            if (!playFromDefault()) {
-                manager.getBot().getNowplayingHandler().onTrackUpdate(guildId, null, this);
-                if (!manager.getBot().getConfig().getStay()) manager.getBot().closeAudioConnection(guildId);
+        playNext();
+    }
+
+    /**
+     * キューの次の楽曲を再生します。キューが空の場合は既定の再生リストを再生するか、再生を終了します。
+     */
+    private void playNext() {
+        if (!queue.isEmpty()) {
+            play(queue.pull());
+            return;
+        }
+        if (!playFromDefault()) {
+            manager.getBot().getNowplayingHandler().onTrackUpdate(guildId, null, this);
+            if (!manager.getBot().getConfig().getStay()) manager.getBot().closeAudioConnection(guildId);
+
+            audioPlayer.setPaused(false);
 
-                player.setPaused(false);
+            Guild guild = guild(manager.getBot().getJDA());
+            Bot.updatePlayStatus(guild, guild.getSelfMember(), PlayStatus.STOPPED);
+        }
+    }
 
-                Guild guild = guild(manager.getBot().getJDA());
-                Bot.updatePlayStatus(guild, guild.getSelfMember(), PlayStatus.STOPPED);
+    /**
+     * @return 再生中の楽曲も、読み込みを待っている楽曲も無いか
+     */
+    private boolean isIdle() {
+        return audioPlayer.getPlayingTrack() == null && starting == null;
+    }
+
+    /**
+     * 楽曲を再生します。未読み込みの楽曲は読み込んでから再生し、読み込めなかった場合は次の楽曲に進みます。
+     */
+    private void play(QueuedTrack qtrack) {
+        if (qtrack.isResolved()) {
+            starting = null;
+            audioPlayer.playTrack(qtrack.getTrack());
+            resolveAhead();
+            return;
+        }
+        starting = qtrack;
+        resolve(qtrack).thenAccept(tracks -> {
+            // 読み込んでいる間に停止された
+            if (starting != qtrack)
+                return;
+            starting = null;
+            if (qtrack.isResolved()) {
+                audioPlayer.playTrack(qtrack.getTrack());
+                resolveAhead();
+            } else {
+                playNext();
             }
+        });
+    }
+
+    /**
+     * キューの先頭に近い未読み込みの楽曲を読み込み始めます。
+     */
+    private void resolveAhead() {
+        int count = Math.min(RESOLVE_AHEAD, queue.size());
+        for (int i = 0; i < count; i++) {
+            QueuedTrack qtrack = queue.get(i);
+            if (!qtrack.isResolving())
+                resolve(qtrack);
+        }
+    }
+
+    private synchronized CompletableFuture<List<AudioTrack>> resolve(QueuedTrack qtrack) {
+        if (qtrack.isResolving())
+            return qtrack.resolve(manager, manager.getBot().getConfig(), this);
+        CompletableFuture<List<AudioTrack>> future = qtrack.resolve(manager, manager.getBot().getConfig(), this);
+        future.thenAccept(tracks -> {
+            expand(qtrack, tracks);
+            prefetcher.schedule();
+        });
+        return future;
+    }
+
+    /**
+     * 再生リストとして読み込まれた楽曲の、2曲目以降を楽曲の直後に追加します。
+     */
+    private void expand(QueuedTrack qtrack, List<AudioTrack> tracks) {
+        if (tracks.size() <= 1)
+            return;
+        int index;
+        if (qtrack == starting || qtrack.getTrack() == audioPlayer.getPlayingTrack()) {
+            index = 0;
         } else {
-            QueuedTrack qt = queue.pull();
-            player.playTrack(qt.getTrack());
+            index = queue.getList().indexOf(qtrack) + 1;
+            // 読み込んでいる間にキューから削除された
+            if (index == 0)
+                return;
+        }
+        for (int i = 1; i < tracks.size(); i++) {
+            AudioTrack track = tracks.get(i);
+            queue.addAt(index++, new QueuedTrack(track, track.getUserData(RequestMetadata.class)));
         }
     }
 
     @Override
     public void onTrackStart(AudioPlayer player, AudioTrack track) {
+        queue.markDirty();
         votes.clear();
         manager.getBot().getNowplayingHandler().onTrackUpdate(guildId, track, this);
 
@@ -192,6 +393,16 @@ public class AudioHandler extends AudioEventAdapter implements AudioSendHandler
     }
 
 
+    @Override
+    public void onPlayerPause(AudioPlayer player) {
+        manager.getBot().getNowplayingHandler().onStateChange(guildId);
+    }
+
+    @Override
+    public void onPlayerResume(AudioPlayer player) {
+        manager.getBot().getNowplayingHandler().onStateChange(guildId);
+    }
+
     // Formatting
     public MessageCreateData getNowPlaying(JDA jda) throws Exception {
         if (isMusicPlaying(jda)) {
@@ -223,11 +434,7 @@ public class AudioHandler extends AudioEventAdapter implements AudioSendHandler
                 if (track.getInfo().author != null && !track.getInfo().author.isEmpty())
                     eb.setFooter("出典: " + track.getInfo().author, null);
 
-                double progress = (double) audioPlayer.getPlayingTrack().getPosition() / track.getDuration();
-                eb.setDescription((audioPlayer.isPaused() ? JMusicBot.PAUSE_EMOJI : JMusicBot.PLAY_EMOJI)
-                        + " " + FormatUtil.progressBar(progress)
-                        + " `[" + FormatUtil.formatTime(track.getPosition()) + "/" + FormatUtil.formatTime(track.getDuration()) + "]` "
-                        + FormatUtil.volumeIcon(audioPlayer.getVolume()));
+                eb.setDescription(progress(track));
 
             } else {
                 if (rm.getOwner() != 0L) {
@@ -250,11 +457,7 @@ public class AudioHandler extends AudioEventAdapter implements AudioSendHandler
                 if (track.getInfo().author != null && !track.getInfo().author.isEmpty())
                     eb.setFooter("出典: " + track.getInfo().author, null);
 
-                double progress = (double) audioPlayer.getPlayingTrack().getPosition() / track.getDuration();
-                eb.setDescription((audioPlayer.isPaused() ? JMusicBot.PAUSE_EMOJI : JMusicBot.PLAY_EMOJI)
-                        + " " + FormatUtil.progressBar(progress)
-                        + " `[" + FormatUtil.formatTime(track.getPosition()) + "/" + FormatUtil.formatTime(track.getDuration()) + "]` "
-                        + FormatUtil.volumeIcon(audioPlayer.getVolume()));
+                eb.setDescription(progress(track));
                 /*String titleUrl = GensokyoInfoAgent.getInfo().getMisc().getCirclelink().equals("") ?
                         "https://gensokyoradio.net/" :
                         GensokyoInfoAgent.getInfo().getMisc().getCirclelink();
@@ -294,6 +497,34 @@ public class AudioHandler extends AudioEventAdapter implements AudioSendHandler
         } else return null;
     }
 
+    /**
+     * 再生の進み具合を表示します。
+     * 再生中は Discord の相対時刻で開始・終了の時刻を表示するため、メッセージを編集し直さなくても表示が進みます。
+     * 一時停止中は進まないため、プログレスバーで表示します。
+     */
+    private String progress(AudioTrack track) {
+        String icons = FormatUtil.repeatIcon(settings().getRepeatMode()) + FormatUtil.volumeIcon(audioPlayer.getVolume());
+        if (audioPlayer.isPaused()) {
+            double progress = (double) track.getPosition() / track.getDuration();
+            return JMusicBot.PAUSE_EMOJI
+                    + " " + FormatUtil.progressBar(progress)
+                    + " `[" + FormatUtil.formatTime(track.getPosition()) + "/" + FormatUtil.formatTime(track.getDuration()) + "]` "
+                    + icons;
+        }
+        long start = System.currentTimeMillis() / 1000 - track.getPosition() / 1000;
+        // 表示するたびに秒の端数で開始時刻がずれ、内容が変わったとみなされないようにする
+        if (Math.abs(start - playbackStart) <= 2)
+            start = playbackStart;
+        else
+            playbackStart = start;
+        if (track.getInfo().isStream)
+            return JMusicBot.PLAY_EMOJI + " `[LIVE]` <t:" + start + ":R>に開始 " + icons;
+        long end = start + (track.getDuration() + 999) / 1000;
+        return JMusicBot.PLAY_EMOJI
+                + " `[" + FormatUtil.formatTime(track.getDuration()) + "]` <t:" + start + ":R>に開始・<t:" + end + ":R>に終了 "
+                + icons;
+    }
+
     public MessageCreateData getNoMusicPlaying(JDA jda) {
         Guild guild = guild(jda);
         return new MessageCreateBuilder()
@@ -332,13 +563,20 @@ public class AudioHandler extends AudioEventAdapter implements AudioSendHandler
     // Audio Send Handler methods
     @Override
     public boolean canProvide() {
-        lastFrame = audioPlayer.provide();
-        return lastFrame != null;
+        long start = System.nanoTime();
+        boolean provided = audioPlayer.provide(frame);
+        long elapsed = System.nanoTime() - start;
+        if (provided)
+            frameStatistics.recordProvided(elapsed);
+        else
+            frameStatistics.recordMissed(elapsed, audioPlayer.getPlayingTrack() != null && !audioPlayer.isPaused());
+        return provided;
     }
 
     @Override
     public ByteBuffer provide20MsAudio() {
-        return ByteBuffer.wrap(lastFrame.getData());
+        // provide() で書き込まれたバッファを読み取り用に切り替える
+        return frameBuffer.flip();
     }
 
     @Override
@@ -351,4 +589,65 @@ public class AudioHandler extends AudioEventAdapter implements AudioSendHandler
     private Guild guild(JDA jda) {
         return jda.getGuildById(guildId);
     }
+
+    /**
+     * 既定の再生リストから読み込んだ楽曲を、順番に繰り返し再生するための一覧です。
+     */
+    private static final class DefaultRotation {
+        private final String name;
+        private final List<String> items;
+        private final boolean shuffle;
+        private final List<AudioTrack> tracks = new ArrayList<>();
+        private int position;
+        private boolean loaded;
+
+        private DefaultRotation(String name, List<String> items, boolean shuffle) {
+            this.name = name;
+            this.items = items;
+            this.shuffle = shuffle;
+        }
+
+        /**
+         * @return 既定の再生リストの名前と内容が、この一覧を読み込んだ時と同じか
+         */
+        private boolean isFor(String name, List<String> items) {
+            return this.name.equals(name) && (this.items == items || this.items.equals(items));
+        }
+
+        private synchronized void add(AudioTrack track) {
+            tracks.add(track);
+        }
+
+        private synchronized void finish() {
+            loaded = true;
+        }
+
+        private synchronized boolean isEmpty() {
+            return tracks.isEmpty();
+        }
+
+        /**
+         * @return 次に再生する楽曲の複製。読み込み中で次の楽曲がまだ無い場合は null
+         */
+        private synchronized AudioTrack next() {
+            if (position >= tracks.size()) {
+                if (!loaded || tracks.isEmpty())
+                    return null;
+                position = 0;
+                if (shuffle)
+                    Collections.shuffle(tracks);
+            }
+            return tracks.get(position++).makeClone();
+        }
+    }
+
+    private static final class CachedSettings {
+        private final Settings settings;
+        private final long generation;
+
+        private CachedSettings(Settings settings, long generation) {
+            this.settings = settings;
+            this.generation = generation;
+        }
+    }
 }
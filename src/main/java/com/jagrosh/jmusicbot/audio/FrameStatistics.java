@@ -0,0 +1,225 @@
+/*
+ *  Copyright 2024 Cosgy Dev (info@cosgy.dev).
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.jagrosh.jmusicbot.audio;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * ギルドごとの音声フレーム送信の統計です。
+ * <p>
+ * 送信スレッドからの記録はすべて {@link LongAdder} に対して行うため、
+ * コマンドなど別スレッドからの読み取りと競合してもロックを取りません。
+ * 処理時間と連続欠落数は2のべき乗ごとのバケットを持つヒストグラムとして記録します。
+ *
+ * @author Cosgy Dev
+ */
+public class FrameStatistics {
+    public static final int BUCKETS = 32;
+
+    private final LongAdder provided = new LongAdder();
+    private final LongAdder missed = new LongAdder();
+    private final LongAdder idle = new LongAdder();
+    private final LongAdder provideNanos = new LongAdder();
+    private final LongAdder[] provideNanosHistogram = newHistogram();
+    private final LongAdder[] missRunHistogram = newHistogram();
+    private final long createdAt = System.nanoTime();
+
+    // 送信スレッドからのみ書き込まれる
+    private int currentMissRun;
+    private volatile int longestMissRun;
+
+    private static LongAdder[] newHistogram() {
+        LongAdder[] histogram = new LongAdder[BUCKETS];
+        for (int i = 0; i < BUCKETS; i++)
+            histogram[i] = new LongAdder();
+        return histogram;
+    }
+
+    /**
+     * 値が入るバケットの番号を返します。バケット {@code i} は {@code [2^(i-1), 2^i)} の範囲です。
+     */
+    static int bucketOf(long value) {
+        if (value <= 0)
+            return 0;
+        return Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(value));
+    }
+
+    /**
+     * フレームを送信できた時に呼び出します。
+     *
+     * @param nanos provide() にかかった時間(ナノ秒)
+     */
+    void recordProvided(long nanos) {
+        provided.increment();
+        recordNanos(nanos);
+        endMissRun();
+    }
+
+    /**
+     * フレームを用意できなかった時に呼び出します。
+     *
+     * @param nanos   provide() にかかった時間(ナノ秒)
+     * @param playing 再生中(一時停止していない)トラックがあったか
+     */
+    void recordMissed(long nanos, boolean playing) {
+        recordNanos(nanos);
+        if (playing) {
+            missed.increment();
+            currentMissRun++;
+        } else {
+            idle.increment();
+            endMissRun();
+        }
+    }
+
+    private void recordNanos(long nanos) {
+        provideNanos.add(nanos);
+        provideNanosHistogram[bucketOf(nanos)].increment();
+    }
+
+    private void endMissRun() {
+        if (currentMissRun == 0)
+            return;
+        missRunHistogram[bucketOf(currentMissRun)].increment();
+        if (currentMissRun > longestMissRun)
+            longestMissRun = currentMissRun;
+        currentMissRun = 0;
+    }
+
+    public Snapshot snapshot() {
+        return new Snapshot(provided.sum(), missed.sum(), idle.sum(), provideNanos.sum(),
+                sum(provideNanosHistogram), sum(missRunHistogram), longestMissRun,
+                System.nanoTime() - createdAt);
+    }
+
+    private static long[] sum(LongAdder[] histogram) {
+        long[] values = new long[histogram.length];
+        for (int i = 0; i < histogram.length; i++)
+            values[i] = histogram[i].sum();
+        return values;
+    }
+
+    /**
+     * ある時点での統計の値です。
+     */
+    public static class Snapshot {
+        private final long provided;
+        private final long missed;
+        private final long idle;
+        private final long provideNanos;
+        private final long[] provideNanosHistogram;
+        private final long[] missRunHistogram;
+        private final int longestMissRun;
+        private final long uptimeNanos;
+
+        private Snapshot(long provided, long missed, long idle, long provideNanos, long[] provideNanosHistogram,
+                         long[] missRunHistogram, int longestMissRun, long uptimeNanos) {
+            this.provided = provided;
+            this.missed = missed;
+            this.idle = idle;
+            this.provideNanos = provideNanos;
+            this.provideNanosHistogram = provideNanosHistogram;
+            this.missRunHistogram = missRunHistogram;
+            this.longestMissRun = longestMissRun;
+            this.uptimeNanos = uptimeNanos;
+        }
+
+        private static long percentile(long[] histogram, double p) {
+            long total = 0;
+            for (long count : histogram)
+                total += count;
+            if (total == 0)
+                return 0;
+            long target = (long) Math.ceil(total * p);
+            long seen = 0;
+            for (int i = 0; i < histogram.length; i++) {
+                seen += histogram[i];
+                if (seen >= target)
+                    return i == 0 ? 0 : 1L << i;
+            }
+            return 1L << (histogram.length - 1);
+        }
+
+        /**
+         * @return 送信できたフレーム数
+         */
+        public long getProvided() {
+            return provided;
+        }
+
+        /**
+         * @return 再生中にもかかわらずフレームを用意できなかった回数
+         */
+        public long getMissed() {
+            return missed;
+        }
+
+        /**
+         * @return 再生していない(停止・一時停止中)ためにフレームが無かった回数
+         */
+        public long getIdle() {
+            return idle;
+        }
+
+        /**
+         * @return provide() にかかった時間の合計(ナノ秒)
+         */
+        public long getProvideNanos() {
+            return provideNanos;
+        }
+
+        public long[] getProvideNanosHistogram() {
+            return provideNanosHistogram.clone();
+        }
+
+        public long[] getMissRunHistogram() {
+            return missRunHistogram.clone();
+        }
+
+        public int getLongestMissRun() {
+            return longestMissRun;
+        }
+
+        public long getUptimeNanos() {
+            return uptimeNanos;
+        }
+
+        /**
+         * @return 再生中のフレームのうち欠落した割合
+         */
+        public double getMissRatio() {
+            long playing = provided + missed;
+            return playing == 0 ? 0 : (double) missed / playing;
+        }
+
+        /**
+         * @param p 0から1の間の百分位
+         * @return provide() にかかった時間の百分位の上限値(ナノ秒)
+         */
+        public long getProvideNanosPercentile(double p) {
+            return percentile(provideNanosHistogram, p);
+        }
+
+        /**
+         * @param p 0から1の間の百分位
+         * @return 連続欠落数の百分位の上限値
+         */
+        public long getMissRunPercentile(double p) {
+            return percentile(missRunHistogram, p);
+        }
+    }
+}
@@ -0,0 +1,134 @@
+/*
+ *  Copyright 2024 Cosgy Dev (info@cosgy.dev).
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.jagrosh.jmusicbot.audio;
+
+import com.jagrosh.jmusicbot.queue.FairQueue;
+import com.sedmelluq.discord.lavaplayer.source.nico.NicoAudioSourceManager;
+import com.sedmelluq.discord.lavaplayer.source.nico.NicoAudioTrack;
+import com.sedmelluq.discord.lavaplayer.track.AudioTrack;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * キューの先頭に近いニコニコ動画の楽曲を、再生する前にキャッシュへダウンロードします。
+ * <p>
+ * キューが変更されるたびに先頭から {@code ahead} 曲をキューのロックを取って複製して確認し、キャッシュに無い楽曲の先読みを低い優先度で始めます。
+ * 削除された楽曲や、後ろに移動して範囲から外れた楽曲の先読みは取り消します。
+ * 同じ楽曲を別のギルドも先読みしている場合は、すべてのギルドが取り消すまでダウンロードを続けます。
+ * 先頭の楽曲がキューから無くなった場合は、再生を始めたものとして取り消さずにダウンロードを続けます。
+ * 確認は別のスレッドで行い、短い間に何度も変更された場合は1回にまとめます。
+ *
+ * @author Cosgy Dev
+ */
+public class NicoPrefetcher {
+    private static final Logger log = LoggerFactory.getLogger("NicoPrefetcher");
+
+    private final FairQueue<QueuedTrack> queue;
+    private final NicoAudioSourceManager source;
+    private final Executor executor;
+    private final int ahead;
+    private final AtomicBoolean scheduled = new AtomicBoolean();
+    // 先読みを始めた楽曲。update() の中だけで使用する
+    private final Map<String, CompletableFuture<Void>> prefetching = new HashMap<>();
+    // 前回確認した時の先頭の楽曲
+    private String head;
+
+    /**
+     * @param queue    確認するキュー
+     * @param source   ニコニコ動画のソース。null の場合は何もしない
+     * @param executor 確認を行うスレッド
+     * @param ahead    先読みする曲数。0 の場合は何もしない
+     */
+    public NicoPrefetcher(FairQueue<QueuedTrack> queue, NicoAudioSourceManager source, Executor executor, int ahead) {
+        this.queue = queue;
+        this.source = source;
+        this.executor = executor;
+        this.ahead = ahead;
+    }
+
+    /**
+     * キューの確認を予約します。キューが変更された時や、楽曲を読み込んだ時に呼び出します。
+     */
+    public void schedule() {
+        if (source == null || ahead <= 0 || !source.getCache().isEnabled())
+            return;
+        if (!scheduled.compareAndSet(false, true))
+            return;
+        try {
+            executor.execute(this::update);
+        } catch (RejectedExecutionException e) {
+            // 終了処理中
+            scheduled.set(false);
+        }
+    }
+
+    private synchronized void update() {
+        scheduled.set(false);
+        Set<String> wanted = new LinkedHashSet<>();
+        String first = null;
+        List<QueuedTrack> window = queue.snapshot(ahead);
+        for (int i = 0; i < window.size(); i++) {
+            AudioTrack track = window.get(i).getTrack();
+            // 未読み込みの楽曲は、読み込んだ時にもう一度確認する
+            if (!(track instanceof NicoAudioTrack))
+                continue;
+            wanted.add(track.getIdentifier());
+            if (i == 0)
+                first = track.getIdentifier();
+        }
+
+        String pulled = head;
+        head = first;
+        prefetching.entrySet().removeIf(entry -> {
+            // 終了処理などで取り消された先読みは、もう一度始める
+            if (wanted.contains(entry.getKey()) && !entry.getValue().isCancelled())
+                return false;
+            // 再生を始めたトラックは、先読みのダウンロードに合流する
+            if (!entry.getValue().isDone() && !entry.getKey().equals(pulled))
+                source.getDownloads().cancelPrefetch(entry.getKey());
+            return true;
+        });
+        for (String videoId : wanted) {
+            if (prefetching.containsKey(videoId) || source.getCache().contains(videoId))
+                continue;
+            log.debug("ニコニコ動画の楽曲 {} を先読みします", videoId);
+            prefetching.put(videoId, source.getDownloads().prefetch(videoId));
+        }
+    }
+
+    /**
+     * 先頭の楽曲も含めて、すべての先読みを取り消します。再生を停止してキューを消去した時に呼び出します。
+     */
+    public synchronized void cancelAll() {
+        prefetching.forEach((videoId, future) -> {
+            if (!future.isDone())
+                source.getDownloads().cancelPrefetch(videoId);
+        });
+        prefetching.clear();
+        head = null;
+    }
+}
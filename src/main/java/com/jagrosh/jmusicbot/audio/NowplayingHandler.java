@@ -16,88 +16,134 @@
 package com.jagrosh.jmusicbot.audio;
 
 import com.jagrosh.jmusicbot.Bot;
-import com.jagrosh.jmusicbot.entities.Pair;
 import com.jagrosh.jmusicbot.settings.Settings;
+import com.jagrosh.jmusicbot.utils.UpdateCoalescer;
 import com.sedmelluq.discord.lavaplayer.track.AudioTrack;
 import net.dv8tion.jda.api.Permission;
 import net.dv8tion.jda.api.entities.Activity;
 import net.dv8tion.jda.api.entities.Guild;
 import net.dv8tion.jda.api.entities.GuildVoiceState;
 import net.dv8tion.jda.api.entities.Message;
+import net.dv8tion.jda.api.entities.MessageEmbed;
 import net.dv8tion.jda.api.entities.channel.concrete.TextChannel;
 import net.dv8tion.jda.api.entities.channel.concrete.VoiceChannel;
 import net.dv8tion.jda.api.entities.channel.unions.AudioChannelUnion;
-import net.dv8tion.jda.api.exceptions.PermissionException;
-import net.dv8tion.jda.api.exceptions.RateLimitedException;
+import net.dv8tion.jda.api.utils.messages.MessageCreateData;
 import net.dv8tion.jda.api.utils.messages.MessageEditData;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
-import java.util.HashMap;
-import java.util.HashSet;
-import java.util.Objects;
-import java.util.Set;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
 
 /**
+ * 再生中の楽曲を表示するメッセージと、チャンネルのトピックなどを更新します。
+ * <p>
+ * 再生中のメッセージは Discord の相対時刻で進み具合を表示するため、楽曲・一時停止・音量・リピートが変わった時だけ編集します。
+ * 編集は {@link #INTERVAL} 秒の間に分散して行い、表示する内容が前回の編集から変わっていない場合は編集しません。
+ *
  * @author John Grosh <john.a.grosh@gmail.com>
  */
 public class NowplayingHandler {
+    // 追跡しているすべてのメッセージを、この秒数の間に一度ずつ編集できる速さで編集する
+    private static final int INTERVAL = 10;
     private final Bot bot;
-    private final HashMap<Long, Pair<Long, Long>> lastNP; // guild -> channel,message
+    private final Map<Long, NowPlayingMessage> lastNP; // guild -> message
+    // 表示する内容が変わり、編集を待っているギルド
+    private final Set<Long> changed = new LinkedHashSet<>();
+    private final Logger log = LoggerFactory.getLogger("NowplayingHandler");
 
     public NowplayingHandler(Bot bot) {
         this.bot = bot;
-        this.lastNP = new HashMap<>();
+        this.lastNP = new ConcurrentHashMap<>();
     }
 
     public void init() {
         if (!bot.getConfig().useNPImages())
-            bot.getThreadpool().scheduleWithFixedDelay(this::updateAll, 0, 10, TimeUnit.SECONDS);
+            bot.getThreadpool().scheduleWithFixedDelay(this::updateChanged, 1, 1, TimeUnit.SECONDS);
     }
 
     public void setLastNPMessage(Message m) {
-        lastNP.put(m.getGuild().getIdLong(), new Pair<>(m.getChannel().getIdLong(), m.getIdLong()));
+        lastNP.put(m.getGuild().getIdLong(), new NowPlayingMessage(m.getChannel().getIdLong(), m.getIdLong()));
     }
 
     public void clearLastNPMessage(Guild guild) {
         lastNP.remove(guild.getIdLong());
     }
 
-    private void updateAll() {
-        Set<Long> toRemove = new HashSet<>();
-        for (long guildId : lastNP.keySet()) {
-            Guild guild = bot.getJDA().getGuildById(guildId);
-            if (guild == null) {
-                toRemove.add(guildId);
-                continue;
-            }
-            Pair<Long, Long> pair = lastNP.get(guildId);
-            TextChannel tc = guild.getTextChannelById(pair.getKey());
-            if (tc == null) {
-                toRemove.add(guildId);
-                continue;
-            }
-            AudioHandler handler = (AudioHandler) guild.getAudioManager().getSendingHandler();
-            MessageEditData msg = null;
-            try {
-                msg = MessageEditData.fromCreateData(Objects.requireNonNull(handler).getNowPlaying(bot.getJDA()));
-            } catch (Exception e) {
-                throw new RuntimeException(e);
-            }
-            if (msg == null) {
-                msg = MessageEditData.fromCreateData(handler.getNoMusicPlaying(bot.getJDA()));
-                toRemove.add(guildId);
-            }
-            try {
-                tc.editMessageById(pair.getValue(), msg).queue(m -> {
-                }, t -> lastNP.remove(guildId));
-            } catch (Exception e) {
-                toRemove.add(guildId);
+    /**
+     * 再生中のメッセージに表示する内容が変わったことを通知します。メッセージは少し後にまとめて編集されます。
+     */
+    public void onStateChange(long guildId) {
+        if (!lastNP.containsKey(guildId))
+            return;
+        synchronized (changed) {
+            changed.add(guildId);
+        }
+    }
+
+    private void updateChanged() {
+        // 1秒ごとに、追跡しているメッセージの数を INTERVAL で割った数だけ編集する
+        int budget = Math.max(1, (lastNP.size() + INTERVAL - 1) / INTERVAL);
+        List<Long> guilds = new ArrayList<>(budget);
+        synchronized (changed) {
+            Iterator<Long> it = changed.iterator();
+            while (guilds.size() < budget && it.hasNext()) {
+                guilds.add(it.next());
+                it.remove();
             }
         }
-        toRemove.forEach(lastNP::remove);
+        guilds.forEach(this::update);
     }
 
-    public void updateTopic(long guildId, AudioHandler handler, boolean wait) {
+    private void update(long guildId) {
+        NowPlayingMessage np = lastNP.get(guildId);
+        if (np == null)
+            return;
+        Guild guild = bot.getJDA().getGuildById(guildId);
+        TextChannel tc = guild == null ? null : guild.getTextChannelById(np.channelId);
+        AudioHandler handler = guild == null ? null : (AudioHandler) guild.getAudioManager().getSendingHandler();
+        if (tc == null || handler == null) {
+            lastNP.remove(guildId, np);
+            return;
+        }
+        MessageCreateData msg;
+        try {
+            msg = handler.getNowPlaying(bot.getJDA());
+        } catch (Exception e) {
+            log.debug("再生中のメッセージを作成できませんでした", e);
+            return;
+        }
+        boolean finished = msg == null;
+        if (finished) {
+            msg = handler.getNoMusicPlaying(bot.getJDA());
+            lastNP.remove(guildId, np);
+        }
+        int hash = hash(msg);
+        if (hash == np.hash)
+            return;
+        np.hash = hash;
+        try {
+            tc.editMessageById(np.messageId, MessageEditData.fromCreateData(msg)).queue(m -> {
+            }, t -> lastNP.remove(guildId, np));
+        } catch (Exception e) {
+            lastNP.remove(guildId, np);
+        }
+    }
+
+    private static int hash(MessageCreateData msg) {
+        StringBuilder sb = new StringBuilder(msg.getContent());
+        for (MessageEmbed embed : msg.getEmbeds())
+            sb.append(embed.toData());
+        return sb.toString().hashCode();
+    }
+
+    /**
+     * チャンネルのトピックとボイスチャンネルのステータスを更新します。
+     * 更新は {@link UpdateCoalescer} でまとめて送信されるため、このメソッドは送信を待ちません。
+     */
+    public void updateTopic(long guildId, AudioHandler handler) {
         Guild guild = bot.getJDA().getGuildById(guildId);
         if (guild == null)
             return;
@@ -113,12 +159,8 @@ public class NowplayingHandler {
             else
                 otherText = "\u200B\n " + topic;
             String text = handler.getTopicFormat(bot.getJDA()) + otherText;
-            if (!text.equals(tchan.getTopic())) {
-                try {
-                    tchan.getManager().setTopic(text).complete(wait);
-                } catch (PermissionException | RateLimitedException ignore) {
-                }
-            }
+            bot.getUpdateCoalescer().submit(UpdateCoalescer.Kind.TOPIC, tchan.getIdLong(), topic, text,
+                    t -> tchan.getManager().setTopic(t));
         }
 
         // ボイスチャンネルステータスの更新
@@ -137,12 +179,8 @@ public class NowplayingHandler {
 
         if(settings.getVCStatus() && guild.getSelfMember().hasPermission(voiceChannel, Permission.VOICE_SET_STATUS)){
             String text = handler.getTopicFormat(bot.getJDA());
-            if (!text.equals(voiceChannel.getStatus())) {
-                try {
-                    voiceChannel.modifyStatus(text).complete(wait);
-                } catch (PermissionException | RateLimitedException ignore) {
-                }
-            }
+            bot.getUpdateCoalescer().submit(UpdateCoalescer.Kind.VOICE_STATUS, voiceChannel.getIdLong(), voiceChannel.getStatus(), text,
+                    voiceChannel::modifyStatus);
         }
 
 
@@ -152,7 +190,7 @@ public class NowplayingHandler {
     public void onTrackUpdate(long guildId, AudioTrack track, AudioHandler handler) {
         // 該当する場合はボットステータスを更新します
         if (bot.getConfig().getSongInStatus()) {
-            if (track != null && bot.getJDA().getGuilds().stream().filter(g -> Objects.requireNonNull(g.getSelfMember().getVoiceState()).inAudioChannel()).count() <= 1)
+            if (track != null && bot.getVoiceStateIndex().getConnectionCount() <= 1)
 
                 if (track.getInfo().uri.matches(".*stream.gensokyoradio.net/.*")) {
                     bot.getJDA().getPresence().setActivity(Activity.listening("幻想郷ラジオ"));
@@ -164,14 +202,28 @@ public class NowplayingHandler {
         }
 
         // 該当する場合はチャネルトピックを更新します
-        updateTopic(guildId, handler, false);
+        updateTopic(guildId, handler);
+
+        onStateChange(guildId);
     }
 
     public void onMessageDelete(Guild guild, long messageId) {
-        Pair<Long, Long> pair = lastNP.get(guild.getIdLong());
-        if (pair == null)
+        NowPlayingMessage np = lastNP.get(guild.getIdLong());
+        if (np == null)
             return;
-        if (pair.getValue() == messageId)
+        if (np.messageId == messageId)
             lastNP.remove(guild.getIdLong());
     }
+
+    private static final class NowPlayingMessage {
+        private final long channelId;
+        private final long messageId;
+        // 最後に編集した内容のハッシュ。送信した時の内容は分からないため、最初の変更では必ず編集する
+        private volatile int hash;
+
+        private NowPlayingMessage(long channelId, long messageId) {
+            this.channelId = channelId;
+            this.messageId = messageId;
+        }
+    }
 }
@@ -27,6 +27,9 @@ import net.dv8tion.jda.api.entities.Guild;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.LinkedHashMap;
+import java.util.Map;
+
 /**
  * @author John Grosh <john.a.grosh@gmail.com>
  */
@@ -40,11 +43,13 @@ public class PlayerManager extends DefaultAudioPlayerManager {
 
     public void init() {
         if (bot.getConfig().isNicoNicoEnabled()) {
-            registerSourceManager(
-                    new NicoAudioSourceManager(
-                            bot.getConfig().getNicoNicoEmailAddress(),
-                            bot.getConfig().getNicoNicoPassword())
-            );
+            NicoAudioSourceManager nico = new NicoAudioSourceManager(
+                    bot.getConfig().getNicoNicoEmailAddress(),
+                    bot.getConfig().getNicoNicoPassword(),
+                    bot.getConfig().getNicoNicoCacheSize() * 1024 * 1024,
+                    bot.getConfig().getNicoNicoMaxProcesses());
+            nico.setStreaming(bot.getConfig().isNicoNicoStreaming());
+            registerSourceManager(nico);
         }
 
         registerSourceManager(new YoutubeAudioSourceManager(true, new Music(),
@@ -83,6 +88,21 @@ public class PlayerManager extends DefaultAudioPlayerManager {
         return guild.getAudioManager().getSendingHandler() != null;
     }
 
+    /**
+     * 音声ハンドラを持つすべてのギルドのフレーム送信統計を取得します。
+     *
+     * @return ギルドIDと統計のマップ
+     */
+    public Map<Long, FrameStatistics.Snapshot> getFrameStatistics() {
+        Map<Long, FrameStatistics.Snapshot> stats = new LinkedHashMap<>();
+        for (Guild guild : bot.getJDA().getGuilds()) {
+            AudioHandler handler = (AudioHandler) guild.getAudioManager().getSendingHandler();
+            if (handler != null)
+                stats.put(guild.getIdLong(), handler.getFrameStatistics().snapshot());
+        }
+        return stats;
+    }
+
     public AudioHandler setUpHandler(Guild guild) {
         AudioHandler handler;
         if (guild.getAudioManager().getSendingHandler() == null) {
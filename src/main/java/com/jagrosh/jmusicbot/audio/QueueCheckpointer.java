@@ -0,0 +1,171 @@
+/*
+ *  Copyright 2024 Cosgy Dev (info@cosgy.dev).
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.jagrosh.jmusicbot.audio;
+
+import com.jagrosh.jmusicbot.Bot;
+import dev.cosgy.jmusicbot.playlist.CacheLoader;
+import net.dv8tion.jda.api.JDA;
+import net.dv8tion.jda.api.entities.Guild;
+import net.dv8tion.jda.api.entities.channel.middleman.AudioChannel;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 全ギルドの再生待ちを定期的にチェックポイントとして保存し、起動時に再生を再開します。
+ * <p>
+ * 前回の保存から再生待ちや再生中の楽曲が変わったギルドだけを {@link com.jagrosh.jmusicbot.queue.FairQueue#clearDirty()} で見つけて保存します。
+ * 一度に書き込むギルドの数には上限があり、書き込みきれなかったギルドは次の回に保存します。
+ * 起動時の再開はギルドごとに間隔を空けて行い、再起動直後に動画サイトやDiscordへ要求が集中しないようにします。
+ *
+ * @author Cosgy Dev
+ */
+public class QueueCheckpointer {
+    // 起動時に再生を再開するギルドの間隔(秒)
+    private static final long RESUME_INTERVAL = 3;
+    private final Bot bot;
+    // 変更があり、まだ保存していないギルド
+    private final Set<Long> pending = new LinkedHashSet<>();
+    private final Logger log = LoggerFactory.getLogger("QueueCheckpointer");
+    private long interval;
+    private int batch;
+
+    public QueueCheckpointer(Bot bot) {
+        this.bot = bot;
+    }
+
+    public void init() {
+        interval = bot.getConfig().getCheckpointInterval();
+        batch = Math.max(1, bot.getConfig().getCheckpointBatch());
+        if (interval > 0)
+            bot.getIOExecutor().scheduleWithFixedDelay(this::checkpoint, interval, interval, TimeUnit.SECONDS);
+    }
+
+    /**
+     * 変更があったギルドの再生待ちを、上限の数まで保存します。
+     */
+    private synchronized void checkpoint() {
+        JDA jda = bot.getJDA();
+        if (jda == null)
+            return;
+        collect(jda);
+        Iterator<Long> it = pending.iterator();
+        for (int i = 0; i < batch && it.hasNext(); i++) {
+            long guildId = it.next();
+            it.remove();
+            write(jda, guildId);
+        }
+    }
+
+    /**
+     * 変更があったすべてのギルドの再生待ちを保存します。終了する前に呼び出します。
+     */
+    public synchronized void flush() {
+        JDA jda = bot.getJDA();
+        if (interval <= 0 || jda == null)
+            return;
+        collect(jda);
+        pending.forEach(guildId -> write(jda, guildId));
+        pending.clear();
+    }
+
+    private void collect(JDA jda) {
+        for (Guild guild : jda.getGuilds()) {
+            AudioHandler handler = (AudioHandler) guild.getAudioManager().getSendingHandler();
+            if (handler != null && handler.getQueue().clearDirty())
+                pending.add(guild.getIdLong());
+        }
+    }
+
+    private void write(JDA jda, long guildId) {
+        Guild guild = jda.getGuildById(guildId);
+        if (guild == null) {
+            bot.getCacheLoader().deleteCheckpoint(guildId);
+            return;
+        }
+        AudioHandler handler = (AudioHandler) guild.getAudioManager().getSendingHandler();
+        if (handler == null)
+            return;
+        AudioChannel channel = guild.getAudioManager().getConnectedChannel();
+        try {
+            bot.getCacheLoader().checkpoint(guildId, channel == null ? 0L : channel.getIdLong(), handler);
+        } catch (IOException | RuntimeException e) {
+            // 再生待ちの変更と重なった場合などは、次の回に保存し直す
+            handler.getQueue().markDirty();
+            log.debug("チェックポイントを保存できませんでした: {}", guildId, e);
+        }
+    }
+
+    /**
+     * チェックポイントが保存されているギルドの再生を、間隔を空けて順番に再開します。
+     * ボイスチャンネルに誰もいないギルドは再生せず、{@code /play} で復元できるキャッシュとして残します。
+     *
+     * @return 再生を再開するギルドのID
+     */
+    public Set<Long> resume(JDA jda) {
+        if (interval <= 0)
+            return Collections.emptySet();
+        CacheLoader cache = bot.getCacheLoader();
+        Set<Long> resuming = new HashSet<>();
+        long delay = 0;
+        for (long guildId : cache.getCheckpoints()) {
+            if (jda.getGuildById(guildId) == null) {
+                cache.deleteCheckpoint(guildId);
+                continue;
+            }
+            resuming.add(guildId);
+            bot.getIOExecutor().schedule(() -> resumeGuild(jda, guildId), delay, TimeUnit.SECONDS);
+            delay += RESUME_INTERVAL;
+        }
+        if (!resuming.isEmpty())
+            log.info("{}個のサーバーで前回の再生を再開します。", resuming.size());
+        return resuming;
+    }
+
+    private void resumeGuild(JDA jda, long guildId) {
+        CacheLoader cache = bot.getCacheLoader();
+        Guild guild = jda.getGuildById(guildId);
+        if (guild == null) {
+            cache.deleteCheckpoint(guildId);
+            return;
+        }
+        CacheLoader.CacheResult result = cache.restoreCheckpoint(bot.getPlayerManager(), guildId);
+        if (result == null || result.getTracks().isEmpty()) {
+            cache.deleteCheckpoint(guildId);
+            return;
+        }
+        AudioChannel channel = result.getChannelId() == 0L ? null : guild.getChannelById(AudioChannel.class, result.getChannelId());
+        if (channel == null || channel.getMembers().stream().allMatch(m -> m.getUser().isBot())) {
+            cache.keepCheckpoint(guildId);
+            log.info("{}のボイスチャンネルに誰もいないため、再生待ちをキャッシュとして保存しました。", guild.getName());
+            return;
+        }
+        AudioHandler handler = bot.getPlayerManager().setUpHandler(guild);
+        try {
+            guild.getAudioManager().openAudioConnection(channel);
+        } catch (RuntimeException e) {
+            cache.keepCheckpoint(guildId);
+            log.warn("{}のボイスチャンネルに接続できませんでした。", guild.getName(), e);
+            return;
+        }
+        handler.addTracks(result.getTracks());
+        log.info("{}で前回の再生を再開しました。({}曲)", guild.getName(), result.getTracks().size());
+    }
+}
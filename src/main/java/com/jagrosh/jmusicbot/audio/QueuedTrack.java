@@ -15,40 +15,200 @@
  */
 package com.jagrosh.jmusicbot.audio;
 
+import com.jagrosh.jmusicbot.BotConfig;
 import com.jagrosh.jmusicbot.queue.Queueable;
 import com.jagrosh.jmusicbot.utils.FormatUtil;
+import com.sedmelluq.discord.lavaplayer.player.AudioLoadResultHandler;
+import com.sedmelluq.discord.lavaplayer.player.AudioPlayerManager;
+import com.sedmelluq.discord.lavaplayer.tools.FriendlyException;
+import com.sedmelluq.discord.lavaplayer.track.AudioPlaylist;
 import com.sedmelluq.discord.lavaplayer.track.AudioTrack;
 import com.sedmelluq.discord.lavaplayer.track.AudioTrackInfo;
 import dev.cosgy.agent.GensokyoInfoAgent;
 import dev.cosgy.agent.objects.ResultSet;
 import net.dv8tion.jda.api.entities.User;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
 /**
+ * キューに入っている楽曲です。
+ * <p>
+ * 大きな再生リストを追加する場合は、{@link #lazy(String, User)} で識別子だけを持つ未読み込みの楽曲を作成できます。
+ * 未読み込みの楽曲はキューの先頭に近づいた時に {@link #resolve(AudioPlayerManager, BotConfig, Object)} で読み込まれ、
+ * それまでは {@link #getTrack()} が null を返します。
+ *
  * @author John Grosh <john.a.grosh@gmail.com>
  */
 public class QueuedTrack implements Queueable {
-    private final AudioTrack track;
+    private final RequestMetadata rm;
+    // 未読み込みの楽曲の識別子(URLや検索語)。読み込み済みの楽曲として作成した場合は null
+    private final String query;
+    // 未読み込みの楽曲について、あらかじめ分かっているタイトルと長さ
+    private final String title;
+    private final long length;
+    private volatile AudioTrack track;
+    private CompletableFuture<List<AudioTrack>> resolution;
 
     public QueuedTrack(AudioTrack track, User owner) {
         this(track, new RequestMetadata(owner));
     }
 
     public QueuedTrack(AudioTrack track, RequestMetadata rm) {
+        this.rm = rm;
+        this.query = null;
+        this.title = null;
+        this.length = 0;
         this.track = track;
         this.track.setUserData(rm);
+        this.resolution = CompletableFuture.completedFuture(Collections.singletonList(track));
+    }
+
+    private QueuedTrack(String query, String title, long length, RequestMetadata rm) {
+        this.rm = rm;
+        this.query = query;
+        this.title = title;
+        this.length = length;
+    }
+
+    /**
+     * 識別子だけを持つ未読み込みの楽曲を作成します。
+     *
+     * @param query 読み込む楽曲のURLや検索語
+     */
+    public static QueuedTrack lazy(String query, User owner) {
+        return new QueuedTrack(query, null, 0, new RequestMetadata(owner));
+    }
+
+    /**
+     * タイトルと長さが分かっている未読み込みの楽曲を作成します。
+     *
+     * @param title  キューの表示に使うタイトル。分からない場合は null
+     * @param length キューの表示に使う長さ(ミリ秒)。分からない場合は 0
+     */
+    public static QueuedTrack lazy(String query, String title, long length, RequestMetadata rm) {
+        return new QueuedTrack(query, title, length, rm);
+    }
+
+    /**
+     * 同じユーザーがリクエストした複数のトラックをまとめて変換します。
+     */
+    public static List<QueuedTrack> fromTracks(List<AudioTrack> tracks, User owner) {
+        List<QueuedTrack> list = new ArrayList<>(tracks.size());
+        for (AudioTrack track : tracks)
+            list.add(new QueuedTrack(track, owner));
+        return list;
     }
 
     @Override
     public long getIdentifier() {
-        return track.getUserData(RequestMetadata.class).getOwner();
+        return rm.getOwner();
+    }
+
+    public RequestMetadata getRequestMetadata() {
+        return rm;
     }
 
+    /**
+     * @return 楽曲。まだ読み込まれていない場合は null
+     */
     public AudioTrack getTrack() {
         return track;
     }
 
+    public boolean isResolved() {
+        return track != null;
+    }
+
+    /**
+     * @return 楽曲のタイトル。まだ読み込まれておらずタイトルも分からない場合は識別子
+     */
+    public String getTitle() {
+        AudioTrack current = track;
+        if (current != null)
+            return current.getInfo().title;
+        return title == null ? query : title;
+    }
+
+    /**
+     * @return 楽曲のURL。まだ読み込まれていない場合は識別子
+     */
+    public String getUri() {
+        AudioTrack current = track;
+        return current == null ? query : current.getInfo().uri;
+    }
+
+    /**
+     * @return 楽曲の長さ(ミリ秒)。まだ読み込まれておらず長さも分からない場合は 0
+     */
+    public long getDuration() {
+        AudioTrack current = track;
+        return current == null ? length : current.getDuration();
+    }
+
+    /**
+     * 未読み込みの楽曲を読み込みます。既に読み込みを始めている場合は同じ結果を返します。
+     * 識別子が再生リストだった場合は、最初の楽曲をこの楽曲とし、残りの楽曲を結果に含めます。
+     *
+     * @param orderKey 読み込みの順番を揃える単位
+     * @return 読み込んだ楽曲の一覧。先頭がこの楽曲です。読み込めなかった場合は空
+     */
+    public synchronized CompletableFuture<List<AudioTrack>> resolve(AudioPlayerManager manager, BotConfig config, Object orderKey) {
+        if (resolution != null)
+            return resolution;
+        CompletableFuture<List<AudioTrack>> future = new CompletableFuture<>();
+        resolution = future;
+        manager.loadItemOrdered(orderKey, query, new AudioLoadResultHandler() {
+            private void done(List<AudioTrack> tracks) {
+                tracks.removeIf(config::isTooLong);
+                tracks.forEach(at -> at.setUserData(rm));
+                if (!tracks.isEmpty())
+                    track = tracks.get(0);
+                future.complete(tracks);
+            }
+
+            @Override
+            public void trackLoaded(AudioTrack at) {
+                done(new ArrayList<>(Collections.singletonList(at)));
+            }
+
+            @Override
+            public void playlistLoaded(AudioPlaylist ap) {
+                if (ap.isSearchResult() && !ap.getTracks().isEmpty())
+                    trackLoaded(ap.getTracks().get(0));
+                else if (ap.getSelectedTrack() != null)
+                    trackLoaded(ap.getSelectedTrack());
+                else
+                    done(new ArrayList<>(ap.getTracks()));
+            }
+
+            @Override
+            public void noMatches() {
+                future.complete(Collections.emptyList());
+            }
+
+            @Override
+            public void loadFailed(FriendlyException fe) {
+                future.complete(Collections.emptyList());
+            }
+        });
+        return future;
+    }
+
+    /**
+     * @return 読み込みを始めているか、読み込みが終わっているか
+     */
+    public synchronized boolean isResolving() {
+        return resolution != null;
+    }
+
     @Override
     public String toString() {
+        AudioTrack track = this.track;
+        if (track == null)
+            return "`[" + (length > 0 ? FormatUtil.formatTime(length) : "--:--") + "]` **" + getTitle() + "** - <@" + rm.getOwner() + ">";
 
         if (track.getInfo().uri.contains("https://stream.gensokyoradio.net/")) {
 
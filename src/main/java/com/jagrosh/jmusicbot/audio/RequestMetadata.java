@@ -27,6 +27,15 @@ public class RequestMetadata {
         this.user = user == null ? null : new UserInfo(user.getIdLong(), user.getName(), user.getDiscriminator(), user.getEffectiveAvatarUrl());
     }
 
+    /**
+     * 保存しておいたユーザーの情報から作成します。
+     *
+     * @param id ユーザーのID。0 の場合はリクエストしたユーザーがいないものとします
+     */
+    public RequestMetadata(long id, String username, String discrim, String avatar) {
+        this.user = id == 0L ? null : new UserInfo(id, username, discrim, avatar);
+    }
+
     public long getOwner() {
         return user == null ? 0L : user.id;
     }
@@ -0,0 +1,168 @@
+/*
+ *  Copyright 2024 Cosgy Dev (info@cosgy.dev).
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.jagrosh.jmusicbot.audio;
+
+import net.dv8tion.jda.api.JDA;
+import net.dv8tion.jda.api.entities.Guild;
+import net.dv8tion.jda.api.entities.GuildVoiceState;
+import net.dv8tion.jda.api.entities.Member;
+import net.dv8tion.jda.api.entities.channel.middleman.AudioChannel;
+import net.dv8tion.jda.api.events.guild.voice.GuildVoiceDeafenEvent;
+import net.dv8tion.jda.api.events.guild.voice.GuildVoiceUpdateEvent;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * ボットが接続しているボイスチャンネルにいるユーザーを、ギルドごとに記録します。
+ * <p>
+ * ボイスチャンネルへの参加・退出・移動とスピーカーミュートのイベントから少しずつ更新するため、
+ * スキップの投票や一人になった時の処理ではチャンネルのメンバーを数え直す必要がありません。
+ * ボット自身がチャンネルを移動した時だけ、移動先のチャンネルのメンバーから作り直します。
+ * イベントは JDA のイベントスレッドから呼び出し、読み取りはどのスレッドからでも行えます。
+ *
+ * @author Cosgy Dev
+ */
+public class VoiceStateIndex {
+    // ボットが接続しているギルドだけを持つ
+    private final Map<Long, GuildVoice> guilds = new ConcurrentHashMap<>();
+
+    /**
+     * 接続中のボイスチャンネルから記録を作り直します。起動時と、切断後にセッションを作り直した時に呼び出します。
+     */
+    public void init(JDA jda) {
+        // 読み取り中のスレッドから空に見えないよう、消去せずにギルドごとに置き換える
+        jda.getGuilds().forEach(this::rebuild);
+        guilds.keySet().removeIf(id -> jda.getGuildById(id) == null);
+    }
+
+    public void onVoiceUpdate(GuildVoiceUpdateEvent event) {
+        Guild guild = event.getGuild();
+        Member member = event.getMember();
+        if (member.equals(guild.getSelfMember())) {
+            rebuild(guild);
+            return;
+        }
+        GuildVoice voice = guilds.get(guild.getIdLong());
+        if (voice == null || member.getUser().isBot())
+            return;
+        AudioChannel left = event.getChannelLeft();
+        AudioChannel joined = event.getChannelJoined();
+        if (left != null && left.getIdLong() == voice.channelId)
+            voice.remove(member.getIdLong());
+        if (joined != null && joined.getIdLong() == voice.channelId)
+            voice.add(member);
+    }
+
+    public void onDeafen(GuildVoiceDeafenEvent event) {
+        GuildVoice voice = guilds.get(event.getGuild().getIdLong());
+        Member member = event.getMember();
+        if (voice == null || !voice.members.contains(member.getIdLong()))
+            return;
+        if (event.isDeafened())
+            voice.listeners.remove(member.getIdLong());
+        else
+            voice.listeners.add(member.getIdLong());
+    }
+
+    public void remove(long guildId) {
+        guilds.remove(guildId);
+    }
+
+    private void rebuild(Guild guild) {
+        GuildVoiceState self = guild.getSelfMember().getVoiceState();
+        AudioChannel channel = self == null ? null : self.getChannel();
+        if (channel == null) {
+            guilds.remove(guild.getIdLong());
+            return;
+        }
+        GuildVoice voice = new GuildVoice(channel.getIdLong());
+        channel.getMembers().stream()
+                .filter(m -> !m.getUser().isBot())
+                .forEach(voice::add);
+        guilds.put(guild.getIdLong(), voice);
+    }
+
+    /**
+     * @return ボットがボイスチャンネルに接続しているか
+     */
+    public boolean isConnected(long guildId) {
+        return guilds.containsKey(guildId);
+    }
+
+    /**
+     * @return ボットと同じボイスチャンネルにいる、ボット以外のユーザーの数
+     */
+    public int getMemberCount(long guildId) {
+        GuildVoice voice = guilds.get(guildId);
+        return voice == null ? 0 : voice.members.size();
+    }
+
+    /**
+     * @return ボットと同じボイスチャンネルにいる、ボット以外でスピーカーミュートしていないユーザーの数
+     */
+    public int getListenerCount(long guildId) {
+        GuildVoice voice = guilds.get(guildId);
+        return voice == null ? 0 : voice.listeners.size();
+    }
+
+    /**
+     * @return ユーザーがボットと同じボイスチャンネルにいるか
+     */
+    public boolean isMember(long guildId, long userId) {
+        GuildVoice voice = guilds.get(guildId);
+        return voice != null && voice.members.contains(userId);
+    }
+
+    /**
+     * @return ユーザーがボットと同じボイスチャンネルにいて、スピーカーミュートしていないか
+     */
+    public boolean isListener(long guildId, long userId) {
+        GuildVoice voice = guilds.get(guildId);
+        return voice != null && voice.listeners.contains(userId);
+    }
+
+    /**
+     * @return ボットがボイスチャンネルに接続しているギルドの数
+     */
+    public int getConnectionCount() {
+        return guilds.size();
+    }
+
+    private static final class GuildVoice {
+        private final long channelId;
+        private final Set<Long> members = ConcurrentHashMap.newKeySet();
+        private final Set<Long> listeners = ConcurrentHashMap.newKeySet();
+
+        private GuildVoice(long channelId) {
+            this.channelId = channelId;
+        }
+
+        private void add(Member member) {
+            members.add(member.getIdLong());
+            GuildVoiceState state = member.getVoiceState();
+            if (state == null || !state.isDeafened())
+                listeners.add(member.getIdLong());
+        }
+
+        private void remove(long userId) {
+            members.remove(userId);
+            listeners.remove(userId);
+        }
+    }
+}
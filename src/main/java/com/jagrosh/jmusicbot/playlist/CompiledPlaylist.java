@@ -0,0 +1,326 @@
+/*
+ *  Copyright 2024 Cosgy Dev (info@cosgy.dev).
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.jagrosh.jmusicbot.playlist;
+
+import com.jagrosh.jmusicbot.BotConfig;
+import com.jagrosh.jmusicbot.audio.QueuedTrack;
+import com.sedmelluq.discord.lavaplayer.player.AudioPlayerManager;
+import com.sedmelluq.discord.lavaplayer.tools.io.MessageInput;
+import com.sedmelluq.discord.lavaplayer.tools.io.MessageOutput;
+import com.sedmelluq.discord.lavaplayer.track.AudioTrack;
+import com.sedmelluq.discord.lavaplayer.track.DecodedTrackHolder;
+import net.dv8tion.jda.api.entities.User;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+
+/**
+ * 再生リストのファイルの隣に保存する、読み込み済みのトラックのキャッシュです。
+ * <p>
+ * 再生リストの各行から読み込んだトラックを lavaplayer の形式でエンコードして保存し、
+ * 次に再生する時にはネットワークにアクセスせずにデコードだけでトラックを取り出します。
+ * キャッシュは再生リストのファイルの内容のハッシュと行の内容で管理し、
+ * ファイルが編集された場合は残っている行のキャッシュだけを引き継ぎます。
+ * ファイルの大きさと更新日時が保存した時と同じ場合は、ファイルを読んでハッシュを計算し直しません。
+ * <pre>
+ * マジック(int) バージョン(int) ファイルの大きさ(long) 更新日時(long) ファイルのハッシュ(SHA-256) 行数(int)
+ * 行ごと: 行の内容(文字列) 保存した時刻(long) トラック数(int) トラックごと: バイト数(int) エンコードしたトラック
+ * 文字列: UTF-8のバイト数(int) バイト列
+ * </pre>
+ *
+ * @author Cosgy Dev
+ */
+public class CompiledPlaylist {
+    /**
+     * キャッシュのファイルの拡張子です。再生リストの一覧に表示されないよう .txt とは別にしています。
+     */
+    public static final String EXTENSION = ".compiled";
+    // この時間が経過した行は、キャッシュから読み込んだ後にバックグラウンドで読み込み直す
+    static final long REFRESH_INTERVAL = 24 * 60 * 60 * 1000L;
+    private static final int MAGIC = 0x4A4D4350; // "JMCP"
+    private static final int VERSION = 2;
+    private static final Logger log = LoggerFactory.getLogger("CompiledPlaylist");
+
+    private final Path playlistFile;
+    private final Path path;
+    // 再生リストのファイルの大きさと更新日時。読み取れなかった場合は -1
+    private final long size;
+    private final long modified;
+    private final Map<String, Entry> entries = new HashMap<>();
+    private byte[] hash;
+    private boolean dirty;
+
+    private CompiledPlaylist(Path playlistFile) {
+        this.playlistFile = playlistFile;
+        this.path = pathFor(playlistFile);
+        long size = -1;
+        long modified = -1;
+        try {
+            BasicFileAttributes attributes = Files.readAttributes(playlistFile, BasicFileAttributes.class);
+            size = attributes.size();
+            modified = attributes.lastModifiedTime().toMillis();
+        } catch (IOException ignored) {
+        }
+        this.size = size;
+        this.modified = modified;
+    }
+
+    /**
+     * 再生リストのファイルに対応するキャッシュのファイルを返します。
+     */
+    public static Path pathFor(Path playlistFile) {
+        String name = playlistFile.getFileName().toString();
+        if (name.endsWith(".txt"))
+            name = name.substring(0, name.length() - 4);
+        return playlistFile.resolveSibling(name + EXTENSION);
+    }
+
+    /**
+     * 再生リストのファイルに対応するキャッシュを読み込みます。
+     * キャッシュが無い場合や読み込めない場合は空のキャッシュを返します。
+     *
+     * @param playlistFile 再生リストのファイル
+     * @param items        再生リストの現在の項目。ファイルが編集されていた場合、これに含まれない行は破棄します
+     */
+    public static CompiledPlaylist open(Path playlistFile, Collection<String> items) {
+        CompiledPlaylist compiled = new CompiledPlaylist(playlistFile);
+        if (Files.exists(compiled.path)) {
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(compiled.path)))) {
+                compiled.read(in, items);
+            } catch (IOException e) {
+                log.warn("再生リストのキャッシュを読み込めませんでした: {}", compiled.path, e);
+                compiled.entries.clear();
+                compiled.dirty = true;
+            }
+        }
+        if (compiled.hash == null)
+            compiled.hash = hash(playlistFile);
+        return compiled;
+    }
+
+    private static byte[] hash(Path playlistFile) {
+        try {
+            return MessageDigest.getInstance("SHA-256").digest(Files.readAllBytes(playlistFile));
+        } catch (IOException | NoSuchAlgorithmException e) {
+            return new byte[0];
+        }
+    }
+
+    /**
+     * 再生リストのファイルに対応するキャッシュを削除します。
+     */
+    public static void delete(Path playlistFile) {
+        try {
+            Files.deleteIfExists(pathFor(playlistFile));
+        } catch (IOException e) {
+            log.warn("再生リストのキャッシュを削除できませんでした: {}", playlistFile, e);
+        }
+    }
+
+    private void read(DataInputStream in, Collection<String> items) throws IOException {
+        if (in.readInt() != MAGIC)
+            throw new IOException("キャッシュの形式が正しくありません");
+        // 古いバージョンのキャッシュは読み込まずに作り直す
+        if (in.readInt() != VERSION) {
+            dirty = true;
+            return;
+        }
+        long savedSize = in.readLong();
+        long savedModified = in.readLong();
+        byte[] savedHash = new byte[in.readInt()];
+        in.readFully(savedHash);
+        boolean unchanged = size >= 0 && savedSize == size && savedModified == modified;
+        hash = unchanged ? savedHash : hash(playlistFile);
+        boolean edited = !Arrays.equals(savedHash, hash);
+        Set<String> lines = edited ? new HashSet<>(items) : null;
+        int count = in.readInt();
+        for (int i = 0; i < count; i++) {
+            String line = readString(in);
+            long savedAt = in.readLong();
+            byte[][] tracks = new byte[in.readInt()][];
+            for (int j = 0; j < tracks.length; j++) {
+                tracks[j] = new byte[in.readInt()];
+                in.readFully(tracks[j]);
+            }
+            if (lines == null || lines.contains(line))
+                entries.put(line, new Entry(savedAt, tracks));
+        }
+        // 内容が同じでも更新日時が変わっていれば、次回ハッシュを計算しないように保存し直す
+        dirty = !unchanged;
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    /**
+     * 行のトラックをキャッシュからデコードします。
+     * デコードできなかった行はキャッシュから取り除きます。
+     *
+     * @return デコードしたトラック。キャッシュに無い場合は null
+     */
+    public synchronized List<AudioTrack> decode(AudioPlayerManager manager, String line) {
+        Entry entry = entries.get(line);
+        if (entry == null)
+            return null;
+        List<AudioTrack> tracks = new ArrayList<>(entry.tracks.length);
+        try {
+            for (byte[] bytes : entry.tracks) {
+                DecodedTrackHolder holder = manager.decodeTrack(new MessageInput(new ByteArrayInputStream(bytes)));
+                if (holder == null || holder.decodedTrack == null)
+                    throw new IOException("トラックをデコードできませんでした");
+                tracks.add(holder.decodedTrack);
+            }
+        } catch (IOException | RuntimeException e) {
+            entries.remove(line);
+            dirty = true;
+            return null;
+        }
+        return tracks;
+    }
+
+    /**
+     * 再生リストの項目を、読み込まずにキューに追加できる楽曲に変換します。
+     * キャッシュにある項目はキャッシュから読み込み、それ以外は未読み込みの楽曲にします。
+     */
+    public List<QueuedTrack> toQueuedTracks(AudioPlayerManager manager, BotConfig config, List<String> items, User owner) {
+        List<QueuedTrack> list = new ArrayList<>(items.size());
+        for (String item : items) {
+            List<AudioTrack> cached = decode(manager, item);
+            if (cached == null) {
+                list.add(QueuedTrack.lazy(item, owner));
+            } else {
+                cached.removeIf(config::isTooLong);
+                list.addAll(QueuedTrack.fromTracks(cached, owner));
+            }
+        }
+        // デコードできずに取り除いた行を反映する
+        save();
+        return list;
+    }
+
+    /**
+     * @return 行のキャッシュが古くなっており、読み込み直すべきか
+     */
+    public synchronized boolean isStale(String line) {
+        Entry entry = entries.get(line);
+        return entry != null && System.currentTimeMillis() - entry.savedAt >= REFRESH_INTERVAL;
+    }
+
+    /**
+     * 行から読み込んだトラックをキャッシュに保存します。
+     */
+    public synchronized void put(AudioPlayerManager manager, String line, List<AudioTrack> tracks) {
+        byte[][] encoded = new byte[tracks.size()][];
+        try {
+            for (int i = 0; i < encoded.length; i++) {
+                ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+                manager.encodeTrack(new MessageOutput(bytes), tracks.get(i));
+                encoded[i] = bytes.toByteArray();
+            }
+        } catch (IOException | RuntimeException e) {
+            // エンコードに対応していないトラックは保存しない
+            log.debug("トラックをキャッシュに保存できませんでした: {}", line, e);
+            return;
+        }
+        entries.put(line, new Entry(System.currentTimeMillis(), encoded));
+        dirty = true;
+    }
+
+    /**
+     * 行のキャッシュを取り除きます。
+     */
+    public synchronized void remove(String line) {
+        if (entries.remove(line) != null)
+            dirty = true;
+    }
+
+    /**
+     * 変更があればキャッシュをファイルに書き込みます。
+     * 同じファイルのインスタンスが複数あっても書き込みが混ざらないよう、書き込みごとに別の一時ファイルを使用します。
+     */
+    public synchronized void save() {
+        if (!dirty)
+            return;
+        Path temp = null;
+        try {
+            temp = Files.createTempFile(path.toAbsolutePath().getParent(), path.getFileName().toString(), ".tmp");
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeLong(size);
+                out.writeLong(modified);
+                out.writeInt(hash.length);
+                out.write(hash);
+                out.writeInt(entries.size());
+                for (Map.Entry<String, Entry> e : entries.entrySet()) {
+                    writeString(out, e.getKey());
+                    out.writeLong(e.getValue().savedAt);
+                    out.writeInt(e.getValue().tracks.length);
+                    for (byte[] track : e.getValue().tracks) {
+                        out.writeInt(track.length);
+                        out.write(track);
+                    }
+                }
+            }
+            try {
+                Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING);
+            }
+            dirty = false;
+        } catch (IOException e) {
+            log.warn("再生リストのキャッシュを書き込めませんでした: {}", path, e);
+            deleteQuietly(temp);
+        }
+    }
+
+    private static void deleteQuietly(Path file) {
+        if (file == null)
+            return;
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            log.warn("一時ファイルを削除できませんでした: {}", file, e);
+        }
+    }
+
+    private static final class Entry {
+        private final long savedAt;
+        private final byte[][] tracks;
+
+        private Entry(long savedAt, byte[][] tracks) {
+            this.savedAt = savedAt;
+            this.tracks = tracks;
+        }
+    }
+}
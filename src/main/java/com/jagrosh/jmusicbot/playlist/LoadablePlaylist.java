@@ -0,0 +1,157 @@
+/*
+ *  Copyright 2024 Cosgy Dev (info@cosgy.dev).
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.jagrosh.jmusicbot.playlist;
+
+import com.jagrosh.jmusicbot.BotConfig;
+import com.jagrosh.jmusicbot.audio.QueuedTrack;
+import com.sedmelluq.discord.lavaplayer.player.AudioPlayerManager;
+import com.sedmelluq.discord.lavaplayer.track.AudioTrack;
+import net.dv8tion.jda.api.entities.User;
+
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
+/**
+ * 再生リスト・マイリスト・公開リストに共通する、ファイルに書かれた項目の読み込み処理です。
+ *
+ * @param <E> 読み込めなかった項目を表す型
+ * @author Cosgy Dev
+ */
+public abstract class LoadablePlaylist<E> {
+    private final BotConfig config;
+    private final PlaylistResolver resolver;
+    private final String name;
+    private final Path file;
+    private final List<String> items;
+    private final boolean shuffle;
+    private final List<AudioTrack> tracks = new LinkedList<>();
+    private final List<E> errors = new LinkedList<>();
+    private boolean loaded = false;
+    private BiConsumer<Integer, Integer> progressListener;
+
+    /**
+     * @param file    項目が書かれたファイル。読み込んだ項目のキャッシュの保存先に使用します
+     * @param items   読み込む項目
+     * @param shuffle 読み込んだトラックを並べ替えるか
+     */
+    protected LoadablePlaylist(BotConfig config, PlaylistResolver resolver, String name, Path file, List<String> items, boolean shuffle) {
+        this.config = config;
+        this.resolver = resolver;
+        this.name = name;
+        this.file = file;
+        this.items = items;
+        this.shuffle = shuffle;
+    }
+
+    /**
+     * 読み込めなかった項目を表すオブジェクトを作成します。
+     *
+     * @param index  項目の番号
+     * @param item   項目(URLや検索語)
+     * @param reason 読み込めなかった理由
+     */
+    protected abstract E createError(int index, String item, String reason);
+
+    public void loadTracks(AudioPlayerManager manager, long guildId, Consumer<AudioTrack> consumer, Runnable callback) {
+        loadTrackBatches(manager, guildId, batch -> batch.forEach(consumer), callback);
+    }
+
+    /**
+     * トラックを読み込み、項目ごとに読み込めたトラックをまとめて {@code consumer} に渡します。
+     * 再生リストの項目は一度にまとめて渡されるため、キューへの追加を一括で行えます。
+     * 各項目は {@link PlaylistResolver} で並行して読み込まれますが、{@code consumer} にはリストの順番で渡されます。
+     * 以前に読み込んだ項目は {@link CompiledPlaylist} からネットワークにアクセスせずに読み込みます。
+     *
+     * @param guildId 読み込みを要求したギルド。ギルドごとの同時読み込み数の制限に使用します
+     */
+    public void loadTrackBatches(AudioPlayerManager manager, long guildId, Consumer<List<AudioTrack>> consumer, Runnable callback) {
+        if (loaded)
+            return;
+        loaded = true;
+        CompiledPlaylist compiled = CompiledPlaylist.open(file, items);
+        resolver.resolve(manager, guildId, items, shuffle, compiled, new PlaylistResolver.Listener() {
+            @Override
+            public void onTracks(int index, List<AudioTrack> loaded) {
+                tracks.addAll(loaded);
+                consumer.accept(loaded);
+            }
+
+            @Override
+            public void onError(int index, String reason) {
+                errors.add(createError(index, items.get(index), reason));
+            }
+
+            @Override
+            public void onProgress(int completed, int total) {
+                if (progressListener != null)
+                    progressListener.accept(completed, total);
+            }
+
+            @Override
+            public void onComplete() {
+                if (shuffle)
+                    shuffleTracks();
+                if (callback != null)
+                    callback.run();
+            }
+        });
+    }
+
+    /**
+     * 項目を読み込まずに、再生する直前に読み込む楽曲としてキューに追加できる形に変換します。
+     * 以前に読み込んだ項目は {@link CompiledPlaylist} から読み込みます。
+     */
+    public List<QueuedTrack> toLazyTracks(AudioPlayerManager manager, User owner) {
+        return CompiledPlaylist.open(file, items).toQueuedTracks(manager, config, items, owner);
+    }
+
+    /**
+     * 読み込みの進捗(読み込みが終わった項目数、項目の総数)を受け取るリスナーを設定します。
+     * 進捗は数秒おきに通知されます。
+     */
+    public void setProgressListener(BiConsumer<Integer, Integer> progressListener) {
+        this.progressListener = progressListener;
+    }
+
+    public void shuffleTracks() {
+        Collections.shuffle(tracks);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public List<String> getItems() {
+        return items;
+    }
+
+    public boolean isShuffle() {
+        return shuffle;
+    }
+
+    public List<AudioTrack> getTracks() {
+        return tracks;
+    }
+
+    public List<E> getErrors() {
+        return errors;
+    }
+}
@@ -0,0 +1,252 @@
+/*
+ *  Copyright 2024 Cosgy Dev (info@cosgy.dev).
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.jagrosh.jmusicbot.playlist;
+
+import dev.cosgy.jmusicbot.playlist.MylistLoader;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.*;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * 再生リスト・マイリスト・公開リストのフォルダーの内容をメモリ上に保持する索引です。
+ * <p>
+ * フォルダーごとに再生リストの名前の一覧と、読み込んだ再生リストの内容を保持します。
+ * 一度読み込んだフォルダーは {@link WatchService} で監視し、ファイルが作成・変更・削除された時に
+ * そのフォルダーの内容を破棄して、次に参照された時に読み込み直します。
+ * 監視を開始できない環境では、毎回ファイルから読み込みます。
+ *
+ * @author Cosgy Dev
+ */
+public class PlaylistIndex {
+    private static final String EXTENSION = ".txt";
+    private static final Logger log = LoggerFactory.getLogger("PlaylistIndex");
+
+    private final Map<Path, Directory> directories = new ConcurrentHashMap<>();
+    private final WatchService watcher;
+
+    public PlaylistIndex() {
+        WatchService service;
+        try {
+            service = FileSystems.getDefault().newWatchService();
+        } catch (IOException | UnsupportedOperationException e) {
+            log.warn("再生リストのフォルダーを監視できないため、毎回ファイルから読み込みます", e);
+            service = null;
+        }
+        this.watcher = service;
+        if (watcher != null) {
+            Thread thread = new Thread(this::watch, "PlaylistWatcher");
+            thread.setDaemon(true);
+            thread.start();
+        }
+    }
+
+    /**
+     * フォルダー内の再生リストの名前を返します。
+     *
+     * @return 再生リストの名前の一覧。フォルダーが存在しない場合は null
+     */
+    public List<String> getNames(Path dir) {
+        Directory directory = directory(dir);
+        if (directory != null) {
+            List<String> names = directory.names;
+            if (names != null)
+                return names;
+        }
+        if (!Files.isDirectory(dir))
+            return null;
+        int generation = directory == null ? 0 : directory.generation;
+        List<String> names;
+        try (Stream<Path> files = Files.list(dir)) {
+            names = Collections.unmodifiableList(files.map(f -> f.getFileName().toString())
+                    .filter(f -> f.endsWith(EXTENSION))
+                    .map(f -> f.substring(0, f.length() - EXTENSION.length()))
+                    .collect(Collectors.toList()));
+        } catch (IOException e) {
+            return null;
+        }
+        if (directory != null) {
+            synchronized (directory) {
+                if (directory.generation == generation)
+                    directory.names = names;
+            }
+        }
+        return names;
+    }
+
+    /**
+     * フォルダー内の再生リストの内容を返します。
+     *
+     * @return 再生リストの内容。ファイルが存在しないか読み込めない場合は null
+     */
+    public Contents get(Path dir, String name) {
+        Directory directory = directory(dir);
+        if (directory != null) {
+            Contents contents = directory.contents.get(name);
+            if (contents != null)
+                return contents;
+        }
+        int generation = directory == null ? 0 : directory.generation;
+        Contents contents;
+        try {
+            boolean[] shuffle = {false};
+            List<String> items = new ArrayList<>();
+            Files.readAllLines(dir.resolve(name + EXTENSION)).forEach(str -> MylistLoader.Trim(shuffle, items, str));
+            contents = new Contents(Collections.unmodifiableList(items), shuffle[0]);
+        } catch (IOException e) {
+            return null;
+        }
+        if (directory != null) {
+            synchronized (directory) {
+                if (directory.generation == generation)
+                    directory.contents.put(name, contents);
+            }
+        }
+        return contents;
+    }
+
+    /**
+     * フォルダーの内容を破棄します。
+     * 監視による通知は遅れて届くため、Botが自らファイルを書き換えた時はすぐにこのメソッドを呼び出します。
+     */
+    public void invalidate(Path dir) {
+        Directory directory = directories.get(key(dir));
+        if (directory != null)
+            directory.clear();
+    }
+
+    /**
+     * 監視を終了します。
+     */
+    public void close() {
+        if (watcher == null)
+            return;
+        try {
+            watcher.close();
+        } catch (IOException ignored) {
+        }
+    }
+
+    private static Path key(Path dir) {
+        return dir.toAbsolutePath().normalize();
+    }
+
+    /**
+     * フォルダーの索引を返します。まだ監視していないフォルダーは監視を開始します。
+     *
+     * @return フォルダーの索引。監視できない場合は null
+     */
+    private Directory directory(Path dir) {
+        if (watcher == null)
+            return null;
+        Path key = key(dir);
+        Directory directory = directories.get(key);
+        if (directory != null)
+            return directory;
+        if (!Files.isDirectory(key))
+            return null;
+        return directories.computeIfAbsent(key, k -> {
+            try {
+                k.register(watcher, StandardWatchEventKinds.ENTRY_CREATE,
+                        StandardWatchEventKinds.ENTRY_DELETE, StandardWatchEventKinds.ENTRY_MODIFY);
+                return new Directory();
+            } catch (IOException | ClosedWatchServiceException e) {
+                return null;
+            }
+        });
+    }
+
+    private void watch() {
+        while (true) {
+            WatchKey key;
+            try {
+                key = watcher.take();
+            } catch (InterruptedException | ClosedWatchServiceException e) {
+                return;
+            }
+            Path dir = (Path) key.watchable();
+            Directory directory = directories.get(dir);
+            if (directory != null) {
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    if (event.kind() == StandardWatchEventKinds.OVERFLOW || !(event.context() instanceof Path)) {
+                        directory.clear();
+                        continue;
+                    }
+                    String file = event.context().toString();
+                    if (file.endsWith(EXTENSION))
+                        directory.invalidate(file.substring(0, file.length() - EXTENSION.length()));
+                }
+            } else {
+                key.pollEvents();
+            }
+            // フォルダーが削除された場合は監視をやめ、次に参照された時に改めて監視する
+            if (!key.reset())
+                directories.remove(dir);
+        }
+    }
+
+    /**
+     * 再生リストのファイルを読み込んだ内容です。
+     */
+    public static final class Contents {
+        private final List<String> items;
+        private final boolean shuffle;
+
+        private Contents(List<String> items, boolean shuffle) {
+            this.items = items;
+            this.shuffle = shuffle;
+        }
+
+        /**
+         * @return 再生リストの項目。変更できません
+         */
+        public List<String> getItems() {
+            return items;
+        }
+
+        public boolean isShuffle() {
+            return shuffle;
+        }
+    }
+
+    private static final class Directory {
+        private final Map<String, Contents> contents = new ConcurrentHashMap<>();
+        // 内容を破棄するたびに増やし、破棄する前に読み込み始めた内容を保存しないようにする
+        private volatile int generation;
+        private volatile List<String> names;
+
+        private synchronized void clear() {
+            generation++;
+            names = null;
+            contents.clear();
+        }
+
+        private synchronized void invalidate(String name) {
+            generation++;
+            names = null;
+            contents.remove(name);
+        }
+    }
+}
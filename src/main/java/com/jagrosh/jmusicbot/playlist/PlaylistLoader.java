@@ -17,30 +17,27 @@ package com.jagrosh.jmusicbot.playlist;
 
 import com.jagrosh.jmusicbot.BotConfig;
 import com.jagrosh.jmusicbot.utils.OtherUtil;
-import com.sedmelluq.discord.lavaplayer.player.AudioLoadResultHandler;
-import com.sedmelluq.discord.lavaplayer.player.AudioPlayerManager;
-import com.sedmelluq.discord.lavaplayer.tools.FriendlyException;
-import com.sedmelluq.discord.lavaplayer.track.AudioPlaylist;
-import com.sedmelluq.discord.lavaplayer.track.AudioTrack;
-import dev.cosgy.jmusicbot.playlist.MylistLoader;
 
 import java.io.File;
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.*;
-import java.util.function.Consumer;
-import java.util.stream.Collectors;
 
 /**
  * @author John Grosh (john.a.grosh@gmail.com)
  */
 public class PlaylistLoader {
     private final BotConfig config;
+    private final PlaylistResolver resolver;
+    private final PlaylistIndex index;
 
-    public PlaylistLoader(BotConfig config) {
+    public PlaylistLoader(BotConfig config, PlaylistResolver resolver, PlaylistIndex index) {
         this.config = config;
+        this.resolver = resolver;
+        this.index = index;
     }
 
     private static <T> void shuffle(List<T> list) {
@@ -52,20 +49,19 @@ public class PlaylistLoader {
         }
     }
 
+    private Path guildFolder(String guildId) {
+        return OtherUtil.getPath(config.getPlaylistsFolder() + File.separator + guildId);
+    }
+
     public List<String> getPlaylistNames(String guildId) {
-        if (folderExists()) {
-            if (folderGuildExists(guildId)) {
-                File folder = new File(OtherUtil.getPath(config.getPlaylistsFolder() + File.separator + guildId).toString());
-                return Arrays.stream(Objects.requireNonNull(folder.listFiles((pathname) -> pathname.getName().endsWith(".txt")))).map(f -> f.getName().substring(0, f.getName().length() - 4)).collect(Collectors.toList());
-            } else {
-                createGuildFolder(guildId);
-                return getPlaylistNames(guildId);
-            }
-        } else {
+        List<String> names = index.getNames(guildFolder(guildId));
+        if (names != null)
+            return names;
+        if (!folderExists())
             createFolder();
-            createGuildFolder(guildId);
-            return getPlaylistNames(guildId);
-        }
+        createGuildFolder(guildId);
+        names = index.getNames(guildFolder(guildId));
+        return names == null ? Collections.emptyList() : names;
     }
 
     public void createGuildFolder(String guildId) {
@@ -92,144 +88,51 @@ public class PlaylistLoader {
 
     public void createPlaylist(String guildId, String name) throws IOException {
         Files.createFile(Paths.get(config.getPlaylistsFolder() + File.separator + guildId + File.separator + name + ".txt"));
+        index.invalidate(guildFolder(guildId));
     }
 
     public void deletePlaylist(String guildId, String name) throws IOException {
-        Files.delete(Paths.get(config.getPlaylistsFolder() + File.separator + guildId + File.separator + name + ".txt"));
+        Path file = Paths.get(config.getPlaylistsFolder() + File.separator + guildId + File.separator + name + ".txt");
+        Files.delete(file);
+        CompiledPlaylist.delete(file);
+        index.invalidate(guildFolder(guildId));
     }
 
     public void writePlaylist(String guildId, String name, String text) throws IOException {
         Files.write(Paths.get(config.getPlaylistsFolder() + File.separator + guildId + File.separator + name + ".txt"), text.trim().getBytes(StandardCharsets.UTF_8));
+        index.invalidate(guildFolder(guildId));
     }
 
     public Playlist getPlaylist(String guildId, String name) {
         if (!getPlaylistNames(guildId).contains(name))
             return null;
-        try {
-            if (folderExists()) {
-                if (folderGuildExists(guildId)) {
-                    boolean[] shuffle = {false};
-                    List<String> list = new ArrayList<>();
-                    Files.readAllLines(Paths.get(config.getPlaylistsFolder() + File.separator + guildId + File.separator + name + ".txt")).forEach(str ->
-                    {
-                        MylistLoader.Trim(shuffle, list, str);
-                    });
-                    if (shuffle[0])
-                        shuffle(list);
-                    return new Playlist(name, list, shuffle[0]);
-                } else {
-                    createGuildFolder(guildId);
-                    return null;
-                }
-            } else {
-                createFolder();
-                createGuildFolder(guildId);
-                return null;
-            }
-        } catch (IOException e) {
+        PlaylistIndex.Contents contents = index.get(guildFolder(guildId), name);
+        if (contents == null)
             return null;
-        }
+        List<String> list = new ArrayList<>(contents.getItems());
+        if (contents.isShuffle())
+            shuffle(list);
+        return new Playlist(name, guildFolder(guildId).resolve(name + ".txt"), contents.getItems(), list, contents.isShuffle());
     }
 
-    public class Playlist {
-        private final String name;
-        private final List<String> items;
-        private final boolean shuffle;
-        private final List<AudioTrack> tracks = new LinkedList<>();
-        private final List<PlaylistLoadError> errors = new LinkedList<>();
-        private boolean loaded = false;
-
-        private Playlist(String name, List<String> items, boolean shuffle) {
-            this.name = name;
-            this.items = items;
-            this.shuffle = shuffle;
-        }
-
-        public void loadTracks(AudioPlayerManager manager, Consumer<AudioTrack> consumer, Runnable callback) {
-            if (loaded)
-                return;
-            loaded = true;
-            for (int i = 0; i < items.size(); i++) {
-                boolean last = i + 1 == items.size();
-                int index = i;
-                manager.loadItemOrdered(name, items.get(i), new AudioLoadResultHandler() {
-                    private void done() {
-                        if (last) {
-                            if (shuffle)
-                                shuffleTracks();
-                            if (callback != null)
-                                callback.run();
-                        }
-                    }
-
-                    @Override
-                    public void trackLoaded(AudioTrack at) {
-                        if (config.isTooLong(at))
-                            errors.add(new PlaylistLoadError(index, items.get(index), "このトラックは許可された最大長を超えています"));
-                        else {
-                            at.setUserData(0L);
-                            tracks.add(at);
-                            consumer.accept(at);
-                        }
-                        done();
-                    }
-
-                    @Override
-                    public void playlistLoaded(AudioPlaylist ap) {
-                        if (ap.isSearchResult()) {
-                            trackLoaded(ap.getTracks().get(0));
-                        } else if (ap.getSelectedTrack() != null) {
-                            trackLoaded(ap.getSelectedTrack());
-                        } else {
-                            List<AudioTrack> loaded = new ArrayList<>(ap.getTracks());
-                            if (shuffle)
-                                for (int first = 0; first < loaded.size(); first++) {
-                                    int second = (int) (Math.random() * loaded.size());
-                                    AudioTrack tmp = loaded.get(first);
-                                    loaded.set(first, loaded.get(second));
-                                    loaded.set(second, tmp);
-                                }
-                            loaded.removeIf(config::isTooLong);
-                            loaded.forEach(at -> at.setUserData(0L));
-                            tracks.addAll(loaded);
-                            loaded.forEach(consumer);
-                        }
-                        done();
-                    }
-
-                    @Override
-                    public void noMatches() {
-                        errors.add(new PlaylistLoadError(index, items.get(index), "一致するものが見つかりませんでした。"));
-                        done();
-                    }
-
-                    @Override
-                    public void loadFailed(FriendlyException fe) {
-                        errors.add(new PlaylistLoadError(index, items.get(index), "トラックを読み込めませんでした: " + fe.getLocalizedMessage()));
-                        done();
-                    }
-                });
-            }
-        }
-
-        public void shuffleTracks() {
-            shuffle(tracks);
-        }
-
-        public String getName() {
-            return name;
-        }
+    public class Playlist extends LoadablePlaylist<PlaylistLoadError> {
+        private final List<String> source;
 
-        public List<String> getItems() {
-            return items;
+        private Playlist(String name, Path file, List<String> source, List<String> items, boolean shuffle) {
+            super(config, resolver, name, file, items, shuffle);
+            this.source = source;
         }
 
-        public List<AudioTrack> getTracks() {
-            return tracks;
+        @Override
+        protected PlaylistLoadError createError(int index, String item, String reason) {
+            return new PlaylistLoadError(index, item, reason);
         }
 
-        public List<PlaylistLoadError> getErrors() {
-            return errors;
+        /**
+         * @return ファイルに書かれている順番の項目。ファイルが変更されるまでは同じリストを返します
+         */
+        public List<String> getSourceItems() {
+            return source;
         }
     }
 
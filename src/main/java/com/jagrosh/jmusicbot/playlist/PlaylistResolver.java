@@ -0,0 +1,380 @@
+/*
+ *  Copyright 2024 Cosgy Dev (info@cosgy.dev).
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.jagrosh.jmusicbot.playlist;
+
+import com.jagrosh.jmusicbot.BotConfig;
+import com.sedmelluq.discord.lavaplayer.player.AudioLoadResultHandler;
+import com.sedmelluq.discord.lavaplayer.player.AudioPlayerManager;
+import com.sedmelluq.discord.lavaplayer.tools.FriendlyException;
+import com.sedmelluq.discord.lavaplayer.track.AudioPlaylist;
+import com.sedmelluq.discord.lavaplayer.track.AudioTrack;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * 再生リスト・マイリスト・公開リスト・キャッシュの各項目を読み込む共通の処理です。
+ * <p>
+ * 各項目は並行して読み込みますが、同時に読み込む数は全体とギルドごとに上限を設けます。
+ * 読み込みが終わった順番に関係なく、結果は必ずファイルの順番で {@link Listener} に渡され、
+ * 完了の通知はすべての項目の結果を渡し終えた後に一度だけ行われます。
+ * 複数の読み込みが同時に行われている場合は、項目を順番に割り当てて一つの読み込みが枠を占有しないようにします。
+ * {@link CompiledPlaylist} を渡した場合は、キャッシュにある項目をネットワークにアクセスせずに読み込み、
+ * 古くなった項目は結果を渡し終えた後にバックグラウンドで読み込み直します。
+ *
+ * @author Cosgy Dev
+ */
+public class PlaylistResolver {
+    // 進捗を通知する最短の間隔(ミリ秒)
+    private static final long PROGRESS_INTERVAL = 3000;
+    private static final Logger log = LoggerFactory.getLogger("PlaylistResolver");
+
+    private final BotConfig config;
+    private final int globalLimit;
+    private final int guildLimit;
+    // 未開始の項目が残っている読み込み
+    private final Deque<Resolution> waiting = new ArrayDeque<>();
+    private final Map<Long, Integer> activeByGuild = new HashMap<>();
+    private int active;
+
+    public PlaylistResolver(BotConfig config) {
+        this(config, config.getPlaylistConcurrency(), config.getPlaylistGuildConcurrency());
+    }
+
+    /**
+     * @param globalLimit 全体で同時に読み込む項目数の上限
+     * @param guildLimit  ギルドごとに同時に読み込む項目数の上限
+     */
+    public PlaylistResolver(BotConfig config, int globalLimit, int guildLimit) {
+        this.config = config;
+        this.globalLimit = Math.max(1, globalLimit);
+        this.guildLimit = Math.max(1, guildLimit);
+    }
+
+    /**
+     * 項目の読み込みを開始します。
+     *
+     * @param manager  読み込みに使用するプレイヤーマネージャー
+     * @param guildId  読み込みを要求したギルド
+     * @param items    読み込む項目(URLや検索語)
+     * @param shuffle  項目が再生リストだった場合に、含まれるトラックを並べ替えるか
+     * @param listener 結果を受け取るリスナー
+     */
+    public void resolve(AudioPlayerManager manager, long guildId, List<String> items, boolean shuffle, Listener listener) {
+        resolve(manager, guildId, items, shuffle, null, listener);
+    }
+
+    /**
+     * キャッシュを使用して項目の読み込みを開始します。
+     * ネットワークから読み込んだ項目はキャッシュに保存され、読み込みが終わった時にキャッシュのファイルに書き込まれます。
+     *
+     * @param compiled 再生リストのキャッシュ。null の場合はすべての項目をネットワークから読み込みます
+     */
+    public void resolve(AudioPlayerManager manager, long guildId, List<String> items, boolean shuffle, CompiledPlaylist compiled, Listener listener) {
+        if (items.isEmpty()) {
+            listener.onComplete();
+            return;
+        }
+        Resolution resolution = new Resolution(manager, guildId, new ArrayList<>(items), shuffle, compiled, listener);
+        if (resolution.pending.length == 0) {
+            resolution.emit();
+            return;
+        }
+        synchronized (this) {
+            waiting.addLast(resolution);
+        }
+        dispatch();
+    }
+
+    /**
+     * キャッシュが古くなった項目をバックグラウンドで読み込み直し、キャッシュを更新します。
+     */
+    private void refresh(AudioPlayerManager manager, long guildId, List<String> items, CompiledPlaylist compiled) {
+        if (items.isEmpty()) {
+            compiled.save();
+            return;
+        }
+        resolve(manager, guildId, items, false, new Listener() {
+            @Override
+            public void onTracks(int index, List<AudioTrack> tracks) {
+                compiled.put(manager, items.get(index), tracks);
+            }
+
+            @Override
+            public void onError(int index, String reason) {
+                compiled.remove(items.get(index));
+            }
+
+            @Override
+            public void onComplete() {
+                compiled.save();
+            }
+        });
+    }
+
+    /**
+     * 上限に達するまで、待っている読み込みの項目を順番に開始します。
+     */
+    private void dispatch() {
+        List<Runnable> starts = new ArrayList<>();
+        synchronized (this) {
+            int skipped = 0;
+            while (active < globalLimit && skipped < waiting.size()) {
+                Resolution resolution = waiting.pollFirst();
+                int guildActive = activeByGuild.getOrDefault(resolution.guildId, 0);
+                if (guildActive >= guildLimit) {
+                    waiting.addLast(resolution);
+                    skipped++;
+                    continue;
+                }
+                int index = resolution.pending[resolution.next++];
+                active++;
+                activeByGuild.put(resolution.guildId, guildActive + 1);
+                if (resolution.next < resolution.pending.length)
+                    waiting.addLast(resolution);
+                skipped = 0;
+                starts.add(() -> resolution.start(index));
+            }
+        }
+        // 読み込みを拒否された場合は同じスレッドで結果が返ってくるため、ロックの外で開始する
+        starts.forEach(Runnable::run);
+    }
+
+    private void finished(Resolution resolution) {
+        synchronized (this) {
+            active--;
+            activeByGuild.computeIfPresent(resolution.guildId, (id, count) -> count > 1 ? count - 1 : null);
+        }
+        dispatch();
+    }
+
+    /**
+     * 読み込みの結果を受け取るリスナーです。
+     * メソッドは読み込みを行うスレッドから呼び出されますが、同じ読み込みについて同時に呼び出されることはありません。
+     */
+    public interface Listener {
+        /**
+         * 項目から読み込めたトラックを受け取ります。
+         *
+         * @param index  項目の番号
+         * @param tracks 読み込めたトラック。再生リストの場合は複数
+         */
+        void onTracks(int index, List<AudioTrack> tracks);
+
+        /**
+         * 項目を読み込めなかった理由を受け取ります。
+         */
+        void onError(int index, String reason);
+
+        /**
+         * 読み込みの進捗を受け取ります。一定の間隔より短い間隔では呼び出されません。
+         *
+         * @param completed 読み込みが終わった項目数
+         * @param total     項目の総数
+         */
+        default void onProgress(int completed, int total) {
+        }
+
+        /**
+         * すべての項目の結果を渡し終えた時に一度だけ呼び出されます。
+         */
+        void onComplete();
+    }
+
+    private static final class Result {
+        private final List<AudioTrack> tracks;
+        private final String error;
+
+        private Result(List<AudioTrack> tracks, String error) {
+            this.tracks = tracks;
+            this.error = error;
+        }
+    }
+
+    private final class Resolution {
+        private final AudioPlayerManager manager;
+        private final long guildId;
+        private final List<String> items;
+        private final boolean shuffle;
+        private final CompiledPlaylist compiled;
+        private final Listener listener;
+        private final Result[] results;
+        // ネットワークから読み込む項目の番号
+        private final int[] pending;
+        // キャッシュから読み込んだが、読み込み直す項目
+        private final List<String> stale = new ArrayList<>();
+        // PlaylistResolver のロックで保護される
+        private int next;
+        // この読み込みのロックで保護される
+        private int emitted;
+        private int completed;
+        private long lastProgress = System.currentTimeMillis();
+
+        private Resolution(AudioPlayerManager manager, long guildId, List<String> items, boolean shuffle, CompiledPlaylist compiled, Listener listener) {
+            this.manager = manager;
+            this.guildId = guildId;
+            this.items = items;
+            this.shuffle = shuffle;
+            this.compiled = compiled;
+            this.listener = listener;
+            this.results = new Result[items.size()];
+            int[] misses = new int[items.size()];
+            int count = 0;
+            for (int i = 0; i < items.size(); i++) {
+                List<AudioTrack> cached = compiled == null ? null : compiled.decode(manager, items.get(i));
+                if (cached == null) {
+                    misses[count++] = i;
+                    continue;
+                }
+                results[i] = toResult(cached.size() == 1 ? cached.get(0) : null, cached);
+                completed++;
+                if (compiled.isStale(items.get(i)))
+                    stale.add(items.get(i));
+            }
+            this.pending = Arrays.copyOf(misses, count);
+        }
+
+        private Result toResult(AudioTrack single, List<AudioTrack> tracks) {
+            if (single != null) {
+                if (config.isTooLong(single))
+                    return new Result(null, "このトラックは許可された最大長を超えています。");
+                single.setUserData(0L);
+                return new Result(Collections.singletonList(single), null);
+            }
+            List<AudioTrack> loaded = new ArrayList<>(tracks);
+            if (shuffle)
+                Collections.shuffle(loaded);
+            loaded.removeIf(config::isTooLong);
+            loaded.forEach(at -> at.setUserData(0L));
+            return new Result(loaded, null);
+        }
+
+        private void start(int index) {
+            manager.loadItem(items.get(index), new AudioLoadResultHandler() {
+                @Override
+                public void trackLoaded(AudioTrack at) {
+                    complete(index, () -> loaded(index, at));
+                }
+
+                @Override
+                public void playlistLoaded(AudioPlaylist ap) {
+                    complete(index, () -> {
+                        if (ap.isSearchResult()) {
+                            if (ap.getTracks().isEmpty())
+                                return new Result(null, "一致するものが見つかりませんでした。");
+                            return loaded(index, ap.getTracks().get(0));
+                        } else if (ap.getSelectedTrack() != null) {
+                            return loaded(index, ap.getSelectedTrack());
+                        }
+                        if (compiled != null && !ap.getTracks().isEmpty())
+                            compiled.put(manager, items.get(index), ap.getTracks());
+                        return toResult(null, ap.getTracks());
+                    });
+                }
+
+                @Override
+                public void noMatches() {
+                    complete(index, new Result(null, "一致するものが見つかりませんでした。"));
+                }
+
+                @Override
+                public void loadFailed(FriendlyException fe) {
+                    complete(index, new Result(null, "トラックを読み込めませんでした: " + fe.getLocalizedMessage()));
+                }
+            });
+        }
+
+        private Result loaded(int index, AudioTrack at) {
+            if (compiled != null)
+                compiled.put(manager, items.get(index), Collections.singletonList(at));
+            return toResult(at, null);
+        }
+
+        /**
+         * 読み込んだ結果を処理して項目を完了します。
+         * 処理中に例外が発生した場合もエラーとして完了し、枠が解放されないまま残らないようにします。
+         */
+        private void complete(int index, Supplier<Result> handler) {
+            Result result;
+            try {
+                result = handler.get();
+            } catch (RuntimeException e) {
+                log.warn("読み込んだ項目の処理中にエラーが発生しました: {}", items.get(index), e);
+                result = new Result(null, "トラックを読み込めませんでした: " + e.getMessage());
+            }
+            complete(index, result);
+        }
+
+        private void complete(int index, Result result) {
+            try {
+                synchronized (this) {
+                    results[index] = result;
+                    completed++;
+                }
+                emit();
+            } finally {
+                finished(this);
+            }
+        }
+
+        /**
+         * 先頭から結果が揃っている分だけ順番に渡し、すべて渡し終えたら完了を通知します。
+         */
+        private synchronized void emit() {
+            // 別のスレッドが既にすべての結果を渡し終えている
+            if (emitted == results.length)
+                return;
+            try {
+                while (emitted < results.length && results[emitted] != null) {
+                    deliver(emitted, results[emitted]);
+                    results[emitted] = null;
+                    emitted++;
+                }
+                if (emitted == results.length) {
+                    listener.onComplete();
+                    if (compiled != null)
+                        refresh(manager, guildId, stale, compiled);
+                } else if (System.currentTimeMillis() - lastProgress >= PROGRESS_INTERVAL) {
+                    lastProgress = System.currentTimeMillis();
+                    listener.onProgress(completed, results.length);
+                }
+            } catch (Exception e) {
+                log.warn("読み込み結果の処理中にエラーが発生しました", e);
+            }
+        }
+
+        private void deliver(int index, Result result) {
+            try {
+                if (result.error != null)
+                    listener.onError(index, result.error);
+                else if (!result.tracks.isEmpty())
+                    listener.onTracks(index, result.tracks);
+            } catch (Exception e) {
+                log.warn("読み込み結果の処理中にエラーが発生しました", e);
+            }
+        }
+    }
+}
@@ -15,18 +15,67 @@
  */
 package com.jagrosh.jmusicbot.queue;
 
+import java.util.AbstractList;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Random;
 import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
+ * ユーザーごとに順番が回ってくるように楽曲を並べるキューです。
+ * <p>
+ * 要素は位置の順序を表すラベルをキーにしたツリープ(平衡二分探索木)で保持し、
+ * 各ノードは部分木の要素数と、部分木内で「同じユーザーの次の要素」が最も手前にあるノードを持ちます。
+ * これにより追加・位置指定の取得・削除・移動をいずれも O(log n) で行います。
+ * <p>
+ * フェアな追加位置は、そのユーザーの最後の要素の直後から先を見て、
+ * 初めて同じユーザーが二度目に現れる位置です。これは直後以降の各要素について
+ * 「同じユーザーの次の要素」の最小位置と等しいため、部分木の集約値から求められます。
+ * <p>
+ * 各操作はキューのロックを取って行います。{@link #getList()} のビューはロックを取らないため、
+ * キューを変更するスレッド以外から内容を読み取る場合は {@link #snapshot()} を使用してください。
+ *
  * @param <T>
  * @author John Grosh (jagrosh)
  */
 public class FairQueue<T extends Queueable> {
-    private final List<T> list = new ArrayList<>();
-    private final Set<Long> set = new HashSet<>();
+    // ラベルは [0, 2^62) の範囲で割り当て、0は先頭の番兵が使用する
+    private static final long LABEL_LIMIT = 1L << 62;
+    private static final long APPEND_GAP = 1L << 32;
+    private static final double RELABEL_DENSITY = 1.5;
+
+    private final Comparator<Node<T>> byLabel = Comparator.comparingLong(n -> n.label);
+    private final Map<Long, TreeSet<Node<T>>> owners = new HashMap<>();
+    private final Node<T> head = new Node<>(null, 0, 0);
+    private final Random random = new Random();
+    private final List<T> view = new ListView();
+    // 最後に clearDirty() を呼び出してから内容が変更されたか
+    private final AtomicBoolean dirty = new AtomicBoolean();
+    // 内容が変更された時に呼び出す処理
+    private volatile Runnable listener;
+    private Node<T> tail = head;
+    private Node<T> root;
+
+    private static <T> int size(Node<T> node) {
+        return node == null ? 0 : node.size;
+    }
+
+    private static <T> Node<T> earlier(Node<T> a, Node<T> b) {
+        if (a == null)
+            return b;
+        if (b == null)
+            return a;
+        return a.label <= b.label ? a : b;
+    }
 
     /**
      * @deprecated 新しくフェアキューと普通のキューを切り替えられるメゾットを追加したのでそちらを使用してください。
@@ -34,19 +83,7 @@ public class FairQueue<T extends Queueable> {
      * @return 何曲目に追加したか
      */
     public int add(T item) {
-        int lastIndex;
-        for (lastIndex = list.size() - 1; lastIndex > -1; lastIndex--)
-            if (list.get(lastIndex).getIdentifier() == item.getIdentifier())
-                break;
-        lastIndex++;
-        set.clear();
-        for (; lastIndex < list.size(); lastIndex++) {
-            if (set.contains(list.get(lastIndex).getIdentifier()))
-                break;
-            set.add(list.get(lastIndex).getIdentifier());
-        }
-        list.add(lastIndex, item);
-        return lastIndex;
+        return add(item, false);
     }
 
     /**
@@ -55,93 +92,174 @@ public class FairQueue<T extends Queueable> {
      * @param forceToEnd 強制的にキューの一番最後に追加するか
      * @return 何番目に追加したか
      */
-    public int add(T item, boolean forceToEnd) {
+    public synchronized int add(T item, boolean forceToEnd) {
         if (forceToEnd) {
-            list.add(item);
-            return list.size() - 1;
+            insertBefore(null, item);
+            return size() - 1;
         }
 
-        int lastIndex;
-        for (lastIndex = list.size() - 1; lastIndex > -1; lastIndex--)
-            if (list.get(lastIndex).getIdentifier() == item.getIdentifier())
-                break;
-        lastIndex++;
-        set.clear();
-        for (; lastIndex < list.size(); lastIndex++) {
-            if (set.contains(list.get(lastIndex).getIdentifier()))
-                break;
-            set.add(list.get(lastIndex).getIdentifier());
+        TreeSet<Node<T>> mine = owners.get(item.getIdentifier());
+        int start = mine == null ? 0 : rank(mine.last()) + 1;
+        Node<T> stop = firstRepeatFrom(start);
+        if (stop == null) {
+            insertBefore(null, item);
+            return size() - 1;
+        }
+        int index = rank(stop);
+        insertBefore(stop, item);
+        return index;
+    }
+
+    /**
+     * 複数の楽曲をまとめてキューに追加します。
+     * 結果は {@link #add(Queueable, boolean)} を順番に呼び出した場合と同じになります。
+     * <p>
+     * 同じユーザーの楽曲が続く間は、直前に追加した位置から先へ一度だけ走査して追加位置を求めるため、
+     * プレイリストのように同じユーザーの楽曲を大量に追加する場合でも一曲ずつ位置を探し直しません。
+     *
+     * @param items      追加する楽曲情報
+     * @param forceToEnd 強制的にキューの一番最後に追加するか
+     * @return 最初の楽曲を何番目に追加したか。追加する楽曲が無い場合は -1
+     */
+    public synchronized int addAll(Collection<? extends T> items, boolean forceToEnd) {
+        int first = -1;
+        if (forceToEnd) {
+            for (T item : items) {
+                insertBefore(null, item);
+                if (first < 0)
+                    first = size() - 1;
+            }
+            return first;
         }
-        list.add(lastIndex, item);
-        return lastIndex;
+
+        Set<Long> seen = new HashSet<>();
+        Node<T> cursor = null;
+        long owner = 0;
+        boolean following = false;
+        for (T item : items) {
+            Node<T> stop;
+            if (following && item.getIdentifier() == owner) {
+                // 直前に追加した楽曲の直後から、同じユーザーが二度目に現れる位置まで進める
+                seen.clear();
+                stop = cursor;
+                while (stop != null && seen.add(stop.owner))
+                    stop = stop.next;
+            } else {
+                TreeSet<Node<T>> mine = owners.get(item.getIdentifier());
+                stop = firstRepeatFrom(mine == null ? 0 : rank(mine.last()) + 1);
+                owner = item.getIdentifier();
+                following = true;
+            }
+            if (first < 0)
+                first = stop == null ? size() : rank(stop);
+            insertBefore(stop, item);
+            cursor = stop;
+        }
+        return first;
     }
 
-    public void addAt(int index, T item) {
-        if (index >= list.size())
-            list.add(item);
+    public synchronized void addAt(int index, T item) {
+        if (index >= size())
+            insertBefore(null, item);
         else
-            list.add(index, item);
+            insertBefore(nodeAt(index), item);
     }
 
-    public int size() {
-        return list.size();
+    public synchronized int size() {
+        return size(root);
     }
 
-    public T pull() {
-        return list.remove(0);
+    public synchronized T pull() {
+        if (head.next == null)
+            throw new IndexOutOfBoundsException("Index: 0, Size: 0");
+        return unlink(head.next);
     }
 
-    public boolean isEmpty() {
-        return list.isEmpty();
+    public synchronized boolean isEmpty() {
+        return root == null;
     }
 
+    /**
+     * キューの読み取り専用ビューを返します。
+     *
+     * @return キューの内容を順番に参照するリスト
+     */
     public List<T> getList() {
-        return list;
+        return view;
     }
 
-    public T get(int index) {
-        return list.get(index);
+    /**
+     * キューの内容をロックを取って複製します。キューを変更するスレッド以外から読み取る時に使用します。
+     *
+     * @return キューの内容のコピー
+     */
+    public synchronized List<T> snapshot() {
+        return snapshot(Integer.MAX_VALUE);
     }
 
-    public T remove(int index) {
-        return list.remove(index);
+    /**
+     * キューの先頭から最大 {@code limit} 個の要素をロックを取って複製します。
+     *
+     * @param limit 複製する要素の最大数
+     * @return キューの先頭部分のコピー
+     */
+    public synchronized List<T> snapshot(int limit) {
+        List<T> items = new ArrayList<>(Math.min(limit, size()));
+        for (Node<T> node = head.next; node != null && items.size() < limit; node = node.next)
+            items.add(node.item);
+        return items;
     }
 
-    public int removeAll(long identifier) {
-        int count = 0;
-        for (int i = list.size() - 1; i >= 0; i--) {
-            if (list.get(i).getIdentifier() == identifier) {
-                list.remove(i);
-                count++;
-            }
-        }
-        return count;
+    public synchronized T get(int index) {
+        return nodeAt(index).item;
     }
 
-    public void clear() {
-        list.clear();
+    public synchronized T remove(int index) {
+        return unlink(nodeAt(index));
     }
 
-    public int shuffle(long identifier) {
-        List<Integer> iset = new ArrayList<>();
-        for (int i = 0; i < list.size(); i++) {
-            if (list.get(i).getIdentifier() == identifier)
-                iset.add(i);
-        }
-        for (int j = 0; j < iset.size(); j++) {
-            int first = iset.get(j);
-            int second = iset.get((int) (Math.random() * iset.size()));
-            T temp = list.get(first);
-            list.set(first, list.get(second));
-            list.set(second, temp);
-        }
-        return iset.size();
+    public synchronized int removeAll(long identifier) {
+        TreeSet<Node<T>> mine = owners.get(identifier);
+        if (mine == null)
+            return 0;
+        List<Node<T>> nodes = new ArrayList<>(mine);
+        for (int i = nodes.size() - 1; i >= 0; i--)
+            unlink(nodes.get(i));
+        return nodes.size();
+    }
+
+    public synchronized void clear() {
+        dirty.set(true);
+        root = null;
+        head.next = null;
+        tail = head;
+        owners.clear();
+        notifyChanged();
     }
 
-    public void skip(int number) {
-        if (number > 0) {
-            list.subList(0, number).clear();
+    public synchronized int shuffle(long identifier) {
+        TreeSet<Node<T>> mine = owners.get(identifier);
+        if (mine == null)
+            return 0;
+        dirty.set(true);
+        // 同じユーザーの要素同士で中身だけを入れ替えるため、木の構造は変わらない
+        List<Node<T>> nodes = new ArrayList<>(mine);
+        for (int j = 0; j < nodes.size(); j++) {
+            Node<T> first = nodes.get(j);
+            Node<T> second = nodes.get((int) (Math.random() * nodes.size()));
+            T temp = first.item;
+            first.item = second.item;
+            second.item = temp;
         }
+        notifyChanged();
+        return nodes.size();
+    }
+
+    public synchronized void skip(int number) {
+        if (number > size())
+            throw new IndexOutOfBoundsException("toIndex = " + number);
+        for (int i = 0; i < number; i++)
+            unlink(head.next);
     }
 
     /**
@@ -151,9 +269,327 @@ public class FairQueue<T extends Queueable> {
      * @param to   アイテムの新しい位置
      * @return the 移動したアイテム
      */
-    public T moveItem(int from, int to) {
-        T item = list.remove(from);
-        list.add(to, item);
+    public synchronized T moveItem(int from, int to) {
+        T item = remove(from);
+        if (to < 0 || to > size())
+            throw new IndexOutOfBoundsException("Index: " + to + ", Size: " + size());
+        insertBefore(to == size() ? null : nodeAt(to), item);
         return item;
     }
+
+    /**
+     * 最後にこのメソッドを呼び出してからキューの内容が変更されたかを返し、変更の記録を消去します。
+     * 変更されたキューだけを保存するために使用します。
+     *
+     * @return 内容が変更されたか
+     */
+    public boolean clearDirty() {
+        return dirty.getAndSet(false);
+    }
+
+    /**
+     * キューの内容が変更されたものとして記録します。保存に失敗した場合など、次の保存の対象に戻す時に使用します。
+     */
+    public void markDirty() {
+        dirty.set(true);
+    }
+
+    /**
+     * キューの内容が変更された時に呼び出す処理を設定します。
+     * 処理は変更したスレッドで、変更が終わった後に呼び出されるため、時間のかかる処理は別のスレッドで行ってください。
+     *
+     * @param listener 呼び出す処理。null の場合は呼び出さない
+     */
+    public void setChangeListener(Runnable listener) {
+        this.listener = listener;
+    }
+
+    private void notifyChanged() {
+        Runnable l = listener;
+        if (l != null)
+            l.run();
+    }
+
+    // 位置の検索
+
+    private Node<T> nodeAt(int index) {
+        if (index < 0 || index >= size())
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size());
+        Node<T> node = root;
+        while (true) {
+            int leftSize = size(node.left);
+            if (index < leftSize) {
+                node = node.left;
+            } else if (index == leftSize) {
+                return node;
+            } else {
+                index -= leftSize + 1;
+                node = node.right;
+            }
+        }
+    }
+
+    private int rank(Node<T> target) {
+        int rank = 0;
+        Node<T> node = root;
+        while (node != target) {
+            if (target.label < node.label) {
+                node = node.left;
+            } else {
+                rank += size(node.left) + 1;
+                node = node.right;
+            }
+        }
+        return rank + size(node.left);
+    }
+
+    /**
+     * {@code start} 番目以降で、同じユーザーの要素が二度目に現れる最初のノードを返します。
+     */
+    private Node<T> firstRepeatFrom(int start) {
+        Node<T> best = null;
+        Node<T> node = root;
+        while (node != null) {
+            int leftSize = size(node.left);
+            if (start <= leftSize) {
+                best = earlier(best, node.nextSame);
+                if (node.right != null)
+                    best = earlier(best, node.right.firstNextSame);
+                node = node.left;
+            } else {
+                start -= leftSize + 1;
+                node = node.right;
+            }
+        }
+        return best;
+    }
+
+    // 追加と削除
+
+    private void insertBefore(Node<T> successor, T item) {
+        dirty.set(true);
+        Node<T> predecessor = successor == null ? tail : successor.prev;
+        Node<T> node = new Node<>(item, item.getIdentifier(), random.nextInt());
+        node.label = labelBetween(predecessor, successor);
+
+        node.prev = predecessor;
+        node.next = successor;
+        predecessor.next = node;
+        if (successor == null)
+            tail = node;
+        else
+            successor.prev = node;
+
+        TreeSet<Node<T>> mine = owners.computeIfAbsent(node.owner, k -> new TreeSet<>(byLabel));
+        Node<T> lower = mine.lower(node);
+        node.nextSame = mine.higher(node);
+        mine.add(node);
+        root = insert(root, node);
+        if (lower != null) {
+            lower.nextSame = node;
+            root = refresh(root, lower);
+        }
+        notifyChanged();
+    }
+
+    private T unlink(Node<T> node) {
+        dirty.set(true);
+        TreeSet<Node<T>> mine = owners.get(node.owner);
+        Node<T> lower = mine.lower(node);
+        mine.remove(node);
+        if (mine.isEmpty())
+            owners.remove(node.owner);
+        root = delete(root, node);
+
+        node.prev.next = node.next;
+        if (node.next == null)
+            tail = node.prev;
+        else
+            node.next.prev = node.prev;
+
+        if (lower != null) {
+            lower.nextSame = node.nextSame;
+            root = refresh(root, lower);
+        }
+        notifyChanged();
+        return node.item;
+    }
+
+    // 順序ラベルの管理
+
+    private long labelBetween(Node<T> predecessor, Node<T> successor) {
+        long low = predecessor.label;
+        long high = successor == null ? LABEL_LIMIT : successor.label;
+        long gap = high - low;
+        if (gap > 1)
+            return successor == null ? low + Math.min(gap / 2, APPEND_GAP) : low + gap / 2;
+        return relabelAfter(predecessor);
+    }
+
+    /**
+     * {@code predecessor} を含む範囲のラベルを振り直し、その直後に空けたラベルを返します。
+     * 範囲は要素が十分にまばらになるまで2倍ずつ広げるため、償却 O(log n) で済みます。
+     */
+    private long relabelAfter(Node<T> predecessor) {
+        for (int bits = 1; bits < 63; bits++) {
+            long width = 1L << bits;
+            long low = predecessor.label & -width;
+            long high = low + width;
+            if (high > LABEL_LIMIT)
+                break;
+
+            Node<T> first = predecessor;
+            int count = 1;
+            while (first.prev != null && first.prev.label >= low) {
+                first = first.prev;
+                count++;
+            }
+            for (Node<T> n = predecessor.next; n != null && n.label < high; n = n.next)
+                count++;
+            if (count + 1 >= Math.pow(RELABEL_DENSITY, bits))
+                continue;
+
+            long step = width / (count + 1);
+            long label = low;
+            long reserved = -1;
+            for (Node<T> n = first; n != null && count > 0; n = n.next, count--) {
+                n.label = label;
+                label += step;
+                if (n == predecessor) {
+                    reserved = label;
+                    label += step;
+                }
+            }
+            return reserved;
+        }
+        throw new IllegalStateException("キューの順序ラベルを割り当てられませんでした");
+    }
+
+    // ツリープの操作
+
+    private Node<T> update(Node<T> node) {
+        node.size = 1 + size(node.left) + size(node.right);
+        Node<T> first = node.nextSame;
+        if (node.left != null)
+            first = earlier(first, node.left.firstNextSame);
+        if (node.right != null)
+            first = earlier(first, node.right.firstNextSame);
+        node.firstNextSame = first;
+        return node;
+    }
+
+    private Node<T> rotateRight(Node<T> node) {
+        Node<T> left = node.left;
+        node.left = left.right;
+        left.right = update(node);
+        return update(left);
+    }
+
+    private Node<T> rotateLeft(Node<T> node) {
+        Node<T> right = node.right;
+        node.right = right.left;
+        right.left = update(node);
+        return update(right);
+    }
+
+    private Node<T> insert(Node<T> node, Node<T> added) {
+        if (node == null)
+            return update(added);
+        if (added.label < node.label) {
+            node.left = insert(node.left, added);
+            if (node.left.priority > node.priority)
+                return rotateRight(node);
+        } else {
+            node.right = insert(node.right, added);
+            if (node.right.priority > node.priority)
+                return rotateLeft(node);
+        }
+        return update(node);
+    }
+
+    private Node<T> delete(Node<T> node, Node<T> removed) {
+        if (node == removed)
+            return merge(node.left, node.right);
+        if (removed.label < node.label)
+            node.left = delete(node.left, removed);
+        else
+            node.right = delete(node.right, removed);
+        return update(node);
+    }
+
+    private Node<T> merge(Node<T> left, Node<T> right) {
+        if (left == null)
+            return right;
+        if (right == null)
+            return left;
+        if (left.priority > right.priority) {
+            left.right = merge(left.right, right);
+            return update(left);
+        }
+        right.left = merge(left, right.left);
+        return update(right);
+    }
+
+    /**
+     * {@code target} までの経路上の集約値を再計算します。
+     */
+    private Node<T> refresh(Node<T> node, Node<T> target) {
+        if (node != target) {
+            if (target.label < node.label)
+                node.left = refresh(node.left, target);
+            else
+                node.right = refresh(node.right, target);
+        }
+        return update(node);
+    }
+
+    private static final class Node<T> {
+        private final long owner;
+        private final int priority;
+        private T item;
+        private long label;
+        private int size;
+        private Node<T> left, right;
+        private Node<T> prev, next;
+        private Node<T> nextSame, firstNextSame;
+
+        private Node(T item, long owner, int priority) {
+            this.item = item;
+            this.owner = owner;
+            this.priority = priority;
+        }
+    }
+
+    private class ListView extends AbstractList<T> {
+        @Override
+        public T get(int index) {
+            return FairQueue.this.get(index);
+        }
+
+        @Override
+        public int size() {
+            return FairQueue.this.size();
+        }
+
+        @Override
+        public Iterator<T> iterator() {
+            return new Iterator<T>() {
+                private Node<T> next = head.next;
+
+                @Override
+                public boolean hasNext() {
+                    return next != null;
+                }
+
+                @Override
+                public T next() {
+                    if (next == null)
+                        throw new NoSuchElementException();
+                    T item = next.item;
+                    next = next.next;
+                    return item;
+                }
+            };
+        }
+    }
 }
@@ -0,0 +1,329 @@
+/*
+ *  Copyright 2024 Cosgy Dev (info@cosgy.dev).
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.jagrosh.jmusicbot.settings;
+
+import dev.cosgy.jmusicbot.settings.RepeatMode;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.reflect.Field;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * ギルドごとの設定をバイナリ形式で保存したファイルです。
+ * <p>
+ * ファイルはヘッダー、ギルドIDの昇順に並んだ索引、各ギルドのレコードの順に並びます。
+ * 起動時にはファイルをメモリマップするだけで、各ギルドのレコードは初めて参照された時に
+ * 索引を二分探索して読み込みます。
+ * 書き込み時は一時ファイルに書き込んでから置き換え、置き換えた後のファイルをメモリマップし直します。
+ * <pre>
+ * ヘッダー: マジック(int) バージョン(int) ギルド数(int)
+ * 索引:     ギルドID(long) レコードの位置(int) レコードの長さ(int) をギルド数分
+ * レコード: テキストチャンネル(long) ボイスチャンネル(long) DJロール(long) 音量(int) 通知(int)
+ *           スキップ率(double) リピート(byte) フラグ(byte) 既定の再生リスト(文字列) 接頭辞(文字列)
+ * 文字列:   UTF-8のバイト数(int、nullの場合は-1) バイト列
+ * </pre>
+ *
+ * @author Cosgy Dev
+ */
+final class BinarySettingsFile {
+    private static final int MAGIC = 0x4A4D5342; // "JMSB"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 12;
+    private static final int INDEX_ENTRY_SIZE = 16;
+
+    private static final int FLAG_VC_STATUS = 1;
+    private static final int FLAG_FORCE_TO_END_QUE = 1 << 1;
+    private static final int FLAG_BITRATE_WARNING = 1 << 2;
+
+    private final Path path;
+    // ファイルを置き換えている間と、置き換えた後にマップし直せなかった場合は null
+    private ByteBuffer buffer;
+
+    private BinarySettingsFile(Path path, ByteBuffer buffer) {
+        this.path = path;
+        this.buffer = buffer;
+    }
+
+    /**
+     * ファイルをメモリマップして開きます。
+     */
+    static BinarySettingsFile open(Path path) throws IOException {
+        return new BinarySettingsFile(path, map(path));
+    }
+
+    private static ByteBuffer map(Path path) throws IOException {
+        ByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        if (buffer.limit() < HEADER_SIZE || buffer.getInt(0) != MAGIC) {
+            unmap(buffer);
+            throw new IOException("設定ファイルの形式が正しくありません: " + path);
+        }
+        if (buffer.getInt(4) != VERSION) {
+            int version = buffer.getInt(4);
+            unmap(buffer);
+            throw new IOException("対応していない設定ファイルのバージョンです: " + version);
+        }
+        return buffer;
+    }
+
+    /**
+     * メモリマップを解放します。
+     * Windows ではマップされたままのファイルを置き換えられないため、置き換える前に解放します。
+     * 解放したバッファには二度とアクセスしてはいけません。
+     */
+    private static void unmap(ByteBuffer buffer) {
+        if (!(buffer instanceof MappedByteBuffer))
+            return;
+        try {
+            Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            Field field = unsafeClass.getDeclaredField("theUnsafe");
+            field.setAccessible(true);
+            unsafeClass.getMethod("invokeCleaner", ByteBuffer.class).invoke(field.get(null), buffer);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            // 解放できない場合は GC に任せる
+        }
+    }
+
+    /**
+     * @return 現在のファイルの内容。前回の置き換えの後にマップし直せなかった場合は、ここでマップし直す
+     */
+    private ByteBuffer buffer() throws IOException {
+        if (buffer == null)
+            buffer = Files.exists(path) ? map(path) : ByteBuffer.wrap(build(new long[0], new byte[0][]));
+        return buffer;
+    }
+
+    /**
+     * 空のファイルとして扱います。最初の書き込みでファイルが作成されます。
+     */
+    static BinarySettingsFile empty(Path path) {
+        return new BinarySettingsFile(path, ByteBuffer.wrap(build(new long[0], new byte[0][])));
+    }
+
+    private static int count(ByteBuffer buffer) {
+        return buffer.getInt(8);
+    }
+
+    private static long guildIdAt(ByteBuffer buffer, int index) {
+        return buffer.getLong(HEADER_SIZE + index * INDEX_ENTRY_SIZE);
+    }
+
+    private static int find(ByteBuffer buffer, long guildId) {
+        int low = 0;
+        int high = count(buffer) - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            long id = guildIdAt(buffer, mid);
+            if (id < guildId)
+                low = mid + 1;
+            else if (id > guildId)
+                high = mid - 1;
+            else
+                return mid;
+        }
+        return -1;
+    }
+
+    private static byte[] record(ByteBuffer buffer, int index) {
+        int entry = HEADER_SIZE + index * INDEX_ENTRY_SIZE;
+        int offset = buffer.getInt(entry + 8);
+        int length = buffer.getInt(entry + 12);
+        byte[] bytes = new byte[length];
+        for (int i = 0; i < length; i++)
+            bytes[i] = buffer.get(offset + i);
+        return bytes;
+    }
+
+    synchronized int size() {
+        try {
+            return count(buffer());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * ギルドの設定をファイルから読み込みます。
+     *
+     * @return 読み込んだ設定。ファイルに無い場合は null
+     */
+    Settings read(SettingsManager manager, long guildId) {
+        byte[] bytes;
+        // 置き換え中に解放されたバッファを読まないよう、ロックを取って読み取る
+        synchronized (this) {
+            ByteBuffer current;
+            try {
+                current = buffer();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            int index = find(current, guildId);
+            if (index < 0)
+                return null;
+            bytes = record(current, index);
+        }
+        return decode(manager, guildId, ByteBuffer.wrap(bytes));
+    }
+
+    /**
+     * 読み込み済みの設定と、まだ読み込まれていないギルドのレコードを合わせてファイルに書き込みます。
+     * まだ読み込まれていないギルドのレコードはデコードせずにそのまま書き写します。
+     * 一時ファイルに書き込んだ後、元のファイルのメモリマップを解放してから一時ファイルで置き換え、
+     * 置き換えたファイルをメモリマップし直します。置き換えに失敗した場合は元のファイルをマップし直します。
+     *
+     * @param temp 一時ファイル
+     */
+    synchronized void write(SettingsStore store, Path temp) throws IOException {
+        ByteBuffer current = buffer();
+        List<Settings> loaded = new ArrayList<>(store.size());
+        store.forEach(loaded::add);
+        int fileCount = count(current);
+        long[] ids = new long[fileCount + loaded.size()];
+        byte[][] records = new byte[ids.length][];
+        int n = 0;
+        for (Settings s : loaded) {
+            ids[n] = s.getGuildId();
+            records[n] = encode(s);
+            n++;
+        }
+        long[] loadedIds = Arrays.copyOf(ids, n);
+        Arrays.sort(loadedIds);
+        for (int i = 0; i < fileCount; i++) {
+            long id = guildIdAt(current, i);
+            if (Arrays.binarySearch(loadedIds, id) >= 0)
+                continue;
+            ids[n] = id;
+            records[n] = record(current, i);
+            n++;
+        }
+
+        // 索引はギルドIDの昇順に並べる
+        Integer[] order = new Integer[n];
+        for (int i = 0; i < order.length; i++)
+            order[i] = i;
+        Arrays.sort(order, (a, b) -> Long.compare(ids[a], ids[b]));
+        long[] sortedIds = new long[order.length];
+        byte[][] sortedRecords = new byte[order.length][];
+        for (int i = 0; i < order.length; i++) {
+            sortedIds[i] = ids[order[i]];
+            sortedRecords[i] = records[order[i]];
+        }
+
+        Files.write(temp, build(sortedIds, sortedRecords));
+
+        buffer = null;
+        unmap(current);
+        try {
+            SettingsManager.replaceFile(temp, path);
+        } finally {
+            buffer();
+        }
+    }
+
+    Path getPath() {
+        return path;
+    }
+
+    private static byte[] build(long[] ids, byte[][] records) {
+        int offset = HEADER_SIZE + ids.length * INDEX_ENTRY_SIZE;
+        int size = offset;
+        for (byte[] record : records)
+            size += record.length;
+        ByteBuffer out = ByteBuffer.allocate(size);
+        out.putInt(MAGIC).putInt(VERSION).putInt(ids.length);
+        for (int i = 0; i < ids.length; i++) {
+            out.putLong(ids[i]).putInt(offset).putInt(records[i].length);
+            offset += records[i].length;
+        }
+        for (byte[] record : records)
+            out.put(record);
+        return out.array();
+    }
+
+    static byte[] encode(Settings s) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeLong(s.textId);
+            out.writeLong(s.voiceId);
+            out.writeLong(s.roleId);
+            out.writeInt(s.getVolume());
+            out.writeInt(s.getAnnounce());
+            out.writeDouble(s.getSkipRatio());
+            out.writeByte(s.getRepeatMode().ordinal());
+            out.writeByte((s.getVCStatus() ? FLAG_VC_STATUS : 0)
+                    | (s.isForceToEndQue() ? FLAG_FORCE_TO_END_QUE : 0)
+                    | (s.isBitrateWarningReaded() ? FLAG_BITRATE_WARNING : 0));
+            writeString(out, s.getDefaultPlaylist());
+            writeString(out, s.getPrefix());
+        } catch (IOException e) {
+            // ByteArrayOutputStream への書き込みでは発生しない
+            throw new IllegalStateException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    static Settings decode(SettingsManager manager, long guildId, ByteBuffer in) {
+        long textId = in.getLong();
+        long voiceId = in.getLong();
+        long roleId = in.getLong();
+        int volume = in.getInt();
+        int announce = in.getInt();
+        double skipRatio = in.getDouble();
+        int repeat = in.get();
+        int flags = in.get();
+        String defaultPlaylist = readString(in);
+        String prefix = readString(in);
+        RepeatMode[] modes = RepeatMode.values();
+        return new Settings(manager, guildId, textId, voiceId, roleId, volume, defaultPlaylist,
+                repeat >= 0 && repeat < modes.length ? modes[repeat] : RepeatMode.OFF, prefix,
+                (flags & FLAG_BITRATE_WARNING) != 0, announce, skipRatio,
+                (flags & FLAG_VC_STATUS) != 0, (flags & FLAG_FORCE_TO_END_QUE) != 0);
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(ByteBuffer in) {
+        int length = in.getInt();
+        if (length < 0)
+            return null;
+        byte[] bytes = new byte[length];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
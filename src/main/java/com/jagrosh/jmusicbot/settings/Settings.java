@@ -25,27 +25,38 @@ import net.dv8tion.jda.api.entities.channel.middleman.AudioChannel;
 
 import java.util.Collection;
 import java.util.Collections;
+import java.util.function.Consumer;
 
 /**
+ * ギルドごとの設定です。
+ * <p>
+ * 設定を変更していないギルドには共有の読み取り専用の初期設定が渡されます。変更する場合は
+ * {@link SettingsManager#getSettingsForUpdate(Guild)} で取得した設定を使用し、最初に変更された時点で
+ * {@link SettingsManager} に登録されます。値は別スレッドから変更されることがあるため volatile にしています。
+ *
  * @author John Grosh <john.a.grosh@gmail.com>
  */
 public class Settings implements GuildSettingsProvider {
     private final SettingsManager manager;
-    protected long textId;
-    protected long voiceId;
-    protected long roleId;
-    private int volume, announce;
-    private String defaultPlaylist;
-    private RepeatMode repeatMode;
-    private String prefix;
-    private boolean bitrateWarningReaded;
-    private double skipRatio;
-    private boolean vcStatus;
-    private boolean ForceToEndQue;
-
-
-    public Settings(SettingsManager manager, String textId, String voiceId, String roleId, int volume, String defaultPlaylist, RepeatMode repeatMode, String prefix, boolean bitrateWarningReaded, int announce, double skipRatio, boolean vcStatus, boolean forceToEndQue) {
+    private final long guildId;
+    protected volatile long textId;
+    protected volatile long voiceId;
+    protected volatile long roleId;
+    private volatile int volume, announce;
+    private volatile String defaultPlaylist;
+    private volatile RepeatMode repeatMode;
+    private volatile String prefix;
+    private volatile boolean bitrateWarningReaded;
+    private volatile double skipRatio;
+    private volatile boolean vcStatus;
+    private volatile boolean ForceToEndQue;
+    // 共有の初期設定の場合は true
+    private boolean readOnly;
+
+
+    public Settings(SettingsManager manager, long guildId, String textId, String voiceId, String roleId, int volume, String defaultPlaylist, RepeatMode repeatMode, String prefix, boolean bitrateWarningReaded, int announce, double skipRatio, boolean vcStatus, boolean forceToEndQue) {
         this.manager = manager;
+        this.guildId = guildId;
         try {
             this.textId = Long.parseLong(textId);
         } catch (NumberFormatException e) {
@@ -72,8 +83,9 @@ public class Settings implements GuildSettingsProvider {
         this.ForceToEndQue = forceToEndQue;
     }
 
-    public Settings(SettingsManager manager, long textId, long voiceId, long roleId, int volume, String defaultPlaylist, RepeatMode repeatMode, String prefix, boolean bitrateWarningReaded, int announce, double skipRatio, boolean vcStatus, boolean forceToEndQue) {
+    public Settings(SettingsManager manager, long guildId, long textId, long voiceId, long roleId, int volume, String defaultPlaylist, RepeatMode repeatMode, String prefix, boolean bitrateWarningReaded, int announce, double skipRatio, boolean vcStatus, boolean forceToEndQue) {
         this.manager = manager;
+        this.guildId = guildId;
         this.textId = textId;
         this.voiceId = voiceId;
         this.roleId = roleId;
@@ -88,7 +100,42 @@ public class Settings implements GuildSettingsProvider {
         this.ForceToEndQue = forceToEndQue;
     }
 
+    /**
+     * 共有の初期設定の値を複製して、まだ保存されていないギルドの設定を作ります。
+     */
+    Settings(long guildId, Settings defaults) {
+        this(defaults.manager, guildId, defaults.textId, defaults.voiceId, defaults.roleId, defaults.volume,
+                defaults.defaultPlaylist, defaults.repeatMode, defaults.prefix, defaults.bitrateWarningReaded,
+                defaults.announce, defaults.skipRatio, defaults.vcStatus, defaults.ForceToEndQue);
+    }
+
+    /**
+     * この設定を変更できないようにします。共有の初期設定の作成時に使用します。
+     */
+    Settings readOnly() {
+        readOnly = true;
+        return this;
+    }
+
+    private void checkWritable() {
+        if (readOnly)
+            throw new UnsupportedOperationException("共有の初期設定は変更できません。SettingsManager#getSettingsForUpdate で取得した設定を変更してください。");
+    }
+
+    /**
+     * 変更をこの設定に適用し、ギルドの設定として登録して保存を予約します。
+     */
+    private void update(Consumer<Settings> change) {
+        checkWritable();
+        change.accept(this);
+        manager.update(this, change);
+    }
+
     // Getters
+    public long getGuildId() {
+        return guildId;
+    }
+
     public TextChannel getTextChannel(Guild guild) {
         return guild == null ? null : guild.getTextChannelById(textId);
     }
@@ -106,8 +153,7 @@ public class Settings implements GuildSettingsProvider {
     }
 
     public void setVolume(int volume) {
-        this.volume = volume;
-        this.manager.writeSettings();
+        update(s -> s.volume = volume);
     }
 
     public String getDefaultPlaylist() {
@@ -115,8 +161,7 @@ public class Settings implements GuildSettingsProvider {
     }
 
     public void setDefaultPlaylist(String defaultPlaylist) {
-        this.defaultPlaylist = defaultPlaylist;
-        this.manager.writeSettings();
+        update(s -> s.defaultPlaylist = defaultPlaylist);
     }
 
     public RepeatMode getRepeatMode() {
@@ -124,8 +169,7 @@ public class Settings implements GuildSettingsProvider {
     }
 
     public void setRepeatMode(RepeatMode mode) {
-        this.repeatMode = mode;
-        this.manager.writeSettings();
+        update(s -> s.repeatMode = mode);
     }
 
     public String getPrefix() {
@@ -133,8 +177,7 @@ public class Settings implements GuildSettingsProvider {
     }
 
     public void setPrefix(String prefix) {
-        this.prefix = prefix;
-        this.manager.writeSettings();
+        update(s -> s.prefix = prefix);
     }
 
     public double getSkipRatio() {
@@ -142,8 +185,7 @@ public class Settings implements GuildSettingsProvider {
     }
 
     public void setSkipRatio(double skipRatio) {
-        this.skipRatio = skipRatio;
-        this.manager.writeSettings();
+        update(s -> s.skipRatio = skipRatio);
     }
 
     public int getAnnounce() {
@@ -151,8 +193,7 @@ public class Settings implements GuildSettingsProvider {
     }
 
     public void setAnnounce(int announce) {
-        this.announce = announce;
-        this.manager.writeSettings();
+        update(s -> s.announce = announce);
     }
 
     public boolean getVCStatus() {
@@ -160,8 +201,7 @@ public class Settings implements GuildSettingsProvider {
     }
 
     public void setVCStatus(boolean vcStatus) {
-        this.vcStatus = vcStatus;
-        this.manager.writeSettings();
+        update(s -> s.vcStatus = vcStatus);
     }
 
     public boolean isBitrateWarningReaded() {
@@ -169,6 +209,7 @@ public class Settings implements GuildSettingsProvider {
     }
 
     public void setBitrateWarning(boolean readied) {
+        checkWritable();
         this.bitrateWarningReaded = readied;
     }
 
@@ -179,23 +220,19 @@ public class Settings implements GuildSettingsProvider {
 
     // Setters
     public void setTextChannel(TextChannel tc) {
-        this.textId = tc == null ? 0 : tc.getIdLong();
-        this.manager.writeSettings();
+        update(s -> s.textId = tc == null ? 0 : tc.getIdLong());
     }
 
     public void setVoiceChannel(AudioChannel vc) {
-        this.voiceId = vc == null ? 0 : vc.getIdLong();
-        this.manager.writeSettings();
+        update(s -> s.voiceId = vc == null ? 0 : vc.getIdLong());
     }
 
     public void setDJRole(Role role) {
-        this.roleId = role == null ? 0 : role.getIdLong();
-        this.manager.writeSettings();
+        update(s -> s.roleId = role == null ? 0 : role.getIdLong());
     }
 
     public void setForceToEndQue(boolean forceToEndQue) {
-        this.ForceToEndQue = forceToEndQue;
-        this.manager.writeSettings();
+        update(s -> s.ForceToEndQue = forceToEndQue);
     }
 
     public boolean isForceToEndQue() {
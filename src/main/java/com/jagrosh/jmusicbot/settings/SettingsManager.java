@@ -24,21 +24,134 @@ import org.json.JSONObject;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
 import java.nio.file.Files;
 import java.nio.file.NoSuchFileException;
-import java.util.HashMap;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
 
 /**
+ * ギルドごとの設定を管理します。
+ * <p>
+ * 設定の変更はすぐにファイルへ書き込まず、{@code writeDelay} の間に行われた変更をまとめて
+ * 専用のスレッドから一時ファイルへの書き込みとリネームで保存します。
+ * <p>
+ * 設定を変更したことのないギルドには、すべてのギルドで共有する読み取り専用の初期設定を返します。
+ * 設定を変更する場合は {@link #getSettingsForUpdate(Guild)} で初期設定を複製した設定を取得し、
+ * 最初に変更された時点で初めて登録します。そのため参加しているだけのギルドは保持も保存もされません。
+ *
  * @author John Grosh (john.a.grosh@gmail.com)
  */
 public class SettingsManager implements GuildSettingsManager {
     private final static double SKIP_RATIO = .55;
-    private final HashMap<Long, Settings> settings;
+    private final static long DEFAULT_WRITE_DELAY = 5000;
+    private final static String JSON_FILE = "serversettings.json";
+    private final static String BINARY_FILE = "serversettings.bin";
+    private final SettingsStore settings = new SettingsStore();
+    // 設定の無いギルドに返す共有の初期設定。変更はできない
+    private final Settings defaults = new Settings(this, 0, 0, 0, 0, 10, null, RepeatMode.OFF, null, false, 0, SKIP_RATIO, true, false).readOnly();
+    private final AtomicLong generation = new AtomicLong();
+    // バイナリ形式を使用しない場合は null
+    private final BinarySettingsFile binary;
+    private final long writeDelay;
+    private final ScheduledExecutorService writer;
+    private final Object writeLock = new Object();
+    private final AtomicBoolean dirty = new AtomicBoolean();
+    private final AtomicBoolean scheduled = new AtomicBoolean();
+    private final LongAdder writeRequests = new LongAdder();
+    private final AtomicLong writeCount = new AtomicLong();
+    private final AtomicLong writeNanos = new AtomicLong();
+    private final AtomicLong maxWriteNanos = new AtomicLong();
 
     public SettingsManager() {
-        this.settings = new HashMap<>();
+        this(DEFAULT_WRITE_DELAY);
+    }
+
+    public SettingsManager(long writeDelay) {
+        this(writeDelay, false);
+    }
+
+    /**
+     * @param writeDelay   設定の変更からファイルに書き込むまでの待ち時間(ミリ秒)
+     * @param binaryFormat serversettings.json の代わりにバイナリ形式の serversettings.bin を使用するか
+     */
+    public SettingsManager(long writeDelay, boolean binaryFormat) {
+        this.writeDelay = Math.max(0, writeDelay);
+        this.writer = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "SettingsWriter");
+            thread.setDaemon(true);
+            return thread;
+        });
+        if (!binaryFormat) {
+            this.binary = null;
+            settings.putAll(readJson(true));
+            return;
+        }
+
+        Path path = OtherUtil.getPath(BINARY_FILE);
+        BinarySettingsFile file = null;
+        if (Files.exists(path)) {
+            try {
+                file = BinarySettingsFile.open(path);
+                LoggerFactory.getLogger("Settings").info(BINARY_FILE + " を開きました。(" + file.size() + "サーバー)");
+            } catch (IOException e) {
+                moveAside(path, e);
+            }
+        }
+        this.binary = file != null ? file : BinarySettingsFile.empty(path);
+        if (file == null)
+            migrateFromJson();
+    }
+
+    /**
+     * 読み込めなかった serversettings.bin を上書きしないよう、別の名前に変更して残します。
+     * serversettings.json は古い内容の可能性があるため、元のファイルから手動で復旧できるようにします。
+     */
+    private static void moveAside(Path path, IOException cause) {
+        Path corrupt = path.resolveSibling(path.getFileName() + ".corrupt-" + System.currentTimeMillis());
+        try {
+            Files.move(path, corrupt);
+            LoggerFactory.getLogger("Settings").error(BINARY_FILE + " を読み込めませんでした。ファイルを " + corrupt.getFileName()
+                    + " に移動し、" + JSON_FILE + " から読み込み直します。" + JSON_FILE + " の内容は古い可能性があります。", cause);
+        } catch (IOException e) {
+            // 元のファイルを上書きしてしまうため、起動を中止する
+            throw new IllegalStateException(BINARY_FILE + " を読み込めず、" + corrupt.getFileName() + " への移動にも失敗しました。", e);
+        }
+    }
+
+    /**
+     * serversettings.json の内容をバイナリ形式のファイルに移行します。
+     * serversettings.json はそのまま残します。
+     */
+    private void migrateFromJson() {
+        List<Settings> loaded = readJson(false);
+        if (loaded.isEmpty())
+            return;
+        settings.putAll(loaded);
+        dirty.set(true);
+        flush();
+        LoggerFactory.getLogger("Settings").info(JSON_FILE + " の" + loaded.size() + "サーバー分の設定を " + BINARY_FILE + " に移行しました。");
+    }
+
+    /**
+     * serversettings.json を読み込みます。
+     *
+     * @param createIfMissing ファイルが無い場合に空のファイルを作成するか
+     */
+    private List<Settings> readJson(boolean createIfMissing) {
+        List<Settings> loaded = new ArrayList<>();
         try {
-            JSONObject loadedSettings = new JSONObject(new String(Files.readAllBytes(OtherUtil.getPath("serversettings.json"))));
+            JSONObject loadedSettings = new JSONObject(new String(Files.readAllBytes(OtherUtil.getPath(JSON_FILE))));
             loadedSettings.keySet().forEach((id) -> {
                 JSONObject o = loadedSettings.getJSONObject(id);
 
@@ -55,7 +168,7 @@ public class SettingsManager implements GuildSettingsManager {
                     }
                 } catch (JSONException ignored) { /* ignored */ }
 
-                settings.put(Long.parseLong(id), new Settings(this,
+                loaded.add(new Settings(this, Long.parseLong(id),
                         o.has("text_channel_id") ? o.getString("text_channel_id") : null,
                         o.has("voice_channel_id") ? o.getString("voice_channel_id") : null,
                         o.has("dj_role_id") ? o.getString("dj_role_id") : null,
@@ -70,18 +183,20 @@ public class SettingsManager implements GuildSettingsManager {
                         o.has("force_to_end_que") && o.getBoolean("force_to_end_que")));
             });
         } catch (NoSuchFileException e) {
+            if (!createIfMissing)
+                return loaded;
             // ignore, it just means no settings have been saved yet
             // create an empty json file
             try {
-                LoggerFactory.getLogger("Settings").info("serversettings.json を" + OtherUtil.getPath("serversettings.json").toAbsolutePath() + "に作成しました。");
-                Files.write(OtherUtil.getPath("serversettings.json"), new JSONObject().toString(4).getBytes());
+                LoggerFactory.getLogger("Settings").info("serversettings.json を" + OtherUtil.getPath(JSON_FILE).toAbsolutePath() + "に作成しました。");
+                Files.write(OtherUtil.getPath(JSON_FILE), new JSONObject().toString(4).getBytes());
             } catch(IOException ex) {
                 LoggerFactory.getLogger("Settings").warn("サーバー設定ファイルの作成に失敗しました:"+ex);
             }
-            return;
         } catch(IOException | JSONException e) {
             LoggerFactory.getLogger("Settings").warn("サーバー設定ファイルの読み込みに失敗しました: "+e);
         }
+        return loaded;
     }
 
     /**
@@ -95,19 +210,176 @@ public class SettingsManager implements GuildSettingsManager {
         return getSettings(guild.getIdLong());
     }
 
+    /**
+     * 設定を変更したことのないギルドの場合は、共有の読み取り専用の初期設定を返します。
+     */
     public Settings getSettings(long guildId) {
-        return settings.computeIfAbsent(guildId, id -> createDefaultSettings());
+        Settings s = settings.get(guildId);
+        if (s == null && binary != null)
+            s = loadFromFile(guildId);
+        return s != null ? s : defaults;
+    }
+
+    /**
+     * 設定を変更するために、ギルドの設定を取得します。
+     * 設定を変更したことのないギルドの場合は初期設定を複製した設定を返し、最初に変更された時点で登録します。
+     *
+     * @param guild 設定を変更するギルド
+     * @return 変更できる設定
+     */
+    public Settings getSettingsForUpdate(Guild guild) {
+        return getSettingsForUpdate(guild.getIdLong());
+    }
+
+    public Settings getSettingsForUpdate(long guildId) {
+        Settings s = getSettings(guildId);
+        return s != defaults ? s : new Settings(guildId, defaults);
+    }
+
+    /**
+     * バイナリ形式のファイルからギルドの設定を読み込んで登録します。
+     */
+    private Settings loadFromFile(long guildId) {
+        Settings loaded = binary.read(this, guildId);
+        if (loaded == null)
+            return null;
+        Settings existing = settings.putIfAbsent(loaded);
+        return existing != null ? existing : loaded;
+    }
+
+    /**
+     * 新しいギルドの設定が登録されるたびに増える値です。
+     * 取得した設定を保持している場合、この値が変わっていなければ取得し直す必要はありません。
+     *
+     * @return 現在の世代
+     */
+    public long getGeneration() {
+        return generation.get();
     }
 
-    private Settings createDefaultSettings() {
-        return new Settings(this, 0, 0, 0, 10, null, RepeatMode.OFF, null, false, 0, SKIP_RATIO, true, false);
+    /**
+     * 変更された設定を登録して保存を予約します。
+     * 別の設定が既に登録されていた場合は、その設定にも同じ変更を適用します。
+     */
+    void update(Settings changed, Consumer<Settings> change) {
+        Settings existing = settings.get(changed.getGuildId());
+        if (existing == null) {
+            existing = settings.putIfAbsent(changed);
+            if (existing == null)
+                generation.incrementAndGet();
+        }
+        if (existing != null && existing != changed)
+            change.accept(existing);
+        writeSettings();
     }
 
+    /**
+     * 設定が変更されたことを記録し、書き込みを予約します。
+     * 既に書き込みが予約されている場合は、その書き込みにまとめられます。
+     */
     protected void writeSettings() {
+        writeRequests.increment();
+        dirty.set(true);
+        if (!scheduled.compareAndSet(false, true))
+            return;
+        try {
+            writer.schedule(() -> {
+                scheduled.set(false);
+                flush();
+            }, writeDelay, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            // 終了処理の後に変更された場合はその場で書き込む
+            scheduled.set(false);
+            flush();
+        }
+    }
+
+    /**
+     * 書き込まれていない変更があれば、すぐにファイルへ書き込みます。
+     */
+    public void flush() {
+        synchronized (writeLock) {
+            if (!dirty.getAndSet(false))
+                return;
+            long start = System.nanoTime();
+            Path path = binary != null ? binary.getPath() : OtherUtil.getPath(JSON_FILE);
+            Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+            try {
+                if (binary != null) {
+                    binary.write(settings, temp);
+                } else {
+                    Files.write(temp, toJson().toString(4).getBytes());
+                    replaceFile(temp, path);
+                }
+            } catch (IOException ex) {
+                // 次の変更か終了時にもう一度書き込む
+                dirty.set(true);
+                LoggerFactory.getLogger("Settings").warn("ファイルへの書き込みに失敗しました： " + ex);
+                return;
+            }
+            long elapsed = System.nanoTime() - start;
+            writeCount.incrementAndGet();
+            writeNanos.addAndGet(elapsed);
+            maxWriteNanos.accumulateAndGet(elapsed, Math::max);
+        }
+    }
+
+    /**
+     * 一時ファイルでファイルを置き換えます。可能な場合はアトミックに置き換えます。
+     */
+    static void replaceFile(Path temp, Path path) throws IOException {
+        try {
+            Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * 書き込み用のスレッドを停止し、書き込まれていない変更を保存します。
+     */
+    public void shutdown() {
+        writer.shutdown();
+        try {
+            writer.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        flush();
+    }
+
+    /**
+     * @return 設定の変更によって書き込みが要求された回数
+     */
+    public long getWriteRequestCount() {
+        return writeRequests.sum();
+    }
+
+    /**
+     * @return 実際にファイルへ書き込んだ回数
+     */
+    public long getWriteCount() {
+        return writeCount.get();
+    }
+
+    /**
+     * @return 書き込みにかかった時間の合計(ナノ秒)
+     */
+    public long getWriteNanos() {
+        return writeNanos.get();
+    }
+
+    /**
+     * @return 書き込み1回にかかった時間の最大値(ナノ秒)
+     */
+    public long getMaxWriteNanos() {
+        return maxWriteNanos.get();
+    }
+
+    private JSONObject toJson() {
         var obj = new JSONObject();
-        for (Long key : settings.keySet()) {
+        settings.forEach(s -> {
             var o = new JSONObject();
-            Settings s = settings.get(key);
             if (s.textId != 0)
                 o.put("text_channel_id", Long.toString(s.textId));
             if (s.voiceId != 0)
@@ -131,12 +403,8 @@ public class SettingsManager implements GuildSettingsManager {
             if(s.isForceToEndQue())
                 o.put("force_to_end_que", s.isForceToEndQue());
 
-            obj.put(Long.toString(key), o);
-        }
-        try {
-            Files.write(OtherUtil.getPath("serversettings.json"), obj.toString(4).getBytes());
-        } catch (IOException ex) {
-            LoggerFactory.getLogger("Settings").warn("ファイルへの書き込みに失敗しました： " + ex);
-        }
+            obj.put(Long.toString(s.getGuildId()), o);
+        });
+        return obj;
     }
 }
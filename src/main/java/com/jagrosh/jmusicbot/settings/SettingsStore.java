@@ -0,0 +1,161 @@
+/*
+ *  Copyright 2024 Cosgy Dev (info@cosgy.dev).
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.jagrosh.jmusicbot.settings;
+
+import java.util.Collection;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Consumer;
+
+/**
+ * ギルドIDをキーにして {@link Settings} を保持するハッシュテーブルです。
+ * <p>
+ * キーは long のまま開番地法のテーブルに格納するため、検索時にボクシングを行いません。
+ * 読み取りはロックを取らずに volatile なテーブルを参照し、追加時のみロックを取ります。
+ * 追加は使用率が1/2を超えない限りテーブルにそのまま書き込み、超える場合だけ2倍の大きさのテーブルに複製して差し替えます。
+ * スロットには値を書き込んでからキーを書き込むため、キーが見えた読み取りからは必ず値も見えます。
+ *
+ * @author Cosgy Dev
+ */
+final class SettingsStore {
+    // ギルドIDに0は使われないため、空きスロットの印として使う
+    private static final long EMPTY = 0;
+    private static final int INITIAL_CAPACITY = 16;
+
+    private volatile Table table = new Table(INITIAL_CAPACITY);
+
+    private static int slot(long key, int mask) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32)) & mask;
+    }
+
+    private static int capacityFor(int size) {
+        int capacity = INITIAL_CAPACITY;
+        // 使用率を1/2以下に保つ
+        while (capacity < size * 2)
+            capacity <<= 1;
+        return capacity;
+    }
+
+    /**
+     * @return ギルドの設定。登録されていない場合は null
+     */
+    Settings get(long guildId) {
+        return table.get(guildId);
+    }
+
+    /**
+     * ギルドの設定が無ければ登録します。
+     *
+     * @return 既に登録されていた設定。新しく登録した場合は null
+     */
+    synchronized Settings putIfAbsent(Settings settings) {
+        long guildId = settings.getGuildId();
+        if (guildId == EMPTY)
+            throw new IllegalArgumentException("ギルドIDが不正です: " + guildId);
+        Table current = table;
+        Settings existing = current.get(guildId);
+        if (existing != null)
+            return existing;
+        if ((current.size + 1) * 2 > current.capacity()) {
+            Table next = new Table(capacityFor(current.size + 1));
+            current.copyTo(next);
+            next.insert(settings);
+            table = next;
+        } else {
+            current.insert(settings);
+        }
+        return null;
+    }
+
+    /**
+     * 複数の設定をまとめて登録します。同じギルドの設定が既にある場合は置き換えます。
+     */
+    synchronized void putAll(Collection<Settings> settings) {
+        for (Settings s : settings) {
+            if (s.getGuildId() == EMPTY)
+                throw new IllegalArgumentException("ギルドIDが不正です: " + s.getGuildId());
+        }
+        Table current = table;
+        Table next = new Table(capacityFor(current.size + settings.size()));
+        current.copyTo(next);
+        settings.forEach(next::insert);
+        table = next;
+    }
+
+    int size() {
+        return table.size;
+    }
+
+    void forEach(Consumer<Settings> action) {
+        Table current = table;
+        for (int i = 0; i < current.capacity(); i++) {
+            Settings s = current.values.get(i);
+            if (s != null)
+                action.accept(s);
+        }
+    }
+
+    private static final class Table {
+        private final AtomicLongArray keys;
+        private final AtomicReferenceArray<Settings> values;
+        // 追加はロックを取って行う
+        private volatile int size;
+
+        private Table(int capacity) {
+            this.keys = new AtomicLongArray(capacity);
+            this.values = new AtomicReferenceArray<>(capacity);
+        }
+
+        private int capacity() {
+            return keys.length();
+        }
+
+        private Settings get(long key) {
+            int mask = keys.length() - 1;
+            for (int i = slot(key, mask); ; i = (i + 1) & mask) {
+                long k = keys.get(i);
+                if (k == key)
+                    return values.get(i);
+                if (k == EMPTY)
+                    return null;
+            }
+        }
+
+        private void insert(Settings settings) {
+            long key = settings.getGuildId();
+            int mask = keys.length() - 1;
+            int i = slot(key, mask);
+            while (keys.get(i) != EMPTY && keys.get(i) != key)
+                i = (i + 1) & mask;
+            // 読み取り側がキーを見つけた時に値が見えるよう、値を先に書き込む
+            values.set(i, settings);
+            if (keys.get(i) == EMPTY) {
+                keys.set(i, key);
+                size++;
+            }
+        }
+
+        private void copyTo(Table other) {
+            for (int i = 0; i < capacity(); i++) {
+                Settings s = values.get(i);
+                if (s != null)
+                    other.insert(s);
+            }
+        }
+    }
+}
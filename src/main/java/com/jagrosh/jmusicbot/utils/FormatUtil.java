@@ -15,6 +15,7 @@
  */
 package com.jagrosh.jmusicbot.utils;
 
+import dev.cosgy.jmusicbot.settings.RepeatMode;
 import net.dv8tion.jda.api.entities.Role;
 import net.dv8tion.jda.api.entities.channel.concrete.TextChannel;
 import net.dv8tion.jda.api.entities.channel.concrete.VoiceChannel;
@@ -77,6 +78,14 @@ public class FormatUtil {
         return "\uD83D\uDD0A";     // 🔊
     }
 
+    public static String repeatIcon(RepeatMode mode) {
+        if (mode == RepeatMode.ALL)
+            return "\uD83D\uDD01 "; // 🔁
+        if (mode == RepeatMode.SINGLE)
+            return "\uD83D\uDD02 "; // 🔂
+        return "";
+    }
+
     public static String listOfTChannels(List<TextChannel> list, String query) {
         StringBuilder out = new StringBuilder(" 複数のテキストチャンネルで\"" + query + "\"が一致しました。:");
         for (int i = 0; i < 6 && i < list.size(); i++)
@@ -0,0 +1,181 @@
+/*
+ *  Copyright 2024 Cosgy Dev (info@cosgy.dev).
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.jagrosh.jmusicbot.utils;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 名前付きのスレッドで実行し、待ち時間と実行時間を記録する {@link ScheduledThreadPoolExecutor} です。
+ * <p>
+ * 待ち時間は、タスクを実行する予定だった時刻から実際に実行を始めるまでの時間です。
+ * すぐに実行するタスクでは、キューに入ってから実行を始めるまでの時間になります。
+ *
+ * @author Cosgy Dev
+ */
+public class MonitoredExecutor extends ScheduledThreadPoolExecutor {
+    private static final Logger log = LoggerFactory.getLogger("MonitoredExecutor");
+
+    private final String name;
+    private final ThreadLocal<Long> startedAt = new ThreadLocal<>();
+    private final LongAdder completed = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder totalDelay = new LongAdder();
+    private final LongAccumulator maxDelay = new LongAccumulator(Math::max, 0);
+    private final LongAdder totalTime = new LongAdder();
+    private final LongAccumulator maxTime = new LongAccumulator(Math::max, 0);
+
+    /**
+     * @param name    スレッドの名前。スレッドには {@code name-1} のように番号が付きます
+     * @param threads スレッドの数
+     */
+    public MonitoredExecutor(String name, int threads) {
+        super(threads, namedThreads(name));
+        this.name = name;
+        // 取り消したタスクはすぐにキューから取り除き、キューの長さに含めない
+        setRemoveOnCancelPolicy(true);
+        // 終了する時は、まだ予定の時刻になっていないタスクを実行しない
+        setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
+    }
+
+    private static ThreadFactory namedThreads(String name) {
+        AtomicInteger count = new AtomicInteger();
+        return r -> {
+            Thread thread = new Thread(r, name + "-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    @Override
+    protected void beforeExecute(Thread t, Runnable r) {
+        super.beforeExecute(t, r);
+        if (r instanceof Delayed) {
+            long delay = Math.max(0, -((Delayed) r).getDelay(TimeUnit.NANOSECONDS));
+            totalDelay.add(delay);
+            maxDelay.accumulate(delay);
+        }
+        startedAt.set(System.nanoTime());
+    }
+
+    @Override
+    protected void afterExecute(Runnable r, Throwable t) {
+        super.afterExecute(r, t);
+        Long start = startedAt.get();
+        if (start != null) {
+            long time = System.nanoTime() - start;
+            totalTime.add(time);
+            maxTime.accumulate(time);
+            startedAt.remove();
+        }
+        completed.increment();
+        // 例外は Future に保存されるため、ここで取り出して記録する
+        if (t == null && r instanceof Future && ((Future<?>) r).isDone() && !((Future<?>) r).isCancelled()) {
+            try {
+                ((Future<?>) r).get();
+            } catch (ExecutionException e) {
+                t = e.getCause();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        if (t != null) {
+            failed.increment();
+            log.warn("{}のタスクで例外が発生しました", name, t);
+        }
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return 実行を待っているタスクの数(予定の時刻になっていないタスクを含む)
+     */
+    public int getQueueDepth() {
+        return getQueue().size();
+    }
+
+    /**
+     * @return 予定の時刻を過ぎて、実行を待っているタスクの数
+     */
+    public long getReadyCount() {
+        return getQueue().stream()
+                .filter(r -> r instanceof Delayed && ((Delayed) r).getDelay(TimeUnit.NANOSECONDS) <= 0)
+                .count();
+    }
+
+    public long getCompleted() {
+        return completed.sum();
+    }
+
+    public long getFailed() {
+        return failed.sum();
+    }
+
+    /**
+     * @return 平均の待ち時間(ナノ秒)
+     */
+    public long getAverageDelay() {
+        long count = completed.sum();
+        return count == 0 ? 0 : totalDelay.sum() / count;
+    }
+
+    /**
+     * @return 最大の待ち時間(ナノ秒)
+     */
+    public long getMaxDelay() {
+        return maxDelay.get();
+    }
+
+    /**
+     * @return 平均の実行時間(ナノ秒)
+     */
+    public long getAverageTime() {
+        long count = completed.sum();
+        return count == 0 ? 0 : totalTime.sum() / count;
+    }
+
+    /**
+     * @return 最大の実行時間(ナノ秒)
+     */
+    public long getMaxTime() {
+        return maxTime.get();
+    }
+
+    /**
+     * 新しいタスクの受け付けを止め、実行中のタスクが終わるまで最大 {@code timeout} ミリ秒待ちます。
+     * 時間内に終わらなかった場合は実行中のタスクに割り込みます。
+     */
+    public void shutdownGracefully(long timeout) {
+        shutdown();
+        try {
+            if (!awaitTermination(timeout, TimeUnit.MILLISECONDS)) {
+                log.warn("{}のタスクが時間内に終わらなかったため、中断します", name);
+                shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,277 @@
+/*
+ *  Copyright 2024 Cosgy Dev (info@cosgy.dev).
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.jagrosh.jmusicbot.utils;
+
+import net.dv8tion.jda.api.requests.RestAction;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * ニックネーム・チャンネルのトピック・ボイスチャンネルのステータスの更新をまとめて送信します。
+ * <p>
+ * 更新する対象ごとに、送信中の要求は1つ、送信を待っている値は1つだけ持ち、
+ * 送信を待っている間に新しい値が来た場合は古い値を捨てて新しい値だけを送信します。
+ * 同じ対象への送信は {@link Kind} ごとの最小間隔を空けて行い、短い曲が続く場合やスキップを繰り返した場合でも
+ * Discord のレート制限に達しないようにします。送信は {@link RestAction#queue} で行い、呼び出し元を待たせません。
+ *
+ * @author Cosgy Dev
+ */
+public class UpdateCoalescer {
+    // 送信した値は、この時間が経つまではキャッシュの値より新しいものとして扱う
+    private static final long SENT_VALUE_TTL = TimeUnit.SECONDS.toNanos(30);
+    private static final Logger log = LoggerFactory.getLogger("UpdateCoalescer");
+
+    private final ScheduledExecutorService scheduler;
+    private final Map<String, Target> targets = new ConcurrentHashMap<>();
+    private final Map<Kind, Stats> stats = new EnumMap<>(Kind.class);
+    // 終了する前は、最小間隔を待たずに送信する
+    private volatile boolean flushing;
+
+    public UpdateCoalescer(ScheduledExecutorService scheduler) {
+        this.scheduler = scheduler;
+        for (Kind kind : Kind.values())
+            stats.put(kind, new Stats());
+    }
+
+    /**
+     * 対象の値を更新します。
+     *
+     * @param kind     更新の種類
+     * @param targetId 更新する対象のID(ギルドやチャンネル)
+     * @param current  JDA のキャッシュにある現在の値
+     * @param value    新しい値
+     * @param request  値を送信する要求を作成する関数。送信する直前に呼び出されます
+     */
+    public void submit(Kind kind, long targetId, String current, String value, Function<String, RestAction<?>> request) {
+        Stats stat = stats.get(kind);
+        stat.requested.increment();
+        Target target = targets.computeIfAbsent(kind.name() + ":" + targetId, k -> new Target(kind));
+        synchronized (target) {
+            if (target.pendingValue != null) {
+                if (value.equals(target.pendingValue)) {
+                    stat.unchanged.increment();
+                    return;
+                }
+                // 送信を待っていた値は、新しい値で上書きされて送信されない
+                stat.replaced.increment();
+                target.pendingValue = null;
+                target.pendingRequest = null;
+            }
+            if (value.equals(target.latest(current))) {
+                stat.unchanged.increment();
+                return;
+            }
+            target.pendingValue = value;
+            target.pendingRequest = request;
+            dispatch(target, flushing);
+        }
+    }
+
+    /**
+     * 送信を待っているすべての値を最小間隔を待たずに送信し、送信が終わるまで最大 {@code timeout} ミリ秒待ちます。
+     * 終了する前に呼び出します。
+     */
+    public void flush(long timeout) {
+        flushing = true;
+        targets.values().forEach(target -> {
+            synchronized (target) {
+                dispatch(target, true);
+            }
+        });
+        long deadline = System.currentTimeMillis() + timeout;
+        while (System.currentTimeMillis() < deadline && targets.values().stream().anyMatch(Target::isBusy)) {
+            try {
+                Thread.sleep(50);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    public Stats getStats(Kind kind) {
+        return stats.get(kind);
+    }
+
+    // target のロックを取得した状態で呼び出す
+    private void dispatch(Target target, boolean immediately) {
+        if (target.inFlight || target.pendingValue == null)
+            return;
+        long wait = target.lastSentAt + target.kind.interval - System.nanoTime();
+        if (wait > 0 && !immediately) {
+            if (!target.scheduled) {
+                try {
+                    scheduler.schedule(() -> {
+                        synchronized (target) {
+                            target.scheduled = false;
+                            dispatch(target, flushing);
+                        }
+                    }, wait, TimeUnit.NANOSECONDS);
+                    target.scheduled = true;
+                } catch (RejectedExecutionException ignore) {
+                    // 終了処理中
+                }
+            }
+            return;
+        }
+
+        String value = target.pendingValue;
+        Function<String, RestAction<?>> request = target.pendingRequest;
+        target.pendingValue = null;
+        target.pendingRequest = null;
+        target.lastSentAt = System.nanoTime();
+        Stats stat = stats.get(target.kind);
+        RestAction<?> action;
+        try {
+            action = request.apply(value);
+        } catch (RuntimeException e) {
+            // 権限が無い場合など
+            stat.failed.increment();
+            log.debug("{}を更新できませんでした", target.kind.description, e);
+            return;
+        }
+        target.inFlight = true;
+        target.inFlightValue = value;
+        action.queue(r -> done(target, value, true), t -> done(target, value, false));
+    }
+
+    private void done(Target target, String value, boolean success) {
+        Stats stat = stats.get(target.kind);
+        if (success)
+            stat.sent.increment();
+        else
+            stat.failed.increment();
+        synchronized (target) {
+            target.inFlight = false;
+            target.inFlightValue = null;
+            if (success) {
+                target.sentValue = value;
+                target.sentAt = System.nanoTime();
+            }
+            dispatch(target, flushing);
+        }
+    }
+
+    /**
+     * 更新の種類です。最小間隔は Discord のレート制限に合わせています。
+     */
+    public enum Kind {
+        NICKNAME("ニックネーム", 5),
+        // チャンネルのトピックは10分間に2回までしか変更できない
+        TOPIC("トピック", 300),
+        VOICE_STATUS("VCステータス", 10);
+
+        private final String description;
+        private final long interval;
+
+        Kind(String description, long intervalSeconds) {
+            this.description = description;
+            this.interval = TimeUnit.SECONDS.toNanos(intervalSeconds);
+        }
+
+        public String getDescription() {
+            return description;
+        }
+    }
+
+    /**
+     * 更新の種類ごとの統計です。
+     */
+    public static final class Stats {
+        private final LongAdder requested = new LongAdder();
+        private final LongAdder sent = new LongAdder();
+        private final LongAdder replaced = new LongAdder();
+        private final LongAdder unchanged = new LongAdder();
+        private final LongAdder failed = new LongAdder();
+
+        /**
+         * @return 更新が要求された回数
+         */
+        public long getRequested() {
+            return requested.sum();
+        }
+
+        /**
+         * @return 送信して成功した回数
+         */
+        public long getSent() {
+            return sent.sum();
+        }
+
+        /**
+         * @return 送信を待っている間に新しい値で上書きされ、送信しなかった回数
+         */
+        public long getReplaced() {
+            return replaced.sum();
+        }
+
+        /**
+         * @return 値が変わらないため送信しなかった回数
+         */
+        public long getUnchanged() {
+            return unchanged.sum();
+        }
+
+        /**
+         * @return 送信に失敗した回数
+         */
+        public long getFailed() {
+            return failed.sum();
+        }
+    }
+
+    private static final class Target {
+        private final Kind kind;
+        private String pendingValue;
+        private Function<String, RestAction<?>> pendingRequest;
+        private boolean inFlight;
+        private String inFlightValue;
+        private boolean scheduled;
+        private long lastSentAt;
+        private String sentValue;
+        private long sentAt;
+
+        private Target(Kind kind) {
+            this.kind = kind;
+            this.lastSentAt = System.nanoTime() - kind.interval;
+        }
+
+        /**
+         * @return 送信中か最近送信した値。無ければキャッシュの値
+         */
+        private String latest(String current) {
+            if (inFlight)
+                return inFlightValue;
+            if (sentValue != null && System.nanoTime() - sentAt < SENT_VALUE_TTL)
+                return sentValue;
+            return current;
+        }
+
+        private synchronized boolean isBusy() {
+            return inFlight || pendingValue != null;
+        }
+    }
+}
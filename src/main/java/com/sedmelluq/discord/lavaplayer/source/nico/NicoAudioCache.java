@@ -0,0 +1,243 @@
+package com.sedmelluq.discord.lavaplayer.source.nico;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.stream.Stream;
+
+/**
+ * Size-bounded disk cache of NicoNico audio stored as Ogg Opus.
+ * <p>
+ * Files live in their own directory so that they never mix with the queue files in {@code cache}.
+ * The size and last access time of every file is kept in a small index file, and the least recently
+ * used files are deleted when the total size goes over the budget. Files that are being played are
+ * pinned with {@link #acquire(String)} and are not deleted until {@link #release(String)} is called.
+ */
+public class NicoAudioCache {
+    private static final Logger log = LoggerFactory.getLogger(NicoAudioCache.class);
+    private static final String INDEX_FILE = "index.tsv";
+    private static final String EXTENSION = ".opus";
+    private static final String PART_EXTENSION = ".part";
+
+    private final Path directory;
+    // アクセス順に並べ、先頭から削除する
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long maxSize;
+    private long totalSize;
+
+    /**
+     * @param directory Directory to keep the files in
+     * @param maxSize   Budget in bytes, 0 to disable the cache
+     */
+    public NicoAudioCache(Path directory, long maxSize) {
+        this.directory = directory;
+        this.maxSize = maxSize;
+        try {
+            Files.createDirectories(directory);
+            load();
+        } catch (IOException e) {
+            log.warn("Failed to load the NicoNico audio cache in {}", directory, e);
+        }
+    }
+
+    private synchronized void load() throws IOException {
+        Map<String, Entry> indexed = new HashMap<>();
+        Path index = directory.resolve(INDEX_FILE);
+        if (Files.exists(index)) {
+            for (String line : Files.readAllLines(index, StandardCharsets.UTF_8)) {
+                String[] fields = line.split("\t");
+                if (fields.length < 3)
+                    continue;
+                try {
+                    indexed.put(fields[0], new Entry(Long.parseLong(fields[1]), Long.parseLong(fields[2]), fields.length > 3 ? Long.parseLong(fields[3]) : 0));
+                } catch (NumberFormatException ignore) {
+                }
+            }
+        }
+
+        List<Map.Entry<String, Entry>> found = new ArrayList<>();
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                String name = file.getFileName().toString();
+                if (name.endsWith(PART_EXTENSION)) {
+                    // 前回の終了時に書き込み途中だったファイル
+                    Files.deleteIfExists(file);
+                } else if (name.endsWith(EXTENSION)) {
+                    String id = name.substring(0, name.length() - EXTENSION.length());
+                    Entry entry = indexed.get(id);
+                    long size = Files.size(file);
+                    if (entry == null || entry.size != size)
+                        entry = new Entry(size, Files.getLastModifiedTime(file).toMillis(), 0);
+                    found.add(new AbstractMap.SimpleEntry<>(id, entry));
+                }
+            }
+        }
+        found.sort(Comparator.comparingLong(e -> e.getValue().lastAccess));
+        found.forEach(e -> {
+            entries.put(e.getKey(), e.getValue());
+            totalSize += e.getValue().size;
+        });
+        evict();
+        save();
+    }
+
+    /**
+     * Changes the budget and deletes files over it.
+     *
+     * @param maxSize Budget in bytes, 0 to disable the cache
+     */
+    public synchronized void setMaxSize(long maxSize) {
+        this.maxSize = maxSize;
+        evict();
+        save();
+    }
+
+    public synchronized boolean isEnabled() {
+        return maxSize > 0;
+    }
+
+    /**
+     * Looks up a cached file and pins it until {@link #release(String)} is called.
+     *
+     * @return The cached file, or null if the video is not cached
+     */
+    public synchronized Path acquire(String videoId) {
+        Entry entry = entries.get(videoId);
+        if (entry == null)
+            return null;
+        Path file = getFile(videoId);
+        if (Files.notExists(file)) {
+            remove(videoId);
+            return null;
+        }
+        entry.readers++;
+        entry.hits++;
+        entry.lastAccess = System.currentTimeMillis();
+        save();
+        return file;
+    }
+
+    /**
+     * @return True if the video is cached, without counting it as an access
+     */
+    public synchronized boolean contains(String videoId) {
+        return entries.containsKey(videoId);
+    }
+
+    public synchronized void release(String videoId) {
+        Entry entry = entries.get(videoId);
+        if (entry != null && entry.readers > 0)
+            entry.readers--;
+        evict();
+    }
+
+    /**
+     * Creates a temporary file in the cache directory to write a new file to.
+     *
+     * @return The temporary file, or null if the cache is disabled
+     */
+    public Path createTempFile(String videoId) throws IOException {
+        if (!isEnabled())
+            return null;
+        return Files.createTempFile(directory, videoId + "-", PART_EXTENSION);
+    }
+
+    /**
+     * Adds a fully written temporary file to the cache, replacing any previous file of the video.
+     */
+    public synchronized void put(String videoId, Path temp) throws IOException {
+        if (!isEnabled()) {
+            Files.deleteIfExists(temp);
+            return;
+        }
+        Entry previous = entries.get(videoId);
+        if (previous != null && previous.readers > 0) {
+            // 再生中のファイルは置き換えない
+            Files.deleteIfExists(temp);
+            return;
+        }
+        Files.move(temp, getFile(videoId), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        if (previous != null)
+            totalSize -= previous.size;
+        Entry entry = new Entry(Files.size(getFile(videoId)), System.currentTimeMillis(), 0);
+        entries.put(videoId, entry);
+        totalSize += entry.size;
+        evict();
+        save();
+    }
+
+    /**
+     * @return Total size of the cached files in bytes
+     */
+    public synchronized long getTotalSize() {
+        return totalSize;
+    }
+
+    public synchronized int getCount() {
+        return entries.size();
+    }
+
+    private Path getFile(String videoId) {
+        return directory.resolve(videoId + EXTENSION);
+    }
+
+    private void remove(String videoId) {
+        Entry entry = entries.remove(videoId);
+        if (entry != null)
+            totalSize -= entry.size;
+    }
+
+    private void evict() {
+        Iterator<Map.Entry<String, Entry>> it = entries.entrySet().iterator();
+        while (totalSize > maxSize && it.hasNext()) {
+            Map.Entry<String, Entry> e = it.next();
+            if (e.getValue().readers > 0)
+                continue;
+            try {
+                Files.deleteIfExists(getFile(e.getKey()));
+            } catch (IOException ex) {
+                log.warn("Failed to delete cached NicoNico audio {}", e.getKey(), ex);
+                continue;
+            }
+            totalSize -= e.getValue().size;
+            it.remove();
+            log.debug("Evicted cached NicoNico audio {}", e.getKey());
+        }
+    }
+
+    private void save() {
+        Path index = directory.resolve(INDEX_FILE);
+        Path temp = directory.resolve(INDEX_FILE + ".tmp");
+        try {
+            try (BufferedWriter writer = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+                for (Map.Entry<String, Entry> e : entries.entrySet()) {
+                    Entry entry = e.getValue();
+                    writer.write(e.getKey() + "\t" + entry.size + "\t" + entry.lastAccess + "\t" + entry.hits);
+                    writer.newLine();
+                }
+            }
+            Files.move(temp, index, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            log.warn("Failed to save the NicoNico audio cache index", e);
+        }
+    }
+
+    private static final class Entry {
+        private final long size;
+        private long lastAccess;
+        private long hits;
+        // 再生中のトラックの数
+        private int readers;
+
+        private Entry(long size, long lastAccess, long hits) {
+            this.size = size;
+            this.lastAccess = lastAccess;
+            this.hits = hits;
+        }
+    }
+}
@@ -24,18 +24,16 @@ import org.apache.http.client.methods.HttpGet;
 import org.apache.http.client.methods.HttpPost;
 import org.apache.http.impl.client.HttpClientBuilder;
 import org.apache.http.message.BasicNameValuePair;
-import org.jsoup.Jsoup;
-import org.jsoup.nodes.Document;
-import org.jsoup.nodes.Element;
-import org.jsoup.parser.Parser;
-import org.jsoup.select.Elements;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.*;
 import java.net.URI;
+import java.nio.file.Path;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.function.Consumer;
 import java.util.function.Function;
@@ -53,11 +51,18 @@ public class NicoAudioSourceManager implements AudioSourceManager, HttpConfigura
 
     private static final Pattern trackUrlPattern = Pattern.compile(TRACK_URL_REGEX);
     private static final Logger log = LoggerFactory.getLogger(NicoAudioSourceManager.class);
+    private static final long DEFAULT_CACHE_SIZE = 2L * 1024 * 1024 * 1024;
+    private static final int DEFAULT_MAX_PIPELINES = 2;
     private final HttpInterfaceManager httpInterfaceManager;
     private final AtomicBoolean loggedIn;
     public static String userName = null;
     public static String password = null;
     public static String twofactor = null;
+    // キャッシュに保存する Opus のビットレート
+    private static final String OPUS_BITRATE = "128k";
+    private volatile boolean streaming = true;
+    private final NicoAudioCache cache;
+    private final NicoDownloadManager downloads;
 
     public NicoAudioSourceManager() {
         this(null, null);
@@ -68,12 +73,27 @@ public class NicoAudioSourceManager implements AudioSourceManager, HttpConfigura
      * @param password Site account password
      */
     public NicoAudioSourceManager(String email, String password) {
+        this(email, password, DEFAULT_CACHE_SIZE, DEFAULT_MAX_PIPELINES);
+    }
+
+    /**
+     * @param email        Site account email
+     * @param password     Site account password
+     * @param cacheSize    Budget of the audio cache in bytes, 0 to disable the cache
+     * @param maxPipelines Maximum number of yt-dlp and ffmpeg pipelines running at the same time
+     */
+    public NicoAudioSourceManager(String email, String password, long cacheSize, int maxPipelines) {
         updateYtDlp();
 
         File cacheDir = new File("cache");
         if (!cacheDir.exists()) {
             cacheDir.mkdirs();
         }
+        deleteLegacyCache(cacheDir);
+        // 再生待ちのキャッシュと混ざらないように、専用のフォルダに保存する
+        // 起動時の削除で設定された容量を超えた分だけを消すように、最初から設定値で開く
+        cache = new NicoAudioCache(cacheDir.toPath().resolve("niconico"), cacheSize);
+        downloads = new NicoDownloadManager(this, Math.max(1, maxPipelines));
 
         httpInterfaceManager = HttpClientTools.createDefaultThreadLocalManager();
         loggedIn = new AtomicBoolean();
@@ -89,6 +109,20 @@ public class NicoAudioSourceManager implements AudioSourceManager, HttpConfigura
         }
     }
 
+    /**
+     * Deletes the WAV files that older versions kept in the cache folder without a size limit.
+     */
+    private static void deleteLegacyCache(File cacheDir) {
+        File[] files = cacheDir.listFiles((dir, name) -> name.matches("(sm|nm|so)[0-9]+\\.wav"));
+        if (files == null || files.length == 0)
+            return;
+        for (File file : files) {
+            if (!file.delete())
+                log.warn("Failed to delete old cache file {}", file);
+        }
+        log.info("Deleted {} old NicoNico cache files.", files.length);
+    }
+
     private static String getWatchUrl(String videoId) {
         return "https://www.nicovideo.jp/watch/" + videoId;
     }
@@ -147,6 +181,55 @@ public class NicoAudioSourceManager implements AudioSourceManager, HttpConfigura
     }
 
 
+    /**
+     * @param streaming True to start playback while yt-dlp is still downloading,
+     *                  false to wait for the whole file to be downloaded and converted first
+     */
+    public void setStreaming(boolean streaming) {
+        this.streaming = streaming;
+    }
+
+    public boolean isStreaming() {
+        return streaming;
+    }
+
+    public NicoAudioCache getCache() {
+        return cache;
+    }
+
+    public NicoDownloadManager getDownloads() {
+        return downloads;
+    }
+
+    /**
+     * Creates the processes that download the video with yt-dlp and convert its audio with ffmpeg.
+     *
+     * @param videoId  ID of the video
+     * @param toStdout True to write 48kHz stereo WAV to the standard output of ffmpeg for playback
+     * @param opusFile File to write Ogg Opus to for the cache, or null
+     * @return yt-dlp and ffmpeg, to be connected with a pipe
+     */
+    List<ProcessBuilder> createPipeline(String videoId, boolean toStdout, Path opusFile) {
+        List<String> ytDlp = new ArrayList<>(Arrays.asList("yt-dlp", "--quiet", "--no-warnings", "--no-part", "-f", "bestaudio/best"));
+        if (userName != null && password != null) {
+            ytDlp.addAll(Arrays.asList("--username", userName, "--password", password));
+            if (twofactor != null)
+                ytDlp.addAll(Arrays.asList("--twofactor", TOTPGenerator.getCode(twofactor)));
+        }
+        ytDlp.addAll(Arrays.asList("-o", "-", getWatchUrl(videoId)));
+
+        List<String> ffmpeg = new ArrayList<>(Arrays.asList("ffmpeg", "-hide_banner", "-loglevel", "error", "-y", "-i", "pipe:0",
+                "-vn", "-map_metadata", "-1"));
+        if (toStdout)
+            ffmpeg.addAll(Arrays.asList("-fflags", "+bitexact", "-ac", "2", "-ar", "48000", "-f", "wav", "pipe:1"));
+        if (opusFile != null)
+            ffmpeg.addAll(Arrays.asList("-c:a", "libopus", "-b:a", OPUS_BITRATE, "-f", "ogg", opusFile.toString()));
+        ProcessBuilder ffmpegProcess = new ProcessBuilder(ffmpeg);
+        if (!toStdout)
+            ffmpegProcess.redirectOutput(ProcessBuilder.Redirect.DISCARD);
+        return Arrays.asList(new ProcessBuilder(ytDlp), ffmpegProcess);
+    }
+
     @Override
     public String getSourceName() {
         return "niconico";
@@ -164,6 +247,15 @@ public class NicoAudioSourceManager implements AudioSourceManager, HttpConfigura
     }
 
     private AudioTrack loadTrack(String videoId) {
+        try {
+            NicoThumbInfo info = NicoThumbInfoCache.getShared().get(videoId, this::fetchThumbInfo);
+            return info == null ? null : createTrack(videoId, info);
+        } catch (IOException e) {
+            throw new FriendlyException("Error occurred when extracting video info.", SUSPICIOUS, e);
+        }
+    }
+
+    private NicoThumbInfo fetchThumbInfo(String videoId) throws IOException {
         try (HttpInterface httpInterface = getHttpInterface()) {
             try (CloseableHttpResponse response = httpInterface.execute(new HttpGet("https://ext.nicovideo.jp/api/getthumbinfo/" + videoId))) {
                 int statusCode = response.getStatusLine().getStatusCode();
@@ -171,68 +263,49 @@ public class NicoAudioSourceManager implements AudioSourceManager, HttpConfigura
                     throw new IOException("Unexpected response code from video info: " + statusCode);
                 }
 
-                Document document = Jsoup.parse(response.getEntity().getContent(), StandardCharsets.UTF_8.name(), "", Parser.xmlParser());
-                return extractTrackFromXml(videoId, document);
+                return NicoThumbInfo.parse(response.getEntity().getContent());
             }
-        } catch (IOException e) {
-            throw new FriendlyException("Error occurred when extracting video info.", SUSPICIOUS, e);
         }
     }
 
 
     /**
-     * This method extracts an `AudioTrack` object from the provided XML document
-     * based on the given video ID.
+     * This method creates an `AudioTrack` object from the metadata of the given video ID.
      * <p>
-     * The method iterates over the elements in the document that match the CSS selector
-     * `:root > thumb`. For each matching element, it extracts relevant information such as:
+     * The following information is used:
      * - Uploader: If the video ID starts with "so", the uploader's name is retrieved
      *   from the `ch_name` element. Otherwise, it is retrieved from the `user_nickname` element.
      * - Title: The track title is retrieved from the `title` element.
      * - Thumbnail URL: The URL of the video's thumbnail is retrieved from the `thumbnail_url` element.
      * - Duration: The video's duration is parsed from the `length` element using
      *   `DataFormatTools.durationTextToMillis`.
-     * <p>
-     * Once these details are collected, a new `NicoAudioTrack` object is created with
-     * the extracted information and is returned. If no matching elements are found
-     * in the XML document, the method returns `null`.
      *
-     * @param videoId  The ID of the video for which the track information is being extracted.
-     * @param document The XML document containing the track's metadata.
-     * @return A `NicoAudioTrack` object with the extracted track information, or `null` if no matching element is found.
+     * @param videoId The ID of the video for which the track information is being extracted.
+     * @param info    The metadata of the video.
+     * @return A `NicoAudioTrack` object with the extracted track information.
      */
 
-    private AudioTrack extractTrackFromXml(String videoId, Document document) {
-        for (Element element : document.select(":root > thumb")) {
-
-            String uploader = "";
-            if (videoId.matches("so.*")) {
-                uploader = element.select("ch_name").first().text();
-            } else {
-                Elements userNicknameElements = element.select("user_nickname");
-                if (!userNicknameElements.isEmpty()) {
-                    uploader = userNicknameElements.first().text();
-                } else {
-                    // user_nicknameが存在しない場合の処理
-                    uploader = "情報なし";
-                }
-            }
-            String title = element.selectFirst("title").text();
-            String thumbnailUrl = element.selectFirst("thumbnail_url").text();
-            long duration = DataFormatTools.durationTextToMillis(element.selectFirst("length").text());
-
-            return new NicoAudioTrack(new AudioTrackInfo(title,
-                    uploader,
-                    duration,
-                    videoId,
-                    false,
-                    getWatchUrl(videoId),
-                    thumbnailUrl,
-                    null
-            ), this, new MediaContainerDescriptor(new WavContainerProbe(), null));
+    private AudioTrack createTrack(String videoId, NicoThumbInfo info) {
+        String uploader;
+        if (videoId.matches("so.*")) {
+            uploader = info.get("ch_name");
+        } else if (info.has("user_nickname")) {
+            uploader = info.get("user_nickname");
+        } else {
+            // user_nicknameが存在しない場合の処理
+            uploader = "情報なし";
         }
-
-        return null;
+        long duration = DataFormatTools.durationTextToMillis(info.getLength());
+
+        return new NicoAudioTrack(new AudioTrackInfo(info.getTitle(),
+                uploader,
+                duration,
+                videoId,
+                false,
+                getWatchUrl(videoId),
+                info.getThumbnailUrl(),
+                null
+        ), this, new MediaContainerDescriptor(new WavContainerProbe(), null));
     }
 
     @Override
@@ -252,7 +325,7 @@ public class NicoAudioSourceManager implements AudioSourceManager, HttpConfigura
 
     @Override
     public void shutdown() {
-        // Nothing to shut down
+        downloads.shutdown();
     }
 
     /**
@@ -1,43 +1,21 @@
 package com.sedmelluq.discord.lavaplayer.source.nico;
 
 import com.sedmelluq.discord.lavaplayer.container.MediaContainerDescriptor;
-import com.sedmelluq.discord.lavaplayer.container.playlists.ExtendedM3uParser;
+import com.sedmelluq.discord.lavaplayer.container.ogg.OggContainerProbe;
 import com.sedmelluq.discord.lavaplayer.source.AudioSourceManager;
 import com.sedmelluq.discord.lavaplayer.source.local.LocalSeekableInputStream;
-import com.sedmelluq.discord.lavaplayer.tools.DataFormatTools;
 import com.sedmelluq.discord.lavaplayer.tools.FriendlyException;
-import com.sedmelluq.discord.lavaplayer.tools.JsonBrowser;
-import com.sedmelluq.discord.lavaplayer.tools.io.HttpClientTools;
-import com.sedmelluq.discord.lavaplayer.tools.io.HttpInterface;
 import com.sedmelluq.discord.lavaplayer.track.AudioTrack;
 import com.sedmelluq.discord.lavaplayer.track.AudioTrackInfo;
 import com.sedmelluq.discord.lavaplayer.track.DelegatedAudioTrack;
 import com.sedmelluq.discord.lavaplayer.track.InternalAudioTrack;
 import com.sedmelluq.discord.lavaplayer.track.playback.LocalAudioTrackExecutor;
-import org.apache.commons.io.IOUtils;
-import org.apache.http.HttpStatus;
-import org.apache.http.client.methods.CloseableHttpResponse;
-import org.apache.http.client.methods.HttpGet;
-import org.apache.http.client.methods.HttpPost;
-import org.apache.http.entity.StringEntity;
-import org.apache.http.util.EntityUtils;
-import org.jetbrains.annotations.NotNull;
-import org.json.JSONArray;
-import org.json.JSONObject;
-import org.jsoup.parser.Parser;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.io.BufferedReader;
-import java.io.File;
-import java.io.IOException;
-import java.io.InputStreamReader;
-import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.util.List;
-import java.util.Objects;
-import java.util.stream.Collectors;
+import java.util.concurrent.ExecutionException;
 
 import static com.sedmelluq.discord.lavaplayer.tools.FriendlyException.Severity.SUSPICIOUS;
 
@@ -46,6 +24,7 @@ import static com.sedmelluq.discord.lavaplayer.tools.FriendlyException.Severity.
  */
 public class NicoAudioTrack extends DelegatedAudioTrack {
     private static final Logger log = LoggerFactory.getLogger(NicoAudioTrack.class);
+    private static final MediaContainerDescriptor OGG_CONTAINER = new MediaContainerDescriptor(new OggContainerProbe(), null);
     private final MediaContainerDescriptor containerTrackFactory;
     private final NicoAudioSourceManager sourceManager;
 
@@ -62,74 +41,94 @@ public class NicoAudioTrack extends DelegatedAudioTrack {
 
     @Override
     public void process(LocalAudioTrackExecutor localExecutor) throws Exception {
-        File playbackUrl = downloadAudio();
+        if (processCached(localExecutor))
+            return;
 
-        log.debug("Starting NicoNico track from URL: {}", playbackUrl);
-        try (LocalSeekableInputStream inputStream = new LocalSeekableInputStream(playbackUrl)) {
-            processDelegate((InternalAudioTrack) containerTrackFactory.createTrack(trackInfo, inputStream), localExecutor);
+        NicoDownloadManager downloads = sourceManager.getDownloads();
+        NicoAudioCache cache = sourceManager.getCache();
+        // 他のトラックがダウンロード中の場合は、同じダウンロードの完了を待つ
+        if (cache.isEnabled() && (!sourceManager.isStreaming() || downloads.isDownloading(getIdentifier()))) {
+            try {
+                downloads.download(getIdentifier(), NicoDownloadManager.Priority.PLAYBACK).get();
+            } catch (ExecutionException e) {
+                throw new FriendlyException("Failed to download the NicoNico track.", SUSPICIOUS, e.getCause());
+            }
+            if (processCached(localExecutor))
+                return;
+            // キャッシュの上限より大きいファイルは、すぐに削除される
+            log.debug("NicoNico track {} did not stay in the cache", getIdentifier());
+        }
+
+        if (sourceManager.isStreaming()) {
+            processStream(localExecutor);
+            return;
+        }
+
+        Path file = downloads.downloadTemp(getIdentifier());
+        try {
+            processFile(file, localExecutor);
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    /**
+     * @return False if the track is not in the cache
+     */
+    private boolean processCached(LocalAudioTrackExecutor localExecutor) throws Exception {
+        NicoAudioCache cache = sourceManager.getCache();
+        Path cached = cache.acquire(getIdentifier());
+        if (cached == null)
+            return false;
+        try {
+            processFile(cached, localExecutor);
+        } finally {
+            cache.release(getIdentifier());
         }
+        return true;
     }
 
-    //
-    private @NotNull File downloadAudio() {
-        String path = new File(".").getAbsoluteFile().getParent();
-        Path file = Path.of(path, "cache" + File.separator + getIdentifier() + ".wav");
+    private void processFile(Path file, LocalAudioTrackExecutor localExecutor) throws Exception {
+        log.debug("Starting NicoNico track from file: {}", file);
+        try (LocalSeekableInputStream inputStream = new LocalSeekableInputStream(file.toFile())) {
+            processDelegate((InternalAudioTrack) OGG_CONTAINER.createTrack(trackInfo, inputStream), localExecutor);
+        }
+    }
 
-        if (Files.notExists(file)) {
-            try {
-                log.info("Downloading NicoNico track from: {}", getIdentifier());
-                Runtime runtime = Runtime.getRuntime();
-
-                String login = "";
-                if (NicoAudioSourceManager.userName != null && NicoAudioSourceManager.password != null) {
-                    login += " --username " + NicoAudioSourceManager.userName + " --password " + NicoAudioSourceManager.password;
-                    log.info("ニコニコのログイン情報を使用しました。");
-                    if(NicoAudioSourceManager.twofactor != null) {
-                        String code = TOTPGenerator.getCode(NicoAudioSourceManager.twofactor);
-
-                        login += " --twofactor " + code;
-                        log.info("二段階認証を行いました:{}", code);
-                    }
-                }
-
-                String command = "yt-dlp" + login + " --extract-audio --audio-format wav https://www.nicovideo.jp/watch/" + getIdentifier() + " --output cache/" + getIdentifier() + ".wav";
-
-                Process process = runtime.exec(command);
-
-                // エラーストリームを読み取るためのスレッドを作成
-                new Thread(() -> {
-                    try (BufferedReader errorReader = new BufferedReader(new InputStreamReader(process.getErrorStream()))) {
-                        String line;
-                        while ((line = errorReader.readLine()) != null) {
-                            log.error(line);
-                        }
-                    } catch (IOException e) {
-                        log.error("Error reading process error stream", e);
-                    }
-                }).start();
-
-                // 標準出力ストリームを読み取るためのスレッドを作成
-                new Thread(() -> {
-                    try (BufferedReader inputReader = new BufferedReader(new InputStreamReader(process.getInputStream()))) {
-                        String line;
-                        while ((line = inputReader.readLine()) != null) {
-                            log.debug(line);
-                        }
-                    } catch (IOException e) {
-                        log.error("Error reading process input stream", e);
-                    }
-                }).start();
-
-                int exitCode = process.waitFor();
-                if (exitCode != 0) {
-                    throw new RuntimeException("yt-dlp command failed with exit code " + exitCode);
-                }
-                process.destroy();
-            } catch (Exception e) {
-                throw new RuntimeException(e);
+    /**
+     * Plays the track while yt-dlp and ffmpeg are still downloading and converting it.
+     * ffmpeg writes WAV for playback to a temporary buffer and, when the cache is enabled,
+     * Ogg Opus to a second file that is added to the cache once the download is complete.
+     */
+    private void processStream(LocalAudioTrackExecutor localExecutor) throws Exception {
+        NicoAudioCache cache = sourceManager.getCache();
+        Path opus = cache.createTempFile(getIdentifier());
+        Path buffer = Files.createTempFile(getIdentifier() + "-", ".wav");
+
+        log.info("Streaming NicoNico track from: {}", getIdentifier());
+        ProcessSeekableInputStream inputStream;
+        try {
+            inputStream = sourceManager.getDownloads().stream(getIdentifier(), buffer, opus);
+        } catch (Exception e) {
+            Files.deleteIfExists(buffer);
+            if (opus != null)
+                Files.deleteIfExists(opus);
+            throw e;
+        }
+        try {
+            try (inputStream) {
+                processDelegate((InternalAudioTrack) containerTrackFactory.createTrack(trackInfo, inputStream), localExecutor);
+            }
+        } finally {
+            Files.deleteIfExists(buffer);
+            // 最後まで変換できた場合は、次に再生する時のためにキャッシュに追加する
+            if (opus != null) {
+                if (inputStream.isComplete())
+                    cache.put(getIdentifier(), opus);
+                else
+                    Files.deleteIfExists(opus);
             }
         }
-        return file.toFile();
     }
 
     @Override
@@ -0,0 +1,414 @@
+package com.sedmelluq.discord.lavaplayer.source.nico;
+
+import com.sedmelluq.discord.lavaplayer.tools.FriendlyException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.sedmelluq.discord.lavaplayer.tools.FriendlyException.Severity.SUSPICIOUS;
+
+/**
+ * Runs yt-dlp and ffmpeg for NicoNico tracks with a limit on the number of concurrent pipelines.
+ * <p>
+ * Downloads into the cache are single-flight: a request for a video that is already being downloaded
+ * joins the running download instead of starting another one. A shared prefetch is only cancelled once every
+ * caller that requested it has cancelled it. Work that is waiting for a free slot starts
+ * in order of priority, so the track that is about to play goes before prefetches. Prefetches never take
+ * the last slot, so playback does not have to wait for them. The output and error streams of the processes
+ * are read on shared threads instead of new threads for every process.
+ */
+public class NicoDownloadManager {
+    private static final Logger log = LoggerFactory.getLogger(NicoDownloadManager.class);
+
+    /**
+     * Priority of work waiting for a free slot, in order.
+     */
+    public enum Priority {
+        PLAYBACK,
+        PREFETCH
+    }
+
+    private final NicoAudioSourceManager sourceManager;
+    private final ThreadPoolExecutor pipelines;
+    private final ExecutorService readers;
+    // キャッシュへのダウンロード中の動画
+    private final Map<String, Download> downloads = new ConcurrentHashMap<>();
+    private final AtomicLong sequence = new AtomicLong();
+    // 再生用の枠を残すため、先読みは空きができるまでここで待つ。このオブジェクトのロックで保護される
+    private final PriorityQueue<Task> deferred = new PriorityQueue<>();
+    private int maxPipelines;
+    // プールに渡した先読みの数
+    private int prefetching;
+
+    /**
+     * @param sourceManager Source manager to create the processes with
+     * @param maxPipelines  Maximum number of yt-dlp and ffmpeg pipelines running at the same time
+     */
+    NicoDownloadManager(NicoAudioSourceManager sourceManager, int maxPipelines) {
+        this.sourceManager = sourceManager;
+        this.maxPipelines = maxPipelines;
+        this.pipelines = new ThreadPoolExecutor(maxPipelines, maxPipelines, 30, TimeUnit.SECONDS,
+                new PriorityBlockingQueue<>(), namedThreads("NicoPipeline"));
+        this.pipelines.allowCoreThreadTimeOut(true);
+        this.readers = Executors.newCachedThreadPool(namedThreads("NicoProcessReader"));
+    }
+
+    private static ThreadFactory namedThreads(String name) {
+        AtomicInteger count = new AtomicInteger();
+        return r -> {
+            Thread thread = new Thread(r, name + "-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    /**
+     * @param maxPipelines Maximum number of yt-dlp and ffmpeg pipelines running at the same time.
+     *                     Prefetches use at most one less, so they do not run if this is 1.
+     */
+    public synchronized void setMaxPipelines(int maxPipelines) {
+        int max = Math.max(1, maxPipelines);
+        this.maxPipelines = max;
+        // 最大数は常にコア数以上にする必要がある
+        if (max > pipelines.getMaximumPoolSize()) {
+            pipelines.setMaximumPoolSize(max);
+            pipelines.setCorePoolSize(max);
+        } else {
+            pipelines.setCorePoolSize(max);
+            pipelines.setMaximumPoolSize(max);
+        }
+        admitPrefetches();
+    }
+
+    /**
+     * @return True if the video is being downloaded into the cache
+     */
+    public boolean isDownloading(String videoId) {
+        return downloads.containsKey(videoId);
+    }
+
+    /**
+     * Downloads a video into the cache, or joins the download that is already running for it.
+     * Joining with a higher priority raises the priority of a download that has not started yet.
+     *
+     * @return Future that completes once the file has been added to the cache
+     */
+    public CompletableFuture<Void> download(String videoId, Priority priority) {
+        return join(videoId, priority, false).future;
+    }
+
+    /**
+     * Downloads a video into the cache at low priority, ahead of its playback.
+     * Every call must be matched by one call to {@link #cancelPrefetch(String)} if the prefetch is no longer wanted.
+     *
+     * @return Future that completes once the file has been added to the cache
+     */
+    public CompletableFuture<Void> prefetch(String videoId) {
+        return join(videoId, Priority.PREFETCH, true).future;
+    }
+
+    private Download join(String videoId, Priority priority, boolean prefetch) {
+        while (true) {
+            Download created = new Download(videoId, priority);
+            if (prefetch)
+                created.prefetchers = 1;
+            Download download = downloads.putIfAbsent(videoId, created);
+            if (download == null) {
+                created.future.whenComplete((r, t) -> downloads.remove(videoId, created));
+                submit(created.task);
+                return created;
+            }
+            synchronized (download) {
+                // 先読みが取り消された直後
+                if (download.future.isCancelled()) {
+                    downloads.remove(videoId, download);
+                    continue;
+                }
+                if (prefetch)
+                    download.prefetchers++;
+                if (priority.compareTo(download.task.priority) < 0)
+                    raise(download.task, priority);
+            }
+            return download;
+        }
+    }
+
+    /**
+     * Withdraws one request made with {@link #prefetch(String)}. The download is cancelled and its processes are
+     * stopped once every request for the video has been withdrawn, so prefetches of the same video by other callers
+     * keep running. Nothing is cancelled if a track has joined the download for playback in the meantime.
+     */
+    public void cancelPrefetch(String videoId) {
+        Download download = downloads.get(videoId);
+        if (download == null)
+            return;
+        synchronized (download) {
+            if (download.prefetchers > 0)
+                download.prefetchers--;
+            if (download.prefetchers > 0 || download.task.priority != Priority.PREFETCH || download.future.isDone())
+                return;
+            log.debug("Cancelling prefetch of NicoNico track {}", videoId);
+            download.future.cancel(false);
+            if (download.runner != null)
+                download.runner.interrupt();
+        }
+        withdraw(download.task);
+        admitPrefetches();
+    }
+
+    /**
+     * Downloads a video to a temporary file that is not shared with other requests, for when the cache is disabled.
+     * The caller deletes the file.
+     */
+    public Path downloadTemp(String videoId) throws InterruptedException {
+        CompletableFuture<Path> result = new CompletableFuture<>();
+        submit(new Task(Priority.PLAYBACK, result, () -> {
+            if (result.isDone())
+                return;
+            Path file = null;
+            try {
+                file = Files.createTempFile(videoId + "-", ".opus");
+                runPipeline(sourceManager.createPipeline(videoId, false, file));
+                if (!result.complete(file))
+                    Files.deleteIfExists(file);
+            } catch (Exception e) {
+                deleteQuietly(file);
+                result.completeExceptionally(e);
+            }
+        }));
+        return await(result);
+    }
+
+    /**
+     * Starts yt-dlp and ffmpeg for playback as soon as a slot is free.
+     * The slot is held until the processes have exited.
+     *
+     * @param buffer   File to copy the WAV output to
+     * @param opusFile File to also write Ogg Opus to for the cache, or null
+     */
+    public ProcessSeekableInputStream stream(String videoId, Path buffer, Path opusFile) throws InterruptedException {
+        CompletableFuture<ProcessSeekableInputStream> result = new CompletableFuture<>();
+        submit(new Task(Priority.PLAYBACK, result, () -> {
+            if (result.isDone())
+                return;
+            try {
+                ProcessSeekableInputStream stream = ProcessSeekableInputStream.start(
+                        sourceManager.createPipeline(videoId, true, opusFile), buffer, readers);
+                // 待っていたトラックが停止された場合
+                if (!result.complete(stream)) {
+                    stream.close();
+                    return;
+                }
+                stream.awaitFinished();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (Exception e) {
+                result.completeExceptionally(e);
+            }
+        }));
+        return await(result);
+    }
+
+    /**
+     * Stops all processes. Work that has not started yet fails.
+     */
+    public void shutdown() {
+        pipelines.shutdownNow().forEach(task -> ((Task) task).reject());
+        readers.shutdownNow();
+        synchronized (this) {
+            deferred.forEach(Task::reject);
+            deferred.clear();
+        }
+    }
+
+    private void submit(Task task) {
+        if (task.priority == Priority.PREFETCH) {
+            synchronized (this) {
+                deferred.add(task);
+            }
+            admitPrefetches();
+            return;
+        }
+        execute(task);
+    }
+
+    private void execute(Task task) {
+        try {
+            pipelines.execute(task);
+        } catch (RejectedExecutionException e) {
+            release(task);
+            task.reject();
+        }
+    }
+
+    /**
+     * Passes waiting prefetches to the pool while they would leave a slot free for playback.
+     */
+    private synchronized void admitPrefetches() {
+        while (prefetching < maxPipelines - 1 && !deferred.isEmpty()) {
+            Task task = deferred.poll();
+            if (task.result.isDone())
+                continue;
+            task.admitted = true;
+            prefetching++;
+            execute(task);
+        }
+    }
+
+    /**
+     * Gives back the slot of a prefetch that has finished or left the pool before starting.
+     */
+    private synchronized void release(Task task) {
+        if (task.admitted) {
+            task.admitted = false;
+            prefetching--;
+        }
+    }
+
+    /**
+     * Removes a task that has not started yet.
+     *
+     * @return False if the task has already started
+     */
+    private synchronized boolean withdraw(Task task) {
+        if (deferred.remove(task))
+            return true;
+        if (!pipelines.getQueue().remove(task))
+            return false;
+        release(task);
+        return true;
+    }
+
+    private void raise(Task task, Priority priority) {
+        // 取り出せた場合は、まだ開始していない
+        boolean queued = withdraw(task);
+        task.priority = priority;
+        if (queued)
+            submit(task);
+        admitPrefetches();
+    }
+
+    private void runDownload(Download download) {
+        synchronized (download) {
+            if (download.future.isDone())
+                return;
+            download.runner = Thread.currentThread();
+        }
+        NicoAudioCache cache = sourceManager.getCache();
+        Path file = null;
+        try {
+            file = cache.createTempFile(download.videoId);
+            if (file == null)
+                throw new IOException("The cache is disabled");
+            log.info("Downloading NicoNico track from: {}", download.videoId);
+            runPipeline(sourceManager.createPipeline(download.videoId, false, file));
+            cache.put(download.videoId, file);
+            download.future.complete(null);
+        } catch (Exception e) {
+            deleteQuietly(file);
+            download.future.completeExceptionally(e);
+            if (e instanceof InterruptedException)
+                Thread.currentThread().interrupt();
+        } finally {
+            synchronized (download) {
+                download.runner = null;
+            }
+        }
+    }
+
+    private void runPipeline(List<ProcessBuilder> pipeline) throws IOException, InterruptedException {
+        List<Process> processes = ProcessSeekableInputStream.startPipeline(pipeline, readers);
+        try {
+            for (Process process : processes) {
+                int exitCode = process.waitFor();
+                if (exitCode != 0)
+                    throw new IOException(process.info().command().orElse("yt-dlp") + " failed with exit code " + exitCode);
+            }
+        } finally {
+            processes.forEach(Process::destroyForcibly);
+        }
+    }
+
+    private static <T> T await(CompletableFuture<T> result) throws InterruptedException {
+        try {
+            return result.get();
+        } catch (InterruptedException e) {
+            // 開始前なら実行されず、開始後なら結果が破棄される
+            result.cancel(false);
+            throw e;
+        } catch (ExecutionException e) {
+            throw new FriendlyException("Failed to download the NicoNico track.", SUSPICIOUS, e.getCause());
+        }
+    }
+
+    private static void deleteQuietly(Path file) {
+        if (file == null)
+            return;
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            log.warn("Failed to delete {}", file, e);
+        }
+    }
+
+    private final class Download {
+        private final String videoId;
+        private final CompletableFuture<Void> future = new CompletableFuture<>();
+        private final Task task;
+        // ダウンロードを実行しているスレッド。取り消す時に割り込む
+        private Thread runner;
+        // 取り消されていない先読みの要求の数
+        private int prefetchers;
+
+        private Download(String videoId, Priority priority) {
+            this.videoId = videoId;
+            this.task = new Task(priority, future, () -> runDownload(this));
+        }
+    }
+
+    private final class Task implements Runnable, Comparable<Task> {
+        private final long order = sequence.incrementAndGet();
+        private final CompletableFuture<?> result;
+        private final Runnable work;
+        // キューに入っている間は変更しない
+        private volatile Priority priority;
+        // 先読みとしてプールに渡され、枠を数えられている。マネージャーのロックで保護される
+        private boolean admitted;
+
+        private Task(Priority priority, CompletableFuture<?> result, Runnable work) {
+            this.priority = priority;
+            this.result = result;
+            this.work = work;
+        }
+
+        @Override
+        public void run() {
+            try {
+                work.run();
+            } finally {
+                release(this);
+                admitPrefetches();
+            }
+        }
+
+        private void reject() {
+            result.completeExceptionally(new InterruptedIOException("NicoNico download manager was shut down"));
+        }
+
+        @Override
+        public int compareTo(Task other) {
+            int byPriority = priority.compareTo(other.priority);
+            return byPriority != 0 ? byPriority : Long.compare(order, other.order);
+        }
+    }
+}
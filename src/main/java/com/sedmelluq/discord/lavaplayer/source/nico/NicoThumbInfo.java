@@ -0,0 +1,162 @@
+package com.sedmelluq.discord.lavaplayer.source.nico;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Video metadata from the getthumbinfo API.
+ * <p>
+ * The response is read with a streaming parser that keeps only the text of the direct children of
+ * {@code thumb} and the tags, instead of building a document tree.
+ */
+public class NicoThumbInfo {
+    private static final XMLInputFactory FACTORY = createFactory();
+
+    private final Map<String, String> fields;
+    private final List<String> tags;
+
+    private NicoThumbInfo(Map<String, String> fields, List<String> tags) {
+        this.fields = fields;
+        this.tags = Collections.unmodifiableList(tags);
+    }
+
+    private static XMLInputFactory createFactory() {
+        XMLInputFactory factory = XMLInputFactory.newFactory();
+        // 外部から取得した XML なので、DTD と外部エンティティを読み込まない
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        factory.setProperty(XMLInputFactory.IS_COALESCING, true);
+        return factory;
+    }
+
+    /**
+     * @return The metadata, or null if the API reported an error such as a deleted video
+     */
+    public static NicoThumbInfo parse(InputStream input) throws IOException {
+        try {
+            return parse(FACTORY.createXMLStreamReader(input));
+        } catch (XMLStreamException e) {
+            throw new IOException("Invalid getthumbinfo response", e);
+        }
+    }
+
+    /**
+     * @return The metadata, or null if the API reported an error such as a deleted video
+     */
+    public static NicoThumbInfo parse(Reader input) throws IOException {
+        try {
+            return parse(FACTORY.createXMLStreamReader(input));
+        } catch (XMLStreamException e) {
+            throw new IOException("Invalid getthumbinfo response", e);
+        }
+    }
+
+    private static NicoThumbInfo parse(XMLStreamReader reader) throws XMLStreamException {
+        try {
+            Map<String, String> fields = new HashMap<>();
+            List<String> tags = new ArrayList<>();
+            boolean found = false;
+            // nicovideo_thumb_response > thumb > 項目 > tag
+            int depth = 0;
+            while (reader.hasNext()) {
+                int event = reader.next();
+                if (event == XMLStreamConstants.END_ELEMENT) {
+                    depth--;
+                    continue;
+                }
+                if (event != XMLStreamConstants.START_ELEMENT)
+                    continue;
+                depth++;
+                String name = reader.getLocalName();
+                if (depth == 1) {
+                    if (!"ok".equals(reader.getAttributeValue(null, "status")))
+                        return null;
+                } else if (depth == 2) {
+                    found |= "thumb".equals(name);
+                } else if (depth == 3 && !"tags".equals(name)) {
+                    fields.put(name, readText(reader));
+                    depth--;
+                } else if (depth == 4 && "tag".equals(name)) {
+                    tags.add(readText(reader));
+                    depth--;
+                }
+            }
+            return found ? new NicoThumbInfo(fields, tags) : null;
+        } finally {
+            reader.close();
+        }
+    }
+
+    /**
+     * Reads the text of the current element, skipping any child elements, and moves to its end.
+     */
+    private static String readText(XMLStreamReader reader) throws XMLStreamException {
+        StringBuilder text = new StringBuilder();
+        int depth = 1;
+        while (depth > 0) {
+            int event = reader.next();
+            if (event == XMLStreamConstants.START_ELEMENT)
+                depth++;
+            else if (event == XMLStreamConstants.END_ELEMENT)
+                depth--;
+            else if (depth == 1 && (event == XMLStreamConstants.CHARACTERS || event == XMLStreamConstants.CDATA))
+                text.append(reader.getText());
+        }
+        return text.toString().trim();
+    }
+
+    /**
+     * @param name Name of a child element of {@code thumb}, such as {@code title}
+     * @return Text of the element, or null if it is missing
+     */
+    public String get(String name) {
+        return fields.get(name);
+    }
+
+    /**
+     * @return Value of the element as an integer, or the default value if it is missing or not a number
+     */
+    public int getInt(String name, int defaultValue) {
+        String value = fields.get(name);
+        if (value == null)
+            return defaultValue;
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            return defaultValue;
+        }
+    }
+
+    public boolean has(String name) {
+        return fields.containsKey(name);
+    }
+
+    public String getTitle() {
+        return fields.get("title");
+    }
+
+    /**
+     * @return Length in the {@code m:ss} format
+     */
+    public String getLength() {
+        return fields.get("length");
+    }
+
+    public String getThumbnailUrl() {
+        return fields.get("thumbnail_url");
+    }
+
+    public List<String> getTags() {
+        return tags;
+    }
+}
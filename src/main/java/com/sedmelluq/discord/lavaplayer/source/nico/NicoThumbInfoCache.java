@@ -0,0 +1,106 @@
+package com.sedmelluq.discord.lavaplayer.source.nico;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Size-bounded cache of getthumbinfo metadata by video ID, with entries expiring after a fixed time.
+ * <p>
+ * One instance is shared by the source manager and the search API, so loading a playlist that repeats
+ * a video or playing a search result does not request the same metadata again.
+ * Only successful responses are cached.
+ */
+public class NicoThumbInfoCache {
+    private static final int DEFAULT_MAX_ENTRIES = 2000;
+    private static final long DEFAULT_TTL = TimeUnit.HOURS.toMillis(1);
+    private static final NicoThumbInfoCache SHARED = new NicoThumbInfoCache(DEFAULT_MAX_ENTRIES, DEFAULT_TTL);
+
+    private final int maxEntries;
+    private final long ttl;
+    private final Map<String, Entry> entries;
+    private long hits;
+    private long misses;
+
+    /**
+     * @param maxEntries Maximum number of videos to keep, the least recently used one is dropped first
+     * @param ttl        Time in milliseconds after which an entry is loaded again
+     */
+    public NicoThumbInfoCache(int maxEntries, long ttl) {
+        this.maxEntries = maxEntries;
+        this.ttl = ttl;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > NicoThumbInfoCache.this.maxEntries;
+            }
+        };
+    }
+
+    /**
+     * @return The instance shared by the source manager and the search API
+     */
+    public static NicoThumbInfoCache getShared() {
+        return SHARED;
+    }
+
+    /**
+     * Returns the cached metadata of a video, loading it if it is missing or has expired.
+     *
+     * @param videoId ID of the video
+     * @param loader  Loads the metadata on a miss, without holding the lock of the cache
+     * @return The metadata, or null if the video does not exist
+     */
+    public NicoThumbInfo get(String videoId, Loader loader) throws IOException {
+        long now = System.currentTimeMillis();
+        synchronized (this) {
+            Entry entry = entries.get(videoId);
+            if (entry != null && entry.expires > now) {
+                hits++;
+                return entry.info;
+            }
+            misses++;
+        }
+        NicoThumbInfo info = loader.load(videoId);
+        if (info != null) {
+            synchronized (this) {
+                entries.put(videoId, new Entry(info, now + ttl));
+            }
+        }
+        return info;
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    /**
+     * Loads the metadata of a video from the API.
+     */
+    @FunctionalInterface
+    public interface Loader {
+        /**
+         * @return The metadata, or null if the video does not exist
+         */
+        NicoThumbInfo load(String videoId) throws IOException;
+    }
+
+    private static final class Entry {
+        private final NicoThumbInfo info;
+        private final long expires;
+
+        private Entry(NicoThumbInfo info, long expires) {
+            this.info = info;
+            this.expires = expires;
+        }
+    }
+}
@@ -0,0 +1,271 @@
+package com.sedmelluq.discord.lavaplayer.source.nico;
+
+import com.sedmelluq.discord.lavaplayer.tools.io.SeekableInputStream;
+import com.sedmelluq.discord.lavaplayer.track.info.AudioTrackInfoProvider;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Seekable stream over the output of an external process.
+ * <p>
+ * The output is copied to a buffer file on a reader thread and can be read as soon as it arrives.
+ * Seeking within the buffered range is immediate; seeking past it waits until the data has been written.
+ * Once the process has finished successfully, the buffer file holds the complete output.
+ */
+public class ProcessSeekableInputStream extends SeekableInputStream {
+    private static final Logger log = LoggerFactory.getLogger(ProcessSeekableInputStream.class);
+    // 最初のデータが届くまで、または次のデータが届くまで待つ時間
+    private static final long READ_TIMEOUT = TimeUnit.SECONDS.toMillis(30);
+
+    private final List<Process> processes;
+    private final Path buffer;
+    private final FileChannel writeChannel;
+    private final FileChannel readChannel;
+    private final Object lock = new Object();
+    private long position;
+    // 以下は lock で保護する
+    private long buffered;
+    private boolean finished;
+    private IOException failure;
+
+    /**
+     * @param processes Piped processes, the standard output of the last one is read
+     * @param buffer    File to copy the output to
+     * @param readers   Executor to copy the output on, which must not limit the number of threads
+     */
+    public ProcessSeekableInputStream(List<Process> processes, Path buffer, Executor readers) throws IOException {
+        super(Long.MAX_VALUE, 0);
+        this.processes = processes;
+        this.buffer = buffer;
+        this.writeChannel = FileChannel.open(buffer, StandardOpenOption.WRITE, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING);
+        this.readChannel = FileChannel.open(buffer, StandardOpenOption.READ);
+        readers.execute(this::copy);
+    }
+
+    /**
+     * Starts the processes connected with pipes and creates a stream over the output of the last one.
+     *
+     * @param pipeline Processes to start
+     * @param buffer   File to copy the output to
+     * @param readers  Executor to read the output and error streams on
+     * @return Stream over the output
+     */
+    public static ProcessSeekableInputStream start(List<ProcessBuilder> pipeline, Path buffer, Executor readers) throws IOException {
+        List<Process> processes = startPipeline(pipeline, readers);
+        try {
+            return new ProcessSeekableInputStream(processes, buffer, readers);
+        } catch (IOException | RuntimeException e) {
+            processes.forEach(Process::destroyForcibly);
+            throw e;
+        }
+    }
+
+    /**
+     * Starts the processes connected with pipes and logs their error output.
+     *
+     * @param pipeline Processes to start
+     * @param readers  Executor to read the error streams on
+     * @return Started processes
+     */
+    static List<Process> startPipeline(List<ProcessBuilder> pipeline, Executor readers) throws IOException {
+        List<Process> processes = pipeline.size() == 1
+                ? Collections.singletonList(pipeline.get(0).start())
+                : ProcessBuilder.startPipeline(pipeline);
+        // エラー出力を読み取らないとプロセスが止まるため、ログに出力する
+        try {
+            processes.forEach(process -> readers.execute(() -> logErrors(process)));
+        } catch (RuntimeException e) {
+            processes.forEach(Process::destroyForcibly);
+            throw e;
+        }
+        return processes;
+    }
+
+    private static void logErrors(Process process) {
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(process.getErrorStream(), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null)
+                log.warn(line);
+        } catch (IOException e) {
+            log.debug("Error reading process error stream", e);
+        }
+    }
+
+    private void copy() {
+        Process last = processes.get(processes.size() - 1);
+        byte[] bytes = new byte[64 * 1024];
+        IOException error = null;
+        try (InputStream input = last.getInputStream()) {
+            int read;
+            while ((read = input.read(bytes)) != -1) {
+                ByteBuffer chunk = ByteBuffer.wrap(bytes, 0, read);
+                while (chunk.hasRemaining())
+                    writeChannel.write(chunk);
+                synchronized (lock) {
+                    buffered += read;
+                    lock.notifyAll();
+                }
+            }
+            for (Process process : processes) {
+                int exitCode = process.waitFor();
+                if (exitCode != 0)
+                    error = new IOException(process.info().command().orElse("process") + " failed with exit code " + exitCode);
+            }
+        } catch (IOException e) {
+            error = e;
+        } catch (InterruptedException e) {
+            error = new InterruptedIOException();
+            Thread.currentThread().interrupt();
+        } finally {
+            synchronized (lock) {
+                finished = true;
+                failure = error;
+                lock.notifyAll();
+            }
+        }
+    }
+
+    /**
+     * Waits until there is data after the position or the output has ended.
+     * Fails if no data arrives for {@link #READ_TIMEOUT}.
+     *
+     * @return Number of bytes that can be read, 0 at the end of the output
+     */
+    private long await(long position) throws IOException {
+        synchronized (lock) {
+            long deadline = System.currentTimeMillis() + READ_TIMEOUT;
+            long seen = buffered;
+            while (buffered <= position && !finished) {
+                // データが届いている間は、シーク先まで時間がかかっても待ち続ける
+                if (buffered > seen) {
+                    seen = buffered;
+                    deadline = System.currentTimeMillis() + READ_TIMEOUT;
+                }
+                long wait = deadline - System.currentTimeMillis();
+                if (wait <= 0)
+                    throw new IOException("Timed out waiting for stream data");
+                try {
+                    lock.wait(wait);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException();
+                }
+            }
+            if (buffered <= position && failure != null)
+                throw new IOException("Stream process failed", failure);
+            return Math.max(0, buffered - position);
+        }
+    }
+
+    @Override
+    public int read() throws IOException {
+        byte[] one = new byte[1];
+        return read(one, 0, 1) == -1 ? -1 : one[0] & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0)
+            return 0;
+        long available = await(position);
+        if (available == 0)
+            return -1;
+        ByteBuffer target = ByteBuffer.wrap(b, off, (int) Math.min(len, available));
+        int read = readChannel.read(target, position);
+        if (read > 0)
+            position += read;
+        return read;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        long available = await(position);
+        long skipped = Math.min(n, available);
+        position += skipped;
+        return skipped;
+    }
+
+    @Override
+    public int available() {
+        synchronized (lock) {
+            return (int) Math.min(Integer.MAX_VALUE, Math.max(0, buffered - position));
+        }
+    }
+
+    @Override
+    public long getPosition() {
+        return position;
+    }
+
+    @Override
+    protected void seekHard(long position) {
+        // まだ書き込まれていない位置は、読み取る時に書き込まれるまで待つ
+        this.position = position;
+    }
+
+    @Override
+    public boolean canSeekHard() {
+        return true;
+    }
+
+    @Override
+    public List<AudioTrackInfoProvider> getTrackInfoProviders() {
+        return Collections.emptyList();
+    }
+
+    /**
+     * @return True if the processes exited successfully and all output was written to the buffer file
+     */
+    public boolean isComplete() {
+        synchronized (lock) {
+            return finished && failure == null;
+        }
+    }
+
+    /**
+     * Waits until the processes have exited and all output has been written to the buffer file.
+     */
+    public void awaitFinished() throws InterruptedException {
+        synchronized (lock) {
+            while (!finished)
+                lock.wait();
+        }
+    }
+
+    /**
+     * @return File the output is copied to
+     */
+    public Path getBuffer() {
+        return buffer;
+    }
+
+    @Override
+    public void close() throws IOException {
+        processes.forEach(process -> {
+            if (process.isAlive()) {
+                log.debug("Stopping stream process {}", process.pid());
+                process.destroyForcibly();
+            }
+        });
+        try {
+            readChannel.close();
+        } finally {
+            writeChannel.close();
+        }
+    }
+}
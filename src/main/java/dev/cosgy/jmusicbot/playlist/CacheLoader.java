@@ -19,63 +19,73 @@ package dev.cosgy.jmusicbot.playlist;
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.jagrosh.jmusicbot.BotConfig;
+import com.jagrosh.jmusicbot.audio.AudioHandler;
 import com.jagrosh.jmusicbot.audio.QueuedTrack;
 import com.jagrosh.jmusicbot.audio.RequestMetadata;
-import com.jagrosh.jmusicbot.queue.FairQueue;
 import com.jagrosh.jmusicbot.utils.OtherUtil;
-import com.sedmelluq.discord.lavaplayer.player.AudioLoadResultHandler;
 import com.sedmelluq.discord.lavaplayer.player.AudioPlayerManager;
-import com.sedmelluq.discord.lavaplayer.tools.FriendlyException;
-import com.sedmelluq.discord.lavaplayer.track.AudioPlaylist;
+import com.sedmelluq.discord.lavaplayer.tools.io.MessageInput;
+import com.sedmelluq.discord.lavaplayer.tools.io.MessageOutput;
 import com.sedmelluq.discord.lavaplayer.track.AudioTrack;
+import com.sedmelluq.discord.lavaplayer.track.DecodedTrackHolder;
 import dev.cosgy.jmusicbot.util.Cache;
+import dev.cosgy.jmusicbot.util.QueueCache;
 import org.msgpack.jackson.dataformat.MessagePackFactory;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.*;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryStream;
 import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
 import java.util.ArrayList;
-import java.util.LinkedList;
 import java.util.List;
-import java.util.function.Consumer;
 
 /**
+ * 再生待ちをキャッシュファイル({@code cache/<ギルドID>.cash})に保存し、復元します。
+ * <p>
+ * キャッシュファイルは {@link QueueCache} を MessagePack で書き込んだもので、
+ * 楽曲を lavaplayer の形式でエンコードして保存するため、復元時にはネットワークにアクセスしません。
+ * 以前の形式({@link Cache} の一覧)で保存されたキャッシュファイルも読み込めます。
+ *
  * @author Kosugi_kun
  */
 public class CacheLoader {
+    private static final int VERSION = 2;
+    private static final String CHECKPOINT_FOLDER = "checkpoint";
     private final BotConfig config;
+    private final ObjectMapper objectMapper = new ObjectMapper(new MessagePackFactory());
     Logger log = LoggerFactory.getLogger("CacheLoader");
 
     public CacheLoader(BotConfig config) {
         this.config = config;
     }
 
-    public void Save(String guildId, FairQueue<QueuedTrack> queue) {
-        List<QueuedTrack> list = queue.getList();
-        if (list.isEmpty()) {
+    /**
+     * 再生中の楽曲と再生位置、再生待ちの楽曲を保存します。
+     * 楽曲が無い場合は何もしません。
+     */
+    public void Save(String guildId, AudioHandler handler) {
+        AudioTrack playing = handler.getPlayer().getPlayingTrack();
+        List<QueuedTrack> list = handler.getQueue().snapshot();
+        if (playing == null && list.isEmpty()) {
             return;
         }
 
         if (!folderExists()) {
             createFolder();
         }
-        try {
-            createCache(guildId);
-        } catch (IOException e) {
-            e.printStackTrace();
-        }
 
         try {
-            writeCache(guildId, list);
+            writeCache(guildId, handler.getManager(), playing, list);
         } catch (IOException e) {
-            e.printStackTrace();
+            log.warn("キャッシュの書き込み中にエラーが発生しました。", e);
         }
-
     }
 
-
     public void Trim(List<String> list, String str) {
         log.debug("Trimを実行: " + str);
         String s = str.trim();
@@ -85,38 +95,148 @@ public class CacheLoader {
         list.add(s);
     }
 
+    /**
+     * キャッシュに保存されている楽曲の一覧を返します。楽曲の表示に使用します。
+     *
+     * @return 楽曲の一覧。読み込めなかった場合は null
+     */
     public List<Cache> GetCache(String serverId) {
-
         try {
-            log.debug("キャッシュの読み込み開始: " + "cache" + File.separator + serverId + ".cash");
+            Object data = readCache(cachePath(serverId));
+            if (!(data instanceof QueueCache))
+                //noinspection unchecked
+                return (List<Cache>) data;
+
+            List<Cache> list = new ArrayList<>();
+            for (QueueCache.Track track : ((QueueCache) data).getTracks()) {
+                list.add(new Cache(track.getTitle(), track.getAuthor(), track.getLength(), track.getUrl(),
+                        track.getIsStream(), track.getUrl(), track.getUserId()));
+            }
+            return list;
+        } catch (IOException e) {
+            log.warn("キャッシュの読み込み中にエラーが発生しました。", e);
+            return null;
+        }
+    }
 
+    /**
+     * キャッシュから再生待ちを復元します。
+     * エンコードして保存された楽曲はその場でデコードし、それ以外の楽曲は再生する直前に読み込む未読み込みの楽曲にします。
+     * 保存時に再生していた楽曲は、保存した再生位置から再生されるようにします。
+     *
+     * @return 復元した再生待ち。読み込めなかった場合は null
+     */
+    public CacheResult restore(AudioPlayerManager manager, String serverId) {
+        return restore(manager, cachePath(serverId));
+    }
 
-            File file = new File(OtherUtil.getPath("cache" + File.separator + serverId + ".cash").toString());
+    private CacheResult restore(AudioPlayerManager manager, Path path) {
+        Object data;
+        try {
+            data = readCache(path);
+        } catch (IOException e) {
+            log.warn("キャッシュの読み込み中にエラーが発生しました。", e);
+            return null;
+        }
 
-            byte[] data = new byte[(int) file.length()];
-            InputStream reader = new FileInputStream(file);
+        CacheResult result = new CacheResult();
+        if (!(data instanceof QueueCache)) {
+            // 以前の形式のキャッシュはURLしか持たないため、未読み込みの楽曲として復元する
+            //noinspection unchecked
+            for (Cache cache : (List<Cache>) data) {
+                RequestMetadata rm = new RequestMetadata(parseUserId(cache.getUserId()), null, null, null);
+                long length = cache.getLength() == null ? 0 : Long.parseLong(cache.getLength());
+                result.tracks.add(QueuedTrack.lazy(cache.getUrl(), cache.getTitle(), length, rm));
+            }
+            return result;
+        }
 
-            reader.read(data);
+        QueueCache queue = (QueueCache) data;
+        result.channelId = queue.getChannelId();
+        for (int i = 0; i < queue.getTracks().size(); i++) {
+            QueueCache.Track saved = queue.getTracks().get(i);
+            RequestMetadata rm = new RequestMetadata(saved.getUserId(), saved.getUsername(), saved.getDiscrim(), saved.getAvatar());
+            AudioTrack track = decode(manager, saved.getTrack());
+            if (track == null) {
+                if (saved.getUrl() == null) {
+                    result.errors.add(new CacheLoadError(i, saved.getTitle(), "楽曲をデコードできませんでした"));
+                    continue;
+                }
+                result.tracks.add(QueuedTrack.lazy(saved.getUrl(), saved.getTitle(), saved.getLength(), rm));
+                continue;
+            }
+            if (i == 0 && queue.isPlaying() && queue.getPosition() > 0 && track.isSeekable())
+                track.setPosition(queue.getPosition());
+            result.decoded++;
+            result.tracks.add(new QueuedTrack(track, rm));
+        }
+        return result;
+    }
 
-            ObjectMapper objectMapper = new ObjectMapper(new MessagePackFactory());
-            List<dev.cosgy.jmusicbot.util.Cache> deserialized = objectMapper.readValue(data, new TypeReference<List<dev.cosgy.jmusicbot.util.Cache>>() {
-            });
+    private static long parseUserId(String userId) {
+        try {
+            return userId == null ? 0L : Long.parseLong(userId);
+        } catch (NumberFormatException e) {
+            return 0L;
+        }
+    }
 
-            log.debug("キャッシュの読み込み完了");
-            return deserialized;
+    private static AudioTrack decode(AudioPlayerManager manager, byte[] bytes) {
+        if (bytes == null)
+            return null;
+        try {
+            DecodedTrackHolder holder = manager.decodeTrack(new MessageInput(new ByteArrayInputStream(bytes)));
+            return holder == null ? null : holder.decodedTrack;
         } catch (IOException e) {
-            log.debug("キャッシュの読み込み中にエラーが発生しました。");
-            e.printStackTrace();
             return null;
         }
     }
 
-    public CacheResult ConvertCache(List<dev.cosgy.jmusicbot.util.Cache> data) {
-        List<String> urls = new ArrayList<>();
-        for (dev.cosgy.jmusicbot.util.Cache datum : data) {
-            urls.add(datum.getUrl());
+    private static byte[] encode(AudioPlayerManager manager, AudioTrack track) {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            manager.encodeTrack(new MessageOutput(bytes), track);
+            return bytes.toByteArray();
+        } catch (IOException | RuntimeException e) {
+            // エンコードに対応していない楽曲は、復元時にURLから読み込む
+            return null;
+        }
+    }
+
+    /**
+     * キャッシュファイルを読み込みます。
+     * MessagePack の先頭が配列であれば以前の形式とみなします。
+     *
+     * @return 新しい形式の場合は {@link QueueCache}、以前の形式の場合は {@link Cache} の一覧
+     */
+    private Object readCache(Path path) throws IOException {
+        log.debug("キャッシュの読み込み開始: " + path);
+        byte[] data = Files.readAllBytes(path);
+        if (data.length == 0)
+            throw new IOException("キャッシュファイルが空です");
+        Object result;
+        if (isArray(data[0])) {
+            result = objectMapper.readValue(data, new TypeReference<List<Cache>>() {
+            });
+        } else {
+            result = objectMapper.readValue(data, QueueCache.class);
         }
-        return new CacheResult(urls, false);
+        log.debug("キャッシュの読み込み完了");
+        return result;
+    }
+
+    private static boolean isArray(byte format) {
+        int b = format & 0xFF;
+        // fixarray, array 16, array 32
+        return (b >= 0x90 && b <= 0x9F) || b == 0xDC || b == 0xDD;
+    }
+
+    private static Path cachePath(String serverId) {
+        return OtherUtil.getPath("cache" + File.separator + serverId + ".cash");
+    }
+
+    private static Path checkpointPath(long guildId) {
+        return OtherUtil.getPath("cache" + File.separator + CHECKPOINT_FOLDER + File.separator + guildId + ".cash");
     }
 
     public void createFolder() {
@@ -132,45 +252,140 @@ public class CacheLoader {
 
     public boolean cacheExists(String serverId) {
         log.debug("確認するファイル名：" + serverId + ".cash");
-        return Files.exists(OtherUtil.getPath("cache" + File.separator + serverId + ".cash"));
+        return Files.exists(cachePath(serverId));
     }
 
-    public void createCache(String serverId) throws IOException {
-
-        if (cacheExists(serverId)) {
-            log.info("すでにキャッシュファイルが存在していたため、古いキャッシュを削除します。");
-            deleteCache(serverId);
-        }
-        Files.createFile(OtherUtil.getPath("cache" + File.separator + serverId + ".cash"));
+    public void writeCache(String serverId, AudioPlayerManager manager, AudioTrack playing, List<QueuedTrack> queuedTracks) throws IOException {
+        write(cachePath(serverId), manager, playing, queuedTracks, 0L);
     }
 
-    public void writeCache(String serverId, List<QueuedTrack> queuedTracks) throws IOException {
-        List<dev.cosgy.jmusicbot.util.Cache> data = new ArrayList<>();
+    private void write(Path path, AudioPlayerManager manager, AudioTrack playing, List<QueuedTrack> queuedTracks, long channelId) throws IOException {
+        List<QueueCache.Track> tracks = new ArrayList<>(queuedTracks.size() + 1);
+        if (playing != null)
+            tracks.add(toCache(manager, playing, playing.getUserData(RequestMetadata.class)));
 
         for (QueuedTrack queuedTrack : queuedTracks) {
             AudioTrack que = queuedTrack.getTrack();
-            queuedTrack.getTrack().getUserData();
-            data.add(new Cache(
-                    que.getInfo().title,
-                    que.getInfo().author,
-                    que.getInfo().length,
-                    que.getInfo().identifier,
-                    que.getInfo().isStream,
-                    que.getInfo().uri,
-                    que.getUserData(RequestMetadata.class).getOwner()));
+            if (que == null) {
+                // 未読み込みの楽曲は識別子をURLとして保存し、復元時に読み込む
+                QueueCache.Track track = new QueueCache.Track();
+                track.setTitle(queuedTrack.getTitle());
+                track.setLength(queuedTrack.getDuration());
+                track.setUrl(queuedTrack.getUri());
+                setRequester(track, queuedTrack.getRequestMetadata());
+                tracks.add(track);
+                continue;
+            }
+            tracks.add(toCache(manager, que, queuedTrack.getRequestMetadata()));
+        }
+
+        QueueCache data = new QueueCache(VERSION, playing != null, playing == null ? 0 : playing.getPosition(), channelId, tracks);
+        Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+        Files.write(temp, objectMapper.writeValueAsBytes(data));
+        try {
+            Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING);
         }
+    }
 
-        ObjectMapper objectMapper = new ObjectMapper(new MessagePackFactory());
-        byte[] bytes = objectMapper.writeValueAsBytes(data);
-        FileOutputStream fos = new FileOutputStream(OtherUtil.getPath("cache" + File.separator + serverId + ".cash").toString(), true);
+    private static QueueCache.Track toCache(AudioPlayerManager manager, AudioTrack audioTrack, RequestMetadata rm) {
+        QueueCache.Track track = new QueueCache.Track();
+        track.setTrack(encode(manager, audioTrack));
+        track.setTitle(audioTrack.getInfo().title);
+        track.setAuthor(audioTrack.getInfo().author);
+        track.setLength(audioTrack.getInfo().length);
+        track.setIsStream(audioTrack.getInfo().isStream);
+        track.setUrl(audioTrack.getInfo().uri);
+        setRequester(track, rm);
+        return track;
+    }
 
-        fos.write(bytes);
-        fos.flush();
-        fos.close();
+    private static void setRequester(QueueCache.Track track, RequestMetadata rm) {
+        if (rm == null || rm.user == null)
+            return;
+        track.setUserId(rm.user.id);
+        track.setUsername(rm.user.username);
+        track.setDiscrim(rm.user.discrim);
+        track.setAvatar(rm.user.avatar);
     }
 
     public void deleteCache(String serverId) throws IOException {
-        Files.delete(Paths.get("cache" + File.separator + serverId + ".cash"));
+        Files.delete(cachePath(serverId));
+    }
+
+    /**
+     * 障害からの復旧のために、再生中の楽曲と再生待ちをチェックポイント({@code cache/checkpoint/<ギルドID>.cash})に保存します。
+     * チェックポイントは {@code /play} で復元するキャッシュとは別に保存し、起動時に {@link #restoreCheckpoint} で復元します。
+     * 楽曲が無い場合はチェックポイントを削除します。
+     *
+     * @param channelId 接続しているボイスチャンネル
+     */
+    public void checkpoint(long guildId, long channelId, AudioHandler handler) throws IOException {
+        AudioTrack playing = handler.getPlayer().getPlayingTrack();
+        List<QueuedTrack> list = handler.getQueue().snapshot();
+        Path path = checkpointPath(guildId);
+        if (playing == null && list.isEmpty()) {
+            Files.deleteIfExists(path);
+            return;
+        }
+        Files.createDirectories(path.getParent());
+        write(path, handler.getManager(), playing, list, channelId);
+    }
+
+    /**
+     * @return チェックポイントが保存されているギルドのID
+     */
+    public List<Long> getCheckpoints() {
+        List<Long> guilds = new ArrayList<>();
+        Path dir = OtherUtil.getPath("cache" + File.separator + CHECKPOINT_FOLDER);
+        if (!Files.isDirectory(dir))
+            return guilds;
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(dir, "*.cash")) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                try {
+                    guilds.add(Long.parseLong(name.substring(0, name.length() - ".cash".length())));
+                } catch (NumberFormatException ignore) {
+                }
+            }
+        } catch (IOException e) {
+            log.warn("チェックポイントの一覧を取得できませんでした。", e);
+        }
+        return guilds;
+    }
+
+    /**
+     * チェックポイントから再生待ちを復元します。
+     *
+     * @return 復元した再生待ち。読み込めなかった場合は null
+     */
+    public CacheResult restoreCheckpoint(AudioPlayerManager manager, long guildId) {
+        return restore(manager, checkpointPath(guildId));
+    }
+
+    public void deleteCheckpoint(long guildId) {
+        try {
+            Files.deleteIfExists(checkpointPath(guildId));
+        } catch (IOException e) {
+            log.warn("チェックポイントを削除できませんでした。", e);
+        }
+    }
+
+    /**
+     * チェックポイントを {@code /play} で復元できるキャッシュとして残します。
+     * 既にキャッシュがある場合はキャッシュを優先し、チェックポイントを削除します。
+     */
+    public void keepCheckpoint(long guildId) {
+        Path cache = cachePath(String.valueOf(guildId));
+        try {
+            if (Files.exists(cache))
+                Files.deleteIfExists(checkpointPath(guildId));
+            else
+                Files.move(checkpointPath(guildId), cache);
+        } catch (IOException e) {
+            log.warn("チェックポイントをキャッシュとして残せませんでした。", e);
+        }
     }
 
     public static class CacheLoadError {
@@ -197,93 +412,38 @@ public class CacheLoader {
         }
     }
 
-    public class CacheResult {
-        private final List<String> items;
-        private final boolean shuffle;
-        private final List<AudioTrack> tracks = new LinkedList<>();
-        private final List<CacheLoadError> errors = new LinkedList<>();
-        private boolean loaded = false;
-
-        public CacheResult(List<String> items, boolean shuffle) {
-            this.items = items;
-            this.shuffle = shuffle;
-        }
-
-        public void loadTracks(AudioPlayerManager manager, Consumer<AudioTrack> consumer, Runnable callback) {
-            if (loaded)
-                return;
-            loaded = true;
-            for (int i = 0; i < items.size(); i++) {
-                boolean last = i + 1 == items.size();
-                int index = i;
-                manager.loadItemOrdered("キャッシュ", items.get(i), new AudioLoadResultHandler() {
-                    private void done() {
-                        if (last) {
-                            if (callback != null)
-                                callback.run();
-                        }
-                    }
-
-                    @Override
-                    public void trackLoaded(AudioTrack at) {
-                        if (config.isTooLong(at))
-                            errors.add(new CacheLoadError(index, items.get(index), "このトラックは許可された最大長を超えています。"));
-                        else {
-                            at.setUserData(0L);
-                            tracks.add(at);
-                            consumer.accept(at);
-                        }
-                        done();
-                    }
-
-                    @Override
-                    public void playlistLoaded(AudioPlaylist ap) {
-                        if (ap.isSearchResult()) {
-                            trackLoaded(ap.getTracks().get(0));
-                        } else if (ap.getSelectedTrack() != null) {
-                            trackLoaded(ap.getSelectedTrack());
-                        } else {
-                            List<AudioTrack> loaded = new ArrayList<>(ap.getTracks());
-                            if (shuffle)
-                                for (int first = 0; first < loaded.size(); first++) {
-                                    int second = (int) (Math.random() * loaded.size());
-                                    AudioTrack tmp = loaded.get(first);
-                                    loaded.set(first, loaded.get(second));
-                                    loaded.set(second, tmp);
-                                }
-                            loaded.removeIf(config::isTooLong);
-                            loaded.forEach(at -> at.setUserData(0L));
-                            tracks.addAll(loaded);
-                            loaded.forEach(consumer);
-                        }
-                        done();
-                    }
-
-                    @Override
-                    public void noMatches() {
-                        errors.add(new CacheLoadError(index, items.get(index), "一致するものが見つかりませんでした。"));
-                        done();
-                    }
-
-                    @Override
-                    public void loadFailed(FriendlyException fe) {
-                        errors.add(new CacheLoadError(index, items.get(index), "トラックを読み込めませんでした: " + fe.getLocalizedMessage()));
-                        done();
-                    }
-                });
-            }
-        }
-
-        public List<String> getItems() {
-            return items;
+    /**
+     * キャッシュから復元した再生待ちです。
+     */
+    public static class CacheResult {
+        private final List<QueuedTrack> tracks = new ArrayList<>();
+        private final List<CacheLoadError> errors = new ArrayList<>();
+        private int decoded;
+        private long channelId;
+
+        /**
+         * @return 復元した楽曲。保存時に再生していた楽曲が先頭になります
+         */
+        public List<QueuedTrack> getTracks() {
+            return tracks;
         }
 
-        public List<AudioTrack> getTracks() {
-            return tracks;
+        /**
+         * @return ネットワークにアクセスせずに復元できた楽曲の数
+         */
+        public int getDecoded() {
+            return decoded;
         }
 
         public List<CacheLoadError> getErrors() {
             return errors;
         }
+
+        /**
+         * @return 保存時に接続していたボイスチャンネル。分からない場合は 0
+         */
+        public long getChannelId() {
+            return channelId;
+        }
     }
 }
@@ -1,20 +1,18 @@
 package dev.cosgy.jmusicbot.playlist;
 
 import com.jagrosh.jmusicbot.BotConfig;
+import com.jagrosh.jmusicbot.playlist.CompiledPlaylist;
+import com.jagrosh.jmusicbot.playlist.LoadablePlaylist;
+import com.jagrosh.jmusicbot.playlist.PlaylistIndex;
+import com.jagrosh.jmusicbot.playlist.PlaylistResolver;
 import com.jagrosh.jmusicbot.utils.OtherUtil;
-import com.sedmelluq.discord.lavaplayer.player.AudioLoadResultHandler;
-import com.sedmelluq.discord.lavaplayer.player.AudioPlayerManager;
-import com.sedmelluq.discord.lavaplayer.tools.FriendlyException;
-import com.sedmelluq.discord.lavaplayer.track.AudioPlaylist;
-import com.sedmelluq.discord.lavaplayer.track.AudioTrack;
 
 import java.io.File;
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.*;
-import java.util.function.Consumer;
-import java.util.stream.Collectors;
 import java.util.stream.IntStream;
 
 /**
@@ -22,9 +20,13 @@ import java.util.stream.IntStream;
  */
 public class PubliclistLoader {
     private final BotConfig config;
+    private final PlaylistResolver resolver;
+    private final PlaylistIndex index;
 
-    public PubliclistLoader(BotConfig config) {
+    public PubliclistLoader(BotConfig config, PlaylistResolver resolver, PlaylistIndex index) {
         this.config = config;
+        this.resolver = resolver;
+        this.index = index;
     }
 
     private static <T> void shuffle(List<T> list) {
@@ -36,16 +38,16 @@ public class PubliclistLoader {
         });
     }
 
+    private Path folder() {
+        return OtherUtil.getPath(config.getPublistFolder());
+    }
+
     public List<String> getPlaylistNames() {
-        if (folderExists()) {
-            File folder = new File(config.getPublistFolder());
-            return Arrays.stream(Objects.requireNonNull(folder.listFiles((pathname) -> pathname.getName().endsWith(".txt"))))
-                    .map(f -> f.getName().substring(0, f.getName().length() - 4))
-                    .collect(Collectors.toList());
-        } else {
-            createFolder();
-            return Collections.emptyList();
-        }
+        List<String> names = index.getNames(folder());
+        if (names != null)
+            return names;
+        createFolder();
+        return Collections.emptyList();
     }
 
     public void createFolder() {
@@ -61,35 +63,31 @@ public class PubliclistLoader {
 
     public void createPlaylist(String name) throws IOException {
         Files.createFile(OtherUtil.getPath(config.getPublistFolder() + File.separator + name + ".txt"));
+        index.invalidate(folder());
     }
 
     public void deletePlaylist(String name) throws IOException {
-        Files.delete(OtherUtil.getPath(config.getPublistFolder() + File.separator + name + ".txt"));
+        Path file = OtherUtil.getPath(config.getPublistFolder() + File.separator + name + ".txt");
+        Files.delete(file);
+        CompiledPlaylist.delete(file);
+        index.invalidate(folder());
     }
 
     public void writePlaylist(String name, String text) throws IOException {
         Files.write(OtherUtil.getPath(config.getPublistFolder() + File.separator + name + ".txt"), text.trim().getBytes(StandardCharsets.UTF_8));
+        index.invalidate(folder());
     }
 
     public Playlist getPlaylist(String name) {
         if (!getPlaylistNames().contains(name))
             return null;
-        try {
-            if (folderExists()) {
-                boolean[] shuffle = {false};
-                List<String> list = new ArrayList<>();
-                Files.readAllLines(OtherUtil.getPath(config.getPublistFolder() + File.separator + name + ".txt")).forEach(str ->
-                        MylistLoader.Trim(shuffle, list, str));
-                if (shuffle[0])
-                    shuffle(list);
-                return new Playlist(name, list, shuffle[0]);
-            } else {
-                createFolder();
-                return null;
-            }
-        } catch (IOException e) {
+        PlaylistIndex.Contents contents = index.get(folder(), name);
+        if (contents == null)
             return null;
-        }
+        List<String> list = new ArrayList<>(contents.getItems());
+        if (contents.isShuffle())
+            shuffle(list);
+        return new Playlist(name, folder().resolve(name + ".txt"), list, contents.isShuffle());
     }
 
     public static class PlaylistLoadError {
@@ -116,105 +114,14 @@ public class PubliclistLoader {
         }
     }
 
-    public class Playlist {
-        private final String name;
-        private final List<String> items;
-        private final boolean shuffle;
-        private final List<AudioTrack> tracks = new LinkedList<>();
-        private final List<PlaylistLoadError> errors = new LinkedList<>();
-        private boolean loaded = false;
-
-        private Playlist(String name, List<String> items, boolean shuffle) {
-            this.name = name;
-            this.items = items;
-            this.shuffle = shuffle;
-        }
-
-        public void loadTracks(AudioPlayerManager manager, Consumer<AudioTrack> consumer, Runnable callback) {
-            if (loaded)
-                return;
-            loaded = true;
-            for (int i = 0; i < items.size(); i++) {
-                boolean last = i + 1 == items.size();
-                int index = i;
-                manager.loadItemOrdered(name, items.get(i), new AudioLoadResultHandler() {
-                    private void done() {
-                        if (last) {
-                            if (shuffle)
-                                shuffleTracks();
-                            if (callback != null)
-                                callback.run();
-                        }
-                    }
-
-                    @Override
-                    public void trackLoaded(AudioTrack at) {
-                        if (config.isTooLong(at))
-                            errors.add(new PlaylistLoadError(index, items.get(index), "このトラックは許可された最大長を超えています"));
-                        else {
-                            at.setUserData(0L);
-                            tracks.add(at);
-                            consumer.accept(at);
-                        }
-                        done();
-                    }
-
-                    @Override
-                    public void playlistLoaded(AudioPlaylist ap) {
-                        if (ap.isSearchResult()) {
-                            trackLoaded(ap.getTracks().get(0));
-                        } else if (ap.getSelectedTrack() != null) {
-                            trackLoaded(ap.getSelectedTrack());
-                        } else {
-                            List<AudioTrack> loaded = new ArrayList<>(ap.getTracks());
-                            if (shuffle)
-                                for (int first = 0; first < loaded.size(); first++) {
-                                    int second = (int) (Math.random() * loaded.size());
-                                    AudioTrack tmp = loaded.get(first);
-                                    loaded.set(first, loaded.get(second));
-                                    loaded.set(second, tmp);
-                                }
-                            loaded.removeIf(config::isTooLong);
-                            loaded.forEach(at -> at.setUserData(0L));
-                            tracks.addAll(loaded);
-                            loaded.forEach(consumer);
-                        }
-                        done();
-                    }
-
-                    @Override
-                    public void noMatches() {
-                        errors.add(new PlaylistLoadError(index, items.get(index), "一致するものが見つかりませんでした。"));
-                        done();
-                    }
-
-                    @Override
-                    public void loadFailed(FriendlyException fe) {
-                        errors.add(new PlaylistLoadError(index, items.get(index), "トラックを読み込めませんでした: " + fe.getLocalizedMessage()));
-                        done();
-                    }
-                });
-            }
-        }
-
-        public void shuffleTracks() {
-            shuffle(tracks);
-        }
-
-        public String getName() {
-            return name;
-        }
-
-        public List<String> getItems() {
-            return items;
-        }
-
-        public List<AudioTrack> getTracks() {
-            return tracks;
+    public class Playlist extends LoadablePlaylist<PlaylistLoadError> {
+        private Playlist(String name, Path file, List<String> items, boolean shuffle) {
+            super(config, resolver, name, file, items, shuffle);
         }
 
-        public List<PlaylistLoadError> getErrors() {
-            return errors;
+        @Override
+        protected PlaylistLoadError createError(int index, String item, String reason) {
+            return new PlaylistLoadError(index, item, reason);
         }
     }
 }
\ No newline at end of file
@@ -0,0 +1,170 @@
+/*
+ *  Copyright 2024 Cosgy Dev (info@cosgy.dev).
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package dev.cosgy.jmusicbot.slashcommands;
+
+import com.jagrosh.jdautilities.command.SlashCommandEvent;
+import com.jagrosh.jmusicbot.Bot;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 音楽コマンドを JDA のイベントスレッドの外で実行します。
+ * <p>
+ * 同じギルドのコマンドは受け取った順番に1つずつ実行し、別のギルドのコマンドは並行して実行します。
+ * スラッシュコマンドが {@link #DEFER_AFTER} ミリ秒経っても応答していない場合は自動で応答を保留し、
+ * Discord の3秒の応答期限に間に合わせます。保留した後の返信は {@link MusicCommand#reply} で送信します。
+ *
+ * @author Cosgy Dev
+ */
+public class CommandRunner {
+    // 応答を保留するまでの時間(ミリ秒)
+    public static final long DEFER_AFTER = 2000;
+    private static final Logger log = LoggerFactory.getLogger("CommandRunner");
+
+    private final Bot bot;
+    // ギルドごとの、最後に受け取ったコマンド
+    private final Map<Long, CompletableFuture<Void>> tails = new ConcurrentHashMap<>();
+    private final Map<String, Stats> stats = new ConcurrentSkipListMap<>();
+
+    public CommandRunner(Bot bot) {
+        this.bot = bot;
+    }
+
+    /**
+     * コマンドを実行します。
+     *
+     * @param name    統計に記録するコマンドの名前
+     * @param guildId コマンドを実行したギルドのID
+     * @param event   スラッシュコマンドの場合はイベント。それ以外は null
+     * @param command 実行する処理
+     */
+    public void run(String name, long guildId, SlashCommandEvent event, Runnable command) {
+        Stats stat = stats.computeIfAbsent(name, n -> new Stats());
+        long received = System.nanoTime();
+        ScheduledFuture<?> defer = null;
+        if (event != null) {
+            try {
+                defer = bot.getThreadpool().schedule(() -> defer(event, stat), DEFER_AFTER, TimeUnit.MILLISECONDS);
+            } catch (RejectedExecutionException ignore) {
+                // 終了処理中
+            }
+        }
+        ScheduledFuture<?> timer = defer;
+        CompletableFuture<Void> next = tails.compute(guildId, (id, tail) ->
+                // 前のコマンドが失敗していても実行する
+                (tail == null ? CompletableFuture.<Void>completedFuture(null) : tail.exceptionally(t -> null))
+                        .thenRunAsync(() -> execute(name, stat, received, event, timer, command), bot.getCommandExecutor()));
+        next.whenComplete((r, t) -> tails.remove(guildId, next));
+    }
+
+    private void execute(String name, Stats stat, long received, SlashCommandEvent event, ScheduledFuture<?> timer, Runnable command) {
+        long started = System.nanoTime();
+        try {
+            command.run();
+        } catch (RuntimeException e) {
+            stat.failed.increment();
+            log.error("{}コマンドの実行中にエラーが発生しました", name, e);
+        } finally {
+            long finished = System.nanoTime();
+            stat.record(started - received, finished - received);
+            // 応答した後は保留する必要がない
+            if (timer != null && event.isAcknowledged())
+                timer.cancel(false);
+        }
+    }
+
+    private void defer(SlashCommandEvent event, Stats stat) {
+        synchronized (event) {
+            if (event.isAcknowledged())
+                return;
+            event.deferReply().queue();
+        }
+        stat.deferred.increment();
+    }
+
+    /**
+     * @return コマンドの名前ごとの統計
+     */
+    public Map<String, Stats> getStats() {
+        return stats;
+    }
+
+    /**
+     * コマンドごとの統計です。時間はコマンドを受け取ってからの時間です。
+     */
+    public static final class Stats {
+        private final LongAdder count = new LongAdder();
+        private final LongAdder failed = new LongAdder();
+        private final LongAdder deferred = new LongAdder();
+        private final LongAdder totalWait = new LongAdder();
+        private final LongAccumulator maxWait = new LongAccumulator(Math::max, 0);
+        private final LongAdder totalTime = new LongAdder();
+        private final LongAccumulator maxTime = new LongAccumulator(Math::max, 0);
+
+        private void record(long wait, long time) {
+            count.increment();
+            totalWait.add(wait);
+            maxWait.accumulate(wait);
+            totalTime.add(time);
+            maxTime.accumulate(time);
+        }
+
+        public long getCount() {
+            return count.sum();
+        }
+
+        public long getFailed() {
+            return failed.sum();
+        }
+
+        /**
+         * @return 応答を自動で保留した回数
+         */
+        public long getDeferred() {
+            return deferred.sum();
+        }
+
+        /**
+         * @return 実行を始めるまでの平均の待ち時間(ナノ秒)
+         */
+        public long getAverageWait() {
+            long c = count.sum();
+            return c == 0 ? 0 : totalWait.sum() / c;
+        }
+
+        public long getMaxWait() {
+            return maxWait.get();
+        }
+
+        /**
+         * @return 実行が終わるまでの平均の時間(ナノ秒)
+         */
+        public long getAverageTime() {
+            long c = count.sum();
+            return c == 0 ? 0 : totalTime.sum() / c;
+        }
+
+        public long getMaxTime() {
+            return maxTime.get();
+        }
+    }
+}
@@ -26,11 +26,15 @@ import net.dv8tion.jda.api.entities.channel.ChannelType;
 import net.dv8tion.jda.api.entities.channel.concrete.TextChannel;
 import net.dv8tion.jda.api.entities.channel.unions.AudioChannelUnion;
 import net.dv8tion.jda.api.exceptions.PermissionException;
+import net.dv8tion.jda.api.interactions.InteractionHook;
+import net.dv8tion.jda.api.utils.messages.MessageCreateData;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
 import java.text.ParseException;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
 
 /**
  * @author John Grosh <john.a.grosh@gmail.com>
@@ -55,7 +59,7 @@ public abstract class MusicCommand extends SlashCommand {
 
         bot.getPlayerManager().setUpHandler(event.getGuild());
         if (bePlaying && !((AudioHandler) event.getGuild().getAudioManager().getSendingHandler()).isMusicPlaying(event.getJDA())) {
-            event.reply(event.getClient().getError() + "コマンドを使用するには、再生中である必要があります。").queue();
+            reply(event, event.getClient().getError() + "コマンドを使用するには、再生中である必要があります。");
             return;
         }
         if (beListening) {
@@ -66,7 +70,7 @@ public abstract class MusicCommand extends SlashCommand {
             GuildVoiceState userState = event.getMember().getVoiceState();
 
             if (!userState.inAudioChannel() || userState.isDeafened() || (current != null && !userState.getChannel().equals(current))) {
-                event.reply(event.getClient().getError() + String.format("このコマンドを使用するには、%sに参加している必要があります！", (current == null ? "音声チャンネル" : "**" + current.getAsMention() + "**"))).queue();
+                reply(event, event.getClient().getError() + String.format("このコマンドを使用するには、%sに参加している必要があります！", (current == null ? "音声チャンネル" : "**" + current.getAsMention() + "**")));
                 return;
             }
             if (!event.getGuild().getSelfMember().getVoiceState().inAudioChannel()) {
@@ -75,7 +79,7 @@ public abstract class MusicCommand extends SlashCommand {
                     //event.getGuild().getAudioManager().setSelfDeafened(true);
                     event.getGuild().getAudioManager().setSelfMuted(false);
                 } catch (PermissionException ex) {
-                    event.reply(event.getClient().getError() + String.format("**%s**に接続できません!", userState.getChannel().getAsMention())).queue();
+                    reply(event, event.getClient().getError() + String.format("**%s**に接続できません!", userState.getChannel().getAsMention()));
                     return;
                 }
                 if (userState.getChannel().getType() == ChannelType.STAGE) {
@@ -84,7 +88,7 @@ public abstract class MusicCommand extends SlashCommand {
             }
         }
 
-        doCommand(event);
+        bot.getCommandRunner().run(name, event.getGuild().getIdLong(), event, () -> doCommand(event));
     }
 
     @Override
@@ -129,7 +133,54 @@ public abstract class MusicCommand extends SlashCommand {
             }
         }
 
-        doCommand(event);
+        bot.getCommandRunner().run(name, event.getGuild().getIdLong(), null, () -> doCommand(event));
+    }
+
+    /**
+     * スラッシュコマンドに返信します。
+     * 実行に時間がかかり {@link CommandRunner} が応答を保留していた場合は、保留した応答に送信します。
+     * 保留と同時に返信しないよう、イベントのロックを取って送信します。スラッシュコマンドへの返信はすべてこのメソッドで行います。
+     *
+     * @param success 送信した後に呼び出されます
+     */
+    protected void reply(SlashCommandEvent event, MessageCreateData message, Consumer<InteractionHook> success) {
+        synchronized (event) {
+            if (event.isAcknowledged())
+                event.getHook().sendMessage(message).queue(m -> success.accept(event.getHook()));
+            else
+                event.reply(message).queue(success);
+        }
+    }
+
+    protected void reply(SlashCommandEvent event, MessageCreateData message) {
+        reply(event, message, hook -> {
+        });
+    }
+
+    protected void reply(SlashCommandEvent event, String content, Consumer<InteractionHook> success) {
+        reply(event, MessageCreateData.fromContent(content), success);
+    }
+
+    protected void reply(SlashCommandEvent event, String content) {
+        reply(event, content, hook -> {
+        });
+    }
+
+    /**
+     * スラッシュコマンドに返信し、送信が終わるまで待ちます。
+     * 待っている間はイベントのロックを取らないため、その間に応答を保留する処理を止めません。
+     *
+     * @return 返信を編集するためのフック
+     */
+    protected InteractionHook replyAndWait(SlashCommandEvent event, String content) {
+        CompletableFuture<InteractionHook> sent;
+        synchronized (event) {
+            if (event.isAcknowledged())
+                sent = event.getHook().sendMessage(content).submit().thenApply(m -> event.getHook());
+            else
+                sent = event.reply(content).submit();
+        }
+        return sent.join();
     }
 
     public abstract void doCommand(CommandEvent event);
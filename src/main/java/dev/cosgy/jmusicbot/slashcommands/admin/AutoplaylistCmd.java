@@ -56,7 +56,7 @@ public class AutoplaylistCmd extends AdminCommand {
         
         String pName = event.getOption("name").getAsString();
         if (pName.toLowerCase().matches("(none|なし)")) {
-            Settings settings = event.getClient().getSettingsFor(event.getGuild());
+            Settings settings = bot.getSettingsManager().getSettingsForUpdate(event.getGuild());
             settings.setDefaultPlaylist(null);
             event.reply(event.getClient().getSuccess() + "**" + event.getGuild().getName() + "** での自動再生リストを、なしに設定しました。").queue();
             return;
@@ -64,7 +64,7 @@ public class AutoplaylistCmd extends AdminCommand {
         if (bot.getPlaylistLoader().getPlaylist(event.getGuild().getId(), pName) == null) {
             event.reply(event.getClient().getError() + "`" + pName + "`を見つけることができませんでした!").queue();
         } else {
-            Settings settings = event.getClient().getSettingsFor(event.getGuild());
+            Settings settings = bot.getSettingsManager().getSettingsForUpdate(event.getGuild());
             settings.setDefaultPlaylist(pName);
             event.reply(event.getClient().getSuccess() + "**" + event.getGuild().getName() + "** での自動再生リストを、`" + pName + "`に設定しました。\n"
                     + "再生待ちに曲がないときは、自動再生リストの曲が再生されます。").queue();
@@ -81,7 +81,7 @@ public class AutoplaylistCmd extends AdminCommand {
             return;
         }
         if (event.getArgs().toLowerCase().matches("(none|なし)")) {
-            Settings settings = event.getClient().getSettingsFor(event.getGuild());
+            Settings settings = bot.getSettingsManager().getSettingsForUpdate(event.getGuild());
             settings.setDefaultPlaylist(null);
             event.reply(event.getClient().getSuccess() + "**" + event.getGuild().getName() + "** での自動再生リストを、なしに設定しました。");
             return;
@@ -90,7 +90,7 @@ public class AutoplaylistCmd extends AdminCommand {
         if (bot.getPlaylistLoader().getPlaylist(guildId, pName) == null) {
             event.reply(event.getClient().getError() + "`" + pName + "`を見つけることができませんでした!");
         } else {
-            Settings settings = event.getClient().getSettingsFor(event.getGuild());
+            Settings settings = bot.getSettingsManager().getSettingsForUpdate(event.getGuild());
             settings.setDefaultPlaylist(pName);
             event.reply(event.getClient().getSuccess() + "**" + event.getGuild().getName() + "** での自動再生リストを、`" + pName + "`に設定しました。\n"
                     + "再生待ちに曲がないときは、自動再生リストの曲が再生されます。");
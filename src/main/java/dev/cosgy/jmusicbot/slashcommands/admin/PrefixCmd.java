@@ -20,6 +20,7 @@ import com.jagrosh.jdautilities.command.CommandEvent;
 import com.jagrosh.jdautilities.command.SlashCommandEvent;
 import com.jagrosh.jmusicbot.Bot;
 import com.jagrosh.jmusicbot.settings.Settings;
+import com.jagrosh.jmusicbot.settings.SettingsManager;
 import dev.cosgy.jmusicbot.slashcommands.AdminCommand;
 import net.dv8tion.jda.api.interactions.commands.OptionType;
 import net.dv8tion.jda.api.interactions.commands.build.OptionData;
@@ -50,7 +51,7 @@ public class PrefixCmd extends AdminCommand {
             event.reply(event.getClient().getWarning() + "権限がないため実行できません。").queue();
             return;
         }
-        Settings s = event.getClient().getSettingsFor(event.getGuild());
+        Settings s = event.getClient().<SettingsManager>getSettingsManager().getSettingsForUpdate(event.getGuild());
         String prefix = event.getOption("prefix").getAsString();
         if (prefix.toLowerCase().matches("(none|なし)")) {
             s.setPrefix(null);
@@ -68,7 +69,7 @@ public class PrefixCmd extends AdminCommand {
             return;
         }
 
-        Settings s = event.getClient().getSettingsFor(event.getGuild());
+        Settings s = event.getClient().<SettingsManager>getSettingsManager().getSettingsForUpdate(event.getGuild());
         if (event.getArgs().toLowerCase().matches("(none|なし)")) {
             s.setPrefix(null);
             event.replySuccess("プレフィックスがクリアされました。");
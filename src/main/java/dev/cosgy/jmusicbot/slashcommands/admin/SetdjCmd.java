@@ -21,6 +21,7 @@ import com.jagrosh.jdautilities.command.SlashCommandEvent;
 import com.jagrosh.jdautilities.commons.utils.FinderUtil;
 import com.jagrosh.jmusicbot.Bot;
 import com.jagrosh.jmusicbot.settings.Settings;
+import com.jagrosh.jmusicbot.settings.SettingsManager;
 import com.jagrosh.jmusicbot.utils.FormatUtil;
 import dev.cosgy.jmusicbot.slashcommands.AdminCommand;
 import net.dv8tion.jda.api.entities.Role;
@@ -51,7 +52,7 @@ public class SetdjCmd extends AdminCommand {
             event.reply(event.getClient().getWarning() + "権限がないため実行できません。").queue();
             return;
         }
-        Settings s = event.getClient().getSettingsFor(event.getGuild());
+        Settings s = event.getClient().<SettingsManager>getSettingsManager().getSettingsForUpdate(event.getGuild());
 
         if (event.getOption("role") != null) {
             s.setDJRole(event.getOption("role").getAsRole());
@@ -73,7 +74,7 @@ public class SetdjCmd extends AdminCommand {
             event.reply(event.getClient().getError() + "役割の名前、またはNONEなどを付けてください。");
             return;
         }
-        Settings s = event.getClient().getSettingsFor(event.getGuild());
+        Settings s = event.getClient().<SettingsManager>getSettingsManager().getSettingsForUpdate(event.getGuild());
         if (event.getArgs().toLowerCase().matches("(none|なし)")) {
             s.setDJRole(null);
             event.reply(event.getClient().getSuccess() + "DJの役割はリセットされました。管理者だけがDJコマンドを使用できます。");
@@ -103,7 +104,7 @@ public class SetdjCmd extends AdminCommand {
 
         @Override
         protected void execute(SlashCommandEvent event) {
-            Settings s = event.getClient().getSettingsFor(event.getGuild());
+            Settings s = event.getClient().<SettingsManager>getSettingsManager().getSettingsForUpdate(event.getGuild());
             Role role = event.getOption("role").getAsRole();
 
             s.setDJRole(role);
@@ -119,14 +120,14 @@ public class SetdjCmd extends AdminCommand {
 
         @Override
         protected void execute(SlashCommandEvent event) {
-            Settings s = event.getClient().getSettingsFor(event.getGuild());
+            Settings s = event.getClient().<SettingsManager>getSettingsManager().getSettingsForUpdate(event.getGuild());
             s.setDJRole(null);
             event.reply(event.getClient().getSuccess() + "DJの役割はリセットされました。管理者だけがDJコマンドを使用できます。").queue();
         }
 
         @Override
         protected void execute(CommandEvent event) {
-            Settings s = event.getClient().getSettingsFor(event.getGuild());
+            Settings s = event.getClient().<SettingsManager>getSettingsManager().getSettingsForUpdate(event.getGuild());
             s.setDJRole(null);
             event.replySuccess("DJの役割はリセットされました。管理者だけがDJコマンドを使用できます。");
         }
@@ -21,6 +21,7 @@ import com.jagrosh.jdautilities.command.SlashCommandEvent;
 import com.jagrosh.jdautilities.commons.utils.FinderUtil;
 import com.jagrosh.jmusicbot.Bot;
 import com.jagrosh.jmusicbot.settings.Settings;
+import com.jagrosh.jmusicbot.settings.SettingsManager;
 import com.jagrosh.jmusicbot.utils.FormatUtil;
 import dev.cosgy.jmusicbot.slashcommands.AdminCommand;
 import net.dv8tion.jda.api.entities.channel.ChannelType;
@@ -58,7 +59,7 @@ public class SettcCmd extends AdminCommand {
             event.reply(event.getClient().getError() + "チャンネルまたはNONEを含めてください。");
             return;
         }
-        Settings s = event.getClient().getSettingsFor(event.getGuild());
+        Settings s = event.getClient().<SettingsManager>getSettingsManager().getSettingsForUpdate(event.getGuild());
         if (event.getArgs().toLowerCase().matches("(none|なし)")) {
             s.setTextChannel(null);
             event.reply(event.getClient().getSuccess() + "音楽コマンドは現在どのチャンネルでも使用できます。");
@@ -93,7 +94,7 @@ public class SettcCmd extends AdminCommand {
                 event.reply(event.getClient().getWarning() + "権限がないため実行できません。").queue();
                 return;
             }
-            Settings s = event.getClient().getSettingsFor(event.getGuild());
+            Settings s = event.getClient().<SettingsManager>getSettingsManager().getSettingsForUpdate(event.getGuild());
 
 
             if (event.getOption("channel").getChannelType() != ChannelType.TEXT) {
@@ -121,14 +122,14 @@ public class SettcCmd extends AdminCommand {
                 event.reply(event.getClient().getWarning() + "権限がないため実行できません。").queue();
                 return;
             }
-            Settings s = event.getClient().getSettingsFor(event.getGuild());
+            Settings s = event.getClient().<SettingsManager>getSettingsManager().getSettingsForUpdate(event.getGuild());
             s.setTextChannel(null);
             event.reply(event.getClient().getSuccess() + "音楽コマンドは現在どのチャンネルでも使用できます。").queue();
         }
 
         @Override
         protected void execute(CommandEvent event) {
-            Settings s = event.getClient().getSettingsFor(event.getGuild());
+            Settings s = event.getClient().<SettingsManager>getSettingsManager().getSettingsForUpdate(event.getGuild());
             s.setTextChannel(null);
             event.replySuccess("音楽コマンドは現在どのチャンネルでも使用できます。");
         }
@@ -21,6 +21,7 @@ import com.jagrosh.jdautilities.command.SlashCommandEvent;
 import com.jagrosh.jdautilities.commons.utils.FinderUtil;
 import com.jagrosh.jmusicbot.Bot;
 import com.jagrosh.jmusicbot.settings.Settings;
+import com.jagrosh.jmusicbot.settings.SettingsManager;
 import com.jagrosh.jmusicbot.utils.FormatUtil;
 import dev.cosgy.jmusicbot.slashcommands.AdminCommand;
 import net.dv8tion.jda.api.entities.channel.ChannelType;
@@ -57,7 +58,7 @@ public class SetvcCmd extends AdminCommand {
             event.reply(event.getClient().getError() + "音声チャンネルまたはNONEを含めてください。");
             return;
         }
-        Settings s = event.getClient().getSettingsFor(event.getGuild());
+        Settings s = event.getClient().<SettingsManager>getSettingsManager().getSettingsForUpdate(event.getGuild());
         if (event.getArgs().toLowerCase().matches("(none|なし)")) {
             s.setVoiceChannel(null);
             event.reply(event.getClient().getSuccess() + "音楽はどの音声チャンネルでも再生できます。");
@@ -92,7 +93,7 @@ public class SetvcCmd extends AdminCommand {
                 event.reply(event.getClient().getWarning() + "権限がないため実行できません。").queue();
                 return;
             }
-            Settings s = event.getClient().getSettingsFor(event.getGuild());
+            Settings s = event.getClient().<SettingsManager>getSettingsManager().getSettingsForUpdate(event.getGuild());
             Long channel = event.getOption("channel").getAsLong();
 
             if (event.getOption("channel").getChannelType() != ChannelType.VOICE) {
@@ -117,14 +118,14 @@ public class SetvcCmd extends AdminCommand {
                 event.reply(event.getClient().getWarning() + "権限がないため実行できません。").queue();
                 return;
             }
-            Settings s = event.getClient().getSettingsFor(event.getGuild());
+            Settings s = event.getClient().<SettingsManager>getSettingsManager().getSettingsForUpdate(event.getGuild());
             s.setVoiceChannel(null);
             event.reply(event.getClient().getSuccess() + "音楽はどの音声チャンネルでも再生できます。").queue();
         }
 
         @Override
         protected void execute(CommandEvent event) {
-            Settings s = event.getClient().getSettingsFor(event.getGuild());
+            Settings s = event.getClient().<SettingsManager>getSettingsManager().getSettingsForUpdate(event.getGuild());
             s.setVoiceChannel(null);
             event.replySuccess("音楽はどの音声チャンネルでも再生できます。");
         }
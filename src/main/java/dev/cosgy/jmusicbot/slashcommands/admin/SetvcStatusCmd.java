@@ -21,6 +21,7 @@ import com.jagrosh.jdautilities.command.SlashCommand;
 import com.jagrosh.jdautilities.command.SlashCommandEvent;
 import com.jagrosh.jmusicbot.Bot;
 import com.jagrosh.jmusicbot.settings.Settings;
+import com.jagrosh.jmusicbot.settings.SettingsManager;
 import dev.cosgy.jmusicbot.slashcommands.AdminCommand;
 import net.dv8tion.jda.api.interactions.commands.OptionType;
 import net.dv8tion.jda.api.interactions.commands.build.OptionData;
@@ -48,7 +49,7 @@ public class SetvcStatusCmd extends AdminCommand {
         }
 
         var status = Objects.requireNonNull(event.getOption("status")).getAsBoolean();
-        Settings s = event.getClient().getSettingsFor(event.getGuild());
+        Settings s = event.getClient().<SettingsManager>getSettingsManager().getSettingsForUpdate(event.getGuild());
         s.setVCStatus(status);
 
         event.reply(event.getClient().getSuccess() + "VCステータスに再生中を表示するかを`" + status + "`に設定しました。").queue();
@@ -62,7 +63,7 @@ public class SetvcStatusCmd extends AdminCommand {
             return;
         }
 
-        Settings s = event.getClient().getSettingsFor(event.getGuild());
+        Settings s = event.getClient().<SettingsManager>getSettingsManager().getSettingsForUpdate(event.getGuild());
 
         if (event.getArgs().toLowerCase().matches("(false|無効)")) {
             s.setVCStatus(false);
@@ -20,6 +20,7 @@ import com.jagrosh.jdautilities.command.CommandEvent;
 import com.jagrosh.jdautilities.command.SlashCommandEvent;
 import com.jagrosh.jmusicbot.Bot;
 import com.jagrosh.jmusicbot.settings.Settings;
+import com.jagrosh.jmusicbot.settings.SettingsManager;
 import dev.cosgy.jmusicbot.slashcommands.AdminCommand;
 import net.dv8tion.jda.api.interactions.commands.OptionType;
 import net.dv8tion.jda.api.interactions.commands.build.OptionData;
@@ -48,7 +49,7 @@ public class SkipratioCmd extends AdminCommand {
                 event.reply(event.getClient().getError() + "値は、0から100の間でなければなりません。").queue();
                 return;
             }
-            Settings s = event.getClient().getSettingsFor(event.getGuild());
+            Settings s = event.getClient().<SettingsManager>getSettingsManager().getSettingsForUpdate(event.getGuild());
             s.setSkipRatio(val / 100.0);
 
             event.reply(event.getClient().getSuccess() + "*" + event.getGuild().getName() + "*のリスナーのスキップ率を" + val + "%に設定しました。").queue();
@@ -65,7 +66,7 @@ public class SkipratioCmd extends AdminCommand {
                 event.replyError("値は、0から100の間でなければなりません。");
                 return;
             }
-            Settings s = event.getClient().getSettingsFor(event.getGuild());
+            Settings s = event.getClient().<SettingsManager>getSettingsManager().getSettingsForUpdate(event.getGuild());
             s.setSkipRatio(val / 100.0);
 
             event.replySuccess("*" + event.getGuild().getName() + "*のリスナーのスキップ率を" + val + "%に設定しました。");
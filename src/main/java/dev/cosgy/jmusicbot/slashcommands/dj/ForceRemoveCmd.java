@@ -105,21 +105,21 @@ public class ForceRemoveCmd extends DJCommand {
     @Override
     public void doCommand(SlashCommandEvent event) {
         if (!checkDJPermission(event.getClient(), event)) {
-            event.reply(event.getClient().getWarning() + "権限がないため実行できません。").queue();
+            reply(event, event.getClient().getWarning() + "権限がないため実行できません。");
             return;
         }
         AudioHandler handler = (AudioHandler) event.getGuild().getAudioManager().getSendingHandler();
         if (handler.getQueue().isEmpty()) {
-            event.reply(event.getClient().getError() + "再生待ちには何もありません！").queue();
+            reply(event, event.getClient().getError() + "再生待ちには何もありません！");
             return;
         }
 
         User target = event.getOption("user").getAsUser();
         int count = ((AudioHandler) event.getGuild().getAudioManager().getSendingHandler()).getQueue().removeAll(target.getIdLong());
         if (count == 0) {
-            event.reply(event.getClient().getWarning() + "**" + target.getName() + "** の再生待ちに曲がありません！").queue();
+            reply(event, event.getClient().getWarning() + "**" + target.getName() + "** の再生待ちに曲がありません！");
         } else {
-            event.reply(event.getClient().getSuccess() + "**" + target.getName() + "**#" + target.getDiscriminator() + "から`" + count + "`曲削除しました。").queue();
+            reply(event, event.getClient().getSuccess() + "**" + target.getName() + "**#" + target.getDiscriminator() + "から`" + count + "`曲削除しました。");
         }
     }
 
@@ -98,7 +98,7 @@ public class MoveTrackCmd extends DJCommand {
 
         // Move the track
         QueuedTrack track = queue.moveItem(from - 1, to - 1);
-        String trackTitle = track.getTrack().getInfo().title;
+        String trackTitle = track.getTitle();
         String reply = String.format("**%s** を `%d` から `%d`に移動しました。", trackTitle, from, to);
         log.info(event.getGuild().getName() + "で %s を %d から %d に移動しました。", trackTitle, from, to);
         event.replySuccess(reply);
@@ -107,7 +107,7 @@ public class MoveTrackCmd extends DJCommand {
     @Override
     public void doCommand(SlashCommandEvent event) {
         if (!checkDJPermission(event.getClient(), event)) {
-            event.reply(event.getClient().getWarning() + "権限がないため実行できません。").queue();
+            reply(event, event.getClient().getWarning() + "権限がないため実行できません。");
             return;
         }
         int from;
@@ -117,7 +117,7 @@ public class MoveTrackCmd extends DJCommand {
         to = Integer.parseInt(event.getOption("to").getAsString());
 
         if (from == to) {
-            event.reply(event.getClient().getError() + "同じ位置に移動することはできません。").queue();
+            reply(event, event.getClient().getError() + "同じ位置に移動することはできません。");
             return;
         }
 
@@ -126,19 +126,19 @@ public class MoveTrackCmd extends DJCommand {
         FairQueue<QueuedTrack> queue = handler.getQueue();
         if (isUnavailablePosition(queue, from)) {
             String reply = String.format("`%d` は再生待ちに存在しない位置です。", from);
-            event.reply(event.getClient().getError() + reply).queue();
+            reply(event, event.getClient().getError() + reply);
             return;
         }
         if (isUnavailablePosition(queue, to)) {
             String reply = String.format("`%d` 再生待ちに存在しない位置です。", to);
-            event.reply(event.getClient().getError() + reply).queue();
+            reply(event, event.getClient().getError() + reply);
             return;
         }
 
         // Move the track
         QueuedTrack track = queue.moveItem(from - 1, to - 1);
-        String trackTitle = track.getTrack().getInfo().title;
+        String trackTitle = track.getTitle();
         String reply = String.format("**%s** を `%d` から `%d`に移動しました。", trackTitle, from, to);
-        event.reply(event.getClient().getSuccess() + reply).queue();
+        reply(event, event.getClient().getSuccess() + reply);
     }
 }
@@ -73,12 +73,12 @@ public class PlaynextCmd extends DJCommand {
     @Override
     public void doCommand(SlashCommandEvent event) {
         if (!checkDJPermission(event.getClient(), event)) {
-            event.reply(event.getClient().getWarning() + "権限がないため実行できません。").queue();
+            reply(event, event.getClient().getWarning() + "権限がないため実行できません。");
             return;
         }
         String args = event.getOption("title").getAsString();
         log.info(event.getGuild().getName() + "で[" + args + "]の読み込みを開始しました。");
-        event.reply(loadingEmoji + "`[" + args + "]`を読み込み中です...").queue(m -> bot.getPlayerManager().loadItemOrdered(event.getGuild(), args, new SlashResultHandler(m, event, false)));
+        reply(event, loadingEmoji + "`[" + args + "]`を読み込み中です...", m -> bot.getPlayerManager().loadItemOrdered(event.getGuild(), args, new SlashResultHandler(m, event, false)));
     }
 
     private class SlashResultHandler implements AudioLoadResultHandler {
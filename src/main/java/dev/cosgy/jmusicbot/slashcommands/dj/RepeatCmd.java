@@ -47,7 +47,7 @@ public class RepeatCmd extends DJCommand {
     @Override
     protected void execute(CommandEvent event) {
         RepeatMode value;
-        Settings settings = event.getClient().getSettingsFor(event.getGuild());
+        Settings settings = bot.getSettingsManager().getSettingsForUpdate(event.getGuild());
 
         String args = event.getArgs();
 
@@ -73,6 +73,7 @@ public class RepeatCmd extends DJCommand {
         }
 
         settings.setRepeatMode(value);
+        bot.getNowplayingHandler().onStateChange(event.getGuild().getIdLong());
         log.info("{}でリピートコマンドを実行し、設定を{}に設定しました。", event.getGuild().getName(), value);
         event.replySuccess("リピートを `" + (value == RepeatMode.ALL ? "有効(全曲リピート)" : (value == RepeatMode.SINGLE ? "有効(1曲リピート)" : "無効")) + "` にしました。");
     }
@@ -95,12 +96,13 @@ public class RepeatCmd extends DJCommand {
         @Override
         public void doCommand(SlashCommandEvent event) {
             if (!checkDJPermission(event.getClient(), event)) {
-                event.reply(event.getClient().getWarning() + "権限がないため実行できません。").queue();
+                reply(event, event.getClient().getWarning() + "権限がないため実行できません。");
                 return;
             }
-            Settings settings = event.getClient().getSettingsFor(event.getGuild());
+            Settings settings = bot.getSettingsManager().getSettingsForUpdate(event.getGuild());
             settings.setRepeatMode(RepeatMode.SINGLE);
-            event.reply("リピートを `有効(1曲リピート)` にしました。").queue();
+            bot.getNowplayingHandler().onStateChange(event.getGuild().getIdLong());
+            reply(event, "リピートを `有効(1曲リピート)` にしました。");
         }
 
         @Override
@@ -119,12 +121,13 @@ public class RepeatCmd extends DJCommand {
         @Override
         public void doCommand(SlashCommandEvent event) {
             if (!checkDJPermission(event.getClient(), event)) {
-                event.reply(event.getClient().getWarning() + "権限がないため実行できません。").queue();
+                reply(event, event.getClient().getWarning() + "権限がないため実行できません。");
                 return;
             }
-            Settings settings = event.getClient().getSettingsFor(event.getGuild());
+            Settings settings = bot.getSettingsManager().getSettingsForUpdate(event.getGuild());
             settings.setRepeatMode(RepeatMode.ALL);
-            event.reply("リピートを `有効(全曲リピート)` にしました。").queue();
+            bot.getNowplayingHandler().onStateChange(event.getGuild().getIdLong());
+            reply(event, "リピートを `有効(全曲リピート)` にしました。");
         }
 
         @Override
@@ -143,12 +146,13 @@ public class RepeatCmd extends DJCommand {
         @Override
         public void doCommand(SlashCommandEvent event) {
             if (!checkDJPermission(event.getClient(), event)) {
-                event.reply(event.getClient().getWarning() + "権限がないため実行できません。").queue();
+                reply(event, event.getClient().getWarning() + "権限がないため実行できません。");
                 return;
             }
-            Settings settings = event.getClient().getSettingsFor(event.getGuild());
+            Settings settings = bot.getSettingsManager().getSettingsForUpdate(event.getGuild());
             settings.setRepeatMode(RepeatMode.OFF);
-            event.reply("リピートを `無効` にしました。").queue();
+            bot.getNowplayingHandler().onStateChange(event.getGuild().getIdLong());
+            reply(event, "リピートを `無効` にしました。");
         }
 
         @Override
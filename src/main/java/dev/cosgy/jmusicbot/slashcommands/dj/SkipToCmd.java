@@ -63,30 +63,30 @@ public class SkipToCmd extends DJCommand {
             return;
         }
         handler.getQueue().skip(index - 1);
-        event.reply(event.getClient().getSuccess() + " **" + handler.getQueue().get(0).getTrack().getInfo().title + "にスキップしました。**");
+        event.reply(event.getClient().getSuccess() + " **" + handler.getQueue().get(0).getTitle() + "にスキップしました。**");
         handler.getPlayer().stopTrack();
     }
 
     @Override
     public void doCommand(SlashCommandEvent event) {
         if (!checkDJPermission(event.getClient(), event)) {
-            event.reply(event.getClient().getWarning() + "権限がないため実行できません。").queue();
+            reply(event, event.getClient().getWarning() + "権限がないため実行できません。");
             return;
         }
         int index = 0;
         try {
             index = Integer.parseInt(event.getOption("position").getAsString());
         } catch (NumberFormatException e) {
-            event.reply(event.getClient().getError() + " `" + event.getOption("position").getAsString() + "` は有効な整数ではありません。").queue();
+            reply(event, event.getClient().getError() + " `" + event.getOption("position").getAsString() + "` は有効な整数ではありません。");
             return;
         }
         AudioHandler handler = (AudioHandler) event.getGuild().getAudioManager().getSendingHandler();
         if (index < 1 || index > handler.getQueue().size()) {
-            event.reply(event.getClient().getError() + " 1から" + handler.getQueue().size() + "の間の整数でないといけません!").queue();
+            reply(event, event.getClient().getError() + " 1から" + handler.getQueue().size() + "の間の整数でないといけません!");
             return;
         }
         handler.getQueue().skip(index - 1);
-        event.reply(event.getClient().getSuccess() + " **" + handler.getQueue().get(0).getTrack().getInfo().title + "にスキップしました。**").queue();
+        reply(event, event.getClient().getSuccess() + " **" + handler.getQueue().get(0).getTitle() + "にスキップしました。**");
         handler.getPlayer().stopTrack();
     }
 }
@@ -61,7 +61,7 @@ public class StopCmd extends DJCommand {
         FairQueue<QueuedTrack> queue = handler.getQueue();
 
         if (queue.size() > 0 && event.getArgs().matches("save")) {
-            cache.Save(event.getGuild().getId(), handler.getQueue());
+            cache.Save(event.getGuild().getId(), handler);
             event.reply(event.getClient().getSuccess() + " 再生待ちの" + queue.size() + "曲を保存して再生を停止しました。");
             log.info(event.getGuild().getName() + "で再生待ちを保存して,ボイスチャンネルから切断しました。");
         } else {
@@ -74,7 +74,7 @@ public class StopCmd extends DJCommand {
     @Override
     public void doCommand(SlashCommandEvent event) {
         if (!checkDJPermission(event.getClient(), event)) {
-            event.reply(event.getClient().getWarning() + "権限がないため実行できません。").queue();
+            reply(event, event.getClient().getWarning() + "権限がないため実行できません。");
             return;
         }
         AudioHandler handler = (AudioHandler) event.getGuild().getAudioManager().getSendingHandler();
@@ -84,7 +84,7 @@ public class StopCmd extends DJCommand {
         log.debug("再生待ちのサイズ：" + queue.size());
 
         if (event.getOption("option") == null) {
-            event.reply(event.getClient().getSuccess() + " 再生待ちを削除して、再生を停止しました。").queue();
+            reply(event, event.getClient().getSuccess() + " 再生待ちを削除して、再生を停止しました。");
             log.info(event.getGuild().getName() + "で再生待ちを削除して,ボイスチャンネルから切断しました。");
             handler.stopAndClear();
             event.getGuild().getAudioManager().closeAudioConnection();
@@ -92,11 +92,11 @@ public class StopCmd extends DJCommand {
         }
 
         if (queue.size() > 0 && event.getOption("option").getAsString().equals("save")) {
-            cache.Save(event.getGuild().getId(), handler.getQueue());
-            event.reply(event.getClient().getSuccess() + " 再生待ちの" + queue.size() + "曲を保存して再生を停止しました。").queue();
+            cache.Save(event.getGuild().getId(), handler);
+            reply(event, event.getClient().getSuccess() + " 再生待ちの" + queue.size() + "曲を保存して再生を停止しました。");
             log.info(event.getGuild().getName() + "で再生待ちを保存して,ボイスチャンネルから切断しました。");
         } else {
-            event.reply(event.getClient().getSuccess() + " 再生待ちを削除して、再生を停止しました。").queue();
+            reply(event, event.getClient().getSuccess() + " 再生待ちを削除して、再生を停止しました。");
             log.info(event.getGuild().getName() + "で再生待ちを削除して,ボイスチャンネルから切断しました。");
         }
         handler.stopAndClear();
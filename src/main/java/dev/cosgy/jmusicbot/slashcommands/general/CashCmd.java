@@ -118,18 +118,18 @@ public class CashCmd extends SlashCommand {
         @Override
         public void doCommand(SlashCommandEvent event) {
             if (!bot.getCacheLoader().cacheExists(event.getGuild().getId())) {
-                event.reply("キャッシュが存在しません。").queue();
+                reply(event, "キャッシュが存在しません。");
                 return;
             }
 
             try {
                 bot.getCacheLoader().deleteCache(event.getGuild().getId());
             } catch (IOException e) {
-                event.reply("キャッシュを削除する際にエラーが発生しました。").queue();
+                reply(event, "キャッシュを削除する際にエラーが発生しました。");
                 e.printStackTrace();
                 return;
             }
-            event.reply("キャッシュを削除しました。").queue();
+            reply(event, "キャッシュを削除しました。");
         }
     }
 
@@ -161,11 +161,11 @@ public class CashCmd extends SlashCommand {
         @Override
         protected void execute(SlashCommandEvent event) {
             if (!bot.getCacheLoader().cacheExists(event.getGuild().getId())) {
-                event.reply("キャッシュに保存された曲がありませんでした。").queue();
+                reply(event, "キャッシュに保存された曲がありませんでした。");
                 return;
             }
             int pagenum = 1;
-            event.reply("キャッシュを取得します。").queue();
+            reply(event, "キャッシュを取得します。");
 
             List<Cache> cache = bot.getCacheLoader().GetCache(event.getGuild().getId());
 
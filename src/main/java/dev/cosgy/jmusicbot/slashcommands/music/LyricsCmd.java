@@ -25,6 +25,7 @@ import net.dv8tion.jda.api.EmbedBuilder;
 import net.dv8tion.jda.api.Permission;
 import net.dv8tion.jda.api.interactions.commands.OptionType;
 import net.dv8tion.jda.api.interactions.commands.build.OptionData;
+import net.dv8tion.jda.api.utils.messages.MessageCreateData;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -58,7 +59,7 @@ public class LyricsCmd extends MusicCommand {
             if (sendingHandler.isMusicPlaying(event.getJDA()))
                 title = sendingHandler.getPlayer().getPlayingTrack().getInfo().title;
             else {
-                event.reply(event.getClient().getError() + "曲が再生されていないため使用できません。").queue();
+                reply(event, event.getClient().getError() + "曲が再生されていないため使用できません。");
                 return;
             }
         } else
@@ -66,7 +67,7 @@ public class LyricsCmd extends MusicCommand {
         lClient.getLyrics(title).thenAccept(lyrics ->
         {
             if (lyrics == null) {
-                event.reply(event.getClient().getError() + "`" + title + "` の歌詞は見つかりませんでした。" + (event.getOption("name").getAsString().isEmpty() ? " 曲名を手動で入力してみてください (`lyrics [曲名]`)" : "")).queue();
+                reply(event, event.getClient().getError() + "`" + title + "` の歌詞は見つかりませんでした。" + (event.getOption("name").getAsString().isEmpty() ? " 曲名を手動で入力してみてください (`lyrics [曲名]`)" : ""));
                 return;
             }
 
@@ -75,7 +76,7 @@ public class LyricsCmd extends MusicCommand {
                     .setColor(event.getMember().getColor())
                     .setTitle(lyrics.getTitle(), lyrics.getURL());
             if (lyrics.getContent().length() > 15000) {
-                event.reply(event.getClient().getWarning() + " `" + title + "` の歌詞の曲が見つかりましたが、正しくない可能性があります: " + lyrics.getURL()).queue();
+                reply(event, event.getClient().getWarning() + " `" + title + "` の歌詞の曲が見つかりましたが、正しくない可能性があります: " + lyrics.getURL());
             } else if (lyrics.getContent().length() > 2000) {
                 String content = lyrics.getContent().trim();
                 while (content.length() > 2000) {
@@ -86,13 +87,13 @@ public class LyricsCmd extends MusicCommand {
                         index = content.lastIndexOf(" ", 2000);
                     if (index == -1)
                         index = 2000;
-                    event.replyEmbeds(eb.setDescription(content.substring(0, index).trim()).build()).queue();
+                    reply(event, MessageCreateData.fromEmbeds(eb.setDescription(content.substring(0, index).trim()).build()));
                     content = content.substring(index).trim();
                     eb.setAuthor(null).setTitle(null, null);
                 }
-                event.replyEmbeds(eb.setDescription(content).build()).queue();
+                reply(event, MessageCreateData.fromEmbeds(eb.setDescription(content).build()));
             } else
-                event.replyEmbeds(eb.setDescription(lyrics.getContent()).build()).queue();
+                reply(event, MessageCreateData.fromEmbeds(eb.setDescription(lyrics.getContent()).build()));
         });
     }
 
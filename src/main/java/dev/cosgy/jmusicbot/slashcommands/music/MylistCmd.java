@@ -109,12 +109,12 @@ public class MylistCmd extends MusicCommand {
 
             MylistLoader.Playlist playlist = bot.getMylistLoader().getPlaylist(userId, playlistName);
             if (playlist == null) {
-                event.reply(event.getClient().getError() + " マイリスト `" + playlistName + "` が見つかりませんでした。").queue();
+                reply(event, event.getClient().getError() + " マイリスト `" + playlistName + "` が見つかりませんでした。");
                 return;
             }
 
             if (playlist.getTracks().isEmpty()) {
-                event.reply(event.getClient().getWarning() + " マイリスト `" + playlistName + "` に曲がありません。").queue();
+                reply(event, event.getClient().getWarning() + " マイリスト `" + playlistName + "` に曲がありません。");
                 return;
             }
 
@@ -128,7 +128,7 @@ public class MylistCmd extends MusicCommand {
                 builder.append("...");
             }
 
-            event.reply(builder.toString()).queue();
+            reply(event, builder.toString());
         }
     }
 
@@ -163,7 +163,7 @@ public class MylistCmd extends MusicCommand {
             event.getChannel().sendMessage(":calling: マイリスト**" + event.getArgs() + "**を読み込んでいます... (" + playlist.getItems().size() + " 曲)").queue(m ->
             {
                 AudioHandler handler = (AudioHandler) event.getGuild().getAudioManager().getSendingHandler();
-                playlist.loadTracks(bot.getPlayerManager(), (at) -> handler.addTrack(new QueuedTrack(at, event.getAuthor())), () -> {
+                playlist.loadTrackBatches(bot.getPlayerManager(), event.getGuild().getIdLong(), tracks -> handler.addTracks(QueuedTrack.fromTracks(tracks, event.getAuthor())), () -> {
                     StringBuilder builder = new StringBuilder(playlist.getTracks().isEmpty()
                             ? event.getClient().getWarning() + " 楽曲がロードされていません。"
                             : event.getClient().getSuccess() + "**" + playlist.getTracks().size() + "**曲、読み込みました。");
@@ -187,13 +187,13 @@ public class MylistCmd extends MusicCommand {
 
             MylistLoader.Playlist playlist = bot.getMylistLoader().getPlaylist(userId, name);
             if (playlist == null) {
-                event.reply(event.getClient().getError() + "`" + name + ".txt `を見つけられませんでした ").queue();
+                reply(event, event.getClient().getError() + "`" + name + ".txt `を見つけられませんでした ");
                 return;
             }
-            event.reply(":calling: マイリスト**" + name + "**を読み込んでいます... (" + playlist.getItems().size() + " 曲)").queue(m ->
+            reply(event, ":calling: マイリスト**" + name + "**を読み込んでいます... (" + playlist.getItems().size() + " 曲)", m ->
             {
                 AudioHandler handler = (AudioHandler) event.getGuild().getAudioManager().getSendingHandler();
-                playlist.loadTracks(bot.getPlayerManager(), (at) -> handler.addTrack(new QueuedTrack(at, event.getUser())), () -> {
+                playlist.loadTrackBatches(bot.getPlayerManager(), event.getGuild().getIdLong(), tracks -> handler.addTracks(QueuedTrack.fromTracks(tracks, event.getUser())), () -> {
                     StringBuilder builder = new StringBuilder(playlist.getTracks().isEmpty()
                             ? event.getClient().getWarning() + " 楽曲がロードされていません。"
                             : event.getClient().getSuccess() + "**" + playlist.getTracks().size() + "**曲、読み込みました。");
@@ -262,26 +262,26 @@ public class MylistCmd extends MusicCommand {
             String userId = event.getUser().getId();
 
             if (pName.isEmpty()) {
-                event.reply(event.getClient().getError() + "プレイリスト名を指定してください。").queue();
+                reply(event, event.getClient().getError() + "プレイリスト名を指定してください。");
                 return;
             }
 
             if (bot.getMylistLoader().getPlaylist(userId, pName) == null) {
                 try {
                     bot.getMylistLoader().createPlaylist(userId, pName);
-                    event.reply(event.getClient().getSuccess() + "マイリスト `" + pName + "` を作成しました").queue();
+                    reply(event, event.getClient().getSuccess() + "マイリスト `" + pName + "` を作成しました");
                 } catch (IOException e) {
                     if (event.getClient().getOwnerId() == event.getMember().getId() || event.getMember().isOwner()) {
-                        event.reply(event.getClient().getError() + "曲の読み込み中にエラーが発生しました。\n" +
-                                "**エラーの内容: " + e.getLocalizedMessage() + "**").queue();
+                        reply(event, event.getClient().getError() + "曲の読み込み中にエラーが発生しました。\n" +
+                                "**エラーの内容: " + e.getLocalizedMessage() + "**");
                         StackTraceUtil.sendStackTrace(event.getTextChannel(), e);
                         return;
                     }
 
-                    event.reply(event.getClient().getError() + " マイリストを作成できませんでした。:" + e.getLocalizedMessage()).queue();
+                    reply(event, event.getClient().getError() + " マイリストを作成できませんでした。:" + e.getLocalizedMessage());
                 }
             } else {
-                event.reply(event.getClient().getError() + " マイリスト `" + pName + "` は既に存在します").queue();
+                reply(event, event.getClient().getError() + " マイリスト `" + pName + "` は既に存在します");
             }
         }
     }
@@ -328,13 +328,13 @@ public class MylistCmd extends MusicCommand {
             String userId = event.getUser().getId();
 
             if (bot.getMylistLoader().getPlaylist(userId, pName) == null)
-                event.reply(event.getClient().getError() + " マイリストは存在しません:`" + pName + "`").queue();
+                reply(event, event.getClient().getError() + " マイリストは存在しません:`" + pName + "`");
             else {
                 try {
                     bot.getMylistLoader().deletePlaylist(userId, pName);
-                    event.reply(event.getClient().getSuccess() + " マイリストを削除しました:`" + pName + "`").queue();
+                    reply(event, event.getClient().getSuccess() + " マイリストを削除しました:`" + pName + "`");
                 } catch (IOException e) {
-                    event.reply(event.getClient().getError() + " マイリストを削除できませんでした: " + e.getLocalizedMessage()).queue();
+                    reply(event, event.getClient().getError() + " マイリストを削除できませんでした: " + e.getLocalizedMessage());
                 }
             }
         }
@@ -393,7 +393,7 @@ public class MylistCmd extends MusicCommand {
             String pname = event.getOption("name").getAsString();
             MylistLoader.Playlist playlist = bot.getMylistLoader().getPlaylist(userId, pname);
             if (playlist == null)
-                event.reply(event.getClient().getError() + " マイリストは存在しません:`" + pname + "`").queue();
+                reply(event, event.getClient().getError() + " マイリストは存在しません:`" + pname + "`");
             else {
                 StringBuilder builder = new StringBuilder();
                 playlist.getItems().forEach(item -> builder.append("\r\n").append(item));
@@ -406,9 +406,9 @@ public class MylistCmd extends MusicCommand {
                 }
                 try {
                     bot.getMylistLoader().writePlaylist(userId, pname, builder.toString());
-                    event.reply(event.getClient().getSuccess() + urls.length + " 項目をマイリストに追加しました:`" + pname + "`").queue();
+                    reply(event, event.getClient().getSuccess() + urls.length + " 項目をマイリストに追加しました:`" + pname + "`");
                 } catch (IOException e) {
-                    event.reply(event.getClient().getError() + " マイリストに追加できませんでした: " + e.getLocalizedMessage()).queue();
+                    reply(event, event.getClient().getError() + " マイリストに追加できませんでした: " + e.getLocalizedMessage());
                 }
             }
         }
@@ -453,18 +453,18 @@ public class MylistCmd extends MusicCommand {
             if (!bot.getMylistLoader().folderUserExists(userId))
                 bot.getMylistLoader().createUserFolder(userId);
             if (!bot.getMylistLoader().folderUserExists(userId)) {
-                event.reply(event.getClient().getWarning() + " マイリストフォルダが存在しないため作成できませんでした。").queue();
+                reply(event, event.getClient().getWarning() + " マイリストフォルダが存在しないため作成できませんでした。");
                 return;
             }
             List<String> list = bot.getMylistLoader().getPlaylistNames(userId);
             if (list == null)
-                event.reply(event.getClient().getError() + " 利用可能なマイリストを読み込めませんでした。").queue();
+                reply(event, event.getClient().getError() + " 利用可能なマイリストを読み込めませんでした。");
             else if (list.isEmpty())
-                event.reply(event.getClient().getWarning() + " マイリストフォルダに再生リストがありません。").queue();
+                reply(event, event.getClient().getWarning() + " マイリストフォルダに再生リストがありません。");
             else {
                 StringBuilder builder = new StringBuilder(event.getClient().getSuccess() + " 利用可能なマイリスト:\n");
                 list.forEach(str -> builder.append("`").append(str).append("` "));
-                event.reply(builder.toString()).queue();
+                reply(event, builder.toString());
             }
         }
     }
@@ -86,15 +86,15 @@ public class NicoSearchCmd extends MusicCommand {
     public void doCommand(SlashCommandEvent event) {
         boolean isOwner = event.getUser().getIdLong() == bot.getConfig().getOwnerId();
         if (!bot.getConfig().isNicoNicoEnabled()) {
-            event.reply("ニコニコ動画の機能が有効になっていません。\n" +
-                    (isOwner ? "" : "Botの作成者に") + "config.txtの`useniconico = false`を`useniconico = true`に変更" + (isOwner ? "してください" : "するよう頼んでください") + "。").queue();
+            reply(event, "ニコニコ動画の機能が有効になっていません。\n" +
+                    (isOwner ? "" : "Botの作成者に") + "config.txtの`useniconico = false`を`useniconico = true`に変更" + (isOwner ? "してください" : "するよう頼んでください") + "。");
             return;
         }
 
         String input = event.getOption("input").getAsString();
 
-        event.reply(bot.getConfig().getSearching() + " ニコニコ動画で " + input + " を検索しています\n" +
-                "**(注: 一部再生できない動画があります。)**").queue(m -> {
+        reply(event, bot.getConfig().getSearching() + " ニコニコ動画で " + input + " を検索しています\n" +
+                "**(注: 一部再生できない動画があります。)**", m -> {
             LinkedList<nicoVideoSearchResult> results = niconicoAPI.searchVideo(input, 5, true);
             if (results.size() == 0) {
                 m.editOriginal(input + " の検索結果はありません。").queue();
@@ -61,7 +61,7 @@ public class NowplayingCmd extends MusicCommand {
         } catch (Exception e) {
             throw new RuntimeException(e);
         }
-        event.reply("現在再生中の楽曲を表示します...").queue(h -> h.deleteOriginal().queue());
+        reply(event, "現在再生中の楽曲を表示します...", h -> h.deleteOriginal().queue());
 
         if (m == null) {
             event.getTextChannel().sendMessage(handler.getNoMusicPlaying(event.getJDA())).queue();
@@ -37,12 +37,10 @@ import dev.cosgy.jmusicbot.playlist.MylistLoader;
 import dev.cosgy.jmusicbot.playlist.PubliclistLoader;
 import dev.cosgy.jmusicbot.slashcommands.DJCommand;
 import dev.cosgy.jmusicbot.slashcommands.MusicCommand;
-import dev.cosgy.jmusicbot.util.Cache;
 import dev.cosgy.jmusicbot.util.StackTraceUtil;
 import net.dv8tion.jda.api.JDA;
 import net.dv8tion.jda.api.Permission;
 import net.dv8tion.jda.api.entities.Message;
-import net.dv8tion.jda.api.entities.User;
 import net.dv8tion.jda.api.events.interaction.component.ButtonInteractionEvent;
 import net.dv8tion.jda.api.exceptions.PermissionException;
 import net.dv8tion.jda.api.interactions.InteractionHook;
@@ -53,7 +51,6 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.TimeUnit;
-import java.util.concurrent.atomic.AtomicInteger;
 
 
 /**
@@ -100,32 +97,19 @@ public class PlayCmd extends MusicCommand {
 
             // キャッシュの読み込み機構
             if (bot.getCacheLoader().cacheExists(event.getGuild().getId())) {
-                List<Cache> data = bot.getCacheLoader().GetCache(event.getGuild().getId());
-
-                AtomicInteger count = new AtomicInteger();
-                CacheLoader.CacheResult cache = bot.getCacheLoader().ConvertCache(data);
-                event.getChannel().sendMessage(":calling: キャッシュファイルを読み込んでいます... (" + cache.getItems().size() + "曲)").queue(m -> {
-                    cache.loadTracks(bot.getPlayerManager(), (at) -> {
-                        handler.addTrack(new QueuedTrack(at, (User) User.fromId(data.get(count.get()).getUserId())));
-                        count.getAndIncrement();
-                    }, () -> {
-                        StringBuilder builder = new StringBuilder(cache.getTracks().isEmpty()
-                                ? event.getClient().getWarning() + " 楽曲がロードされていません。"
-                                : event.getClient().getSuccess() + " キャッシュファイルから、" + "**" + cache.getTracks().size() + "**曲読み込みました。");
-                        if (!cache.getErrors().isEmpty())
-                            builder.append("\n以下の楽曲をロードできませんでした:");
-                        cache.getErrors().forEach(err -> builder.append("\n`[").append(err.getIndex() + 1).append("]` **").append(err.getItem()).append("**: ").append(err.getReason()));
-                        String str = builder.toString();
-                        if (str.length() > 2000)
-                            str = str.substring(0, 1994) + " (以下略)";
-                        m.editMessage(FormatUtil.filter(str)).queue();
-                    });
-                });
+                // 保存した楽曲をデコードするだけで復元し、再生していた楽曲は保存した位置から再生する
+                CacheLoader.CacheResult cache = bot.getCacheLoader().restore(bot.getPlayerManager(), event.getGuild().getId());
                 try {
                     bot.getCacheLoader().deleteCache(event.getGuild().getId());
                 } catch (IOException e) {
                     e.printStackTrace();
                 }
+                if (cache == null) {
+                    event.replyError("キャッシュファイルを読み込めませんでした。");
+                    return;
+                }
+                handler.addTracks(cache.getTracks());
+                event.reply(cacheMessage(event.getClient().getSuccess(), event.getClient().getWarning(), cache));
                 return;
             }
 
@@ -140,7 +124,7 @@ public class PlayCmd extends MusicCommand {
                 event.getChannel().sendMessage(loadingEmoji + " プレイリストを読み込んでいます**" + settings.getDefaultPlaylist() + " ** ...（ " + playlist.getItems().size() + "曲）").queue(m ->
                 {
 
-                    playlist.loadTracks(bot.getPlayerManager(), (at) -> handler.addTrack(new QueuedTrack(at, event.getAuthor())), () -> {
+                    playlist.loadTrackBatches(bot.getPlayerManager(), event.getGuild().getIdLong(), tracks -> handler.addTracks(QueuedTrack.fromTracks(tracks, event.getAuthor())), () -> {
                         StringBuilder builder = new StringBuilder(playlist.getTracks().isEmpty()
                                 ? event.getClient().getWarning() + " 曲がロードされていません！"
                                 : event.getClient().getSuccess() + " ** " + playlist.getTracks().size() + " **曲をロードしました！");
@@ -180,43 +164,29 @@ public class PlayCmd extends MusicCommand {
                 if (DJCommand.checkDJPermission(event.getClient(), event)) {
 
                     handler.getPlayer().setPaused(false);
-                    event.reply(event.getClient().getSuccess() + "**" + handler.getPlayer().getPlayingTrack().getInfo().title + "**の再生を再開しました。").queue();
+                    reply(event, event.getClient().getSuccess() + "**" + handler.getPlayer().getPlayingTrack().getInfo().title + "**の再生を再開しました。");
 
                     Bot.updatePlayStatus(event.getGuild(), event.getGuild().getSelfMember(), PlayStatus.PLAYING);
                 } else
-                    event.reply(event.getClient().getError() + "再生を再開できるのはDJのみです！").queue();
+                    reply(event, event.getClient().getError() + "再生を再開できるのはDJのみです！");
                 return;
             }
 
             // キャッシュの読み込み機構
             if (bot.getCacheLoader().cacheExists(event.getGuild().getId())) {
-                List<Cache> data = bot.getCacheLoader().GetCache(event.getGuild().getId());
-
-                AtomicInteger count = new AtomicInteger();
-                CacheLoader.CacheResult cache = bot.getCacheLoader().ConvertCache(data);
-                event.reply(":calling: キャッシュファイルを読み込んでいます... (" + cache.getItems().size() + "曲)").queue(m -> {
-                    cache.loadTracks(bot.getPlayerManager(), (at) -> {
-                        // TODO:キャッシュに保存されているユーザーIDを使用する。
-                        handler.addTrack(new QueuedTrack(at, event.getUser()));
-                        count.getAndIncrement();
-                    }, () -> {
-                        StringBuilder builder = new StringBuilder(cache.getTracks().isEmpty()
-                                ? event.getClient().getWarning() + " 楽曲がロードされていません。"
-                                : event.getClient().getSuccess() + " キャッシュファイルから、" + "**" + cache.getTracks().size() + "**曲読み込みました。");
-                        if (!cache.getErrors().isEmpty())
-                            builder.append("\n以下の楽曲をロードできませんでした:");
-                        cache.getErrors().forEach(err -> builder.append("\n`[").append(err.getIndex() + 1).append("]` **").append(err.getItem()).append("**: ").append(err.getReason()));
-                        String str = builder.toString();
-                        if (str.length() > 2000)
-                            str = str.substring(0, 1994) + " (以下略)";
-                        m.editOriginal(FormatUtil.filter(str)).queue();
-                    });
-                });
+                // 保存した楽曲をデコードするだけで復元し、再生していた楽曲は保存した位置から再生する
+                CacheLoader.CacheResult cache = bot.getCacheLoader().restore(bot.getPlayerManager(), event.getGuild().getId());
                 try {
                     bot.getCacheLoader().deleteCache(event.getGuild().getId());
                 } catch (IOException e) {
                     e.printStackTrace();
                 }
+                if (cache == null) {
+                    reply(event, event.getClient().getError() + " キャッシュファイルを読み込めませんでした。");
+                    return;
+                }
+                handler.addTracks(cache.getTracks());
+                reply(event, cacheMessage(event.getClient().getSuccess(), event.getClient().getWarning(), cache));
                 return;
             }
 
@@ -225,13 +195,13 @@ public class PlayCmd extends MusicCommand {
                 handler.stopAndClear();
                 Playlist playlist = bot.getPlaylistLoader().getPlaylist(event.getGuild().getId(), settings.getDefaultPlaylist());
                 if (playlist == null) {
-                    event.reply("プレイリストフォルダに`" + event.getOption("input").getAsString() + ".txt`が見つかりませんでした。").queue();
+                    reply(event, "プレイリストフォルダに`" + event.getOption("input").getAsString() + ".txt`が見つかりませんでした。");
                     return;
                 }
-                event.reply(loadingEmoji + " プレイリストを読み込んでいます**" + settings.getDefaultPlaylist() + " ** ...（ " + playlist.getItems().size() + "曲）").queue(m ->
+                reply(event, loadingEmoji + " プレイリストを読み込んでいます**" + settings.getDefaultPlaylist() + " ** ...（ " + playlist.getItems().size() + "曲）", m ->
                 {
 
-                    playlist.loadTracks(bot.getPlayerManager(), (at) -> handler.addTrack(new QueuedTrack(at, event.getUser())), () -> {
+                    playlist.loadTrackBatches(bot.getPlayerManager(), event.getGuild().getIdLong(), tracks -> handler.addTracks(QueuedTrack.fromTracks(tracks, event.getUser())), () -> {
                         StringBuilder builder = new StringBuilder(playlist.getTracks().isEmpty()
                                 ? event.getClient().getWarning() + " 曲がロードされていません！"
                                 : event.getClient().getSuccess() + " ** " + playlist.getTracks().size() + " **曲をロードしました！");
@@ -253,11 +223,27 @@ public class PlayCmd extends MusicCommand {
             builder.append("\n`").append(event.getClient().getPrefix()).append(name).append(" <URL>` - 指定された曲、再生リスト、またはストリームを再生します");
             for (Command cmd : children)
                 builder.append("\n`").append(event.getClient().getPrefix()).append(name).append(" ").append(cmd.getName()).append(" ").append(cmd.getArguments()).append("` - ").append(cmd.getHelp());
-            event.reply(builder.toString()).queue();
+            reply(event, builder.toString());
             return;
         }
-        event.reply(loadingEmoji + "`[" + event.getOption("input").getAsString() + "]`を読み込み中です…").queue(m -> bot.getPlayerManager().loadItemOrdered(event.getGuild(), event.getOption("input").getAsString(), new SlashResultHandler(m, event, false)));
+        reply(event, loadingEmoji + "`[" + event.getOption("input").getAsString() + "]`を読み込み中です…", m -> bot.getPlayerManager().loadItemOrdered(event.getGuild(), event.getOption("input").getAsString(), new SlashResultHandler(m, event, false)));
+
+    }
 
+    /**
+     * キャッシュから復元した結果のメッセージを作成します。
+     */
+    private static String cacheMessage(String success, String warning, CacheLoader.CacheResult cache) {
+        StringBuilder builder = new StringBuilder(cache.getTracks().isEmpty()
+                ? warning + " 楽曲がロードされていません。"
+                : success + " キャッシュファイルから、" + "**" + cache.getTracks().size() + "**曲読み込みました。");
+        if (!cache.getErrors().isEmpty())
+            builder.append("\n以下の楽曲をロードできませんでした:");
+        cache.getErrors().forEach(err -> builder.append("\n`[").append(err.getIndex() + 1).append("]` **").append(err.getItem()).append("**: ").append(err.getReason()));
+        String str = builder.toString();
+        if (str.length() > 2000)
+            str = str.substring(0, 1994) + " (以下略)";
+        return FormatUtil.filter(str);
     }
 
     public class SlashResultHandler implements AudioLoadResultHandler {
@@ -311,15 +297,14 @@ public class PlayCmd extends MusicCommand {
         }
 
         private int loadPlaylist(AudioPlaylist playlist, AudioTrack exclude) {
-            int[] count = {0};
+            List<QueuedTrack> tracks = new ArrayList<>();
             playlist.getTracks().forEach((track) -> {
-                if (!bot.getConfig().isTooLong(track) && !track.equals(exclude)) {
-                    AudioHandler handler = (AudioHandler) event.getGuild().getAudioManager().getSendingHandler();
-                    handler.addTrack(new QueuedTrack(track, event.getUser()));
-                    count[0]++;
-                }
+                if (!bot.getConfig().isTooLong(track) && !track.equals(exclude))
+                    tracks.add(new QueuedTrack(track, event.getUser()));
             });
-            return count[0];
+            AudioHandler handler = (AudioHandler) event.getGuild().getAudioManager().getSendingHandler();
+            handler.addTracks(tracks);
+            return tracks.size();
         }
 
         @Override
@@ -419,15 +404,14 @@ public class PlayCmd extends MusicCommand {
         }
 
         private int loadPlaylist(AudioPlaylist playlist, AudioTrack exclude) {
-            int[] count = {0};
+            List<QueuedTrack> tracks = new ArrayList<>();
             playlist.getTracks().forEach((track) -> {
-                if (!bot.getConfig().isTooLong(track) && !track.equals(exclude)) {
-                    AudioHandler handler = (AudioHandler) event.getGuild().getAudioManager().getSendingHandler();
-                    handler.addTrack(new QueuedTrack(track, event.getAuthor()));
-                    count[0]++;
-                }
+                if (!bot.getConfig().isTooLong(track) && !track.equals(exclude))
+                    tracks.add(new QueuedTrack(track, event.getAuthor()));
             });
-            return count[0];
+            AudioHandler handler = (AudioHandler) event.getGuild().getAudioManager().getSendingHandler();
+            handler.addTracks(tracks);
+            return tracks.size();
         }
 
         @Override
@@ -520,43 +504,29 @@ public class PlayCmd extends MusicCommand {
                     if (DJCommand.checkDJPermission(event.getClient(), event)) {
 
                         handler.getPlayer().setPaused(false);
-                        event.reply(event.getClient().getSuccess() + "**" + handler.getPlayer().getPlayingTrack().getInfo().title + "**の再生を再開しました。").queue();
+                        reply(event, event.getClient().getSuccess() + "**" + handler.getPlayer().getPlayingTrack().getInfo().title + "**の再生を再開しました。");
 
                         Bot.updatePlayStatus(event.getGuild(), event.getGuild().getSelfMember(), PlayStatus.PLAYING);
                     } else
-                        event.reply(event.getClient().getError() + "再生を再開できるのはDJのみです！").queue();
+                        reply(event, event.getClient().getError() + "再生を再開できるのはDJのみです！");
                     return;
                 }
 
                 // キャッシュの読み込み機構
                 if (bot.getCacheLoader().cacheExists(event.getGuild().getId())) {
-                    List<Cache> data = bot.getCacheLoader().GetCache(event.getGuild().getId());
-
-                    AtomicInteger count = new AtomicInteger();
-                    CacheLoader.CacheResult cache = bot.getCacheLoader().ConvertCache(data);
-                    event.reply(":calling: キャッシュファイルを読み込んでいます... (" + cache.getItems().size() + "曲)").queue(m -> {
-                        cache.loadTracks(bot.getPlayerManager(), (at) -> {
-                            // TODO:キャッシュに保存されているユーザーIDを使用する。
-                            handler.addTrack(new QueuedTrack(at, event.getUser()));
-                            count.getAndIncrement();
-                        }, () -> {
-                            StringBuilder builder = new StringBuilder(cache.getTracks().isEmpty()
-                                    ? event.getClient().getWarning() + " 楽曲がロードされていません。"
-                                    : event.getClient().getSuccess() + " キャッシュファイルから、" + "**" + cache.getTracks().size() + "**曲読み込みました。");
-                            if (!cache.getErrors().isEmpty())
-                                builder.append("\n以下の楽曲をロードできませんでした:");
-                            cache.getErrors().forEach(err -> builder.append("\n`[").append(err.getIndex() + 1).append("]` **").append(err.getItem()).append("**: ").append(err.getReason()));
-                            String str = builder.toString();
-                            if (str.length() > 2000)
-                                str = str.substring(0, 1994) + " (以下略)";
-                            m.editOriginal(FormatUtil.filter(str)).queue();
-                        });
-                    });
+                    // 保存した楽曲をデコードするだけで復元し、再生していた楽曲は保存した位置から再生する
+                    CacheLoader.CacheResult cache = bot.getCacheLoader().restore(bot.getPlayerManager(), event.getGuild().getId());
                     try {
                         bot.getCacheLoader().deleteCache(event.getGuild().getId());
                     } catch (IOException e) {
                         e.printStackTrace();
                     }
+                    if (cache == null) {
+                        reply(event, event.getClient().getError() + " キャッシュファイルを読み込めませんでした。");
+                        return;
+                    }
+                    handler.addTracks(cache.getTracks());
+                    reply(event, cacheMessage(event.getClient().getSuccess(), event.getClient().getWarning(), cache));
                     return;
                 }
 
@@ -565,13 +535,13 @@ public class PlayCmd extends MusicCommand {
                     handler.stopAndClear();
                     Playlist playlist = bot.getPlaylistLoader().getPlaylist(event.getGuild().getId(), settings.getDefaultPlaylist());
                     if (playlist == null) {
-                        event.reply("プレイリストフォルダに`" + event.getOption("input").getAsString() + ".txt`が見つかりませんでした。").queue();
+                        reply(event, "プレイリストフォルダに`" + event.getOption("input").getAsString() + ".txt`が見つかりませんでした。");
                         return;
                     }
-                    event.reply(loadingEmoji + " プレイリストを読み込んでいます**" + settings.getDefaultPlaylist() + " ** ...（ " + playlist.getItems().size() + "曲）").queue(m ->
+                    reply(event, loadingEmoji + " プレイリストを読み込んでいます**" + settings.getDefaultPlaylist() + " ** ...（ " + playlist.getItems().size() + "曲）", m ->
                     {
 
-                        playlist.loadTracks(bot.getPlayerManager(), (at) -> handler.addTrack(new QueuedTrack(at, event.getUser())), () -> {
+                        playlist.loadTrackBatches(bot.getPlayerManager(), event.getGuild().getIdLong(), tracks -> handler.addTracks(QueuedTrack.fromTracks(tracks, event.getUser())), () -> {
                             StringBuilder builder = new StringBuilder(playlist.getTracks().isEmpty()
                                     ? event.getClient().getWarning() + " 曲がロードされていません！"
                                     : event.getClient().getSuccess() + " ** " + playlist.getTracks().size() + " **曲をロードしました！");
@@ -593,10 +563,10 @@ public class PlayCmd extends MusicCommand {
                 builder.append("\n`").append(event.getClient().getPrefix()).append(name).append(" <URL>` - 指定された曲、再生リスト、またはストリームを再生します");
                 for (Command cmd : children)
                     builder.append("\n`").append(event.getClient().getPrefix()).append(name).append(" ").append(cmd.getName()).append(" ").append(cmd.getArguments()).append("` - ").append(cmd.getHelp());
-                event.reply(builder.toString()).queue();
+                reply(event, builder.toString());
                 return;
             }
-            event.reply(loadingEmoji + "`[" + event.getOption("input").getAsString() + "]`を読み込み中です…").queue(m -> bot.getPlayerManager().loadItemOrdered(event.getGuild(), event.getOption("input").getAsString(), new SlashResultHandler(m, event, false)));
+            reply(event, loadingEmoji + "`[" + event.getOption("input").getAsString() + "]`を読み込み中です…", m -> bot.getPlayerManager().loadItemOrdered(event.getGuild(), event.getOption("input").getAsString(), new SlashResultHandler(m, event, false)));
         }
 
 
@@ -633,7 +603,14 @@ public class PlayCmd extends MusicCommand {
             event.getChannel().sendMessage(":calling: 再生リスト **" + event.getArgs() + "**を読み込んでいます... (" + playlist.getItems().size() + " 曲)").queue(m ->
             {
                 AudioHandler handler = (AudioHandler) event.getGuild().getAudioManager().getSendingHandler();
-                playlist.loadTracks(bot.getPlayerManager(), (at) -> handler.addTrack(new QueuedTrack(at, event.getAuthor())), () -> {
+                if (bot.getConfig().isLazyLoad(playlist.getItems().size())) {
+                    List<QueuedTrack> lazy = playlist.toLazyTracks(bot.getPlayerManager(), event.getAuthor());
+                    handler.addTracks(lazy);
+                    m.editMessage(FormatUtil.filter(event.getClient().getSuccess() + "**" + lazy.size() + "**曲を追加しました。曲は再生する直前に読み込みます。")).queue();
+                    return;
+                }
+                playlist.setProgressListener((completed, total) -> m.editMessage(":calling: 再生リスト **" + event.getArgs() + "**を読み込んでいます... (" + completed + "/" + total + " 曲)").queue());
+                playlist.loadTrackBatches(bot.getPlayerManager(), event.getGuild().getIdLong(), tracks -> handler.addTracks(QueuedTrack.fromTracks(tracks, event.getAuthor())), () -> {
                     StringBuilder builder = new StringBuilder(playlist.getTracks().isEmpty()
                             ? event.getClient().getWarning() + " 楽曲がロードされていません。"
                             : event.getClient().getSuccess() + "**" + playlist.getTracks().size() + "**曲読み込みました。");
@@ -656,13 +633,20 @@ public class PlayCmd extends MusicCommand {
 
             Playlist playlist = bot.getPlaylistLoader().getPlaylist(guildId, name);
             if (playlist == null) {
-                event.reply(event.getClient().getError() + "`" + name + ".txt`を見つけられませんでした ").queue();
+                reply(event, event.getClient().getError() + "`" + name + ".txt`を見つけられませんでした ");
                 return;
             }
-            event.reply(":calling: 再生リスト **" + name + "**を読み込んでいます... (" + playlist.getItems().size() + " 曲)").queue(m ->
+            reply(event, ":calling: 再生リスト **" + name + "**を読み込んでいます... (" + playlist.getItems().size() + " 曲)", m ->
             {
                 AudioHandler handler = (AudioHandler) event.getGuild().getAudioManager().getSendingHandler();
-                playlist.loadTracks(bot.getPlayerManager(), (at) -> handler.addTrack(new QueuedTrack(at, event.getUser())), () -> {
+                if (bot.getConfig().isLazyLoad(playlist.getItems().size())) {
+                    List<QueuedTrack> lazy = playlist.toLazyTracks(bot.getPlayerManager(), event.getUser());
+                    handler.addTracks(lazy);
+                    m.editOriginal(FormatUtil.filter(event.getClient().getSuccess() + "**" + lazy.size() + "**曲を追加しました。曲は再生する直前に読み込みます。")).queue();
+                    return;
+                }
+                playlist.setProgressListener((completed, total) -> m.editOriginal(":calling: 再生リスト **" + name + "**を読み込んでいます... (" + completed + "/" + total + " 曲)").queue());
+                playlist.loadTrackBatches(bot.getPlayerManager(), event.getGuild().getIdLong(), tracks -> handler.addTracks(QueuedTrack.fromTracks(tracks, event.getUser())), () -> {
                     StringBuilder builder = new StringBuilder(playlist.getTracks().isEmpty()
                             ? event.getClient().getWarning() + " 楽曲がロードされていません。"
                             : event.getClient().getSuccess() + "**" + playlist.getTracks().size() + "**曲読み込みました。");
@@ -708,7 +692,14 @@ public class PlayCmd extends MusicCommand {
             event.getChannel().sendMessage(":calling: マイリスト**" + event.getArgs() + "**を読み込んでいます... (" + playlist.getItems().size() + " 曲)").queue(m ->
             {
                 AudioHandler handler = (AudioHandler) event.getGuild().getAudioManager().getSendingHandler();
-                playlist.loadTracks(bot.getPlayerManager(), (at) -> handler.addTrack(new QueuedTrack(at, event.getAuthor())), () -> {
+                if (bot.getConfig().isLazyLoad(playlist.getItems().size())) {
+                    List<QueuedTrack> lazy = playlist.toLazyTracks(bot.getPlayerManager(), event.getAuthor());
+                    handler.addTracks(lazy);
+                    m.editMessage(FormatUtil.filter(event.getClient().getSuccess() + "**" + lazy.size() + "**曲を追加しました。曲は再生する直前に読み込みます。")).queue();
+                    return;
+                }
+                playlist.setProgressListener((completed, total) -> m.editMessage(":calling: マイリスト**" + event.getArgs() + "**を読み込んでいます... (" + completed + "/" + total + " 曲)").queue());
+                playlist.loadTrackBatches(bot.getPlayerManager(), event.getGuild().getIdLong(), tracks -> handler.addTracks(QueuedTrack.fromTracks(tracks, event.getAuthor())), () -> {
                     StringBuilder builder = new StringBuilder(playlist.getTracks().isEmpty()
                             ? event.getClient().getWarning() + " 楽曲がロードされていません。"
                             : event.getClient().getSuccess() + "**" + playlist.getTracks().size() + "**曲、読み込みました。");
@@ -732,13 +723,20 @@ public class PlayCmd extends MusicCommand {
 
             MylistLoader.Playlist playlist = bot.getMylistLoader().getPlaylist(userId, name);
             if (playlist == null) {
-                event.reply(event.getClient().getError() + "`" + name + ".txt `を見つけられませんでした ").queue();
+                reply(event, event.getClient().getError() + "`" + name + ".txt `を見つけられませんでした ");
                 return;
             }
-            event.reply(":calling: マイリスト**" + name + "**を読み込んでいます... (" + playlist.getItems().size() + " 曲)").queue(m ->
+            reply(event, ":calling: マイリスト**" + name + "**を読み込んでいます... (" + playlist.getItems().size() + " 曲)", m ->
             {
                 AudioHandler handler = (AudioHandler) event.getGuild().getAudioManager().getSendingHandler();
-                playlist.loadTracks(bot.getPlayerManager(), (at) -> handler.addTrack(new QueuedTrack(at, event.getUser())), () -> {
+                if (bot.getConfig().isLazyLoad(playlist.getItems().size())) {
+                    List<QueuedTrack> lazy = playlist.toLazyTracks(bot.getPlayerManager(), event.getUser());
+                    handler.addTracks(lazy);
+                    m.editOriginal(FormatUtil.filter(event.getClient().getSuccess() + "**" + lazy.size() + "**曲を追加しました。曲は再生する直前に読み込みます。")).queue();
+                    return;
+                }
+                playlist.setProgressListener((completed, total) -> m.editOriginal(":calling: マイリスト**" + name + "**を読み込んでいます... (" + completed + "/" + total + " 曲)").queue());
+                playlist.loadTrackBatches(bot.getPlayerManager(), event.getGuild().getIdLong(), tracks -> handler.addTracks(QueuedTrack.fromTracks(tracks, event.getUser())), () -> {
                     StringBuilder builder = new StringBuilder(playlist.getTracks().isEmpty()
                             ? event.getClient().getWarning() + " 楽曲がロードされていません。"
                             : event.getClient().getSuccess() + "**" + playlist.getTracks().size() + "**曲、読み込みました。");
@@ -784,7 +782,14 @@ public class PlayCmd extends MusicCommand {
             event.getChannel().sendMessage(":calling: 再生リスト**" + event.getArgs() + "**を読み込んでいます... (" + playlist.getItems().size() + " 曲)").queue(m ->
             {
                 AudioHandler handler = (AudioHandler) event.getGuild().getAudioManager().getSendingHandler();
-                playlist.loadTracks(bot.getPlayerManager(), (at) -> handler.addTrack(new QueuedTrack(at, event.getAuthor())), () -> {
+                if (bot.getConfig().isLazyLoad(playlist.getItems().size())) {
+                    List<QueuedTrack> lazy = playlist.toLazyTracks(bot.getPlayerManager(), event.getAuthor());
+                    handler.addTracks(lazy);
+                    m.editMessage(FormatUtil.filter(event.getClient().getSuccess() + "**" + lazy.size() + "**曲を追加しました。曲は再生する直前に読み込みます。")).queue();
+                    return;
+                }
+                playlist.setProgressListener((completed, total) -> m.editMessage(":calling: 再生リスト**" + event.getArgs() + "**を読み込んでいます... (" + completed + "/" + total + " 曲)").queue());
+                playlist.loadTrackBatches(bot.getPlayerManager(), event.getGuild().getIdLong(), tracks -> handler.addTracks(QueuedTrack.fromTracks(tracks, event.getAuthor())), () -> {
                     StringBuilder builder = new StringBuilder(playlist.getTracks().isEmpty()
                             ? event.getClient().getWarning() + " 楽曲がロードされていません。"
                             : event.getClient().getSuccess() + "**" + playlist.getTracks().size() + "**曲、読み込みました。");
@@ -805,13 +810,20 @@ public class PlayCmd extends MusicCommand {
             String name = event.getOption("name").getAsString();
             PubliclistLoader.Playlist playlist = bot.getPublistLoader().getPlaylist(name);
             if (playlist == null) {
-                event.reply(event.getClient().getError() + "`" + name + ".txt `を見つけられませんでした ").queue();
+                reply(event, event.getClient().getError() + "`" + name + ".txt `を見つけられませんでした ");
                 return;
             }
-            event.reply(":calling: 再生リスト**" + name + "**を読み込んでいます... (" + playlist.getItems().size() + " 曲)").queue(m ->
+            reply(event, ":calling: 再生リスト**" + name + "**を読み込んでいます... (" + playlist.getItems().size() + " 曲)", m ->
             {
                 AudioHandler handler = (AudioHandler) event.getGuild().getAudioManager().getSendingHandler();
-                playlist.loadTracks(bot.getPlayerManager(), (at) -> handler.addTrack(new QueuedTrack(at, event.getUser())), () -> {
+                if (bot.getConfig().isLazyLoad(playlist.getItems().size())) {
+                    List<QueuedTrack> lazy = playlist.toLazyTracks(bot.getPlayerManager(), event.getUser());
+                    handler.addTracks(lazy);
+                    m.editOriginal(FormatUtil.filter(event.getClient().getSuccess() + "**" + lazy.size() + "**曲を追加しました。曲は再生する直前に読み込みます。")).queue();
+                    return;
+                }
+                playlist.setProgressListener((completed, total) -> m.editOriginal(":calling: 再生リスト**" + name + "**を読み込んでいます... (" + completed + "/" + total + " 曲)").queue());
+                playlist.loadTrackBatches(bot.getPlayerManager(), event.getGuild().getIdLong(), tracks -> handler.addTracks(QueuedTrack.fromTracks(tracks, event.getUser())), () -> {
                     StringBuilder builder = new StringBuilder(playlist.getTracks().isEmpty()
                             ? event.getClient().getWarning() + " 楽曲がロードされていません。"
                             : event.getClient().getSuccess() + "**" + playlist.getTracks().size() + "**曲、読み込みました。");
@@ -83,7 +83,7 @@ public class PlaylistsCmd extends MusicCommand {
             message = builder.toString();
         }
 
-        reply(cmdEvent, slashEvent, message);
+        respond(cmdEvent, slashEvent, message);
     }
 
     private void ensureFoldersExist(String guildID) {
@@ -95,11 +95,12 @@ public class PlaylistsCmd extends MusicCommand {
         }
     }
 
-    private void reply(CommandEvent cmdEvent, SlashCommandEvent slashEvent, String message) {
+    // 内部クラスから継承した reply と区別するため、別の名前にしている
+    private void respond(CommandEvent cmdEvent, SlashCommandEvent slashEvent, String message) {
         if (cmdEvent != null) {
-            cmdEvent.reply(message); // CommandEventにはqueue()を付けない
+            cmdEvent.reply(message);
         } else if (slashEvent != null) {
-            slashEvent.reply(message).queue(); // SlashCommandEventにはqueue()を付ける
+            reply(slashEvent, message);
         }
     }
 
@@ -127,23 +128,23 @@ public class PlaylistsCmd extends MusicCommand {
 
         private void playPlaylist(String guildID, String playlistName, CommandEvent cmdEvent, SlashCommandEvent slashEvent) {
             if (playlistName == null || playlistName.isEmpty()) {
-                reply(cmdEvent, slashEvent, (cmdEvent != null ? cmdEvent.getClient().getError() : slashEvent.getClient().getError()) + " 再生リスト名を指定してください。");
+                respond(cmdEvent, slashEvent, (cmdEvent != null ? cmdEvent.getClient().getError() : slashEvent.getClient().getError()) + " 再生リスト名を指定してください。");
                 return;
             }
 
             PlaylistLoader.Playlist playlist = bot.getPlaylistLoader().getPlaylist(guildID, playlistName);
             if (playlist == null) {
-                reply(cmdEvent, slashEvent, (cmdEvent != null ? cmdEvent.getClient().getError() : slashEvent.getClient().getError()) + " 再生リスト `" + playlistName + "` が見つかりませんでした。");
+                respond(cmdEvent, slashEvent, (cmdEvent != null ? cmdEvent.getClient().getError() : slashEvent.getClient().getError()) + " 再生リスト `" + playlistName + "` が見つかりませんでした。");
                 return;
             }
 
-            reply(cmdEvent, slashEvent, (cmdEvent != null ? cmdEvent.getClient().getSuccess() : slashEvent.getClient().getSuccess()) + ":calling: 再生リスト **" + playlistName + "** を読み込んでいます... (" + playlist.getItems().size() + " 曲)");
+            respond(cmdEvent, slashEvent, (cmdEvent != null ? cmdEvent.getClient().getSuccess() : slashEvent.getClient().getSuccess()) + ":calling: 再生リスト **" + playlistName + "** を読み込んでいます... (" + playlist.getItems().size() + " 曲)");
 
             AudioHandler handler = (AudioHandler) (cmdEvent != null
                     ? cmdEvent.getGuild().getAudioManager().getSendingHandler()
                     : slashEvent.getGuild().getAudioManager().getSendingHandler());
 
-            playlist.loadTracks(bot.getPlayerManager(), track -> handler.addTrack(new QueuedTrack(track, cmdEvent != null ? cmdEvent.getAuthor() : slashEvent.getUser())), () -> {
+            playlist.loadTrackBatches(bot.getPlayerManager(), Long.parseLong(guildID), tracks -> handler.addTracks(QueuedTrack.fromTracks(tracks, cmdEvent != null ? cmdEvent.getAuthor() : slashEvent.getUser())), () -> {
                 StringBuilder builder = new StringBuilder();
                 if (playlist.getTracks().isEmpty()) {
                     builder.append((cmdEvent != null ? cmdEvent.getClient().getWarning() : slashEvent.getClient().getWarning())).append(" 楽曲がロードされていません。");
@@ -160,7 +161,7 @@ public class PlaylistsCmd extends MusicCommand {
                     result = result.substring(0, 1994) + " (以下略)";
                 }
 
-                reply(cmdEvent, slashEvent, result);
+                respond(cmdEvent, slashEvent, result);
             });
         }
     }
@@ -219,12 +220,12 @@ public class PlaylistsCmd extends MusicCommand {
 
             PlaylistLoader.Playlist playlist = bot.getPlaylistLoader().getPlaylist(guildId, playlistName);
             if (playlist == null) {
-                event.reply(event.getClient().getError() + " 再生リスト `" + playlistName + "` が見つかりませんでした。").queue();
+                reply(event, event.getClient().getError() + " 再生リスト `" + playlistName + "` が見つかりませんでした。");
                 return;
             }
 
             if (playlist.getItems().isEmpty()) {
-                event.reply(event.getClient().getWarning() + " 再生リスト `" + playlistName + "` に曲がありません。").queue();
+                reply(event, event.getClient().getWarning() + " 再生リスト `" + playlistName + "` に曲がありません。");
                 return;
             }
 
@@ -238,7 +239,7 @@ public class PlaylistsCmd extends MusicCommand {
                 builder.append("...");
             }
 
-            event.reply(builder.toString()).queue();
+            reply(event, builder.toString());
         }
     }
 
@@ -287,29 +288,29 @@ public class PlaylistsCmd extends MusicCommand {
         @Override
         public void doCommand(SlashCommandEvent event) {
             if (!checkDJPermission(event.getClient(), event)) {
-                event.reply(event.getClient().getWarning() + "権限がないため実行できません。").queue();
+                reply(event, event.getClient().getWarning() + "権限がないため実行できません。");
                 return;
             }
             String pname = event.getOption("name").getAsString();
             String guildId = event.getGuild().getId();
             if (pname == null || pname.isEmpty()) {
-                event.reply(event.getClient().getError() + "プレイリストの名前を入力してください。").queue();
+                reply(event, event.getClient().getError() + "プレイリストの名前を入力してください。");
             } else if (bot.getPlaylistLoader().getPlaylist(guildId, pname) == null) {
                 try {
                     bot.getPlaylistLoader().createPlaylist(guildId, pname);
-                    event.reply(event.getClient().getSuccess() + "再生リスト `" + pname + "` を作成しました").queue();
+                    reply(event, event.getClient().getSuccess() + "再生リスト `" + pname + "` を作成しました");
                 } catch (IOException e) {
                     if (event.getClient().getOwnerId() == event.getMember().getId() || event.getMember().isOwner()) {
-                        event.reply(event.getClient().getError() + "曲の読み込み中にエラーが発生しました。\n" +
-                                "**エラーの内容: " + e.getLocalizedMessage() + "**").queue();
+                        reply(event, event.getClient().getError() + "曲の読み込み中にエラーが発生しました。\n" +
+                                "**エラーの内容: " + e.getLocalizedMessage() + "**");
                         StackTraceUtil.sendStackTrace(event.getTextChannel(), e);
                         return;
                     }
 
-                    event.reply(event.getClient().getError() + " 再生リストを作成できませんでした。:" + e.getLocalizedMessage()).queue();
+                    reply(event, event.getClient().getError() + " 再生リストを作成できませんでした。:" + e.getLocalizedMessage());
                 }
             } else {
-                event.reply(event.getClient().getError() + " 再生リスト `" + pname + "` は既に存在します").queue();
+                reply(event, event.getClient().getError() + " 再生リスト `" + pname + "` は既に存在します");
             }
         }
     }
@@ -352,19 +353,19 @@ public class PlaylistsCmd extends MusicCommand {
         @Override
         public void doCommand(SlashCommandEvent event) {
             if (!checkDJPermission(event.getClient(), event)) {
-                event.reply(event.getClient().getWarning() + "権限がないため実行できません。").queue();
+                reply(event, event.getClient().getWarning() + "権限がないため実行できません。");
                 return;
             }
             String pname = event.getOption("name").getAsString();
             String guildid = event.getGuild().getId();
             if (bot.getPlaylistLoader().getPlaylist(guildid, pname) == null)
-                event.reply(event.getClient().getError() + " 再生リストは存在しません:`" + pname + "`").queue();
+                reply(event, event.getClient().getError() + " 再生リストは存在しません:`" + pname + "`");
             else {
                 try {
                     bot.getPlaylistLoader().deletePlaylist(guildid, pname);
-                    event.reply(event.getClient().getSuccess() + " 再生リストを削除しました:`" + pname + "`").queue();
+                    reply(event, event.getClient().getSuccess() + " 再生リストを削除しました:`" + pname + "`");
                 } catch (IOException e) {
-                    event.reply(event.getClient().getError() + " 再生リストを削除できませんでした: " + e.getLocalizedMessage()).queue();
+                    reply(event, event.getClient().getError() + " 再生リストを削除できませんでした: " + e.getLocalizedMessage());
                 }
             }
         }
@@ -420,7 +421,7 @@ public class PlaylistsCmd extends MusicCommand {
         @Override
         public void doCommand(SlashCommandEvent event) {
             if (!checkDJPermission(event.getClient(), event)) {
-                event.reply(event.getClient().getWarning() + "権限がないため実行できません。").queue();
+                reply(event, event.getClient().getWarning() + "権限がないため実行できません。");
                 return;
             }
 
@@ -428,7 +429,7 @@ public class PlaylistsCmd extends MusicCommand {
             String pname = event.getOption("name").getAsString();
             PlaylistLoader.Playlist playlist = bot.getPlaylistLoader().getPlaylist(guildid, pname);
             if (playlist == null)
-                event.reply(event.getClient().getError() + " 再生リストは存在しません:`" + pname + "`").queue();
+                reply(event, event.getClient().getError() + " 再生リストは存在しません:`" + pname + "`");
             else {
                 StringBuilder builder = new StringBuilder();
                 playlist.getItems().forEach(item -> builder.append("\r\n").append(item));
@@ -441,9 +442,9 @@ public class PlaylistsCmd extends MusicCommand {
                 }
                 try {
                     bot.getPlaylistLoader().writePlaylist(guildid, pname, builder.toString());
-                    event.reply(event.getClient().getSuccess() + urls.length + " 項目を再生リストに追加しました:`" + pname + "`").queue();
+                    reply(event, event.getClient().getSuccess() + urls.length + " 項目を再生リストに追加しました:`" + pname + "`");
                 } catch (IOException e) {
-                    event.reply(event.getClient().getError() + " 再生リストに追加できませんでした: " + e.getLocalizedMessage()).queue();
+                    reply(event, event.getClient().getError() + " 再生リストに追加できませんでした: " + e.getLocalizedMessage());
                 }
             }
         }
@@ -484,25 +485,25 @@ public class PlaylistsCmd extends MusicCommand {
         @Override
         public void doCommand(SlashCommandEvent event) {
             if (!checkDJPermission(event.getClient(), event)) {
-                event.reply(event.getClient().getWarning() + "権限がないため実行できません。").queue();
+                reply(event, event.getClient().getWarning() + "権限がないため実行できません。");
                 return;
             }
             String guildId = event.getGuild().getId();
             if (!bot.getPlaylistLoader().folderGuildExists(guildId))
                 bot.getPlaylistLoader().createGuildFolder(guildId);
             if (!bot.getPlaylistLoader().folderGuildExists(guildId)) {
-                event.reply(event.getClient().getWarning() + " 再生リストフォルダが存在しないため作成できませんでした。").queue();
+                reply(event, event.getClient().getWarning() + " 再生リストフォルダが存在しないため作成できませんでした。");
                 return;
             }
             List<String> list = bot.getPlaylistLoader().getPlaylistNames(guildId);
             if (list == null)
-                event.reply(event.getClient().getError() + " 利用可能な再生リストを読み込めませんでした。").queue();
+                reply(event, event.getClient().getError() + " 利用可能な再生リストを読み込めませんでした。");
             else if (list.isEmpty())
-                event.reply(event.getClient().getWarning() + " 再生リストフォルダに再生リストがありません。").queue();
+                reply(event, event.getClient().getWarning() + " 再生リストフォルダに再生リストがありません。");
             else {
                 StringBuilder builder = new StringBuilder(event.getClient().getSuccess() + " 利用可能な再生リスト:\n");
                 list.forEach(str -> builder.append("`").append(str).append("` "));
-                event.reply(builder.toString()).queue();
+                reply(event, builder.toString());
             }
         }
     }
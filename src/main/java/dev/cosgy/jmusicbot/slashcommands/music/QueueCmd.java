@@ -102,7 +102,7 @@ public class QueueCmd extends MusicCommand {
         String[] songs = new String[list.size()];
         long total = 0;
         for (int i = 0; i < list.size(); i++) {
-            total += list.get(i).getTrack().getDuration();
+            total += list.get(i).getDuration();
             songs[i] = list.get(i).toString();
         }
         Settings settings = event.getClient().getSettingsFor(event.getGuild());
@@ -117,7 +117,7 @@ public class QueueCmd extends MusicCommand {
 
     @Override
     public void doCommand(SlashCommandEvent event) {
-        InteractionHook m = event.reply("再生待ちを取得しています。").complete();
+        InteractionHook m = replyAndWait(event, "再生待ちを取得しています。");
         int pagenum = 1;
         AudioHandler ah = (AudioHandler) event.getGuild().getAudioManager().getSendingHandler();
         List<QueuedTrack> list = ah.getQueue().getList();
@@ -138,7 +138,7 @@ public class QueueCmd extends MusicCommand {
         String[] songs = new String[list.size()];
         long total = 0;
         for (int i = 0; i < list.size(); i++) {
-            total += list.get(i).getTrack().getDuration();
+            total += list.get(i).getDuration();
             songs[i] = list.get(i).toString();
         }
         Settings settings = event.getClient().getSettingsFor(event.getGuild());
@@ -79,7 +79,7 @@ public class RemoveCmd extends MusicCommand {
         QueuedTrack qt = handler.getQueue().get(pos - 1);
         if (qt.getIdentifier() == event.getAuthor().getIdLong()) {
             handler.getQueue().remove(pos - 1);
-            event.replySuccess("**" + (qt.getTrack().getInfo().uri.contains("https://stream.gensokyoradio.net/") ? "幻想郷ラジオ" : qt.getTrack().getInfo().title) + "**をキューから削除しました。");
+            event.replySuccess("**" + (qt.getUri().contains("https://stream.gensokyoradio.net/") ? "幻想郷ラジオ" : qt.getTitle()) + "**をキューから削除しました。");
         } else if (isDJ) {
             handler.getQueue().remove(pos - 1);
             User u;
@@ -88,10 +88,10 @@ public class RemoveCmd extends MusicCommand {
             } catch (Exception e) {
                 u = null;
             }
-            event.replySuccess("**" + qt.getTrack().getInfo().title
+            event.replySuccess("**" + qt.getTitle()
                     + "**を再生待ちから削除しました。\n(この曲は" + (u == null ? "誰かがリクエストしました。" : "**" + u.getName() + "**がリクエストしました。") + ")");
         } else {
-            event.replyError("**" + (qt.getTrack().getInfo().uri.contains("https://stream.gensokyoradio.net/") ? "幻想郷ラジオ" : qt.getTrack().getInfo().title) + "** を削除できませんでした。理由: DJ権限を持っていますか？自分のリクエスト以外は削除できません。");
+            event.replyError("**" + (qt.getUri().contains("https://stream.gensokyoradio.net/") ? "幻想郷ラジオ" : qt.getTitle()) + "** を削除できませんでした。理由: DJ権限を持っていますか？自分のリクエスト以外は削除できません。");
         }
     }
 
@@ -99,16 +99,16 @@ public class RemoveCmd extends MusicCommand {
     public void doCommand(SlashCommandEvent event) {
         AudioHandler handler = (AudioHandler) event.getGuild().getAudioManager().getSendingHandler();
         if (handler.getQueue().isEmpty()) {
-            event.reply(event.getClient().getError() + "再生待ちには何もありません。").queue();
+            reply(event, event.getClient().getError() + "再生待ちには何もありません。");
             return;
         }
 
         if (event.getOption("input").getAsString().toLowerCase().matches("(all|すべて)")) {
             int count = handler.getQueue().removeAll(event.getUser().getIdLong());
             if (count == 0)
-                event.reply(event.getClient().getWarning() + "再生待ちに曲がありません。").queue();
+                reply(event, event.getClient().getWarning() + "再生待ちに曲がありません。");
             else
-                event.reply(event.getClient().getSuccess() + count + "曲を削除しました。").queue();
+                reply(event, event.getClient().getSuccess() + count + "曲を削除しました。");
             return;
         }
         int pos;
@@ -118,7 +118,7 @@ public class RemoveCmd extends MusicCommand {
             pos = 0;
         }
         if (pos < 1 || pos > handler.getQueue().size()) {
-            event.reply(event.getClient().getError() + String.format("1から%sまでの有効な数字を入力してください!", handler.getQueue().size())).queue();
+            reply(event, event.getClient().getError() + String.format("1から%sまでの有効な数字を入力してください!", handler.getQueue().size()));
             return;
         }
         Settings settings = event.getClient().getSettingsFor(event.getGuild());
@@ -128,7 +128,7 @@ public class RemoveCmd extends MusicCommand {
         QueuedTrack qt = handler.getQueue().get(pos - 1);
         if (qt.getIdentifier() == event.getUser().getIdLong()) {
             handler.getQueue().remove(pos - 1);
-            event.reply(event.getClient().getSuccess() + "**" + qt.getTrack().getInfo().title + "**をキューから削除しました。").queue();
+            reply(event, event.getClient().getSuccess() + "**" + qt.getTitle() + "**をキューから削除しました。");
         } else if (isDJ) {
             handler.getQueue().remove(pos - 1);
             User u;
@@ -137,10 +137,10 @@ public class RemoveCmd extends MusicCommand {
             } catch (Exception e) {
                 u = null;
             }
-            event.reply(event.getClient().getSuccess() + "**" + qt.getTrack().getInfo().title
-                    + "**を再生待ちから削除しました。\n(この曲は" + (u == null ? "誰かがリクエストしました。" : "**" + u.getName() + "**がリクエストしました。") + ")").queue();
+            reply(event, event.getClient().getSuccess() + "**" + qt.getTitle()
+                    + "**を再生待ちから削除しました。\n(この曲は" + (u == null ? "誰かがリクエストしました。" : "**" + u.getName() + "**がリクエストしました。") + ")");
         } else {
-            event.reply(event.getClient().getError() + "**" + qt.getTrack().getInfo().title + "** を削除できませんでした。理由: DJ権限を持っていますか？自分のリクエスト以外は削除できません。").queue();
+            reply(event, event.getClient().getError() + "**" + qt.getTitle() + "** を削除できませんでした。理由: DJ権限を持っていますか？自分のリクエスト以外は削除できません。");
         }
     }
 }
@@ -81,7 +81,7 @@ public class SearchCmd extends MusicCommand {
 
     @Override
     public void doCommand(SlashCommandEvent event) {
-        event.reply(searchingEmoji + "`[" + event.getOption("input").getAsString() + "]`を検索中... ").queue(
+        reply(event, searchingEmoji + "`[" + event.getOption("input").getAsString() + "]`を検索中... ", 
                 m -> bot.getPlayerManager().loadItemOrdered(event.getGuild(), searchPrefix + event.getOption("input").getAsString(), new SlashResultHandler(m, event)));
     }
 
@@ -117,15 +117,15 @@ public class SearchCmd extends MusicCommand {
                     {
                         AudioTrack track = playlist.getTracks().get(i - 1);
                         if (bot.getConfig().isTooLong(track)) {
-                            event.reply(event.getClient().getWarning() + "**" + track.getInfo().title + "**`は許可されている最大長よりも長いです。"
-                                    + FormatUtil.formatTime(track.getDuration()) + "` > `" + bot.getConfig().getMaxTime() + "`").queue();
+                            reply(event, event.getClient().getWarning() + "**" + track.getInfo().title + "**`は許可されている最大長よりも長いです。"
+                                    + FormatUtil.formatTime(track.getDuration()) + "` > `" + bot.getConfig().getMaxTime() + "`");
                             return;
                         }
                         AudioHandler handler = (AudioHandler) event.getGuild().getAudioManager().getSendingHandler();
                         int pos = handler.addTrack(new QueuedTrack(track, event.getUser())) + 1;
-                        event.reply(event.getClient().getSuccess() + "**" + track.getInfo().title
+                        reply(event, event.getClient().getSuccess() + "**" + track.getInfo().title
                                 + "**(`" + FormatUtil.formatTime(track.getDuration()) + "`) " + (pos == 0 ? "を追加しました。"
-                                : " を" + pos + "番目の再生待ちに追加しました。 ")).queue();
+                                : " を" + pos + "番目の再生待ちに追加しました。 "));
                     })
                     .setCancel((msg) -> {
                     })
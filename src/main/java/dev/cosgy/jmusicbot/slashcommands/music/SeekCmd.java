@@ -94,6 +94,7 @@ public class SeekCmd extends MusicCommand
         try
         {
             playingTrack.setPosition(seekMilliseconds);
+            bot.getNowplayingHandler().onStateChange(event.getGuild().getIdLong());
         }
         catch (Exception e)
         {
@@ -110,13 +111,13 @@ public class SeekCmd extends MusicCommand
         AudioTrack playingTrack = handler.getPlayer().getPlayingTrack();
         if (!playingTrack.isSeekable())
         {
-            event.reply("このトラックはシークできません。").queue();
+            reply(event, "このトラックはシークできません。");
             return;
         }
 
         if (!DJCommand.checkDJPermission(event.getClient(), event) && playingTrack.getUserData(RequestMetadata.class).getOwner() != event.getUser().getIdLong())
         {
-            event.reply("あなたは **" + playingTrack.getInfo().title + "** を追加していないので、シークすることはできません！").queue();
+            reply(event, "あなたは **" + playingTrack.getInfo().title + "** を追加していないので、シークすることはできません！");
             return;
         }
 
@@ -124,7 +125,7 @@ public class SeekCmd extends MusicCommand
         TimeUtil.SeekTime seekTime = TimeUtil.parseTime(args);
         if (seekTime == null)
         {
-            event.reply("無効なシークです！予想されるフォーマット: " + arguments + "\n例: `1:02:23` `+1:10` `-90`, `1h10m`, `+90s`").queue();
+            reply(event, "無効なシークです！予想されるフォーマット: " + arguments + "\n例: `1:02:23` `+1:10` `-90`, `1h10m`, `+90s`");
             return;
         }
 
@@ -134,21 +135,22 @@ public class SeekCmd extends MusicCommand
         long seekMilliseconds = seekTime.relative ? currentPosition + seekTime.milliseconds : seekTime.milliseconds;
         if (seekMilliseconds > trackDuration)
         {
-            event.reply("現在のトラックの長さは `" + TimeUtil.formatTime(trackDuration) + "` なので、`" + TimeUtil.formatTime(seekMilliseconds) + "` へシークすることはできません！").queue();
+            reply(event, "現在のトラックの長さは `" + TimeUtil.formatTime(trackDuration) + "` なので、`" + TimeUtil.formatTime(seekMilliseconds) + "` へシークすることはできません！");
             return;
         }
 
         try
         {
             playingTrack.setPosition(seekMilliseconds);
+            bot.getNowplayingHandler().onStateChange(event.getGuild().getIdLong());
         }
         catch (Exception e)
         {
-            event.reply("シーク中にエラーが発生しました: " + e.getMessage()).queue();
+            reply(event, "シーク中にエラーが発生しました: " + e.getMessage());
             LOG.warn("トラック {} のシークに失敗しました", playingTrack.getIdentifier(), e);
             return;
         }
-        event.reply("`" + TimeUtil.formatTime(playingTrack.getPosition()) + "/" + TimeUtil.formatTime(playingTrack.getDuration()) + "` にシークしました！").queue();
+        reply(event, "`" + TimeUtil.formatTime(playingTrack.getPosition()) + "/" + TimeUtil.formatTime(playingTrack.getDuration()) + "` にシークしました！");
     }
 
 }
\ No newline at end of file
@@ -57,13 +57,13 @@ public class ShuffleCmd extends MusicCommand {
         int s = handler.getQueue().shuffle(event.getUser().getIdLong());
         switch (s) {
             case 0:
-                event.reply(event.getClient().getError() + "再生待ちに曲がありません!").queue();
+                reply(event, event.getClient().getError() + "再生待ちに曲がありません!");
                 break;
             case 1:
-                event.reply(event.getClient().getWarning() + "再生待ちには現在1曲しかありません!").queue();
+                reply(event, event.getClient().getWarning() + "再生待ちには現在1曲しかありません!");
                 break;
             default:
-                event.reply(event.getClient().getSuccess() + "" + s + "曲をシャッフルしました。").queue();
+                reply(event, event.getClient().getSuccess() + "" + s + "曲をシャッフルしました。");
                 break;
         }
     }
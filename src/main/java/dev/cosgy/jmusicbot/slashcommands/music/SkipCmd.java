@@ -20,6 +20,7 @@ import com.jagrosh.jdautilities.command.SlashCommandEvent;
 import com.jagrosh.jmusicbot.Bot;
 import com.jagrosh.jmusicbot.audio.AudioHandler;
 import com.jagrosh.jmusicbot.audio.RequestMetadata;
+import com.jagrosh.jmusicbot.audio.VoiceStateIndex;
 import dev.cosgy.jmusicbot.slashcommands.MusicCommand;
 
 /**
@@ -45,8 +46,10 @@ public class SkipCmd extends MusicCommand {
             handler.getPlayer().stopTrack();
         } else {
             // ボイチャにいる人数 (Bot, スピーカーミュートは含まず)
-            int listeners = (int) event.getSelfMember().getVoiceState().getChannel().getMembers().stream()
-                    .filter(m -> !m.getUser().isBot() && !m.getVoiceState().isDeafened() && m.getUser().getIdLong() != handler.getRequestMetadata().getOwner()).count();
+            VoiceStateIndex voiceStates = bot.getVoiceStateIndex();
+            long guildId = event.getGuild().getIdLong();
+            int listeners = voiceStates.getListenerCount(guildId)
+                    - (voiceStates.isListener(guildId, rm.getOwner()) ? 1 : 0);
 
             // 送信するメッセージ
             String msg;
@@ -60,8 +63,8 @@ public class SkipCmd extends MusicCommand {
             }
 
             // ボイチャにいる人の中から、スキップすることに投票している人数を取得する
-            int skippers = (int) event.getSelfMember().getVoiceState().getChannel().getMembers().stream()
-                    .filter(m -> handler.getVotes().contains(m.getUser().getId())).count();
+            int skippers = (int) handler.getVotes().stream()
+                    .filter(id -> voiceStates.isMember(guildId, Long.parseLong(id))).count();
 
             int required = (int) Math.ceil(listeners * bot.getSettingsManager().getSettings(event.getGuild()).getSkipRatio());
             msg += skippers + " 票, " + required + "/" + listeners + " 必要]`";
@@ -90,12 +93,14 @@ public class SkipCmd extends MusicCommand {
 
         RequestMetadata rm = handler.getRequestMetadata();
         if (event.getUser().getIdLong() == rm.getOwner()) {
-            event.reply(event.getClient().getSuccess() + "**" + (handler.getPlayer().getPlayingTrack().getInfo().uri.contains("https://stream.gensokyoradio.net/") ? "幻想郷ラジオ" : handler.getPlayer().getPlayingTrack().getInfo().title) + "** をスキップしました。").queue();
+            reply(event, event.getClient().getSuccess() + "**" + (handler.getPlayer().getPlayingTrack().getInfo().uri.contains("https://stream.gensokyoradio.net/") ? "幻想郷ラジオ" : handler.getPlayer().getPlayingTrack().getInfo().title) + "** をスキップしました。");
             handler.getPlayer().stopTrack();
         } else {
             // ボイチャにいる人数 (Bot, スピーカーミュートは含まず)
-            int listeners = (int) event.getGuild().getSelfMember().getVoiceState().getChannel().getMembers().stream()
-                    .filter(m -> !m.getUser().isBot() && !m.getVoiceState().isDeafened() && m.getUser().getIdLong() != handler.getRequestMetadata().getOwner()).count();
+            VoiceStateIndex voiceStates = bot.getVoiceStateIndex();
+            long guildId = event.getGuild().getIdLong();
+            int listeners = voiceStates.getListenerCount(guildId)
+                    - (voiceStates.isListener(guildId, rm.getOwner()) ? 1 : 0);
 
             // 送信するメッセージ
             String msg;
@@ -109,8 +114,8 @@ public class SkipCmd extends MusicCommand {
             }
 
             // ボイチャにいる人の中から、スキップすることに投票している人数を取得する
-            int skippers = (int) event.getGuild().getSelfMember().getVoiceState().getChannel().getMembers().stream()
-                    .filter(m -> handler.getVotes().contains(m.getUser().getId())).count();
+            int skippers = (int) handler.getVotes().stream()
+                    .filter(id -> voiceStates.isMember(guildId, Long.parseLong(id))).count();
 
             // 必要な投票数 (ボイチャにいる人数 × 0.55)
             int required = (int) Math.ceil(listeners * .55);
@@ -129,7 +134,7 @@ public class SkipCmd extends MusicCommand {
                         + "**をスキップしました。 " + (rm.getOwner() == 0L ? "(自動再生)" : "(**" + rm.user.username + "**がリクエスト)");
                 handler.getPlayer().stopTrack();
             }
-            event.reply(msg).queue();
+            reply(event, msg);
         }
     }
 }
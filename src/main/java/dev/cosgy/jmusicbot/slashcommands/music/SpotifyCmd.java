@@ -104,7 +104,7 @@ public class SpotifyCmd extends MusicCommand {
         String trackUrl = event.getOption("tracklink").getAsString();
 
         if(accessToken == null){
-            event.reply("このコマンドは使用できません。このコマンドを有効にするにはボットの所有者による設定が必要です。").queue();
+            reply(event, "このコマンドは使用できません。このコマンドを有効にするにはボットの所有者による設定が必要です。");
             return;
         }
 
@@ -116,7 +116,7 @@ public class SpotifyCmd extends MusicCommand {
         }
 
         if (!isSpotifyTrackUrl(trackUrl)) {
-            event.reply("Error: 指定されたURLはSpotifyの曲のURLではありません").queue();
+            reply(event, "Error: 指定されたURLはSpotifyの曲のURLではありません");
             return;
         }
 
@@ -163,9 +163,9 @@ public class SpotifyCmd extends MusicCommand {
 
             event.getTextChannel().sendMessageEmbeds(embed.build()).queue();
 
-            event.reply("`[" + trackName + "]`を読み込み中です…").queue(m -> bot.getPlayerManager().loadItemOrdered(event.getGuild(), "ytmsearch:"+trackName + " " + artistName, new SlashResultHandler(m, event)));
+            reply(event, "`[" + trackName + "]`を読み込み中です…", m -> bot.getPlayerManager().loadItemOrdered(event.getGuild(), "ytmsearch:"+trackName + " " + artistName, new SlashResultHandler(m, event)));
         } catch (IOException | InterruptedException e) {
-            event.reply("Error: " + e.getMessage()).queue();
+            reply(event, "Error: " + e.getMessage());
         }
     }
 
@@ -50,7 +50,7 @@ public class VolumeCmd extends MusicCommand {
     @Override
     public void doCommand(CommandEvent event) {
         AudioHandler handler = (AudioHandler) event.getGuild().getAudioManager().getSendingHandler();
-        Settings settings = event.getClient().getSettingsFor(event.getGuild());
+        Settings settings = bot.getSettingsManager().getSettingsForUpdate(event.getGuild());
         int volume = Objects.requireNonNull(handler).getPlayer().getVolume();
         if (event.getArgs().isEmpty()) {
             event.reply(FormatUtil.volumeIcon(volume) + " 現在の音量は`" + volume + "`です。");
@@ -66,6 +66,7 @@ public class VolumeCmd extends MusicCommand {
             else {
                 handler.getPlayer().setVolume(nvolume);
                 settings.setVolume(nvolume);
+                bot.getNowplayingHandler().onStateChange(event.getGuild().getIdLong());
                 event.reply(FormatUtil.volumeIcon(nvolume) + " 音量を`" + volume + "`から`" + nvolume + "`に変更しました。");
                 log.info(event.getGuild().getName() + "での音量が" + volume + "から" + nvolume + "に変更されました。");
             }
@@ -76,7 +77,7 @@ public class VolumeCmd extends MusicCommand {
     public void doCommand(SlashCommandEvent event) {
 
         AudioHandler handler = (AudioHandler) event.getGuild().getAudioManager().getSendingHandler();
-        Settings settings = event.getClient().getSettingsFor(event.getGuild());
+        Settings settings = bot.getSettingsManager().getSettingsForUpdate(event.getGuild());
         int volume = handler.getPlayer().getVolume();
         int nvolume;
         try {
@@ -85,11 +86,12 @@ public class VolumeCmd extends MusicCommand {
             nvolume = -1;
         }
         if (nvolume < 0 || nvolume > 150)
-            event.reply(event.getClient().getError() + " 音量は0から150までの整数でないといけません。").queue();
+            reply(event, event.getClient().getError() + " 音量は0から150までの整数でないといけません。");
         else {
             handler.getPlayer().setVolume(nvolume);
             settings.setVolume(nvolume);
-            event.reply(FormatUtil.volumeIcon(nvolume) + " 音量を`" + volume + "`から`" + nvolume + "`に変更しました。").queue();
+            bot.getNowplayingHandler().onStateChange(event.getGuild().getIdLong());
+            reply(event, FormatUtil.volumeIcon(nvolume) + " 音量を`" + volume + "`から`" + nvolume + "`に変更しました。");
             log.info(event.getGuild().getName() + "での音量が" + volume + "から" + nvolume + "に変更されました。");
         }
     }
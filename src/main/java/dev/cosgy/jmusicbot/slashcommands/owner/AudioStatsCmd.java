@@ -0,0 +1,107 @@
+/*
+ *  Copyright 2024 Cosgy Dev (info@cosgy.dev).
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package dev.cosgy.jmusicbot.slashcommands.owner;
+
+import com.jagrosh.jdautilities.command.CommandEvent;
+import com.jagrosh.jdautilities.command.SlashCommandEvent;
+import com.jagrosh.jmusicbot.Bot;
+import com.jagrosh.jmusicbot.audio.FrameStatistics;
+import com.jagrosh.jmusicbot.utils.UpdateCoalescer;
+import dev.cosgy.jmusicbot.slashcommands.OwnerCommand;
+import net.dv8tion.jda.api.JDA;
+import net.dv8tion.jda.api.entities.Guild;
+import net.dv8tion.jda.api.utils.FileUpload;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * ギルドごとの音声フレーム送信統計と、ニックネームなどの表示の更新の統計を表示します。
+ * スレッドプールとコマンドの統計は {@link ThreadStatsCmd} で表示します。
+ *
+ * @author Cosgy Dev
+ */
+public class AudioStatsCmd extends OwnerCommand {
+    private final Bot bot;
+
+    public AudioStatsCmd(Bot bot) {
+        this.bot = bot;
+        this.name = "audiostats";
+        this.help = "ギルドごとの音声フレーム送信と表示の更新の統計を表示します";
+        this.aliases = bot.getConfig().getAliases(this.name);
+        this.guildOnly = false;
+    }
+
+    private String buildReport(JDA jda) {
+        List<Map.Entry<Long, FrameStatistics.Snapshot>> entries = new ArrayList<>(bot.getPlayerManager().getFrameStatistics().entrySet());
+        // 欠落が多い順、次にCPU時間が多い順に並べる
+        entries.sort(Comparator.<Map.Entry<Long, FrameStatistics.Snapshot>>comparingLong(e -> e.getValue().getMissed()).reversed()
+                .thenComparing(Comparator.<Map.Entry<Long, FrameStatistics.Snapshot>>comparingLong(e -> e.getValue().getProvideNanos()).reversed()));
+
+        StringBuilder sb = new StringBuilder();
+        sb.append("音声フレーム送信統計 (").append(entries.size()).append("ギルド)");
+        for (Map.Entry<Long, FrameStatistics.Snapshot> entry : entries) {
+            FrameStatistics.Snapshot s = entry.getValue();
+            Guild guild = jda.getGuildById(entry.getKey());
+            sb.append("\n\n").append(guild == null ? "不明" : guild.getName()).append(" (").append(entry.getKey()).append(")")
+                    .append("\n  Provided = ").append(s.getProvided())
+                    .append("\n  Missed = ").append(s.getMissed())
+                    .append(String.format(" (%.2f%%)", s.getMissRatio() * 100))
+                    .append("\n  Idle = ").append(s.getIdle())
+                    .append("\n  LongestMissRun = ").append(s.getLongestMissRun())
+                    .append("\n  MissRun p50/p99 <= ").append(s.getMissRunPercentile(0.5)).append("/").append(s.getMissRunPercentile(0.99))
+                    .append("\n  ProvideTime total = ").append(s.getProvideNanos() / 1_000_000).append("ms")
+                    .append("\n  ProvideTime p50/p99 <= ").append(s.getProvideNanosPercentile(0.5) / 1000).append("us/")
+                    .append(s.getProvideNanosPercentile(0.99) / 1000).append("us");
+        }
+
+        // 表示の更新をまとめた結果
+        sb.append("\n\n表示の更新");
+        for (UpdateCoalescer.Kind kind : UpdateCoalescer.Kind.values()) {
+            UpdateCoalescer.Stats s = bot.getUpdateCoalescer().getStats(kind);
+            sb.append("\n  ").append(kind.getDescription())
+                    .append(": Requested = ").append(s.getRequested())
+                    .append(", Sent = ").append(s.getSent())
+                    .append(", Replaced = ").append(s.getReplaced())
+                    .append(", Unchanged = ").append(s.getUnchanged())
+                    .append(", Failed = ").append(s.getFailed());
+        }
+        return sb.toString();
+    }
+
+    @Override
+    protected void execute(SlashCommandEvent event) {
+        String report = buildReport(event.getJDA());
+        if (report.length() > 1900) {
+            event.reply("音声フレーム送信統計").queue();
+            event.getChannel().sendFiles(FileUpload.fromData(report.getBytes(), "audio_stats.txt")).queue();
+        } else {
+            event.reply("```\n" + report + "\n```").queue();
+        }
+    }
+
+    @Override
+    protected void execute(CommandEvent event) {
+        String report = buildReport(event.getJDA());
+        if (report.length() > 1900)
+            event.getChannel().sendFiles(FileUpload.fromData(report.getBytes(), "audio_stats.txt")).queue();
+        else
+            event.reply("```\n" + report + "\n```");
+    }
+}
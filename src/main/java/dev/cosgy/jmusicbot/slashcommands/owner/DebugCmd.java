@@ -51,7 +51,11 @@ public class DebugCmd extends OwnerCommand {
         long used = total - (Runtime.getRuntime().freeMemory() / 1024 / 1024);
         sb.append("\n\nランタイム情報:")
                 .append("\n  Total Memory = ").append(total)
-                .append("\n  Used Memory = ").append(used);
+                .append("\n  Used Memory = ").append(used)
+                .append("\n  Settings Write Requests = ").append(bot.getSettingsManager().getWriteRequestCount())
+                .append("\n  Settings Writes = ").append(bot.getSettingsManager().getWriteCount())
+                .append("\n  Settings Write Time total/max = ").append(bot.getSettingsManager().getWriteNanos() / 1_000_000).append("ms/")
+                .append(bot.getSettingsManager().getMaxWriteNanos() / 1_000_000).append("ms");
         sb.append("\n\nDiscord情報:")
                 .append("\n  ID = ").append(event.getJDA().getSelfUser().getId())
                 .append("\n  Guilds = ").append(event.getJDA().getGuildCache().size())
@@ -92,7 +96,11 @@ public class DebugCmd extends OwnerCommand {
         long used = total - (Runtime.getRuntime().freeMemory() / 1024 / 1024);
         sb.append("\n\nランタイム情報:")
                 .append("\n  Total Memory = ").append(total)
-                .append("\n  Used Memory = ").append(used);
+                .append("\n  Used Memory = ").append(used)
+                .append("\n  Settings Write Requests = ").append(bot.getSettingsManager().getWriteRequestCount())
+                .append("\n  Settings Writes = ").append(bot.getSettingsManager().getWriteCount())
+                .append("\n  Settings Write Time total/max = ").append(bot.getSettingsManager().getWriteNanos() / 1_000_000).append("ms/")
+                .append(bot.getSettingsManager().getMaxWriteNanos() / 1_000_000).append("ms");
         sb.append("\n\nDiscord情報:")
                 .append("\n  ID = ").append(event.getJDA().getSelfUser().getId())
                 .append("\n  Guilds = ").append(event.getJDA().getGuildCache().size())
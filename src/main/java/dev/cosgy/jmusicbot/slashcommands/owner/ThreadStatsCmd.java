@@ -0,0 +1,92 @@
+/*
+ *  Copyright 2024 Cosgy Dev (info@cosgy.dev).
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package dev.cosgy.jmusicbot.slashcommands.owner;
+
+import com.jagrosh.jdautilities.command.CommandEvent;
+import com.jagrosh.jdautilities.command.SlashCommandEvent;
+import com.jagrosh.jmusicbot.Bot;
+import com.jagrosh.jmusicbot.utils.MonitoredExecutor;
+import dev.cosgy.jmusicbot.slashcommands.CommandRunner;
+import dev.cosgy.jmusicbot.slashcommands.OwnerCommand;
+import net.dv8tion.jda.api.utils.FileUpload;
+
+import java.util.Map;
+
+/**
+ * スレッドプールごとの待ち時間と実行時間、コマンドごとの応答時間の統計を表示します。
+ *
+ * @author Cosgy Dev
+ */
+public class ThreadStatsCmd extends OwnerCommand {
+    private final Bot bot;
+
+    public ThreadStatsCmd(Bot bot) {
+        this.bot = bot;
+        this.name = "threadstats";
+        this.help = "スレッドプールとコマンドの処理時間の統計を表示します";
+        this.aliases = bot.getConfig().getAliases(this.name);
+        this.guildOnly = false;
+    }
+
+    private String buildReport() {
+        // スレッドプールごとの待ち時間と実行時間
+        StringBuilder sb = new StringBuilder("スレッドプール");
+        for (MonitoredExecutor e : bot.getExecutors()) {
+            sb.append("\n  ").append(e.getName())
+                    .append(": Queued = ").append(e.getQueueDepth())
+                    .append(" (Ready = ").append(e.getReadyCount()).append(")")
+                    .append(", Active = ").append(e.getActiveCount())
+                    .append(", Completed = ").append(e.getCompleted())
+                    .append(", Failed = ").append(e.getFailed())
+                    .append(", Delay avg/max = ").append(e.getAverageDelay() / 1_000_000).append("/").append(e.getMaxDelay() / 1_000_000).append("ms")
+                    .append(", Run avg/max = ").append(e.getAverageTime() / 1_000_000).append("/").append(e.getMaxTime() / 1_000_000).append("ms");
+        }
+
+        // コマンドごとの応答時間
+        sb.append("\n\nコマンド");
+        for (Map.Entry<String, CommandRunner.Stats> entry : bot.getCommandRunner().getStats().entrySet()) {
+            CommandRunner.Stats s = entry.getValue();
+            sb.append("\n  ").append(entry.getKey())
+                    .append(": Count = ").append(s.getCount())
+                    .append(", Failed = ").append(s.getFailed())
+                    .append(", Deferred = ").append(s.getDeferred())
+                    .append(", Wait avg/max = ").append(s.getAverageWait() / 1_000_000).append("/").append(s.getMaxWait() / 1_000_000).append("ms")
+                    .append(", Total avg/max = ").append(s.getAverageTime() / 1_000_000).append("/").append(s.getMaxTime() / 1_000_000).append("ms");
+        }
+        return sb.toString();
+    }
+
+    @Override
+    protected void execute(SlashCommandEvent event) {
+        String report = buildReport();
+        if (report.length() > 1900) {
+            event.reply("スレッドプールとコマンドの統計").queue();
+            event.getChannel().sendFiles(FileUpload.fromData(report.getBytes(), "thread_stats.txt")).queue();
+        } else {
+            event.reply("```\n" + report + "\n```").queue();
+        }
+    }
+
+    @Override
+    protected void execute(CommandEvent event) {
+        String report = buildReport();
+        if (report.length() > 1900)
+            event.getChannel().sendFiles(FileUpload.fromData(report.getBytes(), "thread_stats.txt")).queue();
+        else
+            event.reply("```\n" + report + "\n```");
+    }
+}
@@ -0,0 +1,189 @@
+/*
+ *  Copyright 2024 Cosgy Dev (info@cosgy.dev).
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package dev.cosgy.jmusicbot.util;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * キャッシュファイルに保存する再生待ちです。
+ * <p>
+ * 各楽曲は lavaplayer の形式でエンコードして保存し、復元時にはネットワークにアクセスせずにデコードします。
+ * {@code playing} が true の場合、最初の楽曲は保存時に再生していた楽曲で、{@code position} から再生を再開します。
+ * {@code channelId} は保存時に接続していたボイスチャンネルで、起動時に再生を再開する時に使用します。
+ *
+ * @author Cosgy Dev
+ */
+public class QueueCache {
+    private int version;
+    private boolean playing;
+    private long position;
+    private long channelId;
+    private List<Track> tracks = new ArrayList<>();
+
+    public QueueCache(int version, boolean playing, long position, long channelId, List<Track> tracks) {
+        this.version = version;
+        this.playing = playing;
+        this.position = position;
+        this.channelId = channelId;
+        this.tracks = tracks;
+    }
+
+    public QueueCache() {
+    }
+
+    public int getVersion() {
+        return version;
+    }
+
+    public void setVersion(int version) {
+        this.version = version;
+    }
+
+    public boolean isPlaying() {
+        return playing;
+    }
+
+    public void setPlaying(boolean playing) {
+        this.playing = playing;
+    }
+
+    public long getPosition() {
+        return position;
+    }
+
+    public void setPosition(long position) {
+        this.position = position;
+    }
+
+    public long getChannelId() {
+        return channelId;
+    }
+
+    public void setChannelId(long channelId) {
+        this.channelId = channelId;
+    }
+
+    public List<Track> getTracks() {
+        return tracks;
+    }
+
+    public void setTracks(List<Track> tracks) {
+        this.tracks = tracks;
+    }
+
+    /**
+     * 保存した楽曲です。
+     * {@code track} はエンコードした楽曲で、エンコードできなかった楽曲や未読み込みの楽曲では null になり、
+     * 復元時には {@code url} から読み込みます。
+     */
+    public static class Track {
+        private byte[] track;
+        private String title;
+        private String author;
+        private long length;
+        private boolean isStream;
+        private String url;
+        private long userId;
+        private String username;
+        private String discrim;
+        private String avatar;
+
+        public Track() {
+        }
+
+        public byte[] getTrack() {
+            return track;
+        }
+
+        public void setTrack(byte[] track) {
+            this.track = track;
+        }
+
+        public String getTitle() {
+            return title;
+        }
+
+        public void setTitle(String title) {
+            this.title = title;
+        }
+
+        public String getAuthor() {
+            return author;
+        }
+
+        public void setAuthor(String author) {
+            this.author = author;
+        }
+
+        public long getLength() {
+            return length;
+        }
+
+        public void setLength(long length) {
+            this.length = length;
+        }
+
+        public boolean getIsStream() {
+            return isStream;
+        }
+
+        public void setIsStream(boolean isStream) {
+            this.isStream = isStream;
+        }
+
+        public String getUrl() {
+            return url;
+        }
+
+        public void setUrl(String url) {
+            this.url = url;
+        }
+
+        public long getUserId() {
+            return userId;
+        }
+
+        public void setUserId(long userId) {
+            this.userId = userId;
+        }
+
+        public String getUsername() {
+            return username;
+        }
+
+        public void setUsername(String username) {
+            this.username = username;
+        }
+
+        public String getDiscrim() {
+            return discrim;
+        }
+
+        public void setDiscrim(String discrim) {
+            this.discrim = discrim;
+        }
+
+        public String getAvatar() {
+            return avatar;
+        }
+
+        public void setAvatar(String avatar) {
+            this.avatar = avatar;
+        }
+    }
+}
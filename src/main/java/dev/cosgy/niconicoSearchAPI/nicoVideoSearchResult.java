@@ -1,11 +1,12 @@
 package dev.cosgy.niconicoSearchAPI;
 
-import org.json.JSONObject;
-import org.json.XML;
+import com.sedmelluq.discord.lavaplayer.source.nico.NicoThumbInfo;
+import com.sedmelluq.discord.lavaplayer.source.nico.NicoThumbInfoCache;
 
-import java.util.ArrayList;
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.UncheckedIOException;
 import java.util.Arrays;
-import java.util.List;
 
 public class nicoVideoSearchResult {
     private String contentId;
@@ -162,38 +163,37 @@ public class nicoVideoSearchResult {
 
     public nicoVideoInfo getInfo() {
         if (videoInfo == null) {
-            HTTPUtil requester = new HTTPUtil("GET", "https://ext.nicovideo.jp/api/getthumbinfo/" + contentId);
-            JSONObject object = XML.toJSONObject(requester.request());
-            object = object.getJSONObject("nicovideo_thumb_response").getJSONObject("thumb");
+            NicoThumbInfo info;
+            try {
+                // 再生時に読み込む情報と共通のキャッシュを使用する
+                info = NicoThumbInfoCache.getShared().get(contentId, id -> {
+                    String xml = new HTTPUtil("GET", "https://ext.nicovideo.jp/api/getthumbinfo/" + id).request();
+                    if (xml == null) throw new IOException("動画情報の取得に失敗しました: " + id);
+                    return NicoThumbInfo.parse(new StringReader(xml));
+                });
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            if (info == null) throw new IllegalStateException("動画情報が見つかりません: " + contentId);
 
             nicoVideoInfo nvi = new nicoVideoInfo();
-            nvi.setCommentCount(object.getInt("comment_num"));
-            nvi.setMylistCount(object.getInt("mylist_counter"));
-            nvi.setLengthFormatted(object.getString("length"));
-            nvi.setDescription(object.getString("description"));
-            nvi.setTitle(object.getString("title"));
-            nvi.setThumbnailUrl(object.getString("thumbnail_url"));
-
-            List<String> tags = new ArrayList<>();
-            object.getJSONObject("tags").getJSONArray("tag").forEach(obj -> {
-                if (obj instanceof String) tags.add(obj.toString());
-                else if (obj instanceof JSONObject) tags.add(((JSONObject) obj).getString("content"));
-                else {
-                    System.out.println("Err: " + obj.toString());
-                    tags.add(obj.toString());
-                }
-            });
-
-            nvi.setTags(tags.toArray(new String[]{}));
+            nvi.setCommentCount(info.getInt("comment_num", 0));
+            nvi.setMylistCount(info.getInt("mylist_counter", 0));
+            nvi.setLengthFormatted(info.getLength());
+            nvi.setDescription(info.get("description"));
+            nvi.setTitle(info.getTitle());
+            nvi.setThumbnailUrl(info.getThumbnailUrl());
+            nvi.setTags(info.getTags().toArray(new String[]{}));
             // Bug Fixes: [object#has(String key)] == 公式upの場合、ユーザー関連の情報が取得できないので has を挟む
-            if (object.has("user_icon_url")) nvi.setUploadUserIconUrl(object.getString("user_icon_url"));
-            nvi.setWatchUrl(object.getString("watch_url"));
-            if (object.has("user_id")) nvi.setUploadUserId(object.getInt("user_id"));
-            if (object.has("user_nickname")) nvi.setUploadUserName(object.getString("user_nickname"));
-            nvi.setViewCount(object.getInt("view_counter"));
-            nvi.setVideoId(object.getString("video_id"));
-            return nvi;
-        } else return videoInfo;
+            if (info.has("user_icon_url")) nvi.setUploadUserIconUrl(info.get("user_icon_url"));
+            nvi.setWatchUrl(info.get("watch_url"));
+            if (info.has("user_id")) nvi.setUploadUserId(info.getInt("user_id", 0));
+            if (info.has("user_nickname")) nvi.setUploadUserName(info.get("user_nickname"));
+            nvi.setViewCount(info.getInt("view_counter", 0));
+            nvi.setVideoId(info.get("video_id"));
+            videoInfo = nvi;
+        }
+        return videoInfo;
     }
 
     public nicoVideoSearchResult setInfo(nicoVideoInfo videoInfo) {
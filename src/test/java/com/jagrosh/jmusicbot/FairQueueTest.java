@@ -19,7 +19,14 @@ import com.jagrosh.jmusicbot.queue.FairQueue;
 import com.jagrosh.jmusicbot.queue.Queueable;
 import org.junit.Test;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
 
 /**
  * @author John Grosh (john.a.grosh@gmail.com)
@@ -43,6 +50,134 @@ public class FairQueueTest {
         assertEquals(queue.size(), size);
     }
 
+    @Test
+    public void fairOrder() {
+        FairQueue<Q> queue = new FairQueue<>();
+        assertEquals(0, queue.add(new Q(1), false));
+        assertEquals(1, queue.add(new Q(1), false));
+        assertEquals(2, queue.add(new Q(1), false));
+        // 2人目のユーザーの曲は1人目の曲の間に順番に入る
+        assertEquals(1, queue.add(new Q(2), false));
+        assertEquals(3, queue.add(new Q(2), false));
+        assertEquals(5, queue.add(new Q(2), false));
+        assertEquals(2, queue.add(new Q(3), false));
+        assertEquals(List.of(1L, 2L, 3L, 1L, 2L, 1L, 2L), identifiers(queue));
+    }
+
+    @Test
+    public void forceToEnd() {
+        FairQueue<Q> queue = new FairQueue<>();
+        queue.add(new Q(1), false);
+        queue.add(new Q(1), false);
+        assertEquals(2, queue.add(new Q(2), true));
+        assertEquals(List.of(1L, 1L, 2L), identifiers(queue));
+    }
+
+    @Test
+    public void addAllMatchesSequentialAdd() {
+        Random random = new Random(42);
+        for (int round = 0; round < 200; round++) {
+            FairQueue<Q> bulk = new FairQueue<>();
+            FairQueue<Q> single = new FairQueue<>();
+            for (int i = random.nextInt(30); i > 0; i--) {
+                Q q = new Q(random.nextInt(5));
+                bulk.add(q, false);
+                single.add(q, false);
+            }
+            List<Q> items = new ArrayList<>();
+            for (int i = random.nextInt(40); i > 0; i--)
+                items.add(new Q(random.nextInt(4) == 0 ? random.nextInt(5) : 1));
+            boolean forceToEnd = random.nextInt(5) == 0;
+
+            int expected = -1;
+            for (Q q : items) {
+                int index = single.add(q, forceToEnd);
+                if (expected < 0)
+                    expected = index;
+            }
+            assertEquals(expected, bulk.addAll(items, forceToEnd));
+            assertEquals(single.getList(), bulk.getList());
+        }
+    }
+
+    @Test
+    public void removeAndMove() {
+        FairQueue<Q> queue = new FairQueue<>();
+        for (int i = 0; i < 6; i++)
+            queue.add(new Q(i % 3), false);
+        assertEquals(2, queue.removeAll(1));
+        assertEquals(List.of(0L, 2L, 0L, 2L), identifiers(queue));
+
+        Q moved = queue.get(0);
+        assertSame(moved, queue.moveItem(0, 3));
+        assertSame(moved, queue.get(3));
+        assertEquals(List.of(2L, 0L, 2L, 0L), identifiers(queue));
+
+        queue.skip(2);
+        assertEquals(List.of(2L, 0L), identifiers(queue));
+        assertSame(moved, queue.remove(1));
+        assertEquals(1, queue.size());
+    }
+
+    @Test
+    public void largeQueueIndexing() {
+        FairQueue<Q> queue = new FairQueue<>();
+        List<Q> expected = new ArrayList<>();
+        int size = 100000;
+        // 同じ位置への挿入を繰り返して順序ラベルの振り直しを発生させる
+        for (int i = 0; i < size; i++) {
+            Q q = new Q(i % 7);
+            queue.addAt(1, q);
+            if (expected.isEmpty())
+                expected.add(q);
+            else
+                expected.add(1, q);
+        }
+        assertEquals(size, queue.size());
+        for (int i = 0; i < size; i += 997)
+            assertSame(expected.get(i), queue.get(i));
+        assertEquals(expected, queue.getList());
+    }
+
+    @Test
+    public void dirtyFlag() {
+        FairQueue<Q> queue = new FairQueue<>();
+        assertFalse(queue.clearDirty());
+        queue.add(new Q(1), false);
+        assertTrue(queue.clearDirty());
+        // 一度消去した変更の記録は、次の変更まで残らない
+        assertFalse(queue.clearDirty());
+        queue.get(0);
+        queue.getList().size();
+        assertFalse(queue.clearDirty());
+        queue.pull();
+        assertTrue(queue.clearDirty());
+        queue.clear();
+        assertTrue(queue.clearDirty());
+    }
+
+    @Test
+    public void changeListenerSeesFinishedChange() {
+        FairQueue<Q> queue = new FairQueue<>();
+        List<Integer> sizes = new ArrayList<>();
+        queue.setChangeListener(() -> sizes.add(queue.getList().size()));
+        queue.add(new Q(1), false);
+        queue.add(new Q(2), false);
+        queue.get(0);
+        queue.moveItem(1, 0);
+        queue.pull();
+        queue.clear();
+        // 移動は削除と追加の2回
+        assertEquals(List.of(1, 2, 1, 2, 1, 0), sizes);
+    }
+
+    private List<Long> identifiers(FairQueue<Q> queue) {
+        List<Long> ids = new ArrayList<>();
+        for (Q q : queue.getList())
+            ids.add(q.getIdentifier());
+        return ids;
+    }
+
     private class Q implements Queueable {
         private final long identifier;
 
@@ -0,0 +1,66 @@
+package com.sedmelluq.discord.lavaplayer.source.nico;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+public class NicoThumbInfoTest {
+    private static final String OK = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+            + "<nicovideo_thumb_response status=\"ok\">\n"
+            + "  <thumb>\n"
+            + "    <video_id>sm9</video_id>\n"
+            + "    <title>新・豪血寺一族 -煩悩解放 - レッツゴー！陰陽師</title>\n"
+            + "    <description>レッツゴー！陰陽師 &amp; more</description>\n"
+            + "    <thumbnail_url>https://nicovideo.cdn.nimg.jp/thumbnails/9/9</thumbnail_url>\n"
+            + "    <length>5:19</length>\n"
+            + "    <view_counter>21000000</view_counter>\n"
+            + "    <tags domain=\"jp\">\n"
+            + "      <tag lock=\"1\">陰陽師</tag>\n"
+            + "      <tag>レッツゴー！陰陽師</tag>\n"
+            + "    </tags>\n"
+            + "    <user_nickname>中の</user_nickname>\n"
+            + "  </thumb>\n"
+            + "</nicovideo_thumb_response>";
+
+    @Test
+    public void parsesThumb() throws IOException {
+        NicoThumbInfo info = NicoThumbInfo.parse(new StringReader(OK));
+        assertNotNull(info);
+        assertEquals("新・豪血寺一族 -煩悩解放 - レッツゴー！陰陽師", info.getTitle());
+        assertEquals("レッツゴー！陰陽師 & more", info.get("description"));
+        assertEquals("5:19", info.getLength());
+        assertEquals(21000000, info.getInt("view_counter", 0));
+        assertEquals(Arrays.asList("陰陽師", "レッツゴー！陰陽師"), info.getTags());
+        assertTrue(info.has("user_nickname"));
+        assertFalse(info.has("ch_name"));
+    }
+
+    @Test
+    public void errorResponseIsNull() throws IOException {
+        String fail = "<nicovideo_thumb_response status=\"fail\"><error><code>DELETED</code>"
+                + "<description>deleted</description></error></nicovideo_thumb_response>";
+        assertNull(NicoThumbInfo.parse(new StringReader(fail)));
+    }
+
+    @Test
+    public void cacheLoadsOnce() throws IOException {
+        NicoThumbInfoCache cache = new NicoThumbInfoCache(1, 60_000);
+        int[] loads = new int[1];
+        NicoThumbInfoCache.Loader loader = id -> {
+            loads[0]++;
+            return NicoThumbInfo.parse(new StringReader(OK));
+        };
+        NicoThumbInfo first = cache.get("sm9", loader);
+        assertSame(first, cache.get("sm9", loader));
+        assertEquals(1, loads[0]);
+        // 上限を超えると古いものから削除される
+        cache.get("sm10", loader);
+        cache.get("sm9", loader);
+        assertEquals(3, loads[0]);
+        assertEquals(1, cache.size());
+    }
+}
@@ -0,0 +1,123 @@
+package com.sedmelluq.discord.lavaplayer.source.nico;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.*;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * Drives {@link ProcessSeekableInputStream} with a fake yt-dlp script that sends the WAV header at once
+ * and the rest of the audio two seconds later, like a slow download.
+ */
+public class ProcessSeekableInputStreamTest {
+    private static final long DELAY = 2000;
+    private ExecutorService readers;
+    private Path dir;
+    private byte[] head;
+    private byte[] tail;
+
+    @Before
+    public void setUp() throws IOException {
+        assumeTrue(new File("/bin/sh").canExecute());
+        dir = Files.createTempDirectory("nico-stream");
+        readers = Executors.newCachedThreadPool();
+
+        // ffmpeg がパイプに書き込んだ WAV と同じく、サイズが埋められていないヘッダー
+        ByteBuffer header = ByteBuffer.allocate(44 + 4800).order(ByteOrder.LITTLE_ENDIAN);
+        header.putInt(0x46464952).putInt(-1).putInt(0x45564157) // RIFF, WAVE
+                .putInt(0x20746d66).putInt(16).putShort((short) 1).putShort((short) 2) // fmt, PCM, stereo
+                .putInt(48000).putInt(48000 * 4).putShort((short) 4).putShort((short) 16)
+                .putInt(0x61746164).putInt(-1); // data
+        head = header.array();
+        tail = new byte[48000 * 4];
+        Arrays.fill(tail, (byte) 1);
+        Files.write(dir.resolve("head.bin"), head);
+        Files.write(dir.resolve("tail.bin"), tail);
+
+        Path script = dir.resolve("yt-dlp");
+        Files.write(script, ("#!/bin/sh\n"
+                + "cat '" + dir.resolve("head.bin") + "'\n"
+                + "sleep " + DELAY / 1000 + "\n"
+                + "cat '" + dir.resolve("tail.bin") + "'\n").getBytes());
+        assertTrue(script.toFile().setExecutable(true));
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        if (readers != null)
+            readers.shutdownNow();
+        if (dir == null)
+            return;
+        try (Stream<Path> files = Files.walk(dir)) {
+            files.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+        }
+    }
+
+    @Test
+    public void startsBeforeDownloadFinishes() throws IOException {
+        // cat が ffmpeg の代わり
+        List<ProcessBuilder> pipeline = Arrays.asList(
+                new ProcessBuilder(dir.resolve("yt-dlp").toString()),
+                new ProcessBuilder("cat"));
+        Path buffer = dir.resolve("track.part");
+
+        long start = System.currentTimeMillis();
+        try (ProcessSeekableInputStream stream = ProcessSeekableInputStream.start(pipeline, buffer, readers)) {
+            byte[] first = readFully(stream, head.length);
+            long firstFrame = System.currentTimeMillis() - start;
+            assertArrayEquals(head, first);
+            assertTrue("first data took " + firstFrame + "ms", firstFrame < DELAY / 2);
+
+            // 書き込み済みの範囲にはすぐにシークできる
+            stream.seek(4);
+            assertEquals(0xFF, stream.read());
+            stream.seek(head.length);
+
+            byte[] rest = readFully(stream, tail.length);
+            assertArrayEquals(tail, rest);
+            assertTrue(System.currentTimeMillis() - start >= DELAY);
+            assertEquals(-1, stream.read());
+            assertTrue(stream.isComplete());
+        }
+        assertEquals(head.length + tail.length, Files.size(buffer));
+    }
+
+    @Test
+    public void failedProcessIsNotComplete() throws IOException {
+        List<ProcessBuilder> pipeline = Arrays.asList(new ProcessBuilder("/bin/sh", "-c", "exit 1"));
+        try (ProcessSeekableInputStream stream = ProcessSeekableInputStream.start(pipeline, dir.resolve("failed.part"), readers)) {
+            try {
+                stream.read();
+                fail("expected the failure of the process to be reported");
+            } catch (IOException expected) {
+            }
+            assertFalse(stream.isComplete());
+        }
+    }
+
+    private static byte[] readFully(ProcessSeekableInputStream stream, int length) throws IOException {
+        byte[] bytes = new byte[length];
+        int offset = 0;
+        while (offset < length) {
+            int read = stream.read(bytes, offset, length - offset);
+            assertNotEquals(-1, read);
+            offset += read;
+        }
+        return bytes;
+    }
+}